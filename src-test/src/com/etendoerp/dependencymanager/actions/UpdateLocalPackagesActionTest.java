@@ -7,11 +7,17 @@ import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
-import com.etendoerp.dependencymanager.util.UpdateLocalPackagesUtil;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+import com.etendoerp.dependencymanager.util.CatalogRefreshService;
 import com.smf.jobs.ActionResult;
 import com.smf.jobs.Result;
 
@@ -23,6 +29,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
+import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.openbravo.erpCommon.utility.OBMessageUtils;
@@ -34,6 +41,7 @@ import org.openbravo.erpCommon.utility.OBMessageUtils;
  * - Error handling scenarios
  * - Input class validation
  * - Mock management for static dependencies
+ * The update itself is run by the {@link CatalogRefreshService}, which is mocked.
  */
 @ExtendWith(MockitoExtension.class)
 @DisplayName("UpdateLocalPackagesAction Tests")
@@ -42,7 +50,10 @@ class UpdateLocalPackagesActionTest {
   @InjectMocks
   private UpdateLocalPackagesAction updateLocalPackagesAction;
 
-  private MockedStatic<UpdateLocalPackagesUtil> mockedUpdateUtil;
+  @Mock
+  private CatalogRefreshService refreshService;
+
+  private MockedStatic<CatalogRefreshService> mockedRefreshService;
   private MockedStatic<OBMessageUtils> mockedMessageUtils;
 
   private JSONObject testParameters;
@@ -55,7 +66,8 @@ class UpdateLocalPackagesActionTest {
    */
   @BeforeEach
   void setUp() {
-    mockedUpdateUtil = mockStatic(UpdateLocalPackagesUtil.class);
+    mockedRefreshService = mockStatic(CatalogRefreshService.class);
+    mockedRefreshService.when(CatalogRefreshService::getInstance).thenReturn(refreshService);
     mockedMessageUtils = mockStatic(OBMessageUtils.class);
 
     testParameters = new JSONObject();
@@ -68,8 +80,8 @@ class UpdateLocalPackagesActionTest {
    */
   @AfterEach
   void tearDown() {
-    if (mockedUpdateUtil != null) {
-      mockedUpdateUtil.close();
+    if (mockedRefreshService != null) {
+      mockedRefreshService.close();
     }
     if (mockedMessageUtils != null) {
       mockedMessageUtils.close();
@@ -85,8 +97,7 @@ class UpdateLocalPackagesActionTest {
   void testActionSuccessfulUpdate() {
     String expectedSuccessMessage = PACKAGES_UPDATED_SUCCESSFULLY;
 
-    mockedUpdateUtil.when(UpdateLocalPackagesUtil::update)
-        .then(invocation -> null); // void method returns null
+    when(refreshService.refresh()).thenReturn(CompletableFuture.completedFuture(null));
 
     mockedMessageUtils.when(() -> OBMessageUtils.messageBD(PACKAGE_UPDATE_SUCCESS_CODE))
         .thenReturn(expectedSuccessMessage);
@@ -101,7 +112,7 @@ class UpdateLocalPackagesActionTest {
             "Success message should match expected value")
     );
 
-    mockedUpdateUtil.verify(UpdateLocalPackagesUtil::update, times(1));
+    verify(refreshService, times(1)).refresh();
     mockedMessageUtils.verify(() -> OBMessageUtils.messageBD(PACKAGE_UPDATE_SUCCESS_CODE),
         times(1));
   }
@@ -116,8 +127,7 @@ class UpdateLocalPackagesActionTest {
     String expectedErrorMessage = "Runtime error occurred during update";
     RuntimeException testException = new RuntimeException(expectedErrorMessage);
 
-    mockedUpdateUtil.when(UpdateLocalPackagesUtil::update)
-        .thenThrow(testException);
+    when(refreshService.refresh()).thenThrow(testException);
 
     ActionResult result = updateLocalPackagesAction.action(testParameters, testIsStopped);
 
@@ -129,11 +139,57 @@ class UpdateLocalPackagesActionTest {
             "Error message should match exception message")
     );
 
-    mockedUpdateUtil.verify(UpdateLocalPackagesUtil::update, times(1));
+    verify(refreshService, times(1)).refresh();
     mockedMessageUtils.verify(() -> OBMessageUtils.messageBD(PACKAGE_UPDATE_SUCCESS_CODE),
         never());
   }
 
+  /**
+   * Tests that the action method returns ERROR when the update run by the refresh service fails.
+   * Verifies that the error message is the message of the failure.
+   */
+  @Test
+  @DisplayName("Should return ERROR when the package update fails")
+  void testActionFailedUpdateHandling() {
+    String expectedErrorMessage = "Error when updating packages";
+    when(refreshService.refresh()).thenReturn(CompletableFuture.failedFuture(new IOException(expectedErrorMessage)));
+
+    ActionResult result = updateLocalPackagesAction.action(testParameters, testIsStopped);
+
+    assertAll("Failed update handling validation",
+        () -> assertNotNull(result, RESULT_NOT_NULL_MESSAGE),
+        () -> assertEquals(Result.Type.ERROR, result.getType(),
+            "Result type should be ERROR"),
+        () -> assertEquals(expectedErrorMessage, result.getMessage(),
+            "Error message should match the failure message")
+    );
+  }
+
+  /**
+   * Tests that the action method returns WARNING, instead of the success message, when another node was still
+   * updating the packages once the wait for it ended.
+   */
+  @Test
+  @DisplayName("Should return WARNING when the update is still running on another node")
+  void testActionUpdateRunningOnOtherNode() {
+    String expectedWarningMessage = "Still updating on another node";
+    CatalogRefreshService.Status status = mock(CatalogRefreshService.Status.class);
+    when(status.getLastOutcome()).thenReturn(CatalogRefreshService.Outcome.RUNNING_ON_OTHER_NODE);
+    when(refreshService.refresh()).thenReturn(CompletableFuture.completedFuture(status));
+    mockedMessageUtils.when(() -> OBMessageUtils.messageBD("ETDEP_Package_Update_Running_Other_Node"))
+        .thenReturn(expectedWarningMessage);
+
+    ActionResult result = updateLocalPackagesAction.action(testParameters, testIsStopped);
+
+    assertAll("Update running on another node validation",
+        () -> assertEquals(Result.Type.WARNING, result.getType(),
+            "Result type should be WARNING"),
+        () -> assertEquals(expectedWarningMessage, result.getMessage(),
+            "Warning message should say the update is running on another node")
+    );
+    mockedMessageUtils.verify(() -> OBMessageUtils.messageBD(PACKAGE_UPDATE_SUCCESS_CODE), never());
+  }
+
   /**
    * Tests that the getInputClass method returns the correct class type (Package).
    */
@@ -155,8 +211,7 @@ class UpdateLocalPackagesActionTest {
   void testActionNullParametersHandling() {
     String expectedSuccessMessage = PACKAGES_UPDATED_SUCCESSFULLY;
 
-    mockedUpdateUtil.when(UpdateLocalPackagesUtil::update)
-        .then(invocation -> null);
+    when(refreshService.refresh()).thenReturn(CompletableFuture.completedFuture(null));
 
     mockedMessageUtils.when(() -> OBMessageUtils.messageBD(PACKAGE_UPDATE_SUCCESS_CODE))
         .thenReturn(expectedSuccessMessage);
@@ -181,8 +236,7 @@ class UpdateLocalPackagesActionTest {
   void testActionNullIsStoppedHandling() {
     String expectedSuccessMessage = PACKAGES_UPDATED_SUCCESSFULLY;
 
-    mockedUpdateUtil.when(UpdateLocalPackagesUtil::update)
-        .then(invocation -> null);
+    when(refreshService.refresh()).thenReturn(CompletableFuture.completedFuture(null));
 
     mockedMessageUtils.when(() -> OBMessageUtils.messageBD(PACKAGE_UPDATE_SUCCESS_CODE))
         .thenReturn(expectedSuccessMessage);
@@ -207,6 +261,7 @@ class UpdateLocalPackagesActionTest {
   void testMethodSignatures() {
     // This test ensures that the action method has the correct signature
     // and can be called without compilation errors
+    when(refreshService.refresh()).thenReturn(CompletableFuture.completedFuture(null));
 
     assertDoesNotThrow(() -> {
       ActionResult result = updateLocalPackagesAction.action(testParameters, testIsStopped);
@@ -220,8 +220,10 @@ class PackageUtilTest {
     void testGetLastPackageVersion() {
       when(mockOBDal.createQuery(eq(PackageVersion.class), anyString())).thenReturn(mockPackageVersionQuery);
       when(mockPackageVersionQuery.setNamedParameter(anyString(), any())).thenReturn(mockPackageVersionQuery);
-      when(mockPackageVersionQuery.setMaxResult(1)).thenReturn(mockPackageVersionQuery);
-      when(mockPackageVersionQuery.uniqueResult()).thenReturn(mockPackageVersion);
+      PackageVersion olderVersion = mock(PackageVersion.class);
+      when(olderVersion.getVersion()).thenReturn(VERSION_1_5);
+      when(mockPackageVersion.getVersion()).thenReturn(TEST_PACKAGE_VERSION);
+      when(mockPackageVersionQuery.list()).thenReturn(Arrays.asList(olderVersion, mockPackageVersion));
 
       PackageVersion result = PackageUtil.getLastPackageVersion(mockPackage);
 
@@ -124,8 +124,6 @@ class DependencyTreeBuilderUnitTest {
           .thenCallRealMethod();
       mockedBuilder.when(() -> DependencyTreeBuilder.addDependency(any(Map.class), any(PackageDependency.class)))
           .thenCallRealMethod();
-      mockedBuilder.when(() -> DependencyTreeBuilder.searchDependency(any(PackageDependency.class), any(Map.class)))
-          .thenReturn(new ArrayList<>());
       mockedBuilder.when(() -> DependencyTreeBuilder.isBundle(any(PackageDependency.class)))
           .thenReturn(false);
 
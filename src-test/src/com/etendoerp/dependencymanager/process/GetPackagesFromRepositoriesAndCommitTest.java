@@ -7,7 +7,6 @@ import org.junit.Test;
 import org.mockito.Mockito;
 import org.openbravo.base.provider.OBProvider;
 import org.openbravo.base.secureApp.VariablesSecureApp;
-import org.openbravo.base.weld.WeldUtils;
 import org.openbravo.base.weld.test.WeldBaseTest;
 import org.openbravo.client.kernel.RequestContext;
 import org.openbravo.dal.core.OBContext;
@@ -20,7 +19,6 @@ import org.openbravo.scheduling.ProcessBundle;
 import org.openbravo.scheduling.ProcessContext;
 import org.openbravo.scheduling.ProcessLogger;
 import org.openbravo.service.db.DalConnectionProvider;
-import org.openbravo.service.db.DataExportService;
 import org.openbravo.test.base.TestConstants;
 
 import javax.inject.Inject;
@@ -31,7 +29,7 @@ import java.lang.reflect.Method;
 
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.util.Map;
+import java.nio.file.Path;
 
 import static org.junit.Assert.*;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -52,7 +50,9 @@ public class GetPackagesFromRepositoriesAndCommitTest extends WeldBaseTest {
     private static final String AD_DATASET_ID = "9F0311EFA2C1406D81B03FE673FF0A17";
     private static final String AD_MODULE_ID = "2EC4FFAFFE984592BA9859A8C9E25BF0";
     private static final String LANGUAGE = "en_US";
+    private static final String SUCCESS = "Success";
     private static final String GIT_OPERATIONS_SCRIPT = "git_operations.sh";
+    private static final String CATALOG_DIGEST = "0f1e2d3c4b5a69788796a5b4c3d2e1f00f1e2d3c4b5a69788796a5b4c3d2e1f0";
     private void setupMocks(ProcessBundle bundle, ProcessContext context, ConnectionProvider conn, ProcessLogger loggerMock) {
         when(bundle.getLogger()).thenReturn(loggerMock);
         when(bundle.getContext()).thenReturn(context);
@@ -148,7 +148,8 @@ public class GetPackagesFromRepositoriesAndCommitTest extends WeldBaseTest {
         mockDataSet.setModule(mockModule);
         OBDal.getInstance().save(mockDataSet);
         GetPackagesFromRepositoriesAndCommit processSpy = Mockito.spy(process);
-        Mockito.doThrow(new RuntimeException("Simulated Exception")).when(processSpy).exportDataSetToXML(any());
+        Mockito.doThrow(new RuntimeException("Simulated Exception")).when(processSpy)
+                .exportDataSetToFile(any(), any(), any());
         try {
             processSpy.processButton(LANGUAGE, conn);
         } catch (RuntimeException e) {
@@ -175,7 +176,8 @@ public class GetPackagesFromRepositoriesAndCommitTest extends WeldBaseTest {
         setupMocks(bundle, context, conn, loggerMock);
         GetPackagesFromRepositoriesAndCommit processSpy = Mockito.spy(process);
 
-        Mockito.doReturn(new OBError()).when(processSpy).processButton(Mockito.eq(LANGUAGE), Mockito.eq(conn));
+        Mockito.doReturn(null).when(processSpy).getCatalogDigest();
+        Mockito.doReturn(exportResult(SUCCESS)).when(processSpy).processButton(Mockito.eq(LANGUAGE), Mockito.eq(conn));
         Mockito.doReturn("Script output").when(processSpy).executeScript(Mockito.anyString());
         processSpy.doExecute(bundle);
         verify(processSpy).processButton(Mockito.eq(LANGUAGE), Mockito.eq(conn));
@@ -183,40 +185,92 @@ public class GetPackagesFromRepositoriesAndCommitTest extends WeldBaseTest {
     }
 
     /**
-     * Test case to verify the functionality of {@code saveXMLToFile}.
-     * Ensures that XML content is properly saved to the specified file location.
+     * Test case to verify that {@code doExecute} skips the export and the git operations
+     * when the catalog digest matches the digest of the last export.
+     *
+     * @throws Exception if any exception occurs during the test execution.
+     */
+    @Test
+    public void testDoExecuteCatalogUnchanged() throws Exception {
+        ProcessBundle bundle = mock(ProcessBundle.class);
+        ProcessContext context = mock(ProcessContext.class);
+        ConnectionProvider conn = new DalConnectionProvider(false);
+        ProcessLogger loggerMock = mock(ProcessLogger.class);
+
+        setupMocks(bundle, context, conn, loggerMock);
+        GetPackagesFromRepositoriesAndCommit processSpy = Mockito.spy(process);
+
+        Mockito.doNothing().when(processSpy).executeGetPackagesProcess(any());
+        Mockito.doReturn(CATALOG_DIGEST).when(processSpy).getCatalogDigest();
+        Mockito.doReturn(CATALOG_DIGEST).when(processSpy).getExportedCatalogDigest();
+        processSpy.doExecute(bundle);
+        verify(processSpy, Mockito.never()).processButton(anyString(), any());
+        verify(processSpy, Mockito.never()).executeScript(anyString());
+    }
+
+    /**
+     * Test case to verify that {@code doExecute} neither runs the git operations nor saves the catalog digest
+     * when the export fails, as when the module is not in development.
+     *
+     * @throws Exception if any exception occurs during the test execution.
+     */
+    @Test
+    public void testDoExecuteExportFailed() throws Exception {
+        ProcessBundle bundle = mock(ProcessBundle.class);
+        ProcessContext context = mock(ProcessContext.class);
+        ConnectionProvider conn = new DalConnectionProvider(false);
+        ProcessLogger loggerMock = mock(ProcessLogger.class);
+
+        setupMocks(bundle, context, conn, loggerMock);
+        GetPackagesFromRepositoriesAndCommit processSpy = Mockito.spy(process);
+
+        Mockito.doNothing().when(processSpy).executeGetPackagesProcess(any());
+        Mockito.doReturn(CATALOG_DIGEST).when(processSpy).getCatalogDigest();
+        Mockito.doReturn(null).when(processSpy).getExportedCatalogDigest();
+        Mockito.doReturn(exportResult("Error")).when(processSpy).processButton(Mockito.eq(LANGUAGE), Mockito.eq(conn));
+        processSpy.doExecute(bundle);
+        verify(processSpy, Mockito.never()).executeScript(anyString());
+        verify(processSpy, Mockito.never()).saveExportedCatalogDigest(anyString());
+    }
+
+    /**
+     * Test case to verify the functionality of {@code exportDataSetToFile}.
+     * Ensures that the catalog is exported to the dataset file of the module, replacing the previous one,
+     * and to its shards and their manifest, without leaving temporary files behind.
      *
      * @throws Exception if an I/O error occurs during file operations.
      */
     @Test
-    public void testSaveXMLToFile() throws Exception {
-        String xmlContent = "<dataset>...</dataset>";
+    public void testExportDataSetToFile() throws Exception {
         String projectPath = "/tmp/testproject";
         String modLocation = "/modules";
         String moduleJavaPackage = "/com.etendoerp.test";
         File myFolder = new File(projectPath + modLocation + "/" + moduleJavaPackage + "/referencedata/standard");
         File myFile = new File(myFolder.getPath() + "/Packages_dataset.xml");
+        myFolder.mkdirs();
+        Files.write(myFile.toPath(), "<dataset>...</dataset>".getBytes(StandardCharsets.UTF_8));
 
-        if (myFile.exists()) {
-            try {
-                Files.delete(myFile.toPath());  // Usamos Files.delete para mejor manejo de errores
-            } catch (IOException e) {
-                fail("Failed to delete existing file before test: " + e.getMessage());
-            }
-        }
-
-        process.saveXMLToFile(xmlContent, projectPath, modLocation, moduleJavaPackage);
-        assertTrue(myFile.exists());
+        Path exported = process.exportDataSetToFile(projectPath, modLocation, moduleJavaPackage);
+        assertEquals(myFile.toPath(), exported);
 
         String fileContent = new String(Files.readAllBytes(myFile.toPath()), StandardCharsets.UTF_8);
-        assertEquals(xmlContent, fileContent);
+        assertTrue(fileContent.contains("<ob:Openbravo"));
+        File[] files = myFolder.listFiles();
+        assertNotNull(files);
+        assertEquals(1, files.length);
+        File shardFolder = new File(myFolder.getParentFile(), "packages");
+        File[] shardFiles = shardFolder.listFiles();
+        assertNotNull(shardFiles);
+        assertEquals(17, shardFiles.length);
+        assertTrue(new File(shardFolder, "Packages_manifest.txt").exists());
 
-        if (myFile.exists()) {
-            try {
-                Files.delete(myFile.toPath());  // Usamos Files.delete también aquí
-            } catch (IOException e) {
-                fail("Failed to delete file after test: " + e.getMessage());
+        try {
+            Files.delete(myFile.toPath());
+            for (File shardFile : shardFiles) {
+                Files.delete(shardFile.toPath());
             }
+        } catch (IOException e) {
+            fail("Failed to delete file after test: " + e.getMessage());
         }
     }
 
@@ -269,36 +323,15 @@ public class GetPackagesFromRepositoriesAndCommitTest extends WeldBaseTest {
         setupMocks(bundle, context, conn, loggerMock);
         GetPackagesFromRepositoriesAndCommit processSpy = Mockito.spy(process);
 
-        Mockito.doReturn(new OBError()).when(processSpy).processButton(Mockito.eq(LANGUAGE), Mockito.eq(conn));
+        Mockito.doReturn(exportResult(SUCCESS)).when(processSpy).processButton(Mockito.eq(LANGUAGE), Mockito.eq(conn));
         Mockito.doNothing().when(processSpy).executeGetPackagesProcess(any());
+        Mockito.doReturn(CATALOG_DIGEST).when(processSpy).getCatalogDigest();
+        Mockito.doReturn(null).when(processSpy).getExportedCatalogDigest();
+        Mockito.doNothing().when(processSpy).saveExportedCatalogDigest(anyString());
         Mockito.doReturn("Script executed successfully.\n").when(processSpy).executeScript(anyString());
         processSpy.doExecute(bundle);
         verify(processSpy).executeScript(GIT_OPERATIONS_SCRIPT);
-    }
-
-    /**
-     * Test case for verifying the {@code exportDataSetToXML} method.
-     * Ensures that the dataset is exported to XML format correctly.
-     */
-    @Test
-    public void testExportDataSetToXML() {
-        DataExportService dataExportServiceMock = mock(DataExportService.class);
-        when(dataExportServiceMock.exportDataSetToXML(any(DataSet.class), any(String.class), any(Map.class)))
-                .thenReturn("<xml>Mocked XML content</xml>");
-        DataSet mockDataSet = OBProvider.getInstance().get(DataSet.class);
-        Module mockModule = OBProvider.getInstance().get(Module.class);
-        mockModule.setId(AD_MODULE_ID);
-        mockModule.setInDevelopment(true);
-        mockDataSet.setModule(mockModule);
-        DataExportService originalService = DataExportService.getInstance();
-        try {
-            WeldUtils.getInstanceFromStaticBeanManager(DataExportService.class);
-            DataExportService.setInstance(dataExportServiceMock);
-            process.exportDataSetToXML(mockDataSet);
-        } finally {
-            WeldUtils.getInstanceFromStaticBeanManager(DataExportService.class);
-            DataExportService.setInstance(originalService);
-        }
+        verify(processSpy).saveExportedCatalogDigest(CATALOG_DIGEST);
     }
 
     /**
@@ -313,6 +346,15 @@ public class GetPackagesFromRepositoriesAndCommitTest extends WeldBaseTest {
         assertTrue(StringUtils.contains(exception.getMessage(), "Script execution failed"));
     }
 
+    /**
+     * Creates the result of an export of the given type.
+     */
+    private static OBError exportResult(String type) {
+        OBError result = new OBError();
+        result.setType(type);
+        return result;
+    }
+
     @After
     public void cleanUp() {
         OBDal.getInstance().rollbackAndClose();
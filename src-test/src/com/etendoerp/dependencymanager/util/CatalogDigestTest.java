@@ -0,0 +1,118 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the {@link CatalogDigest} class.
+ */
+@DisplayName("CatalogDigest Tests")
+class CatalogDigestTest {
+
+  private static final String DATASET_ID = "9F0311EFA2C1406D81B03FE673FF0A17";
+
+  /**
+   * The digest depends on the values of the catalog only: the audit columns are left out, and empty values are told
+   * apart from empty strings.
+   */
+  @Test
+  @DisplayName("Should digest the catalog values without the audit columns")
+  void testCompute() throws Exception {
+    String digest = CatalogDigest.compute(mockCatalog("P1", "copilot", "2024-01-01"));
+    String updatedLater = CatalogDigest.compute(mockCatalog("P1", "copilot", "2024-06-01"));
+    String changed = CatalogDigest.compute(mockCatalog("P1", "copilot-tools", "2024-01-01"));
+    String empty = CatalogDigest.compute(mockCatalog("P1", "", "2024-01-01"));
+    String nullValue = CatalogDigest.compute(mockCatalog("P1", null, "2024-01-01"));
+
+    assertAll(
+        () -> assertEquals(64, digest.length()),
+        () -> assertEquals(digest, updatedLater),
+        () -> assertNotEquals(digest, changed),
+        () -> assertNotEquals(empty, nullValue)
+    );
+  }
+
+  /**
+   * The digest of the last export is read for its dataset, and is null if the dataset was never exported.
+   */
+  @Test
+  @DisplayName("Should load the digest of the last export")
+  void testLoad() throws Exception {
+    Connection connection = mock(Connection.class);
+    PreparedStatement select = mock(PreparedStatement.class);
+    ResultSet resultSet = mock(ResultSet.class);
+    when(connection.prepareStatement(anyString())).thenReturn(select);
+    when(select.executeQuery()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(true, false);
+    when(resultSet.getString(1)).thenReturn("abc");
+
+    String exported = CatalogDigest.load(connection, DATASET_ID);
+    String neverExported = CatalogDigest.load(connection, DATASET_ID);
+
+    assertAll(
+        () -> assertEquals("abc", exported),
+        () -> assertNull(neverExported)
+    );
+    verify(select, times(2)).setString(1, DATASET_ID);
+  }
+
+  /**
+   * Saving a digest replaces the one stored for the dataset.
+   */
+  @Test
+  @DisplayName("Should replace the stored digest")
+  void testSave() throws Exception {
+    Connection connection = mock(Connection.class);
+    PreparedStatement delete = mock(PreparedStatement.class);
+    PreparedStatement insert = mock(PreparedStatement.class);
+    when(connection.prepareStatement(startsWith("DELETE"))).thenReturn(delete);
+    when(connection.prepareStatement(startsWith("INSERT"))).thenReturn(insert);
+
+    CatalogDigest.save(connection, DATASET_ID, "abc");
+
+    verify(delete).setString(1, DATASET_ID);
+    verify(delete).executeUpdate();
+    verify(insert).setString(1, DATASET_ID);
+    verify(insert).setString(2, "abc");
+    verify(insert).executeUpdate();
+  }
+
+  /**
+   * Mocks a catalog with one row in every table, with an id, a value and an audit column.
+   */
+  private Connection mockCatalog(String id, String value, String updated) throws SQLException {
+    Connection connection = mock(Connection.class);
+    PreparedStatement statement = mock(PreparedStatement.class);
+    ResultSet resultSet = mock(ResultSet.class);
+    ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+    when(connection.prepareStatement(anyString())).thenReturn(statement);
+    when(statement.executeQuery()).thenReturn(resultSet);
+    when(resultSet.getMetaData()).thenReturn(metaData);
+    when(metaData.getColumnCount()).thenReturn(3);
+    when(metaData.getColumnName(1)).thenReturn("ETDEP_PACKAGE_ID");
+    when(metaData.getColumnName(2)).thenReturn("ARTIFACT");
+    when(metaData.getColumnName(3)).thenReturn("updated");
+    when(resultSet.next()).thenReturn(true, false, true, false, true, false);
+    when(resultSet.getString(1)).thenReturn(id);
+    when(resultSet.getString(2)).thenReturn(value);
+    when(resultSet.getString(3)).thenReturn(updated);
+    return connection;
+  }
+}
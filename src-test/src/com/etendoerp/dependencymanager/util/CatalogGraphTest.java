@@ -0,0 +1,181 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the {@link CatalogGraph} class.
+ */
+@DisplayName("CatalogGraph Tests")
+class CatalogGraphTest {
+
+  private static final String ROOT = "ROOT";
+  private static final int DIAMOND_DEPTH = 400;
+  private static final int DIAMOND_WIDTH = 3;
+  private static final int QUERIES = 1000;
+
+  /**
+   * The closure is walked breadth-first over the adjacency arrays, every dependency with the dependency it is
+   * reached through, leaving out 'etendo-core' and not following external dependencies nor cycles.
+   */
+  @Test
+  @DisplayName("Should walk the closure of a version")
+  void testClosure() throws Exception {
+    CatalogGraph graph = build(new String[][] {
+        { ROOT, "P0", "1.0.0", null, null },
+        { "A", "P1", "1.0.0", null, null },
+        { "B", "P2", "1.0.0", null, null },
+        { "C", "P3", "1.0.0", null, null }
+    }, new String[][] {
+        { "D1", ROOT, "A", "a", null, "N" },
+        { "D2", ROOT, "B", "b", null, "N" },
+        { "D3", "A", "C", "c", null, "N" },
+        { "D4", "B", "C", "c", null, "N" },
+        { "D5", "B", "X", "jackson", null, "Y" },
+        { "D6", "C", ROOT, "root", null, "N" },
+        { "D7", ROOT, null, DependencyTreeBuilder.ETENDO_CORE, "[24.1.0, 25.1.0)", "N" }
+    });
+
+    Map<String, String> closure = graph.closure(ROOT);
+
+    assertAll(
+        () -> assertEquals(List.of("D1", "D2", "D3", "D4", "D5", "D6"), new ArrayList<>(closure.keySet())),
+        () -> assertNull(closure.get("D1")),
+        () -> assertEquals("D2", closure.get("D5")),
+        () -> assertEquals("D3", closure.get("D6")),
+        () -> assertEquals(List.of("D6", "D1", "D2", "D3", "D4", "D5"),
+            new ArrayList<>(graph.closure("C").keySet())),
+        () -> assertTrue(graph.contains(ROOT)),
+        () -> assertFalse(graph.contains("X")),
+        () -> assertTrue(graph.closure("X").isEmpty())
+    );
+  }
+
+  /**
+   * The newest version compatible with the core is chosen, from the range of its 'etendo-core' dependency or else
+   * from its core limits, or the newest version if none is compatible.
+   */
+  @Test
+  @DisplayName("Should find the newest version compatible with the core")
+  void testCoreCompatibleOrLatestVersion() throws Exception {
+    CatalogGraph graph = build(new String[][] {
+        { "V1", "P", "1.9.0", "23.1.0", "24.1.0" },
+        { "V2", "P", "1.10.0", null, null },
+        { "V3", "P", "1.2.0", "22.1.0", "23.1.0" },
+        { "V4", "Q", "2.0.0", null, null }
+    }, new String[][] {
+        { "D1", "V2", null, DependencyTreeBuilder.ETENDO_CORE, "[24.1.0, 25.1.0)", "N" }
+    });
+
+    assertAll(
+        () -> assertEquals("1.10.0", graph.getCoreCompatibleOrLatestVersion("P", "24.1.3")),
+        () -> assertEquals("1.9.0", graph.getCoreCompatibleOrLatestVersion("P", "23.4.0")),
+        () -> assertEquals("1.2.0", graph.getCoreCompatibleOrLatestVersion("P", "22.1.0")),
+        () -> assertEquals("1.10.0", graph.getCoreCompatibleOrLatestVersion("P", "26.1.0")),
+        () -> assertEquals("2.0.0", graph.getCoreCompatibleOrLatestVersion("Q", "26.1.0")),
+        () -> assertNull(graph.getCoreCompatibleOrLatestVersion("R", "26.1.0"))
+    );
+  }
+
+  /**
+   * Parsed versions compare as {@link PackageUtil#compareVersions} does, and ranges are read as
+   * {@link PackageUtil#isCompatible} reads them.
+   */
+  @Test
+  @DisplayName("Should compare parsed versions and ranges")
+  void testVersions() {
+    CatalogGraph.VersionRange range = CatalogGraph.VersionRange.parse("[1.0, 2.0]");
+
+    assertAll(
+        () -> assertEquals(0, CatalogGraph.compareVersions(CatalogGraph.parseVersion("1.0"),
+            CatalogGraph.parseVersion("1.0.0"))),
+        () -> assertTrue(CatalogGraph.compareVersions(CatalogGraph.parseVersion("1.10.0"),
+            CatalogGraph.parseVersion("1.9.0")) > 0),
+        () -> assertNull(CatalogGraph.parseVersion("1.0.0-SNAPSHOT")),
+        () -> assertTrue(range.contains(CatalogGraph.parseVersion("2.0.0"))),
+        () -> assertFalse(CatalogGraph.VersionRange.parse("[1.0, 2.0)").contains(CatalogGraph.parseVersion("2.0"))),
+        () -> assertFalse(CatalogGraph.VersionRange.parse("[1.0.x, 2.0)").contains(CatalogGraph.parseVersion("1.5")))
+    );
+  }
+
+  /**
+   * Benchmark on a deep diamond: every version of a level depends on every version of the next one, and the closure
+   * of the root is walked over the adjacency arrays without any query, expanding every version once.
+   */
+  @Test
+  @DisplayName("Should walk a deep diamond graph in memory")
+  void testDeepDiamondBenchmark() throws Exception {
+    List<String[]> versions = new ArrayList<>();
+    List<String[]> dependencies = new ArrayList<>();
+    for (int depth = 0; depth <= DIAMOND_DEPTH; depth++) {
+      for (int i = 0; i < (depth == 0 ? 1 : DIAMOND_WIDTH); i++) {
+        versions.add(new String[] { depth + "-" + i, "P" + depth + "-" + i, "1.0.0", null, null });
+        if (depth == 0) {
+          continue;
+        }
+        for (int parent = 0; parent < (depth == 1 ? 1 : DIAMOND_WIDTH); parent++) {
+          dependencies.add(new String[] { "D" + (depth - 1) + "-" + parent + "-" + i, (depth - 1) + "-" + parent,
+              depth + "-" + i, "module", null, "N" });
+        }
+      }
+    }
+    CatalogGraph graph = build(versions.toArray(new String[0][]), dependencies.toArray(new String[0][]));
+
+    int size = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < QUERIES; i++) {
+      size = graph.closure("0-0").size();
+    }
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertEquals(DIAMOND_WIDTH + (DIAMOND_DEPTH - 1) * DIAMOND_WIDTH * DIAMOND_WIDTH, size);
+    assertTrue(elapsedMillis < 10_000, QUERIES + " closures took " + elapsedMillis + " ms");
+  }
+
+  /**
+   * Builds a graph from mocked package version and dependency rows.
+   */
+  private static CatalogGraph build(String[][] versions, String[][] dependencies) throws SQLException {
+    Connection connection = mock(Connection.class);
+    PreparedStatement versionStatement = mock(PreparedStatement.class);
+    PreparedStatement dependencyStatement = mock(PreparedStatement.class);
+    when(connection.prepareStatement(startsWith("SELECT ETDEP_PACKAGE_VERSION_ID"))).thenReturn(versionStatement);
+    when(connection.prepareStatement(startsWith("SELECT ETDEP_PACKAGE_DEP_ID"))).thenReturn(dependencyStatement);
+    ResultSet versionRows = rows(versions);
+    ResultSet dependencyRows = rows(dependencies);
+    when(versionStatement.executeQuery()).thenReturn(versionRows);
+    when(dependencyStatement.executeQuery()).thenReturn(dependencyRows);
+    return CatalogGraph.build(connection);
+  }
+
+  /**
+   * Mocks a result set of string columns.
+   */
+  private static ResultSet rows(String[][] values) throws SQLException {
+    ResultSet resultSet = mock(ResultSet.class);
+    int[] row = { -1 };
+    when(resultSet.next()).thenAnswer(invocation -> ++row[0] < values.length);
+    when(resultSet.getString(anyInt())).thenAnswer(
+        invocation -> values[row[0]][(int) invocation.getArgument(0) - 1]);
+    return resultSet;
+  }
+}
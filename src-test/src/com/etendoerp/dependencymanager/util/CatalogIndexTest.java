@@ -0,0 +1,168 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.openbravo.dal.service.OBDal;
+import org.openbravo.dal.service.OBQuery;
+
+import com.etendoerp.dependencymanager.data.Package;
+import com.etendoerp.dependencymanager.data.PackageVersion;
+
+/**
+ * Unit tests for the {@link CatalogIndex} class.
+ */
+@DisplayName("CatalogIndex Tests")
+class CatalogIndexTest {
+
+  private static final String GROUP = "com.etendoerp";
+  private static final String ARTIFACT = "copilot";
+  private static final String PACKAGE_ID = "PKG1";
+  private static final String VERSION_ID = "VER1";
+
+  /**
+   * Validates the catalog is read with one query per table and every key is indexed.
+   */
+  @Test
+  @DisplayName("Should load the catalog with one query per table")
+  void testLoad() throws Exception {
+    Connection connection = mock(Connection.class);
+    PreparedStatement statement = mock(PreparedStatement.class);
+    ResultSet resultSet = mock(ResultSet.class);
+    when(connection.prepareStatement(anyString())).thenReturn(statement);
+    when(statement.executeQuery()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(true, false, true, false, true, false);
+    when(resultSet.getString(1)).thenReturn(PACKAGE_ID, VERSION_ID, VERSION_ID);
+    when(resultSet.getString(2)).thenReturn(GROUP, PACKAGE_ID, GROUP);
+    when(resultSet.getString(3)).thenReturn(ARTIFACT, "1.0.0", "other");
+    when(resultSet.getString(4)).thenReturn("2.0.0");
+
+    CatalogIndex index = CatalogIndex.load(connection);
+
+    verify(connection, times(3)).prepareStatement(anyString());
+    assertAll(
+        () -> assertEquals(PACKAGE_ID, index.findPackage(GROUP, ARTIFACT)),
+        () -> assertEquals(VERSION_ID, index.findVersion(PACKAGE_ID, "1.0.0")),
+        () -> assertTrue(index.hasDependencies(VERSION_ID)),
+        () -> assertTrue(index.hasDependency(VERSION_ID, GROUP, "other", "2.0.0"))
+    );
+  }
+
+  /**
+   * Keys added during the sync are found afterwards, and missing keys return null.
+   */
+  @Test
+  @DisplayName("Should find the keys added to the index")
+  void testAddAndFind() {
+    CatalogIndex index = new CatalogIndex();
+    index.addPackage(PACKAGE_ID, GROUP, ARTIFACT);
+    index.addVersion(VERSION_ID, PACKAGE_ID, "1.0.0");
+
+    assertAll(
+        () -> assertEquals(PACKAGE_ID, index.findPackage(GROUP, ARTIFACT)),
+        () -> assertNull(index.findPackage(GROUP, "missing")),
+        () -> assertNull(index.findVersion(PACKAGE_ID, "2.0.0")),
+        () -> assertFalse(index.hasDependencies(VERSION_ID)),
+        () -> assertEquals(ARTIFACT, index.getPackage(PACKAGE_ID).getArtifact()),
+        () -> assertEquals(1, index.getVersions().size())
+    );
+
+    index.addDependency(VERSION_ID, GROUP, "other", null);
+
+    assertTrue(index.hasDependencies(VERSION_ID));
+    assertTrue(index.hasDependency(VERSION_ID, GROUP, "other", null));
+  }
+
+  /**
+   * The latest version is chosen by its numeric major, minor and patch numbers, not alphabetically.
+   */
+  @Test
+  @DisplayName("Should find the latest version by its numeric parts")
+  void testFindLastVersion() {
+    CatalogIndex index = new CatalogIndex();
+    index.addVersion("V1", PACKAGE_ID, "1.9.0");
+    index.addVersion("V2", PACKAGE_ID, "1.10.0");
+    index.addVersion("V3", PACKAGE_ID, "1.2.15-SNAPSHOT");
+
+    assertAll(
+        () -> assertEquals("V2", index.findLastVersion(PACKAGE_ID)),
+        () -> assertNull(index.findLastVersion("missing"))
+    );
+  }
+
+  /**
+   * The sync and {@link PackageUtil#getLastPackageVersion} choose the same latest version, whatever the order the
+   * versions are read in: qualifiers are ignored but a release wins over its qualified versions, and non numeric
+   * or missing parts sort first.
+   */
+  @Test
+  @DisplayName("Should choose the same latest version as PackageUtil")
+  void testFindLastVersionAgreesWithPackageUtil() {
+    String[][] cases = {
+        { "1.2.0-SNAPSHOT", "1.2.0", "1.2.0-rc1" },
+        { "1.2.0-rc1", "1.2.0-rc2", "1.1.9" },
+        { "1.10", "1.9.9", "1.x.0" },
+        { "2.0.x", "2.0.0-beta", "1.99.99" },
+        { "3", "2.5.1", "3.0.0-SNAPSHOT" }
+    };
+    String[] expected = { "1.2.0", "1.2.0-rc2", "1.10", "2.0.0-beta", "3.0.0-SNAPSHOT" };
+
+    for (int i = 0; i < cases.length; i++) {
+      for (List<String> versions : List.of(List.of(cases[i]), reversed(cases[i]))) {
+        CatalogIndex index = new CatalogIndex();
+        versions.forEach(version -> index.addVersion(version, PACKAGE_ID, version));
+        assertEquals(expected[i], index.findLastVersion(PACKAGE_ID));
+        assertEquals(expected[i], lastPackageVersion(versions));
+      }
+    }
+  }
+
+  private static List<String> reversed(String[] versions) {
+    List<String> reversed = new ArrayList<>(List.of(versions));
+    Collections.reverse(reversed);
+    return reversed;
+  }
+
+  /**
+   * Runs {@link PackageUtil#getLastPackageVersion} over package versions returned by a mocked DAL query.
+   */
+  @SuppressWarnings("unchecked")
+  private static String lastPackageVersion(List<String> versions) {
+    List<PackageVersion> packageVersions = new ArrayList<>();
+    for (String version : versions) {
+      PackageVersion packageVersion = mock(PackageVersion.class);
+      when(packageVersion.getVersion()).thenReturn(version);
+      packageVersions.add(packageVersion);
+    }
+    OBDal dal = mock(OBDal.class);
+    OBQuery<PackageVersion> query = mock(OBQuery.class);
+    when(dal.createQuery(eq(PackageVersion.class), anyString())).thenReturn(query);
+    when(query.setNamedParameter(anyString(), any())).thenReturn(query);
+    when(query.list()).thenReturn(packageVersions);
+    try (MockedStatic<OBDal> obDal = mockStatic(OBDal.class)) {
+      obDal.when(OBDal::getInstance).thenReturn(dal);
+      return PackageUtil.getLastPackageVersion(mock(Package.class)).getVersion();
+    }
+  }
+}
@@ -0,0 +1,183 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the {@link CatalogRefreshService} class.
+ */
+@DisplayName("CatalogRefreshService Tests")
+class CatalogRefreshServiceTest {
+
+  private static final long TIMEOUT_SECONDS = 5;
+  private static final CatalogRefreshService.Result IMPORTED = new CatalogRefreshService.Result(
+      CatalogRefreshService.Outcome.IMPORTED, 0);
+
+  /**
+   * A refresh triggered while another one is running joins it, and the status reports the running refresh and
+   * then its outcome.
+   */
+  @Test
+  @DisplayName("Should join the refresh already running")
+  void testConcurrentRefreshesJoin() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CatalogRefreshService service = new CatalogRefreshService(() -> {
+      calls.incrementAndGet();
+      started.countDown();
+      release.await();
+      return new CatalogRefreshService.Result(CatalogRefreshService.Outcome.IMPORTED, 42);
+    });
+
+    CompletableFuture<CatalogRefreshService.Status> first = service.refresh();
+    assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    CompletableFuture<CatalogRefreshService.Status> second = service.refresh();
+    boolean runningWhileBlocked = service.getStatus().isRunning();
+    release.countDown();
+    CatalogRefreshService.Status status = first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+    assertAll(
+        () -> assertSame(first, second),
+        () -> assertTrue(runningWhileBlocked),
+        () -> assertEquals(1, calls.get()),
+        () -> assertFalse(status.isRunning()),
+        () -> assertEquals(42, status.getLastRows()),
+        () -> assertEquals(CatalogRefreshService.Outcome.IMPORTED, status.getLastOutcome()),
+        () -> assertNotNull(status.getLastSuccess()),
+        () -> assertNotNull(status.getLastDuration()),
+        () -> assertNull(status.getLastError()),
+        () -> assertSame(status, service.getStatus())
+    );
+  }
+
+  /**
+   * A failed refresh completes its future with the error, keeps the time of the last success and does not prevent
+   * the next refresh from running.
+   */
+  @Test
+  @DisplayName("Should report failed refreshes and run the next one")
+  void testFailedRefresh() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    CatalogRefreshService service = new CatalogRefreshService(() -> {
+      if (calls.incrementAndGet() == 1) {
+        throw new IOException("Error when updating packages");
+      }
+      return new CatalogRefreshService.Result(CatalogRefreshService.Outcome.IMPORTED, 3);
+    });
+
+    CompletableFuture<CatalogRefreshService.Status> failed = service.refresh();
+    ExecutionException exception = assertThrows(ExecutionException.class,
+        () -> failed.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    CatalogRefreshService.Status afterFailure = service.getStatus();
+    CatalogRefreshService.Status afterSuccess = service.refresh().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+    assertAll(
+        () -> assertTrue(exception.getCause() instanceof IOException),
+        () -> assertEquals("Error when updating packages", afterFailure.getLastError()),
+        () -> assertNull(afterFailure.getLastSuccess()),
+        () -> assertNull(afterFailure.getLastOutcome()),
+        () -> assertNotNull(afterFailure.getLastStarted()),
+        () -> assertEquals(2, calls.get()),
+        () -> assertEquals(3, afterSuccess.getLastRows()),
+        () -> assertNull(afterSuccess.getLastError())
+    );
+  }
+
+  /**
+   * A scheduled refresh is skipped when the last successful one is more recent than the minimum interval.
+   */
+  @Test
+  @DisplayName("Should throttle the scheduled refreshes")
+  void testScheduledRefreshThrottled() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    CatalogRefreshService service = new CatalogRefreshService(() -> {
+      calls.incrementAndGet();
+      return IMPORTED;
+    });
+    service.refresh().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+    boolean throttled = service.scheduledRefresh(Duration.ofMinutes(5));
+    boolean started = service.scheduledRefresh(Duration.ZERO);
+
+    assertAll(
+        () -> assertFalse(throttled),
+        () -> assertTrue(started)
+    );
+  }
+
+  /**
+   * Starting the service runs the startup refresh after the configured delay, only once however many times it is
+   * started.
+   */
+  @Test
+  @DisplayName("Should run the startup refresh once")
+  void testStart() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    CountDownLatch done = new CountDownLatch(1);
+    CatalogRefreshService service = new CatalogRefreshService(() -> {
+      calls.incrementAndGet();
+      done.countDown();
+      return IMPORTED;
+    });
+    Properties properties = new Properties();
+    properties.setProperty(CatalogRefreshService.STARTUP_DELAY_PROPERTY, "0");
+
+    service.start(properties);
+    service.start(properties);
+
+    assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    Thread.sleep(200);
+    assertEquals(1, calls.get());
+  }
+
+  /**
+   * A stopped service cancels the scheduled refreshes, fails the refresh it was running and rejects new ones.
+   */
+  @Test
+  @DisplayName("Should stop the scheduled and running refreshes")
+  void testStop() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(1);
+    CatalogRefreshService service = new CatalogRefreshService(() -> {
+      calls.incrementAndGet();
+      started.countDown();
+      new CountDownLatch(1).await();
+      return IMPORTED;
+    });
+    Properties properties = new Properties();
+    properties.setProperty(CatalogRefreshService.STARTUP_DELAY_PROPERTY, "1");
+    properties.setProperty(CatalogRefreshService.INTERVAL_PROPERTY, "1");
+    CompletableFuture<CatalogRefreshService.Status> running = service.refresh();
+    assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    service.start(properties);
+
+    service.stop();
+    CompletableFuture<CatalogRefreshService.Status> rejected = service.refresh();
+
+    assertAll(
+        () -> assertThrows(CancellationException.class, () -> running.get(TIMEOUT_SECONDS, TimeUnit.SECONDS)),
+        () -> assertThrows(ExecutionException.class, () -> rejected.get(TIMEOUT_SECONDS, TimeUnit.SECONDS)),
+        () -> assertEquals(1, calls.get())
+    );
+  }
+}
@@ -0,0 +1,180 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.etendoerp.dependencymanager.util.PackageDatasetReader.DatasetRecord;
+
+/**
+ * Unit tests for the {@link CatalogSnapshot} class.
+ */
+@DisplayName("CatalogSnapshot Tests")
+class CatalogSnapshotTest {
+
+  private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+      + "<ob:Openbravo xmlns:ob=\"http://www.openbravo.com\" "
+      + "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n";
+  private static final String FOOTER = "</ob:Openbravo>\n";
+
+  @TempDir
+  Path directory;
+
+  /**
+   * The records read back from a snapshot have the same content as the records of the XML dataset, grouped by
+   * entity.
+   */
+  @Test
+  @DisplayName("Should read back the records of the dataset")
+  void testRoundTrip() throws Exception {
+    String xml = dataset(3, 2);
+    List<DatasetRecord> records = records(xml);
+    Path file = write(records);
+
+    CatalogSnapshot.verify(file);
+    List<DatasetRecord> read = new ArrayList<>();
+    int count = CatalogSnapshot.read(file, read::add);
+
+    DatasetRecord dependency = read.get(read.size() - 1);
+    assertAll(
+        () -> assertEquals(records.size(), count),
+        () -> assertEquals(hashes(records), hashes(read)),
+        () -> assertEquals(UpdateLocalPackagesUtil.ETDEP_PACKAGE, read.get(2).getEntity()),
+        () -> assertEquals(UpdateLocalPackagesUtil.ETDEP_PACKAGE_VERSION, read.get(3).getEntity()),
+        () -> assertEquals("", dependency.getValue(UpdateLocalPackagesUtil.DEPENDENCY_VERSION)),
+        () -> assertNull(dependency.getReference(UpdateLocalPackagesUtil.DEPENDENCY_VERSION)),
+        () -> assertEquals("V2.1", dependency.getReference(UpdateLocalPackagesUtil.ETDEP_PACKAGE_VERSION_TAG))
+    );
+  }
+
+  /**
+   * The snapshot of a catalog of 21.000 records is a small fraction of the XML dataset.
+   */
+  @Test
+  @DisplayName("Should be much smaller than the XML dataset")
+  void testSize() throws Exception {
+    String xml = dataset(1000, 4);
+    Path file = write(records(xml));
+
+    long xmlSize = xml.getBytes(StandardCharsets.UTF_8).length;
+    assertTrue(Files.size(file) * 10 < xmlSize,
+        "Snapshot of " + Files.size(file) + " bytes for " + xmlSize + " bytes of XML");
+  }
+
+  /**
+   * A snapshot whose content does not match its digest, or a file that is not a snapshot, is rejected.
+   */
+  @Test
+  @DisplayName("Should reject corrupt snapshots")
+  void testRejectsCorruptSnapshots() throws Exception {
+    Path file = write(records(dataset(3, 2)));
+    byte[] content = Files.readAllBytes(file);
+    content[content.length - 10] ^= 0x01;
+    Path corrupt = Files.write(directory.resolve("corrupt.bin"), content);
+    Path truncated = Files.write(directory.resolve("truncated.bin"), Arrays.copyOf(content, 20));
+    Path xml = Files.writeString(directory.resolve("dataset.xml"), dataset(1, 1));
+
+    assertAll(
+        () -> assertThrows(IOException.class, () -> CatalogSnapshot.verify(corrupt)),
+        () -> assertThrows(IOException.class, () -> CatalogSnapshot.verify(truncated)),
+        () -> assertThrows(IOException.class, () -> CatalogSnapshot.verify(xml))
+    );
+  }
+
+  /**
+   * The records are read again from the source for every entity instead of being held, so a source that does not
+   * return the same records every time it is read is rejected.
+   */
+  @Test
+  @DisplayName("Should read the source once per entity and reject a changing source")
+  void testStreamsSource() throws Exception {
+    List<DatasetRecord> records = records(dataset(3, 2));
+    int[] reads = { 0 };
+    CatalogSnapshot.write(handler -> {
+      reads[0]++;
+      records.forEach(handler);
+    }, OutputStream.nullOutputStream());
+    List<DatasetRecord> growing = new ArrayList<>(records);
+
+    assertAll(
+        () -> assertEquals(4, reads[0]),
+        () -> assertThrows(IOException.class, () -> CatalogSnapshot.write(handler -> {
+          growing.forEach(handler);
+          growing.add(records.get(0));
+        }, OutputStream.nullOutputStream()))
+    );
+  }
+
+  private Path write(List<DatasetRecord> records) throws IOException {
+    Path file = directory.resolve("snapshot.bin");
+    try (OutputStream out = Files.newOutputStream(file)) {
+      CatalogSnapshot.write(records::forEach, out);
+    }
+    return file;
+  }
+
+  private static List<String> hashes(List<DatasetRecord> records) {
+    List<String> hashes = new ArrayList<>();
+    for (DatasetRecord datasetRecord : records) {
+      hashes.add(DatasetImportHashes.hashRecord(datasetRecord));
+    }
+    Collections.sort(hashes);
+    return hashes;
+  }
+
+  private static List<DatasetRecord> records(String xml) throws XMLStreamException {
+    List<DatasetRecord> records = new ArrayList<>();
+    PackageDatasetReader.read(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), records::add);
+    return records;
+  }
+
+  private static String dataset(int packages, int versionsPerPackage) {
+    StringBuilder xml = new StringBuilder(HEADER);
+    for (int p = 0; p < packages; p++) {
+      xml.append("  <ETDEP_Package id=\"P").append(p).append("\">\n    <id>P").append(p)
+          .append("</id>\n    <active>true</active>\n    <group>com.etendoerp</group>\n")
+          .append("    <artifact>artifact").append(p).append("</artifact>\n    <isBundle>false</isBundle>\n")
+          .append("  </ETDEP_Package>\n");
+      for (int v = 0; v < versionsPerPackage; v++) {
+        xml.append("  <ETDEP_Package_Version id=\"V").append(p).append('.').append(v).append("\">\n    <id>V")
+            .append(p).append('.').append(v).append("</id>\n    <active>true</active>\n    <package id=\"P")
+            .append(p).append("\" entity-name=\"ETDEP_Package\"/>\n    <version>1.").append(v)
+            .append(".0</version>\n    <fromCore>24.1.0</fromCore>\n    <latestCore>25.1.0</latestCore>\n")
+            .append("  </ETDEP_Package_Version>\n");
+      }
+    }
+    for (int p = 0; p < packages; p++) {
+      for (int v = 0; v < versionsPerPackage; v++) {
+        for (int d = 0; d < 4; d++) {
+          xml.append("  <ETDEP_Package_Dependency id=\"D").append(p).append('.').append(v).append('.').append(d)
+              .append("\">\n    <id>D").append(p).append('.').append(v).append('.').append(d)
+              .append("</id>\n    <active>true</active>\n    <packageVersion id=\"V").append(p).append('.')
+              .append(v).append("\" entity-name=\"ETDEP_Package_Version\"/>\n    <group>com.etendoerp</group>\n")
+              .append("    <artifact>dependency").append(d).append("</artifact>\n    <version>1.0.0</version>\n")
+              .append("    <dependencyVersion xsi:nil=\"true\"/>\n")
+              .append("    <externalDependency>true</externalDependency>\n  </ETDEP_Package_Dependency>\n");
+        }
+      }
+    }
+    return xml.append(FOOTER).toString();
+  }
+}
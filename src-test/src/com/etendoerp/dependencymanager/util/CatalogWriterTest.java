@@ -0,0 +1,183 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.MockedStatic;
+import org.openbravo.dal.core.OBContext;
+import org.openbravo.erpCommon.utility.SequenceIdData;
+import org.openbravo.model.ad.access.User;
+import org.openbravo.model.ad.system.Client;
+import org.openbravo.model.common.enterprise.Organization;
+
+/**
+ * Unit tests for the {@link CatalogWriter} class.
+ */
+@DisplayName("CatalogWriter Tests")
+class CatalogWriterTest {
+
+  private MockedStatic<SequenceIdData> sequenceIdData;
+  private Connection connection;
+  private PreparedStatement packageStatement;
+  private PreparedStatement versionStatement;
+  private PreparedStatement dependencyStatement;
+  private PreparedStatement coreRangeStatement;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    sequenceIdData = mockStatic(SequenceIdData.class);
+    sequenceIdData.when(SequenceIdData::getUUID).thenAnswer(invocation -> UUID.randomUUID().toString());
+    connection = mock(Connection.class);
+    packageStatement = mock(PreparedStatement.class);
+    versionStatement = mock(PreparedStatement.class);
+    dependencyStatement = mock(PreparedStatement.class);
+    coreRangeStatement = mock(PreparedStatement.class);
+    when(connection.prepareStatement(startsWith("INSERT INTO ETDEP_PACKAGE ("))).thenReturn(packageStatement);
+    when(connection.prepareStatement(startsWith("INSERT INTO ETDEP_PACKAGE_VERSION"))).thenReturn(versionStatement);
+    when(connection.prepareStatement(startsWith("INSERT INTO ETDEP_PACKAGE_DEP"))).thenReturn(dependencyStatement);
+    when(connection.prepareStatement(startsWith("UPDATE ETDEP_PACKAGE_VERSION"))).thenReturn(coreRangeStatement);
+  }
+
+  @AfterEach
+  void tearDown() {
+    sequenceIdData.close();
+  }
+
+  /**
+   * Rows written from the context carry the audit values the DAL would set on a new object: the client,
+   * organization and user of the context, active, and the same creation and update time.
+   */
+  @Test
+  @DisplayName("Should store the audit values of the context as the DAL does")
+  void testAuditValuesFromContext() throws Exception {
+    OBContext context = mock(OBContext.class);
+    Client client = mock(Client.class);
+    Organization organization = mock(Organization.class);
+    User user = mock(User.class);
+    when(client.getId()).thenReturn("CLIENT");
+    when(organization.getId()).thenReturn("ORG");
+    when(user.getId()).thenReturn("USER");
+    when(context.getCurrentClient()).thenReturn(client);
+    when(context.getCurrentOrganization()).thenReturn(organization);
+    when(context.getUser()).thenReturn(user);
+
+    try (MockedStatic<OBContext> obContext = mockStatic(OBContext.class);
+         CatalogWriter writer = createWriter(obContext, context)) {
+      writer.insertPackage("com.etendoerp", "copilot");
+      writer.flush();
+    }
+
+    ArgumentCaptor<Timestamp> created = ArgumentCaptor.forClass(Timestamp.class);
+    ArgumentCaptor<Timestamp> updated = ArgumentCaptor.forClass(Timestamp.class);
+    verify(connection).prepareStatement(contains("(ETDEP_PACKAGE_ID, AD_CLIENT_ID, AD_ORG_ID, ISACTIVE, CREATED, "
+        + "CREATEDBY, UPDATED, UPDATEDBY, DEPGROUP, ARTIFACT, UPDATE_PACKAGES, BUNDLE) VALUES (?, ?, ?, 'Y', ?"));
+    verify(packageStatement).setString(2, "CLIENT");
+    verify(packageStatement).setString(3, "ORG");
+    verify(packageStatement).setTimestamp(eq(4), created.capture());
+    verify(packageStatement).setString(5, "USER");
+    verify(packageStatement).setTimestamp(eq(6), updated.capture());
+    verify(packageStatement).setString(7, "USER");
+    assertEquals(created.getValue(), updated.getValue());
+  }
+
+  private CatalogWriter createWriter(MockedStatic<OBContext> obContext, OBContext context) {
+    obContext.when(OBContext::getOBContext).thenReturn(context);
+    return CatalogWriter.fromContext(connection);
+  }
+
+  /**
+   * Queued rows are sent in batches, parents first, regardless of the order they were queued in.
+   */
+  @Test
+  @DisplayName("Should execute the batches in foreign key order")
+  void testFlushOrder() throws Exception {
+    try (CatalogWriter writer = new CatalogWriter(connection, "0", "0", "100")) {
+      writer.updateCoreRange("VER0", "23.1.0", "24.1.0");
+      String packageId = writer.insertPackage("com.etendoerp", "copilot");
+      String versionId = writer.insertVersion(packageId, "1.0.0");
+      writer.insertDependency(versionId, "com.etendoerp", "other", "2.0.0", null, true);
+      assertNotEquals(packageId, versionId);
+
+      writer.flush();
+
+      InOrder order = inOrder(packageStatement, versionStatement, dependencyStatement, coreRangeStatement);
+      order.verify(packageStatement).executeBatch();
+      order.verify(versionStatement).executeBatch();
+      order.verify(dependencyStatement).executeBatch();
+      order.verify(coreRangeStatement).executeBatch();
+      verify(dependencyStatement).setString(13, "Y");
+      assertEquals(3, writer.getInsertedRows());
+    }
+    verify(packageStatement).close();
+  }
+
+  /**
+   * The statements are prepared once and the queued rows are sent every time the batch size is reached.
+   */
+  @Test
+  @DisplayName("Should flush automatically when the batch is full")
+  void testAutomaticFlush() throws Exception {
+    CatalogWriter writer = new CatalogWriter(connection, "0", "0", "100");
+    for (int i = 0; i < CatalogWriter.BATCH_SIZE * 2 + 1; i++) {
+      writer.insertVersion("PKG1", "1.0." + i);
+    }
+
+    verify(connection, times(1)).prepareStatement(anyString());
+    verify(versionStatement, times(2)).executeBatch();
+    verify(versionStatement, never()).executeUpdate();
+
+    writer.flush();
+    writer.flush();
+
+    verify(versionStatement, times(3)).executeBatch();
+    assertEquals(CatalogWriter.BATCH_SIZE * 2 + 1, writer.getInsertedRows());
+  }
+
+  /**
+   * After a commit closes the DAL session, the statements of its connection are closed and the next rows are
+   * prepared on the connection of the new session.
+   */
+  @Test
+  @DisplayName("Should continue on the connection of a new session")
+  void testSetConnection() throws Exception {
+    Connection nextConnection = mock(Connection.class);
+    PreparedStatement nextVersionStatement = mock(PreparedStatement.class);
+    when(nextConnection.prepareStatement(startsWith("INSERT INTO ETDEP_PACKAGE_VERSION")))
+        .thenReturn(nextVersionStatement);
+    CatalogWriter writer = new CatalogWriter(connection, "0", "0", "100");
+    writer.insertVersion("PKG1", "1.0.0");
+    writer.flush();
+
+    writer.setConnection(nextConnection);
+    writer.insertVersion("PKG1", "1.1.0");
+    writer.flush();
+
+    verify(versionStatement).close();
+    verify(versionStatement, times(1)).executeBatch();
+    verify(nextVersionStatement).setString(9, "1.1.0");
+    verify(nextVersionStatement).executeBatch();
+    assertEquals(2, writer.getInsertedRows());
+  }
+}
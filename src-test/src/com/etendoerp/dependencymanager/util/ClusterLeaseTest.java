@@ -0,0 +1,196 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Properties;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.openbravo.base.exception.OBException;
+
+/**
+ * Unit tests for the {@link ClusterLease} class.
+ */
+@DisplayName("ClusterLease Tests")
+class ClusterLeaseTest {
+
+  private static final Duration TTL = Duration.ofMinutes(15);
+  private static final int RENEWALS = 3;
+
+  private Connection connection;
+  private PreparedStatement take;
+  private PreparedStatement insert;
+
+  /**
+   * Mocks the connection the lease is stored with.
+   */
+  @BeforeEach
+  void setUp() throws Exception {
+    connection = mock(Connection.class);
+    take = mock(PreparedStatement.class);
+    insert = mock(PreparedStatement.class);
+    when(connection.prepareStatement(startsWith("UPDATE"))).thenReturn(take);
+    when(connection.prepareStatement(startsWith("INSERT"))).thenReturn(insert);
+  }
+
+  /**
+   * An expired lease is taken over, and the acquisition is committed. The expiration is written and checked with the
+   * clock of the database.
+   */
+  @Test
+  @DisplayName("Should take over an expired lease")
+  void testAcquireExpired() throws Exception {
+    when(take.executeUpdate()).thenReturn(1);
+
+    ClusterLease lease = ClusterLease.tryAcquire(connection, ClusterLease.CATALOG_IMPORT, TTL);
+
+    assertAll(
+        () -> assertNotNull(lease),
+        () -> assertEquals(ClusterLease.CATALOG_IMPORT, lease.getName())
+    );
+    verify(connection).prepareStatement(contains("EXPIRES = CURRENT_TIMESTAMP + ? * INTERVAL '1' SECOND"));
+    verify(connection).prepareStatement(endsWith("WHERE NAME = ? AND EXPIRES < CURRENT_TIMESTAMP"));
+    verify(take).setLong(2, TTL.getSeconds());
+    verify(take).setString(3, ClusterLease.CATALOG_IMPORT);
+    verify(insert, never()).executeUpdate();
+    verify(connection).commit();
+  }
+
+  /**
+   * A lease that is not held yet is inserted.
+   */
+  @Test
+  @DisplayName("Should insert a lease that is not held")
+  void testAcquireNew() throws Exception {
+    when(take.executeUpdate()).thenReturn(0);
+    when(insert.executeUpdate()).thenReturn(1);
+
+    ClusterLease lease = ClusterLease.tryAcquire(connection, ClusterLease.REPOSITORY_SYNC, TTL);
+
+    assertNotNull(lease);
+    verify(insert).setString(2, lease.getHolder());
+    verify(connection).commit();
+  }
+
+  /**
+   * A lease held by another node is not acquired, and the failed insert is rolled back to its savepoint so the
+   * transaction can be committed.
+   */
+  @Test
+  @DisplayName("Should not acquire a lease held by another node")
+  void testAcquireHeld() throws Exception {
+    Savepoint savepoint = mock(Savepoint.class);
+    PreparedStatement select = mock(PreparedStatement.class);
+    ResultSet resultSet = mock(ResultSet.class);
+    when(connection.setSavepoint()).thenReturn(savepoint);
+    when(connection.prepareStatement(startsWith("SELECT"))).thenReturn(select);
+    when(select.executeQuery()).thenReturn(resultSet);
+    when(take.executeUpdate()).thenReturn(0);
+    when(insert.executeUpdate()).thenThrow(new SQLException("duplicate key"));
+
+    assertNull(ClusterLease.tryAcquire(connection, ClusterLease.CATALOG_IMPORT, TTL));
+    verify(connection).rollback(savepoint);
+    verify(connection).commit();
+  }
+
+  /**
+   * Renewing a lease taken over by another node fails, so the task stops before committing more work.
+   */
+  @Test
+  @DisplayName("Should fail to renew a lease taken over by another node")
+  void testRenewLost() throws Exception {
+    ClusterLease lease = new ClusterLease(ClusterLease.REPOSITORY_SYNC, "node/1", TTL);
+    when(take.executeUpdate()).thenReturn(1, 0);
+
+    lease.renew(connection);
+    OBException exception = assertThrows(OBException.class, () -> lease.renew(connection));
+
+    assertEquals("Lost the lease REPOSITORY_SYNC, another node took it over", exception.getMessage());
+    verify(connection, never()).commit();
+  }
+
+  /**
+   * A lease kept alive is renewed periodically until the renewal is closed, and a failed renewal does not stop the
+   * next ones.
+   */
+  @Test
+  @DisplayName("Should renew a lease periodically while it is kept alive")
+  void testKeepAlive() throws Exception {
+    ClusterLease lease = new ClusterLease(ClusterLease.CATALOG_IMPORT, "node/1", Duration.ofMillis(30));
+    CountDownLatch renewals = new CountDownLatch(RENEWALS);
+    AtomicInteger calls = new AtomicInteger();
+
+    try (ClusterLease.Renewal renewal = lease.keepAlive(() -> {
+      calls.incrementAndGet();
+      renewals.countDown();
+      throw new OBException("Lost the lease");
+    })) {
+      assertTrue(renewals.await(10, TimeUnit.SECONDS));
+    }
+    int stopped = calls.get();
+    Thread.sleep(100);
+
+    assertEquals(stopped, calls.get());
+  }
+
+  /**
+   * Waiting for a lease returns as soon as it is not held, and gives up once the maximum wait is over.
+   */
+  @Test
+  @DisplayName("Should wait for the lease to be released")
+  void testAwaitRelease() throws Exception {
+    PreparedStatement select = mock(PreparedStatement.class);
+    ResultSet resultSet = mock(ResultSet.class);
+    when(connection.prepareStatement(anyString())).thenReturn(select);
+    when(select.executeQuery()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(false, true);
+    when(resultSet.getString(1)).thenReturn("node/1");
+
+    boolean released = ClusterLease.awaitRelease(connection, ClusterLease.CATALOG_IMPORT, Duration.ZERO);
+    boolean stillHeld = ClusterLease.awaitRelease(connection, ClusterLease.CATALOG_IMPORT, Duration.ZERO);
+
+    assertAll(
+        () -> assertTrue(released),
+        () -> assertFalse(stillHeld)
+    );
+  }
+
+  /**
+   * The time to live and the wait come from the properties, with defaults.
+   */
+  @Test
+  @DisplayName("Should read the durations from the properties")
+  void testProperties() {
+    Properties properties = new Properties();
+    properties.setProperty(ClusterLease.TTL_PROPERTY, "60");
+
+    assertAll(
+        () -> assertEquals(Duration.ofSeconds(60), ClusterLease.getTtl(properties)),
+        () -> assertEquals(Duration.ofSeconds(ClusterLease.DEFAULT_WAIT_SECONDS), ClusterLease.getWait(properties))
+    );
+  }
+}
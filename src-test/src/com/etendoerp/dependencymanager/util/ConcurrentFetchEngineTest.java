@@ -0,0 +1,234 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for the {@link ConcurrentFetchEngine} class.
+ * <p>
+ * A local HTTP server stands in for the GitHub API. It holds every request until
+ * {@link #MAX_CONCURRENT_REQUESTS} of them are in flight, so the tests check the concurrency the engine reaches
+ * instead of timing it. The benchmark, tagged {@value #BENCHMARK_TAG}, answers every request after
+ * {@link #LATENCY_MILLIS} instead, and only logs the time taken by the sequential and the concurrent fetch.
+ * </p>
+ */
+@DisplayName("ConcurrentFetchEngine Tests")
+class ConcurrentFetchEngineTest {
+
+  private static final int REQUEST_COUNT = 24;
+  private static final int MAX_CONCURRENT_REQUESTS = 8;
+  private static final long WAIT_SECONDS = 10;
+  private static final int LATENCY_MILLIS = 100;
+  private static final String BENCHMARK_TAG = "benchmark";
+  private static final Logger log = LogManager.getLogger();
+
+  private HttpServer server;
+  private ExecutorService serverExecutor;
+  private HttpClient httpClient;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+  private final CountDownLatch allInFlight = new CountDownLatch(MAX_CONCURRENT_REQUESTS);
+
+  /**
+   * Starts the local HTTP stand-in, answering the first requests once {@link #MAX_CONCURRENT_REQUESTS} of them are
+   * in flight, and the rest right away, or after {@link #LATENCY_MILLIS} for the benchmark.
+   */
+  @BeforeEach
+  void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    serverExecutor = Executors.newCachedThreadPool();
+    server.setExecutor(serverExecutor);
+    server.createContext("/versions", exchange -> {
+      int current = inFlight.incrementAndGet();
+      maxInFlight.accumulateAndGet(current, Math::max);
+      allInFlight.countDown();
+      try {
+        allInFlight.await(WAIT_SECONDS, TimeUnit.SECONDS);
+        byte[] body = "[{\"name\":\"1.0.0\"}]".getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(body);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        inFlight.decrementAndGet();
+      }
+    });
+    server.createContext("/slow-versions", exchange -> {
+      try {
+        TimeUnit.MILLISECONDS.sleep(LATENCY_MILLIS);
+        byte[] body = "[{\"name\":\"1.0.0\"}]".getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(body);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    server.start();
+    httpClient = HttpClient.newHttpClient();
+  }
+
+  /**
+   * Stops the local HTTP stand-in and its executor.
+   */
+  @AfterEach
+  void tearDown() {
+    server.stop(0);
+    serverExecutor.shutdownNow();
+  }
+
+  /**
+   * Fetches all the version lists through the engine and checks it reaches the configured number of requests in
+   * flight without exceeding it.
+   */
+  @Test
+  @DisplayName("Should run the configured number of requests concurrently")
+  void testRunsRequestsConcurrently() throws Exception {
+    List<String> bodies = new ArrayList<>();
+    try (ConcurrentFetchEngine engine = new ConcurrentFetchEngine(MAX_CONCURRENT_REQUESTS)) {
+      List<CompletableFuture<String>> futures = new ArrayList<>();
+      for (int i = 0; i < REQUEST_COUNT; i++) {
+        futures.add(engine.submit(() -> fetch("/versions")));
+      }
+      for (CompletableFuture<String> future : futures) {
+        bodies.add(ConcurrentFetchEngine.await(future));
+      }
+    }
+
+    assertAll(
+        () -> assertEquals(REQUEST_COUNT, bodies.size()),
+        () -> assertEquals(0, allInFlight.getCount(), "The requests never were in flight at the same time"),
+        () -> assertEquals(MAX_CONCURRENT_REQUESTS, maxInFlight.get())
+    );
+  }
+
+  /**
+   * Benchmarks the sequential fetch used before against the concurrent one, against a local server with a fixed
+   * latency. The wall times depend on the machine, so they are only logged and not asserted.
+   */
+  @Test
+  @Tag(BENCHMARK_TAG)
+  @DisplayName("Should report the sequential and concurrent fetch times against a slow local server")
+  void testBenchmarkSequentialAgainstConcurrentFetch() throws Exception {
+    long sequentialStart = System.nanoTime();
+    for (int i = 0; i < REQUEST_COUNT; i++) {
+      fetch("/slow-versions");
+    }
+    long sequentialMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sequentialStart);
+
+    long concurrentStart = System.nanoTime();
+    try (ConcurrentFetchEngine engine = new ConcurrentFetchEngine(MAX_CONCURRENT_REQUESTS)) {
+      List<CompletableFuture<String>> futures = new ArrayList<>();
+      for (int i = 0; i < REQUEST_COUNT; i++) {
+        futures.add(engine.submit(() -> fetch("/slow-versions")));
+      }
+      for (CompletableFuture<String> future : futures) {
+        ConcurrentFetchEngine.await(future);
+      }
+    }
+    long concurrentMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - concurrentStart);
+
+    log.info("Fetched {} version lists with {}ms of latency: sequential {}ms, concurrent ({} in flight) {}ms",
+        REQUEST_COUNT, LATENCY_MILLIS, sequentialMillis, MAX_CONCURRENT_REQUESTS, concurrentMillis);
+  }
+
+  /**
+   * Closing the engine cancels the futures of the fetches that are running or still queued.
+   */
+  @Test
+  @DisplayName("Should cancel the outstanding futures on close")
+  void testCloseCancelsOutstandingFutures() {
+    CountDownLatch started = new CountDownLatch(1);
+    CompletableFuture<String> running;
+    CompletableFuture<String> queued;
+    try (ConcurrentFetchEngine engine = new ConcurrentFetchEngine(1)) {
+      running = engine.submit(() -> {
+        started.countDown();
+        new CountDownLatch(1).await();
+        return "running";
+      });
+      queued = engine.submit(() -> "queued");
+      assertDoesNotThrow(() -> started.await(WAIT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    assertAll(
+        () -> assertTrue(running.isDone()),
+        () -> assertTrue(queued.isCancelled()),
+        () -> assertThrows(CancellationException.class, () -> ConcurrentFetchEngine.await(queued))
+    );
+  }
+
+  /**
+   * Ensures the exception thrown by a task is rethrown when awaiting its future.
+   */
+  @Test
+  @DisplayName("Should rethrow the exception thrown by the task")
+  void testAwaitUnwrapsTaskException() {
+    try (ConcurrentFetchEngine engine = new ConcurrentFetchEngine(1)) {
+      CompletableFuture<String> future = engine.submit(() -> {
+        throw new IOException("Connection reset");
+      });
+      IOException exception = assertThrows(IOException.class, () -> ConcurrentFetchEngine.await(future));
+      assertEquals("Connection reset", exception.getMessage());
+    }
+  }
+
+  /**
+   * Validates the in-flight limit is read from the properties, falling back to the default.
+   */
+  @Test
+  @DisplayName("Should read the in-flight limit from the properties")
+  void testFromProperties() {
+    Properties properties = new Properties();
+    try (ConcurrentFetchEngine engine = ConcurrentFetchEngine.fromProperties(properties)) {
+      assertEquals(ConcurrentFetchEngine.DEFAULT_MAX_CONCURRENT_REQUESTS, engine.getMaxConcurrentRequests());
+    }
+    properties.setProperty(ConcurrentFetchEngine.MAX_CONCURRENT_REQUESTS_PROPERTY, "3");
+    try (ConcurrentFetchEngine engine = ConcurrentFetchEngine.fromProperties(properties)) {
+      assertEquals(3, engine.getMaxConcurrentRequests());
+    }
+  }
+
+  private String fetch(String path) throws Exception {
+    HttpRequest request = HttpRequest.newBuilder()
+        .uri(URI.create("http://localhost:" + server.getAddress().getPort() + path))
+        .GET()
+        .build();
+    return httpClient.send(request, HttpResponse.BodyHandlers.ofString()).body();
+  }
+}
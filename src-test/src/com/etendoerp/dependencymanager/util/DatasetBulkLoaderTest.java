@@ -0,0 +1,163 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.openbravo.base.exception.OBException;
+
+import com.etendoerp.dependencymanager.util.PackageDatasetReader.DatasetRecord;
+
+/**
+ * Unit tests for the {@link DatasetBulkLoader} class.
+ */
+@DisplayName("DatasetBulkLoader Tests")
+class DatasetBulkLoaderTest {
+
+  private static final String DATASET = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+      + "<ob:Openbravo xmlns:ob=\"http://www.openbravo.com\" "
+      + "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n"
+      + "  <ETDEP_Package id=\"P1\"><id>P1</id><active>true</active><group>com.etendoerp</group>"
+      + "<artifact>copilot</artifact><isBundle>false</isBundle></ETDEP_Package>\n"
+      + "  <ETDEP_Package_Version id=\"V1\"><id>V1</id><active>true</active><package id=\"P1\"/>"
+      + "<version>1.0.0</version><fromCore>24.1.0</fromCore><latestCore>25.1.0</latestCore>"
+      + "</ETDEP_Package_Version>\n"
+      + "  <ETDEP_Package_Dependency id=\"D1\"><id>D1</id><active>true</active><packageVersion id=\"V1\"/>"
+      + "<group>com.etendoerp</group><artifact>webhookevents</artifact><version>1.7.0</version>"
+      + "<dependencyVersion xsi:nil=\"true\"/><externalDependency>true</externalDependency>"
+      + "</ETDEP_Package_Dependency>\n"
+      + "  <AD_Module id=\"M1\"><id>M1</id></AD_Module>\n"
+      + "</ob:Openbravo>\n";
+
+  private Connection connection;
+  private Statement statement;
+  private PreparedStatement preparedStatement;
+  private ResultSet resultSet;
+  private DatasetBulkLoader loader;
+
+  /**
+   * Mocks the connection the loader writes to.
+   */
+  @BeforeEach
+  void setUp() throws Exception {
+    connection = mock(Connection.class);
+    statement = mock(Statement.class);
+    preparedStatement = mock(PreparedStatement.class);
+    resultSet = mock(ResultSet.class);
+    when(connection.createStatement()).thenReturn(statement);
+    when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+    when(preparedStatement.executeQuery()).thenReturn(resultSet);
+    when(preparedStatement.executeUpdate()).thenReturn(1);
+    loader = new DatasetBulkLoader(connection, "0", "0", "100");
+  }
+
+  /**
+   * The bulk load is only used on PostgreSQL, unless it is disabled.
+   */
+  @Test
+  @DisplayName("Should be enabled on PostgreSQL only")
+  void testIsEnabled() {
+    Properties postgres = new Properties();
+    postgres.setProperty(DatasetBulkLoader.RDBMS_PROPERTY, DatasetBulkLoader.POSTGRESQL);
+    Properties oracle = new Properties();
+    oracle.setProperty(DatasetBulkLoader.RDBMS_PROPERTY, "ORACLE");
+    Properties disabled = new Properties();
+    disabled.putAll(postgres);
+    disabled.setProperty(DatasetBulkLoader.BULK_LOAD_PROPERTY, "false");
+
+    assertAll(
+        () -> assertTrue(DatasetBulkLoader.isEnabled(postgres)),
+        () -> assertFalse(DatasetBulkLoader.isEnabled(oracle)),
+        () -> assertFalse(DatasetBulkLoader.isEnabled(disabled))
+    );
+  }
+
+  /**
+   * The records are staged with their booleans as Y and N, and merged with one statement per table in the order
+   * of the foreign keys.
+   */
+  @Test
+  @DisplayName("Should stage the records and merge them table by table")
+  void testStageAndApply() throws Exception {
+    List<Boolean> staged = new ArrayList<>();
+    for (DatasetRecord datasetRecord : records()) {
+      staged.add(loader.stage(datasetRecord));
+    }
+
+    int merged = loader.apply();
+
+    assertAll(
+        () -> assertEquals(List.of(true, true, true, false), staged),
+        () -> assertEquals(3, merged)
+    );
+    verify(statement, times(3)).execute(startsWith("CREATE TEMPORARY TABLE IF NOT EXISTS"));
+    verify(statement).execute(DatasetBulkLoader.TRUNCATE_STAGES_SQL);
+    verify(preparedStatement, times(3)).addBatch();
+    verify(preparedStatement, times(3)).executeBatch();
+    verify(preparedStatement).setString(3, "com.etendoerp");
+    verify(preparedStatement).setString(5, "N");
+    verify(preparedStatement).setString(3, "P1");
+    verify(preparedStatement).setString(7, null);
+    verify(preparedStatement).setString(8, "Y");
+    InOrder order = inOrder(connection);
+    order.verify(connection).prepareStatement(DatasetBulkLoader.MERGE_PACKAGES_SQL);
+    order.verify(connection).prepareStatement(DatasetBulkLoader.MERGE_VERSIONS_SQL);
+    order.verify(connection).prepareStatement(DatasetBulkLoader.MERGE_DEPENDENCIES_SQL);
+  }
+
+  /**
+   * A version whose package is neither staged nor in the catalog aborts the merge.
+   */
+  @Test
+  @DisplayName("Should fail when a staged record references a missing one")
+  void testMissingReference() throws Exception {
+    when(resultSet.next()).thenReturn(true);
+    when(resultSet.getString(1)).thenReturn("V1");
+    when(resultSet.getString(2)).thenReturn("P1");
+    loader.stage(records().get(1));
+
+    OBException exception = assertThrows(OBException.class, loader::apply);
+
+    assertEquals("Package P1 of package version V1 not found in the dataset", exception.getMessage());
+  }
+
+  /**
+   * Nothing is sent to the database when no record changed.
+   */
+  @Test
+  @DisplayName("Should not touch the database when nothing was staged")
+  void testNothingStaged() {
+    assertEquals(0, loader.apply());
+    verifyNoInteractions(connection);
+  }
+
+  private static List<DatasetRecord> records() throws Exception {
+    List<DatasetRecord> records = new ArrayList<>();
+    PackageDatasetReader.read(new ByteArrayInputStream(DATASET.getBytes(StandardCharsets.UTF_8)), records::add);
+    return records;
+  }
+}
@@ -0,0 +1,236 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.etendoerp.dependencymanager.util.PackageDatasetReader.DatasetRecord;
+
+/**
+ * Unit tests for the {@link DatasetImportHashes} class.
+ */
+@DisplayName("DatasetImportHashes Tests")
+class DatasetImportHashesTest {
+
+  private static final String DATASET_NAME = "https://raw.githubusercontent.com/etendosoftware/"
+      + "com.etendoerp.dependencymanager/main/referencedata/standard/Packages_dataset.xml";
+  private static final String SHARD_NAME = "https://raw.githubusercontent.com/etendosoftware/"
+      + "com.etendoerp.dependencymanager/main/referencedata/packages/Packages_manifest.txt";
+  private static final String CATALOG = UpdateLocalPackagesUtil.CATALOG_DATASET;
+  private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+      + "<ob:Openbravo xmlns:ob=\"http://www.openbravo.com\">\n";
+  private static final String PACKAGE = "  <ETDEP_Package id=\"P1\"><id>P1</id><group>com.etendoerp</group>"
+      + "<artifact>copilot</artifact></ETDEP_Package>\n";
+  private static final String REORDERED_PACKAGE = "  <ETDEP_Package id=\"P1\"><artifact>copilot</artifact>"
+      + "<id>P1</id><group>com.etendoerp</group></ETDEP_Package>\n";
+  private static final String VERSION = "  <ETDEP_Package_Version id=\"V1\"><id>V1</id><version>1.0.0</version>"
+      + "<package id=\"P1\"/></ETDEP_Package_Version>\n";
+  private static final String FOOTER = "</ob:Openbravo>\n";
+
+  /**
+   * The stored hashes are loaded, and a file with the same hash as the last import is reported as unchanged.
+   */
+  @Test
+  @DisplayName("Should load the hashes of the last import")
+  void testLoad() throws Exception {
+    Connection connection = mock(Connection.class);
+    PreparedStatement statement = mock(PreparedStatement.class);
+    ResultSet resultSet = mock(ResultSet.class);
+    when(connection.prepareStatement(anyString())).thenReturn(statement);
+    when(statement.executeQuery()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(true, true, false);
+    when(resultSet.getString(1)).thenReturn("HASH", "P1");
+    when(resultSet.getString(2)).thenReturn(UpdateLocalPackagesUtil.ETDEP_PACKAGE);
+    when(resultSet.getString(3)).thenReturn(DatasetImportHashes.hashRecord(records(PACKAGE).get(0)));
+    when(resultSet.getString(5)).thenReturn("P1");
+
+    DatasetImportHashes hashes = DatasetImportHashes.load(connection, CATALOG, DATASET_NAME);
+
+    assertAll(
+        () -> assertTrue(hashes.isDatasetUnchanged("HASH")),
+        () -> assertFalse(hashes.isDatasetUnchanged("OTHER")),
+        () -> assertFalse(hashes.isChanged(records(REORDERED_PACKAGE).get(0)))
+    );
+    verify(statement).setString(1, DATASET_NAME);
+    verify(statement).setString(1, CATALOG);
+  }
+
+  /**
+   * A record whose row is no longer in the catalog is imported again, even if neither the dataset nor its shard
+   * changed, and its hash is replaced.
+   */
+  @Test
+  @DisplayName("Should import again the records whose rows are missing")
+  void testLoadMissingRows() throws Exception {
+    Connection connection = mock(Connection.class);
+    PreparedStatement statement = mock(PreparedStatement.class);
+    ResultSet resultSet = mock(ResultSet.class);
+    when(connection.prepareStatement(anyString())).thenReturn(statement);
+    when(statement.executeQuery()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(true, true, false);
+    when(resultSet.getString(1)).thenReturn("HASH", "P1");
+    when(resultSet.getString(2)).thenReturn(UpdateLocalPackagesUtil.ETDEP_PACKAGE);
+    when(resultSet.getString(3)).thenReturn(DatasetImportHashes.hashRecord(records(PACKAGE).get(0)));
+    when(resultSet.getString(4)).thenReturn("Packages_00.xml");
+    when(resultSet.getString(5)).thenReturn(null);
+
+    DatasetImportHashes hashes = DatasetImportHashes.load(connection, CATALOG, SHARD_NAME);
+    boolean unchanged = hashes.isDatasetUnchanged("HASH");
+    boolean missingRows = hashes.hasMissingRows("Packages_00.xml");
+    hashes.startShard("Packages_00.xml");
+    boolean changed = hashes.isChanged(records(PACKAGE).get(0));
+    hashes.save(connection, CATALOG, SHARD_NAME, "HASH");
+
+    assertAll(
+        () -> assertFalse(unchanged),
+        () -> assertTrue(missingRows),
+        () -> assertFalse(hashes.hasMissingRows("Packages_01.xml")),
+        () -> assertTrue(changed),
+        () -> assertTrue(hashes.isDatasetUnchanged("HASH")),
+        () -> assertFalse(hashes.hasMissingRows("Packages_00.xml"))
+    );
+    verify(statement, times(2)).setString(2, "P1");
+  }
+
+  /**
+   * The hash of a record does not depend on the order of its fields, but changes with their content.
+   */
+  @Test
+  @DisplayName("Should hash the content of the records")
+  void testHashRecord() throws Exception {
+    String hash = DatasetImportHashes.hashRecord(records(PACKAGE).get(0));
+
+    assertAll(
+        () -> assertEquals(hash, DatasetImportHashes.hashRecord(records(REORDERED_PACKAGE).get(0))),
+        () -> assertNotEquals(hash,
+            DatasetImportHashes.hashRecord(records(PACKAGE.replace("copilot", "webhookevents")).get(0))),
+        () -> assertEquals(64, hash.length())
+    );
+  }
+
+  /**
+   * The hash of a file is the SHA-256 digest of its bytes.
+   */
+  @Test
+  @DisplayName("Should hash the content of the files")
+  void testHashFile(@TempDir Path directory) throws Exception {
+    Path file = Files.writeString(directory.resolve("dataset.xml"), HEADER + PACKAGE + FOOTER);
+
+    assertEquals(HttpResponseCache.sha256(HEADER + PACKAGE + FOOTER), DatasetImportHashes.hashFile(file));
+  }
+
+  /**
+   * Only the hashes of added and changed records are written, under the name of the dataset, and the hashes of the
+   * removed ones deleted. The hash of the file is written under the name of the file.
+   */
+  @Test
+  @DisplayName("Should save only the hashes of the added, changed and removed records")
+  void testSave() throws Exception {
+    DatasetRecord pkg = records(PACKAGE).get(0);
+    Map<String, DatasetImportHashes.RecordHash> stored = new HashMap<>();
+    stored.put("P1", new DatasetImportHashes.RecordHash(pkg.getEntity(), DatasetImportHashes.hashRecord(pkg)));
+    stored.put("P2", new DatasetImportHashes.RecordHash(UpdateLocalPackagesUtil.ETDEP_PACKAGE, "HASH"));
+    DatasetImportHashes hashes = new DatasetImportHashes(null, stored);
+    List<Boolean> changed = new ArrayList<>();
+    for (DatasetRecord datasetRecord : records(PACKAGE + VERSION)) {
+      changed.add(hashes.isChanged(datasetRecord));
+    }
+    Connection connection = mock(Connection.class);
+    PreparedStatement statement = mock(PreparedStatement.class);
+    when(connection.prepareStatement(anyString())).thenReturn(statement);
+
+    Map<String, String> removed = hashes.getRemovedRecords();
+    hashes.save(connection, CATALOG, DATASET_NAME, "HASH");
+
+    assertAll(
+        () -> assertEquals(List.of(false, true), changed),
+        () -> assertEquals(Map.of("P2", UpdateLocalPackagesUtil.ETDEP_PACKAGE), removed),
+        () -> assertTrue(hashes.getRemovedRecords().isEmpty())
+    );
+    verify(statement).setString(2, "P2");
+    verify(statement).setString(2, "V1");
+    verify(statement, never()).setString(2, "P1");
+    verify(statement).setString(3, UpdateLocalPackagesUtil.ETDEP_PACKAGE_VERSION);
+    verify(statement).setString(eq(2), eq("HASH"));
+    verify(statement, times(2)).setString(1, CATALOG);
+    verify(statement, times(2)).setString(1, DATASET_NAME);
+  }
+
+  /**
+   * The hashes of the files, and the record hashes kept under their names, are deleted by prefix, escaping the
+   * wildcards of the prefix.
+   */
+  @Test
+  @DisplayName("Should delete the hashes of the files under a prefix")
+  void testDeleteDatasetHashes() throws Exception {
+    Connection connection = mock(Connection.class);
+    PreparedStatement statement = mock(PreparedStatement.class);
+    when(connection.prepareStatement(anyString())).thenReturn(statement);
+
+    DatasetImportHashes.deleteDatasetHashes(connection, "https://example.com/main_branch/referencedata/");
+
+    verify(statement, times(2)).setString(1, "https://example.com/main\\_branch/referencedata/%");
+    verify(statement, times(2)).executeUpdate();
+  }
+
+  /**
+   * When the dataset is imported from its shards, only the records of the shards read can be found removed, and the
+   * shard of every read record is saved with its hash.
+   */
+  @Test
+  @DisplayName("Should only remove the records of the shards read")
+  void testShardedRemoval() throws Exception {
+    Map<String, DatasetImportHashes.RecordHash> stored = new HashMap<>();
+    stored.put("P2", new DatasetImportHashes.RecordHash(UpdateLocalPackagesUtil.ETDEP_PACKAGE, "HASH"));
+    stored.put("P3", new DatasetImportHashes.RecordHash(UpdateLocalPackagesUtil.ETDEP_PACKAGE, "HASH"));
+    Map<String, String> storedShards = new HashMap<>(Map.of("P2", "Packages_00.xml", "P3", "Packages_01.xml"));
+    DatasetImportHashes hashes = new DatasetImportHashes(null, stored, storedShards);
+    Connection connection = mock(Connection.class);
+    PreparedStatement statement = mock(PreparedStatement.class);
+    when(connection.prepareStatement(anyString())).thenReturn(statement);
+
+    hashes.startShard("Packages_00.xml");
+    for (DatasetRecord datasetRecord : records(PACKAGE)) {
+      hashes.isChanged(datasetRecord);
+    }
+    Map<String, String> removed = hashes.getRemovedRecords();
+    hashes.save(connection, CATALOG, SHARD_NAME, "HASH");
+
+    assertEquals(Map.of("P2", UpdateLocalPackagesUtil.ETDEP_PACKAGE), removed);
+    verify(statement).setString(2, "P1");
+    verify(statement).setString(5, "Packages_00.xml");
+    verify(statement, never()).setString(2, "P3");
+  }
+
+  private static List<DatasetRecord> records(String content) throws Exception {
+    List<DatasetRecord> records = new ArrayList<>();
+    PackageDatasetReader.read(new ByteArrayInputStream((HEADER + content + FOOTER).getBytes(StandardCharsets.UTF_8)),
+        records::add);
+    return records;
+  }
+}
@@ -0,0 +1,188 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the {@link DependencyClosure} class.
+ */
+@DisplayName("DependencyClosure Tests")
+class DependencyClosureTest {
+
+  private static final String ROOT = "ROOT";
+
+  /**
+   * Every dependency is stored once at its lowest depth, with the dependency it is reached through, and the
+   * dependencies of a version reached twice or through a cycle are only followed once.
+   */
+  @Test
+  @DisplayName("Should walk the closure breadth-first")
+  void testClosureOf() {
+    Map<String, List<DependencyClosure.Edge>> graph = new HashMap<>();
+    graph.put(ROOT, List.of(new DependencyClosure.Edge("D1", "A"), new DependencyClosure.Edge("D2", "B")));
+    graph.put("A", List.of(new DependencyClosure.Edge("D3", "C")));
+    graph.put("B", List.of(new DependencyClosure.Edge("D4", "C"), new DependencyClosure.Edge("D5", null)));
+    graph.put("C", List.of(new DependencyClosure.Edge("D6", ROOT)));
+
+    List<DependencyClosure.ClosureRow> rows = DependencyClosure.closureOf(ROOT, graph);
+
+    Map<String, String> parents = new LinkedHashMap<>();
+    Map<String, Integer> depths = new HashMap<>();
+    for (DependencyClosure.ClosureRow row : rows) {
+      parents.put(row.getDependencyId(), row.getParentId());
+      depths.put(row.getDependencyId(), row.getDepth());
+    }
+    assertAll(
+        () -> assertEquals(List.of("D1", "D2", "D3", "D4", "D5", "D6"), new ArrayList<>(parents.keySet())),
+        () -> assertEquals(6, rows.size()),
+        () -> assertNull(parents.get("D1")),
+        () -> assertEquals("D2", parents.get("D5")),
+        () -> assertEquals("D3", parents.get("D6")),
+        () -> assertEquals(1, depths.get("D2")),
+        () -> assertEquals(2, depths.get("D4")),
+        () -> assertEquals(3, depths.get("D6"))
+    );
+  }
+
+  /**
+   * The graph is loaded with one query per level, leaving out 'etendo-core' and not following external
+   * dependencies.
+   */
+  @Test
+  @DisplayName("Should load the dependency graph one level at a time")
+  void testLoadGraph() throws Exception {
+    Connection connection = mock(Connection.class);
+    PreparedStatement statement = mock(PreparedStatement.class);
+    when(connection.prepareStatement(anyString())).thenReturn(statement);
+    ResultSet firstLevel = rows(new String[][] {
+        { "D1", ROOT, "A", "copilot", "N" },
+        { "D2", ROOT, null, DependencyTreeBuilder.ETENDO_CORE, "N" },
+        { "D3", ROOT, "X", "jackson", "Y" }
+    });
+    ResultSet secondLevel = rows(new String[][] {
+        { "D4", "A", null, "tools", "N" }
+    });
+    when(statement.executeQuery()).thenReturn(firstLevel, secondLevel);
+
+    Map<String, List<DependencyClosure.Edge>> graph = DependencyClosure.loadGraph(connection, List.of(ROOT));
+    List<DependencyClosure.ClosureRow> rows = DependencyClosure.closureOf(ROOT, graph);
+
+    assertAll(
+        () -> assertEquals(Set.of(ROOT, "A"), graph.keySet()),
+        () -> assertEquals(2, graph.get(ROOT).size()),
+        () -> assertEquals(3, rows.size())
+    );
+    verify(connection, times(2)).prepareStatement(anyString());
+    verify(statement).setString(1, ROOT);
+    verify(statement).setString(1, "A");
+  }
+
+  /**
+   * Nothing is read or written when no package version or dependency changed.
+   */
+  @Test
+  @DisplayName("Should not update the closure without changes")
+  void testUpdateWithoutChanges() {
+    Connection connection = mock(Connection.class);
+
+    assertEquals(0, DependencyClosure.update(connection, Set.of(), List.of()));
+    verifyNoInteractions(connection);
+  }
+
+  /**
+   * The closure of the changed versions and of every version reaching them is deleted and written again.
+   */
+  @Test
+  @DisplayName("Should rebuild the closure of the affected versions")
+  void testUpdate() throws Exception {
+    Connection connection = mock(Connection.class);
+    PreparedStatement anyRow = mock(PreparedStatement.class);
+    PreparedStatement reaching = mock(PreparedStatement.class);
+    PreparedStatement dependencies = mock(PreparedStatement.class);
+    PreparedStatement delete = mock(PreparedStatement.class);
+    PreparedStatement insert = mock(PreparedStatement.class);
+    when(connection.prepareStatement(startsWith("SELECT ROOT_VERSION_ID"))).thenReturn(anyRow);
+    when(connection.prepareStatement(startsWith("SELECT DISTINCT"))).thenReturn(reaching);
+    when(connection.prepareStatement(startsWith("SELECT ETDEP_PACKAGE_DEP_ID"))).thenReturn(dependencies);
+    when(connection.prepareStatement(startsWith("DELETE"))).thenReturn(delete);
+    when(connection.prepareStatement(startsWith("INSERT"))).thenReturn(insert);
+    ResultSet built = rows(new String[][] { { ROOT } });
+    when(anyRow.executeQuery()).thenReturn(built);
+    ResultSet reachingRoots = rows(new String[][] { { ROOT } });
+    when(reaching.executeQuery()).thenReturn(reachingRoots);
+    ResultSet graph = rows(new String[][] {
+        { "D1", ROOT, "A", "copilot", "N" },
+        { "D2", "A", null, "tools", "N" }
+    });
+    when(dependencies.executeQuery()).thenReturn(graph);
+
+    int rebuilt = DependencyClosure.update(connection, Set.of("A"), List.of());
+
+    assertEquals(2, rebuilt);
+    verify(reaching).setString(1, "A");
+    verify(delete).setString(1, "A");
+    verify(delete).setString(2, ROOT);
+    verify(dependencies).executeQuery();
+    verify(insert, times(3)).addBatch();
+    verify(insert).executeBatch();
+  }
+
+  /**
+   * The closure of a version is read by depth, with the parent of every dependency.
+   */
+  @Test
+  @DisplayName("Should read the closure of a version")
+  void testRead() throws Exception {
+    Connection connection = mock(Connection.class);
+    PreparedStatement statement = mock(PreparedStatement.class);
+    when(connection.prepareStatement(anyString())).thenReturn(statement);
+    ResultSet closure = rows(new String[][] { { "D1", null }, { "D2", "D1" } });
+    when(statement.executeQuery()).thenReturn(closure);
+
+    Map<String, String> read = DependencyClosure.read(connection, ROOT);
+
+    assertAll(
+        () -> assertEquals(List.of("D1", "D2"), new ArrayList<>(read.keySet())),
+        () -> assertTrue(read.containsKey("D1")),
+        () -> assertNull(read.get("D1")),
+        () -> assertEquals("D1", read.get("D2"))
+    );
+    verify(statement).setString(1, ROOT);
+  }
+
+  /**
+   * Mocks a result set of string columns.
+   */
+  private static ResultSet rows(String[][] values) throws SQLException {
+    ResultSet resultSet = mock(ResultSet.class);
+    int[] row = { -1 };
+    when(resultSet.next()).thenAnswer(invocation -> ++row[0] < values.length);
+    when(resultSet.getString(anyInt())).thenAnswer(
+        invocation -> values[row[0]][(int) invocation.getArgument(0) - 1]);
+    return resultSet;
+  }
+}
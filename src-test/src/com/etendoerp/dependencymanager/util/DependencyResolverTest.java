@@ -0,0 +1,187 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.etendoerp.dependencymanager.data.PackageDependency;
+import com.etendoerp.dependencymanager.data.PackageVersion;
+
+/**
+ * Unit tests for the {@link DependencyResolver} class.
+ */
+@DisplayName("DependencyResolver Tests")
+class DependencyResolverTest {
+
+  private static final int DIAMOND_DEPTH = 400;
+  private static final int DIAMOND_WIDTH = 3;
+
+  private final Map<String, List<PackageDependency>> graph = new HashMap<>();
+  private final List<Collection<String>> queries = new ArrayList<>();
+
+  /**
+   * The closure holds every dependency reachable from the version, each one followed by the dependencies of its
+   * version, leaving out 'etendo-core', and is loaded with one query per level of the graph instead of the lazy
+   * dependency lists.
+   */
+  @Test
+  @DisplayName("Should resolve the transitive dependencies without etendo-core")
+  void testClosure() {
+    PackageVersion root = version("root");
+    PackageVersion copilot = version("copilot");
+    PackageVersion tools = version("tools");
+    PackageDependency toCopilot = dependency(root, copilot, "copilot");
+    PackageDependency toCore = dependency(root, null, DependencyTreeBuilder.ETENDO_CORE);
+    PackageDependency toTools = dependency(copilot, tools, "tools");
+    PackageDependency external = dependency(tools, null, "jackson");
+    when(external.isExternalDependency()).thenReturn(true);
+
+    Set<PackageDependency> closure = resolver().closureOf(root);
+
+    assertAll(
+        () -> assertEquals(List.of(toCopilot, toTools, external), new ArrayList<>(closure)),
+        () -> assertEquals(List.of(List.of("root"), List.of("copilot"), List.of("tools")), queries),
+        () -> assertEquals(List.of(toCopilot, toCore), graph.get("root"))
+    );
+    verify(root, never()).getETDEPPackageDependencyList();
+  }
+
+  /**
+   * A cycle between two versions is not followed, the closure still holds both of them, and the closure of the
+   * version the cycle was entered by is cached, so resolving it again does not load anything.
+   */
+  @Test
+  @DisplayName("Should resolve a dependency cycle without recursing forever")
+  void testCycle() {
+    PackageVersion root = version("root");
+    PackageVersion first = version("first");
+    PackageVersion second = version("second");
+    PackageDependency toFirst = dependency(root, first, "first");
+    PackageDependency toSecond = dependency(first, second, "second");
+    PackageDependency backToFirst = dependency(second, first, "first");
+    DependencyResolver resolver = resolver();
+
+    Set<PackageDependency> closure = resolver.closureOf(root);
+    List<PackageDependency> fromFirst = resolver.resolve(toFirst);
+
+    assertAll(
+        () -> assertEquals(List.of(toFirst, toSecond, backToFirst), new ArrayList<>(closure)),
+        () -> assertEquals(List.of(toSecond, backToFirst), fromFirst),
+        () -> assertEquals(3, queries.size())
+    );
+  }
+
+  /**
+   * The versions of a level are loaded in chunks that fit in an {@code IN} list, and loading versions together
+   * shares the queries of their levels.
+   */
+  @Test
+  @DisplayName("Should load the versions of a level in chunks")
+  void testLoadInChunks() {
+    List<PackageVersion> versions = new ArrayList<>();
+    PackageVersion shared = version("shared");
+    for (int i = 0; i <= DependencyResolver.MAX_IN_LIST_SIZE; i++) {
+      PackageVersion version = version("v" + i);
+      dependency(version, shared, "shared");
+      versions.add(version);
+    }
+    DependencyResolver resolver = resolver();
+
+    resolver.load(versions);
+    resolver.closureOf(versions.get(0));
+    resolver.closureOf(versions.get(DependencyResolver.MAX_IN_LIST_SIZE));
+
+    assertAll(
+        () -> assertEquals(3, queries.size()),
+        () -> assertEquals(DependencyResolver.MAX_IN_LIST_SIZE, queries.get(0).size()),
+        () -> assertEquals(1, queries.get(1).size()),
+        () -> assertEquals(List.of("shared"), queries.get(2))
+    );
+  }
+
+  /**
+   * Benchmark on a deep diamond: every version of a level depends on every version of the next one, so the number
+   * of paths grows exponentially with the depth while every version is still loaded and expanded only once, with
+   * one query per level.
+   */
+  @Test
+  @DisplayName("Should resolve a deep diamond graph expanding every version once")
+  void testDeepDiamondBenchmark() {
+    List<List<PackageVersion>> levels = new ArrayList<>();
+    for (int depth = 0; depth <= DIAMOND_DEPTH; depth++) {
+      List<PackageVersion> level = new ArrayList<>();
+      for (int i = 0; i < (depth == 0 ? 1 : DIAMOND_WIDTH); i++) {
+        level.add(version(depth + "-" + i));
+      }
+      levels.add(level);
+    }
+    for (int depth = 0; depth < DIAMOND_DEPTH; depth++) {
+      for (PackageVersion version : levels.get(depth)) {
+        for (PackageVersion next : levels.get(depth + 1)) {
+          dependency(version, next, "module-" + next.getId());
+        }
+      }
+    }
+
+    long start = System.nanoTime();
+    Set<PackageDependency> closure = resolver().closureOf(levels.get(0).get(0));
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertEquals(DIAMOND_WIDTH + (DIAMOND_DEPTH - 1) * DIAMOND_WIDTH * DIAMOND_WIDTH, closure.size());
+    assertTrue(elapsedMillis < 10_000, "Resolving took " + elapsedMillis + " ms");
+    assertEquals(DIAMOND_DEPTH + 1, queries.size());
+    Set<String> loaded = new HashSet<>();
+    for (Collection<String> query : queries) {
+      for (String versionId : query) {
+        assertTrue(loaded.add(versionId), "Loaded " + versionId + " twice");
+      }
+    }
+  }
+
+  /**
+   * Creates a resolver loading the dependencies from the graph of the test, recording every query.
+   */
+  private DependencyResolver resolver() {
+    return new DependencyResolver(versionIds -> {
+      queries.add(new ArrayList<>(versionIds));
+      List<PackageDependency> dependencies = new ArrayList<>();
+      for (String versionId : versionIds) {
+        dependencies.addAll(graph.getOrDefault(versionId, List.of()));
+      }
+      return dependencies;
+    });
+  }
+
+  private PackageVersion version(String id) {
+    PackageVersion version = mock(PackageVersion.class);
+    when(version.getId()).thenReturn(id);
+    graph.put(id, new ArrayList<>());
+    return version;
+  }
+
+  private PackageDependency dependency(PackageVersion from, PackageVersion to, String artifact) {
+    PackageDependency dependency = mock(PackageDependency.class);
+    when(dependency.getArtifact()).thenReturn(artifact);
+    when(dependency.getPackageVersion()).thenReturn(from);
+    when(dependency.getDependencyVersion()).thenReturn(to);
+    when(dependency.isExternalDependency()).thenReturn(false);
+    graph.get(from.getId()).add(dependency);
+    return dependency;
+  }
+}
@@ -0,0 +1,166 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.etendoerp.dependencymanager.util.PackageRepositoryClient.PackageListing;
+import com.etendoerp.dependencymanager.util.PackageRepositoryClient.PomFile;
+import com.etendoerp.dependencymanager.util.PackageRepositoryClient.RepositoryPackage;
+import com.etendoerp.dependencymanager.util.PackageRepositoryClient.RepositoryPage;
+import com.etendoerp.dependencymanager.util.PackageRepositoryClient.VersionList;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for the {@link GitHubRepositoryClient} class.
+ * <p>
+ * A local HTTP server stands in for the GitHub Packages API, the GitHub Maven registry and the dependencies API,
+ * reached through an {@link HttpTransport}.
+ * </p>
+ */
+@DisplayName("GitHubRepositoryClient Tests")
+class GitHubRepositoryClientTest {
+
+  private HttpServer server;
+  private final SyncStatistics statistics = new SyncStatistics();
+  private GitHubRepositoryClient client;
+
+  /**
+   * Starts the local HTTP stand-in. The package listing has two pages linked with the Link header and the POM
+   * files are redirected to a storage path, as the GitHub Maven registry does.
+   */
+  @BeforeEach
+  void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext("/packages", exchange -> {
+      if (exchange.getRequestURI().getQuery() == null) {
+        exchange.getResponseHeaders().add(HttpResponseCache.LINK_HEADER,
+            "<" + baseUrl() + "/packages?page=2>; rel=\"next\"");
+        respond(exchange, 200, "[{\"name\":\"com.etendoerp.copilot\",\"updated_at\":\"2024-05-01T10:00:00Z\","
+            + "\"repository\":{\"name\":\"com.etendoerp.copilot\"}}]");
+      } else {
+        respond(exchange, 200, "[{\"name\":\"com.etendoerp.platform.extensions\","
+            + "\"updated_at\":\"2024-05-02T10:00:00Z\"}]");
+      }
+    });
+    server.createContext("/versions/", exchange -> respond(exchange, 200,
+        "[{\"name\":\"1.2.0\"},{\"name\":\"1.1.0\"}]"));
+    server.createContext("/maven/", exchange -> {
+      exchange.getResponseHeaders().add(HttpTransport.LOCATION_HEADER, baseUrl() + "/storage/pom");
+      respond(exchange, 302, "");
+    });
+    server.createContext("/storage/pom", exchange -> respond(exchange, 200, "<project/>"));
+    server.createContext("/latest/", exchange -> respond(exchange, 200,
+        "[{\"name\":\"2.0.0\"},{\"name\":\"1.9.0\"}]"));
+    server.start();
+    client = new GitHubRepositoryClient(baseUrl() + "/packages", baseUrl() + "/versions/", baseUrl() + "/maven/",
+        baseUrl() + "/latest/", "Basic dGVzdA==", new HttpResponseCache(null),
+        new HttpTransport(HttpClient.newHttpClient(), Duration.ofSeconds(5), 4)::send, statistics);
+  }
+
+  /**
+   * Stops the local HTTP stand-in.
+   */
+  @AfterEach
+  void tearDown() {
+    server.stop(0);
+  }
+
+  /**
+   * Walks the listing and checks the packages are split into group and artifact and the next cursor is taken
+   * from the Link header.
+   */
+  @Test
+  @DisplayName("Should list every page of packages following the Link header")
+  void testListPackages() throws Exception {
+    List<RepositoryPage> pages = new ArrayList<>();
+    try (ConcurrentFetchEngine engine = new ConcurrentFetchEngine(2)) {
+      PackageListing listing = client.listPackages(engine, client.getFirstPageCursor());
+      while (listing.hasNext()) {
+        pages.add(listing.next());
+      }
+    }
+
+    RepositoryPackage first = pages.get(0).getPackages().get(0);
+    RepositoryPackage second = pages.get(1).getPackages().get(0);
+    assertAll(
+        () -> assertEquals(2, pages.size()),
+        () -> assertEquals(baseUrl() + "/packages?page=2", pages.get(0).getNextCursor()),
+        () -> assertNull(pages.get(1).getNextCursor()),
+        () -> assertEquals("com.etendoerp", first.getGroup()),
+        () -> assertEquals("copilot", first.getArtifact()),
+        () -> assertEquals("2024-05-01T10:00:00Z", first.getUpdatedAt()),
+        () -> assertEquals("com.etendoerp.copilot", first.getRepository()),
+        () -> assertEquals("platform.extensions", second.getArtifact()),
+        () -> assertNull(second.getRepository()),
+        () -> assertEquals(2, statistics.getPackagePageRequests())
+    );
+  }
+
+  /**
+   * Validates the versions are read in the order of the API and the list is modified on the first request.
+   */
+  @Test
+  @DisplayName("Should fetch the versions of a package")
+  void testFetchVersions() throws Exception {
+    VersionList versions = client.fetchVersions(
+        RepositoryPackage.fromName("com.etendoerp.copilot", null, null));
+
+    assertAll(
+        () -> assertEquals(List.of("1.2.0", "1.1.0"), versions.getVersions()),
+        () -> assertFalse(versions.isNotModified()),
+        () -> assertEquals(1, statistics.getVersionListRequests())
+    );
+  }
+
+  /**
+   * Validates the POM file is downloaded following the redirect and the latest version is the first one listed
+   * by the dependencies API.
+   */
+  @Test
+  @DisplayName("Should follow the POM redirect and read the latest version")
+  void testFetchPomAndLatestVersion() throws Exception {
+    PomFile pom = client.fetchPom("com.etendoerp", "copilot", "1.2.0");
+
+    assertAll(
+        () -> assertTrue(pom.isFound()),
+        () -> assertEquals("<project/>", pom.getBody()),
+        () -> assertEquals("2.0.0", client.fetchLatestVersion("com.etendoerp", "copilot")),
+        () -> assertEquals("https://maven.pkg.github.com/etendosoftware/etendo_core/com/etendoerp/platform/"
+                + "extensions/1.0.0/platform.extensions-1.0.0.pom",
+            new GitHubRepositoryClient(null, null, GitHubRepositoryClient.GITHUB_POM_URL, null, null, null, null,
+                statistics).buildPomUrl("com.etendoerp", "platform.extensions", "1.0.0"))
+    );
+  }
+
+  private String baseUrl() {
+    return "http://localhost:" + server.getAddress().getPort();
+  }
+
+  private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.etendoerp.dependencymanager.util.HttpResponseCache.CachedResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for the {@link HttpResponseCache} class.
+ * <p>
+ * A local HTTP server answers with an {@code ETag} and honours {@code If-None-Match}, like the GitHub API does.
+ * </p>
+ */
+@DisplayName("HttpResponseCache Tests")
+class HttpResponseCacheTest {
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(10);
+  private static final String ETAG = "\"v1\"";
+  private static final String BODY = "[{\"name\":\"1.0.0\"}]";
+  private static final String LINK = "<https://api.github.com/versions?page=2>; rel=\"next\"";
+
+  @TempDir
+  Path cacheDir;
+
+  private HttpServer server;
+  private HttpTransport transport;
+  private final AtomicInteger fullResponses = new AtomicInteger();
+
+  /**
+   * Starts the local HTTP stand-in. The {@code /versions} context sends validators, {@code /plain} does not.
+   */
+  @BeforeEach
+  void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/versions", exchange -> {
+      if (ETAG.equals(exchange.getRequestHeaders().getFirst(HttpResponseCache.IF_NONE_MATCH_HEADER))) {
+        exchange.sendResponseHeaders(HttpResponseCache.HTTP_NOT_MODIFIED, -1);
+        exchange.close();
+        return;
+      }
+      fullResponses.incrementAndGet();
+      exchange.getResponseHeaders().add(HttpResponseCache.ETAG_HEADER, ETAG);
+      exchange.getResponseHeaders().add(HttpResponseCache.LINK_HEADER, LINK);
+      writeBody(exchange, BODY);
+    });
+    server.createContext("/plain", exchange -> writeBody(exchange, BODY));
+    server.start();
+    transport = new HttpTransport(HttpClient.newHttpClient(), TIMEOUT, 6);
+  }
+
+  /**
+   * Stops the local HTTP stand-in.
+   */
+  @AfterEach
+  void tearDown() {
+    server.stop(0);
+  }
+
+  /**
+   * Once a response is committed, the next request is conditional and the 304 is resolved with the stored body
+   * and pagination header.
+   */
+  @Test
+  @DisplayName("Should resolve a 304 with the committed body")
+  void testNotModifiedResolvesCachedBody() throws Exception {
+    HttpResponseCache cache = new HttpResponseCache(cacheDir);
+
+    CachedResponse first = cache.send(transport::send, request("/versions"));
+    first.commit();
+    CachedResponse second = cache.send(transport::send, request("/versions"));
+
+    assertAll(
+        () -> assertFalse(first.isNotModified()),
+        () -> assertTrue(second.isNotModified()),
+        () -> assertTrue(second.isSuccessful()),
+        () -> assertEquals(BODY, second.body()),
+        () -> assertEquals(LINK, second.header(HttpResponseCache.LINK_HEADER).orElse(null)),
+        () -> assertEquals(1, fullResponses.get())
+    );
+  }
+
+  /**
+   * A response that was never committed must not be used to skip a later request.
+   */
+  @Test
+  @DisplayName("Should not store responses that were not committed")
+  void testUncommittedResponseIsNotStored() throws Exception {
+    HttpResponseCache cache = new HttpResponseCache(cacheDir);
+
+    cache.send(transport::send, request("/versions"));
+    CachedResponse second = cache.send(transport::send, request("/versions"));
+
+    assertAll(
+        () -> assertFalse(second.isNotModified()),
+        () -> assertEquals(2, fullResponses.get()),
+        () -> assertNull(cache.lookup(url("/versions")))
+    );
+  }
+
+  /**
+   * Responses without {@code ETag} nor {@code Last-Modified} cannot be revalidated, so they are not stored.
+   */
+  @Test
+  @DisplayName("Should not store responses without validators")
+  void testResponseWithoutValidatorsIsNotStored() throws Exception {
+    HttpResponseCache cache = new HttpResponseCache(cacheDir);
+
+    cache.send(transport::send, request("/plain")).commit();
+
+    assertNull(cache.lookup(url("/plain")));
+  }
+
+  /**
+   * Validates entries survive a new cache instance and can be invalidated.
+   */
+  @Test
+  @DisplayName("Should persist entries across instances and remove them on invalidate")
+  void testStoreLookupAndInvalidate() {
+    new HttpResponseCache(cacheDir).store("https://example.com/a", new HttpResponseCache.Entry(ETAG, null, BODY));
+
+    HttpResponseCache cache = new HttpResponseCache(cacheDir);
+    HttpResponseCache.Entry entry = cache.lookup("https://example.com/a");
+    assertNotNull(entry);
+    assertEquals(ETAG, entry.getEtag());
+    assertNull(entry.getLastModified());
+    assertEquals(BODY, entry.getBody());
+
+    cache.invalidate("https://example.com/a");
+    assertNull(cache.lookup("https://example.com/a"));
+  }
+
+  private String url(String path) {
+    return "http://localhost:" + server.getAddress().getPort() + path;
+  }
+
+  private HttpRequest request(String path) {
+    return HttpRequest.newBuilder().uri(URI.create(url(path))).GET().build();
+  }
+
+  private static void writeBody(HttpExchange exchange, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(200, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+}
@@ -0,0 +1,191 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for the {@link HttpTransport} class.
+ * <p>
+ * A local HTTP server serves a gzip encoded body, a redirect and an answer that never completes.
+ * </p>
+ */
+@DisplayName("HttpTransport Tests")
+class HttpTransportTest {
+
+  private static final String BODY = "[{\"name\":\"com.etendoerp.copilot\"}]";
+
+  private HttpServer server;
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final AtomicReference<String> acceptEncoding = new AtomicReference<>();
+  private final AtomicReference<String> redirectedAuthorization = new AtomicReference<>();
+  private HttpTransport transport;
+
+  /**
+   * Starts the local HTTP stand-in and a transport with a two seconds timeout.
+   */
+  @BeforeEach
+  void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext("/gzip", exchange -> {
+      acceptEncoding.set(exchange.getRequestHeaders().getFirst(HttpTransport.ACCEPT_ENCODING_HEADER));
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+      try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+        gzip.write(BODY.getBytes(StandardCharsets.UTF_8));
+      }
+      exchange.getResponseHeaders().add(HttpTransport.CONTENT_ENCODING_HEADER, HttpTransport.GZIP);
+      respond(exchange, 200, compressed.toByteArray());
+    });
+    server.createContext("/redirect", exchange -> {
+      exchange.getResponseHeaders().add(HttpTransport.LOCATION_HEADER, "/storage");
+      respond(exchange, 302, new byte[0]);
+    });
+    server.createContext("/storage", exchange -> {
+      redirectedAuthorization.set(exchange.getRequestHeaders().getFirst(HttpTransport.AUTHORIZATION_HEADER));
+      respond(exchange, 200, "stored".getBytes(StandardCharsets.UTF_8));
+    });
+    server.createContext("/stalled", exchange -> {
+      exchange.sendResponseHeaders(200, 0);
+      try {
+        release.await(30, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      exchange.close();
+    });
+    server.start();
+    transport = new HttpTransport(HttpClient.newHttpClient(), Duration.ofSeconds(2), 2);
+  }
+
+  /**
+   * Stops the local HTTP stand-in.
+   */
+  @AfterEach
+  void tearDown() {
+    release.countDown();
+    server.stop(0);
+  }
+
+  /**
+   * Validates gzip is requested and the compressed body is returned inflated.
+   */
+  @Test
+  @DisplayName("Should request and inflate gzip encoded bodies")
+  void testInflatesGzipBodies() throws Exception {
+    HttpResponse<String> response = transport.send(request("/gzip").build());
+
+    assertAll(
+        () -> assertEquals(HttpTransport.GZIP, acceptEncoding.get()),
+        () -> assertEquals(BODY, response.body())
+    );
+  }
+
+  /**
+   * Validates a relative redirect is followed, keeping the credentials on the same host.
+   */
+  @Test
+  @DisplayName("Should follow redirects on the same host with the credentials")
+  void testFollowsRedirects() throws Exception {
+    HttpResponse<String> response = transport.send(
+        request("/redirect").header(HttpTransport.AUTHORIZATION_HEADER, "Basic dGVzdA==").build());
+
+    assertAll(
+        () -> assertEquals(200, response.statusCode()),
+        () -> assertEquals("stored", response.body()),
+        () -> assertEquals("Basic dGVzdA==", redirectedAuthorization.get())
+    );
+  }
+
+  /**
+   * Validates a download follows the redirects and stores the body in the file.
+   */
+  @Test
+  @DisplayName("Should download the body into a file following redirects")
+  void testDownloadsIntoFile(@TempDir Path directory) throws Exception {
+    Path file = directory.resolve("download");
+
+    HttpResponse<Path> response = transport.download(request("/redirect").build(), file);
+
+    assertAll(
+        () -> assertEquals(200, response.statusCode()),
+        () -> assertEquals(file, response.body()),
+        () -> assertEquals("stored", Files.readString(file))
+    );
+  }
+
+  /**
+   * Validates the credentials are dropped when a redirect leaves the host, and a 303 answer is followed with a GET.
+   */
+  @Test
+  @DisplayName("Should drop the credentials when a redirect leaves the host")
+  void testRedirectToOtherHost() {
+    HttpRequest request = HttpRequest.newBuilder(URI.create("https://maven.pkg.github.com/x.pom"))
+        .header(HttpTransport.AUTHORIZATION_HEADER, "Basic dGVzdA==")
+        .POST(HttpRequest.BodyPublishers.noBody())
+        .build();
+
+    HttpRequest sameHost = HttpTransport.redirect(request, 307, URI.create("https://maven.pkg.github.com/y.pom"));
+    HttpRequest otherHost = HttpTransport.redirect(request, 303, URI.create("https://storage.example.com/x"));
+
+    assertAll(
+        () -> assertTrue(sameHost.headers().firstValue(HttpTransport.AUTHORIZATION_HEADER).isPresent()),
+        () -> assertEquals("POST", sameHost.method()),
+        () -> assertFalse(otherHost.headers().firstValue(HttpTransport.AUTHORIZATION_HEADER).isPresent()),
+        () -> assertEquals("GET", otherHost.method())
+    );
+  }
+
+  /**
+   * Validates an answer whose body never completes fails with a timeout instead of blocking the caller.
+   */
+  @Test
+  @DisplayName("Should time out a stalled exchange")
+  void testTimesOutStalledExchange() {
+    long start = System.nanoTime();
+
+    assertThrows(HttpTimeoutException.class, () -> transport.send(request("/stalled").build()));
+    assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 10);
+  }
+
+  private HttpRequest.Builder request(String path) {
+    return HttpRequest.newBuilder(URI.create("http://localhost:" + server.getAddress().getPort() + path)).GET();
+  }
+
+  private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+    exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.etendoerp.dependencymanager.util.HttpResponseCache.CachedResponse;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for the {@link LinkPagination} class.
+ * <p>
+ * A local HTTP server serves a listing of {@link #PAGE_COUNT} pages, linked the way the GitHub API does.
+ * </p>
+ */
+@DisplayName("LinkPagination Tests")
+class LinkPaginationTest {
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(10);
+  private static final int PAGE_COUNT = 12;
+  private static final Pattern PAGE_PARAMETER = Pattern.compile("(?:^|&)page=(\\d+)");
+
+  private HttpServer server;
+  private final HttpTransport transport = new HttpTransport(HttpClient.newHttpClient(), TIMEOUT, 6);
+  private final HttpResponseCache cache = new HttpResponseCache(null);
+  private final AtomicInteger requests = new AtomicInteger();
+
+  /**
+   * Starts the local HTTP stand-in. Every page answers its number and links to the next and last pages.
+   */
+  @BeforeEach
+  void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext("/items", exchange -> {
+      requests.incrementAndGet();
+      String query = exchange.getRequestURI().getQuery();
+      Matcher matcher = PAGE_PARAMETER.matcher(query);
+      int page = matcher.find() ? Integer.parseInt(matcher.group(1)) : 1;
+      if (page < PAGE_COUNT) {
+        exchange.getResponseHeaders().add(HttpResponseCache.LINK_HEADER,
+            "<" + url(page + 1) + ">; rel=\"next\", <" + url(PAGE_COUNT) + ">; rel=\"last\"");
+      }
+      byte[] body = String.valueOf(page).getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.start();
+  }
+
+  /**
+   * Stops the local HTTP stand-in.
+   */
+  @AfterEach
+  void tearDown() {
+    server.stop(0);
+  }
+
+  /**
+   * Walks the whole listing through the engine, beyond the old ten pages limit, and checks the pages are
+   * returned in order and requested once.
+   */
+  @Test
+  @DisplayName("Should return every page in order following the Link header")
+  void testWalksEveryPageInOrder() throws Exception {
+    List<String> bodies = new ArrayList<>();
+    try (ConcurrentFetchEngine engine = new ConcurrentFetchEngine(4)) {
+      LinkPagination pages = new LinkPagination(engine, this::fetch, firstUrl());
+      while (pages.hasNext()) {
+        bodies.add(pages.next().body());
+      }
+    }
+
+    assertAll(
+        () -> assertEquals(PAGE_COUNT, bodies.size()),
+        () -> assertEquals("1", bodies.get(0)),
+        () -> assertEquals(String.valueOf(PAGE_COUNT), bodies.get(PAGE_COUNT - 1)),
+        () -> assertEquals(PAGE_COUNT, requests.get())
+    );
+  }
+
+  /**
+   * Validates the sequential walk used from the fetch engine workers.
+   */
+  @Test
+  @DisplayName("Should fetch every page sequentially")
+  void testFetchAll() throws Exception {
+    List<CachedResponse> pages = LinkPagination.fetchAll(this::fetch, firstUrl());
+
+    assertEquals(PAGE_COUNT, pages.size());
+    assertEquals(String.valueOf(PAGE_COUNT), pages.get(PAGE_COUNT - 1).body());
+  }
+
+  /**
+   * Validates the relations of a GitHub Link header are parsed and a missing header yields no links.
+   */
+  @Test
+  @DisplayName("Should parse the relations of a Link header")
+  void testParseLinks() {
+    Map<String, String> links = LinkPagination.parseLinks(
+        "<https://api.github.com/x?per_page=100&page=2>; rel=\"next\", "
+            + "<https://api.github.com/x?per_page=100&page=7>; rel=\"last\"");
+
+    assertAll(
+        () -> assertEquals("https://api.github.com/x?per_page=100&page=2", links.get(LinkPagination.REL_NEXT)),
+        () -> assertEquals("https://api.github.com/x?per_page=100&page=7", links.get(LinkPagination.REL_LAST)),
+        () -> assertTrue(LinkPagination.parseLinks(null).isEmpty())
+    );
+  }
+
+  /**
+   * Validates the pages between next and last are listed, falling back to the next page only.
+   */
+  @Test
+  @DisplayName("Should expand the pages up to the last one")
+  void testExpandPages() {
+    List<String> pages = LinkPagination.expandPages("https://h/x?page=3&per_page=100",
+        "https://h/x?page=5&per_page=100");
+
+    assertAll(
+        () -> assertEquals(List.of("https://h/x?page=3&per_page=100", "https://h/x?page=4&per_page=100",
+            "https://h/x?page=5&per_page=100"), pages),
+        () -> assertEquals(List.of("https://h/x?cursor=abc"),
+            LinkPagination.expandPages("https://h/x?cursor=abc", null)),
+        () -> assertFalse(LinkPagination.expandPages(null, null).iterator().hasNext())
+    );
+  }
+
+  private String firstUrl() {
+    return "http://localhost:" + server.getAddress().getPort() + "/items?per_page=100";
+  }
+
+  private String url(int page) {
+    return firstUrl() + "&page=" + page;
+  }
+
+  private CachedResponse fetch(String url) throws Exception {
+    return cache.send(transport::send, HttpRequest.newBuilder().uri(URI.create(url)).GET().build());
+  }
+}
@@ -0,0 +1,133 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.etendoerp.dependencymanager.util.PackageRepositoryClient.PackageListing;
+import com.etendoerp.dependencymanager.util.PackageRepositoryClient.PomFile;
+import com.etendoerp.dependencymanager.util.PackageRepositoryClient.RepositoryPackage;
+import com.etendoerp.dependencymanager.util.PackageRepositoryClient.RepositoryPage;
+
+/**
+ * Unit tests for the {@link LocalMirrorRepositoryClient} class.
+ * <p>
+ * The mirror is a temporary directory with the Maven layout holding two artifacts of the same group.
+ * </p>
+ */
+@DisplayName("LocalMirrorRepositoryClient Tests")
+class LocalMirrorRepositoryClientTest {
+
+  private static final Instant LATEST_CHANGE = Instant.parse("2024-05-02T10:00:00Z");
+
+  @TempDir
+  Path root;
+
+  private LocalMirrorRepositoryClient client;
+
+  /**
+   * Lays out the mirror. The version directories of copilot are created out of order, and a metadata file and a
+   * directory without POM are added to check they are not taken as versions.
+   */
+  @BeforeEach
+  void setUp() throws IOException {
+    writePom("copilot", "1.10.0", Instant.parse("2024-05-01T10:00:00Z"));
+    writePom("copilot", "1.2.0", LATEST_CHANGE);
+    writePom("copilot", "1.9.0", Instant.parse("2024-04-01T10:00:00Z"));
+    writePom("webhookevents", "1.0.0", Instant.parse("2024-03-01T10:00:00Z"));
+    Files.writeString(root.resolve("com/etendoerp/copilot/maven-metadata.xml"), "<metadata/>");
+    Files.createDirectories(root.resolve("com/etendoerp/copilot/2.0.0-SNAPSHOT"));
+    client = new LocalMirrorRepositoryClient(root);
+  }
+
+  /**
+   * Validates every artifact is listed once, in a single page, with the last modification of its POM files
+   * as the update time.
+   */
+  @Test
+  @DisplayName("Should list the artifacts of the mirror")
+  void testListPackages() throws Exception {
+    PackageListing listing = client.listPackages(null, client.getFirstPageCursor());
+    RepositoryPage page = listing.next();
+    RepositoryPackage copilot = page.getPackages().get(0);
+
+    assertAll(
+        () -> assertFalse(listing.hasNext()),
+        () -> assertEquals(2, page.getPackages().size()),
+        () -> assertEquals("com.etendoerp.copilot", copilot.getName()),
+        () -> assertEquals("com.etendoerp", copilot.getGroup()),
+        () -> assertEquals("copilot", copilot.getArtifact()),
+        () -> assertEquals(LATEST_CHANGE.toString(), copilot.getUpdatedAt()),
+        () -> assertEquals("webhookevents", page.getPackages().get(1).getArtifact())
+    );
+  }
+
+  /**
+   * Validates the versions are the directories with a POM file, sorted by version number, the latest first.
+   */
+  @Test
+  @DisplayName("Should list the versions the latest first")
+  void testFetchVersions() throws Exception {
+    List<String> versions = client.fetchVersions(
+        new RepositoryPackage("com.etendoerp.copilot", "com.etendoerp", "copilot", null, null)).getVersions();
+
+    assertAll(
+        () -> assertEquals(List.of("1.10.0", "1.9.0", "1.2.0"), versions),
+        () -> assertEquals("1.10.0", client.fetchLatestVersion("com.etendoerp", "copilot")),
+        () -> assertNull(client.fetchLatestVersion("com.etendoerp", "unknown"))
+    );
+  }
+
+  /**
+   * Validates the POM files are read from the mirror and missing ones are reported as not found.
+   */
+  @Test
+  @DisplayName("Should read the POM files of the mirror")
+  void testFetchPom() throws Exception {
+    PomFile pom = client.fetchPom("com.etendoerp", "copilot", "1.2.0");
+    PomFile missing = client.fetchPom("com.etendoerp", "copilot", "3.0.0");
+
+    assertAll(
+        () -> assertTrue(pom.isFound()),
+        () -> assertEquals("<project><version>1.2.0</version></project>", pom.getBody()),
+        () -> assertEquals(PomFile.STATUS_NOT_FOUND, missing.getStatusCode())
+    );
+  }
+
+  /**
+   * Validates the local repository type creates a client of the configured directory.
+   */
+  @Test
+  @DisplayName("Should be created from the properties")
+  void testFromProperties() {
+    Properties properties = new Properties();
+    properties.setProperty(PackageRepositoryClient.TYPE_PROPERTY, PackageRepositoryClient.TYPE_LOCAL);
+    properties.setProperty(PackageRepositoryClient.DIR_PROPERTY, root.toString());
+
+    assertInstanceOf(LocalMirrorRepositoryClient.class, PackageRepositoryClient.fromProperties(properties, null, null));
+  }
+
+  private void writePom(String artifact, String version, Instant modified) throws IOException {
+    Path dir = Files.createDirectories(root.resolve("com/etendoerp").resolve(artifact).resolve(version));
+    Path pom = dir.resolve(artifact + "-" + version + ".pom");
+    Files.write(pom, ("<project><version>" + version + "</version></project>").getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(pom, FileTime.from(modified));
+  }
+}
@@ -0,0 +1,73 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.etendoerp.dependencymanager.util.MavenMetadataParser.MavenMetadata;
+
+/**
+ * Unit tests for the {@link MavenMetadataParser} class.
+ */
+@DisplayName("MavenMetadataParser Tests")
+class MavenMetadataParserTest {
+
+  /**
+   * Validates the versioning of a metadata file published by Nexus is read.
+   */
+  @Test
+  @DisplayName("Should read the versioning of the metadata file")
+  void testParse() throws Exception {
+    MavenMetadata metadata = MavenMetadataParser.parse("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<metadata>\n"
+        + "  <groupId>com.etendoerp</groupId>\n"
+        + "  <artifactId>copilot</artifactId>\n"
+        + "  <version>1.0.0</version>\n"
+        + "  <versioning>\n"
+        + "    <latest>1.3.0-SNAPSHOT</latest>\n"
+        + "    <release>1.2.0</release>\n"
+        + "    <versions>\n"
+        + "      <version>1.0.0</version>\n"
+        + "      <version> 1.2.0 </version>\n"
+        + "      <version>1.3.0-SNAPSHOT</version>\n"
+        + "    </versions>\n"
+        + "    <lastUpdated>20240501100000</lastUpdated>\n"
+        + "  </versioning>\n"
+        + "</metadata>");
+
+    assertAll(
+        () -> assertEquals(List.of("1.0.0", "1.2.0", "1.3.0-SNAPSHOT"), metadata.getVersions()),
+        () -> assertEquals("1.3.0-SNAPSHOT", metadata.getLatest()),
+        () -> assertEquals("1.2.0", metadata.getRelease()),
+        () -> assertEquals("20240501100000", metadata.getLastUpdated()),
+        () -> assertEquals("1.2.0", metadata.getLatestVersion())
+    );
+  }
+
+  /**
+   * Validates the latest version falls back to the last published one when neither latest nor release are
+   * declared, and to null when there are no versions.
+   */
+  @Test
+  @DisplayName("Should fall back to the last published version")
+  void testLatestVersionFallback() throws Exception {
+    MavenMetadata versions = MavenMetadataParser.parse(
+        "<metadata><versioning><versions><version>1.0.0</version><version>1.1.0</version></versions>"
+            + "</versioning></metadata>");
+    MavenMetadata empty = MavenMetadataParser.parse("<metadata><version>1.0.0</version></metadata>");
+
+    assertAll(
+        () -> assertEquals("1.1.0", versions.getLatestVersion()),
+        () -> assertNull(empty.getLatestVersion()),
+        () -> assertThrows(XMLStreamException.class, () -> MavenMetadataParser.parse("<metadata><versioning>"))
+    );
+  }
+}
@@ -0,0 +1,182 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openbravo.base.exception.OBException;
+
+import com.etendoerp.dependencymanager.util.PackageRepositoryClient.PackageListing;
+import com.etendoerp.dependencymanager.util.PackageRepositoryClient.PomFile;
+import com.etendoerp.dependencymanager.util.PackageRepositoryClient.RepositoryPackage;
+import com.etendoerp.dependencymanager.util.PackageRepositoryClient.RepositoryPage;
+import com.etendoerp.dependencymanager.util.PackageRepositoryClient.VersionList;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for the {@link MavenRepositoryClient} class.
+ * <p>
+ * A local HTTP server stands in for a repository with the Maven layout, serving the metadata file and the POM
+ * files of a single artifact.
+ * </p>
+ */
+@DisplayName("MavenRepositoryClient Tests")
+class MavenRepositoryClientTest {
+
+  private static final String METADATA = "<metadata><groupId>com.etendoerp</groupId><artifactId>copilot</artifactId>"
+      + "<versioning><latest>1.2.0</latest><release>1.2.0</release>"
+      + "<versions><version>1.0.0</version><version>1.1.0</version><version>1.2.0</version></versions>"
+      + "<lastUpdated>20240501100000</lastUpdated></versioning></metadata>";
+
+  @TempDir
+  Path cacheDir;
+
+  private HttpServer server;
+  private final HttpClient httpClient = HttpClient.newHttpClient();
+  private final AtomicReference<String> authorization = new AtomicReference<>();
+  private MavenRepositoryClient client;
+
+  /**
+   * Starts the local HTTP stand-in. The metadata file answers 304 when the request carries its ETag.
+   */
+  @BeforeEach
+  void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext("/repo/com/etendoerp/copilot/", exchange -> {
+      authorization.set(exchange.getRequestHeaders().getFirst("Authorization"));
+      String path = exchange.getRequestURI().getPath();
+      if (path.endsWith(MavenRepositoryClient.METADATA_FILE)) {
+        exchange.getResponseHeaders().add(HttpResponseCache.ETAG_HEADER, "\"v3\"");
+        if ("\"v3\"".equals(exchange.getRequestHeaders().getFirst(HttpResponseCache.IF_NONE_MATCH_HEADER))) {
+          respond(exchange, HttpResponseCache.HTTP_NOT_MODIFIED, "");
+        } else {
+          respond(exchange, 200, METADATA);
+        }
+      } else if (path.endsWith("/1.2.0/copilot-1.2.0.pom")) {
+        respond(exchange, 200, "<project/>");
+      } else {
+        respond(exchange, 404, "Not found");
+      }
+    });
+    server.start();
+    client = new MavenRepositoryClient(baseUrl(),
+        MavenRepositoryClient.parsePackages("com.etendoerp:copilot, invalid ,com.etendoerp:webhookevents"),
+        "Basic dGVzdA==", new HttpResponseCache(cacheDir),
+        request -> httpClient.send(request, HttpResponse.BodyHandlers.ofString()), new SyncStatistics());
+  }
+
+  /**
+   * Stops the local HTTP stand-in.
+   */
+  @AfterEach
+  void tearDown() {
+    server.stop(0);
+  }
+
+  /**
+   * Validates the configured coordinates are listed in a single page and invalid ones are ignored.
+   */
+  @Test
+  @DisplayName("Should list the configured packages in a single page")
+  void testListPackages() throws Exception {
+    PackageListing listing = client.listPackages(null, client.getFirstPageCursor());
+    RepositoryPage page = listing.next();
+
+    assertAll(
+        () -> assertFalse(listing.hasNext()),
+        () -> assertNull(page.getNextCursor()),
+        () -> assertEquals(2, page.getPackages().size()),
+        () -> assertEquals("com.etendoerp.copilot", page.getPackages().get(0).getName()),
+        () -> assertEquals("webhookevents", page.getPackages().get(1).getArtifact())
+    );
+  }
+
+  /**
+   * Validates the versions of the metadata file are returned latest first, and that the metadata is sent as a
+   * conditional request once committed.
+   */
+  @Test
+  @DisplayName("Should read the versions from the metadata file")
+  void testFetchVersions() throws Exception {
+    RepositoryPackage pkg = new RepositoryPackage("com.etendoerp.copilot", "com.etendoerp", "copilot", null, null);
+    VersionList versions = client.fetchVersions(pkg);
+    versions.commit();
+    VersionList again = client.fetchVersions(pkg);
+
+    assertAll(
+        () -> assertEquals(List.of("1.2.0", "1.1.0", "1.0.0"), versions.getVersions()),
+        () -> assertFalse(versions.isNotModified()),
+        () -> assertTrue(again.isNotModified()),
+        () -> assertEquals("Basic dGVzdA==", authorization.get())
+    );
+  }
+
+  /**
+   * Validates the POM files are read from their standard path and missing ones are reported with their status.
+   * The latest version is looked up through the response cache, so the next request of the metadata file is
+   * answered as not modified.
+   */
+  @Test
+  @DisplayName("Should fetch the POM files and the latest version")
+  void testFetchPomAndLatestVersion() throws Exception {
+    PomFile pom = client.fetchPom("com.etendoerp", "copilot", "1.2.0");
+    PomFile missing = client.fetchPom("com.etendoerp", "copilot", "9.9.9");
+    String latest = client.fetchLatestVersion("com.etendoerp", "copilot");
+    RepositoryPackage pkg = new RepositoryPackage("com.etendoerp.copilot", "com.etendoerp", "copilot", null, null);
+
+    assertAll(
+        () -> assertEquals("<project/>", pom.getBody()),
+        () -> assertEquals(PomFile.STATUS_NOT_FOUND, missing.getStatusCode()),
+        () -> assertEquals("1.2.0", latest),
+        () -> assertTrue(client.fetchVersions(pkg).isNotModified()),
+        () -> assertEquals("1.2.0", client.fetchLatestVersion("com.etendoerp", "copilot")),
+        () -> assertNull(client.fetchLatestVersion("com.etendoerp", "unknown"))
+    );
+  }
+
+  /**
+   * Validates the repository URL is required.
+   */
+  @Test
+  @DisplayName("Should require the repository URL")
+  void testRequiresUrl() {
+    Properties properties = new Properties();
+    properties.setProperty(PackageRepositoryClient.TYPE_PROPERTY, PackageRepositoryClient.TYPE_MAVEN);
+
+    assertThrows(OBException.class, () -> PackageRepositoryClient.fromProperties(properties, null, null));
+  }
+
+  private String baseUrl() {
+    return "http://localhost:" + server.getAddress().getPort() + "/repo";
+  }
+
+  private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+}
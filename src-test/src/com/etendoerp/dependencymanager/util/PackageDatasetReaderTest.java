@@ -0,0 +1,263 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.dom4j.Document;
+import org.dom4j.Element;
+import org.dom4j.io.SAXReader;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.etendoerp.dependencymanager.util.PackageDatasetReader.DatasetRecord;
+
+/**
+ * Unit tests for the {@link PackageDatasetReader} class.
+ * <p>
+ * The datasets below follow the layout of {@code Packages_dataset.xml}. The streaming reader is compared with the
+ * dom4j tree previously used by {@link UpdateLocalPackagesUtil}, in results and, in the benchmark tagged
+ * {@value #BENCHMARK_TAG}, in memory.
+ * </p>
+ */
+@DisplayName("PackageDatasetReader Tests")
+class PackageDatasetReaderTest {
+
+  private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+      + "<ob:Openbravo xmlns:ob=\"http://www.openbravo.com\" "
+      + "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n";
+  private static final String FOOTER = "</ob:Openbravo>\n";
+  private static final String BENCHMARK_TAG = "benchmark";
+  private static final String BENCHMARK_DATASET_PROPERTY = "etdep.benchmark.dataset";
+  private static final int WARM_UP_ITERATIONS = 3;
+  private static final Logger log = LogManager.getLogger();
+
+  /**
+   * Validates values, references and empty references are read in document order.
+   */
+  @Test
+  @DisplayName("Should read the records in document order")
+  void testReadsRecords() throws XMLStreamException {
+    List<DatasetRecord> records = new ArrayList<>();
+    int count = PackageDatasetReader.read(stream(dataset(1, 1, 1)), records::add);
+
+    DatasetRecord pkg = records.get(0);
+    DatasetRecord version = records.get(1);
+    DatasetRecord dependency = records.get(2);
+    assertAll(
+        () -> assertEquals(3, count),
+        () -> assertEquals(UpdateLocalPackagesUtil.ETDEP_PACKAGE, pkg.getEntity()),
+        () -> assertEquals("P0", pkg.getId()),
+        () -> assertEquals("artifact0", pkg.getValue(UpdateLocalPackagesUtil.ARTIFACT)),
+        () -> assertEquals("true", pkg.getValue(UpdateLocalPackagesUtil.ACTIVE)),
+        () -> assertEquals(UpdateLocalPackagesUtil.ETDEP_PACKAGE_VERSION, version.getEntity()),
+        () -> assertEquals("P0", version.getReference(UpdateLocalPackagesUtil.ETDEP_PACKAGE_TAG)),
+        () -> assertNull(version.getValue(UpdateLocalPackagesUtil.ETDEP_PACKAGE_TAG)),
+        () -> assertEquals("V0.0", dependency.getReference(UpdateLocalPackagesUtil.ETDEP_PACKAGE_VERSION_TAG)),
+        () -> assertNull(dependency.getReference(UpdateLocalPackagesUtil.DEPENDENCY_VERSION)),
+        () -> assertEquals("", dependency.getValue(UpdateLocalPackagesUtil.DEPENDENCY_VERSION))
+    );
+  }
+
+  /**
+   * Malformed datasets are reported instead of being partially imported silently.
+   */
+  @Test
+  @DisplayName("Should fail on malformed datasets")
+  void testMalformedDataset() {
+    assertThrows(XMLStreamException.class,
+        () -> PackageDatasetReader.read(stream(HEADER + "<ETDEP_Package><id>P1</id>"), record -> {
+        }));
+  }
+
+  /**
+   * The streaming reader reads the same records as the dom4j tree on a dataset of 21.000 records, and hands the
+   * first record over after reading only the start of the stream, so the dataset is never held whole in memory.
+   */
+  @Test
+  @DisplayName("Should match the dom4j results reading the dataset as a stream")
+  void testStreamsLikeDom4j() throws Exception {
+    byte[] dataset = dataset(1000, 4, 4).getBytes(StandardCharsets.UTF_8);
+    long[] bytesRead = new long[1];
+    InputStream in = new FilterInputStream(new ByteArrayInputStream(dataset)) {
+      @Override
+      public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+        bytesRead[0] += Math.max(read, 0);
+        return read;
+      }
+    };
+    long[] bytesReadAtFirstRecord = { -1 };
+
+    int records = PackageDatasetReader.read(in, record -> {
+      if (bytesReadAtFirstRecord[0] < 0) {
+        bytesReadAtFirstRecord[0] = bytesRead[0];
+      }
+    });
+
+    assertAll(
+        () -> assertEquals(readWithDom4j(dataset), readWithStax(dataset)),
+        () -> assertEquals(21_000, records),
+        () -> assertTrue(bytesReadAtFirstRecord[0] < dataset.length / 10,
+            "Read " + bytesReadAtFirstRecord[0] + " of " + dataset.length + " bytes before the first record")
+    );
+  }
+
+  /**
+   * Benchmarks the memory used by the streaming reader and by the dom4j tree to read a dataset of 21.000 records, or
+   * the file given with the {@value #BENCHMARK_DATASET_PROPERTY} system property, such as the published
+   * {@code Packages_dataset.xml}. It reports the bytes allocated by each path and the heap held by the dom4j tree,
+   * which the streaming reader never builds. Both depend on the JVM and on its warm-up, so they are only logged and
+   * not asserted.
+   */
+  @Test
+  @Tag(BENCHMARK_TAG)
+  @DisplayName("Should report the memory used by the streaming reader and by dom4j")
+  void testBenchmarkMemoryAgainstDom4j() throws Exception {
+    String datasetFile = System.getProperty(BENCHMARK_DATASET_PROPERTY);
+    byte[] dataset = StringUtils.isNotBlank(datasetFile)
+        ? Files.readAllBytes(Path.of(datasetFile))
+        : dataset(1000, 4, 4).getBytes(StandardCharsets.UTF_8);
+    for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+      readWithDom4j(dataset);
+      readWithStax(dataset);
+    }
+
+    long before = allocatedBytes();
+    readWithDom4j(dataset);
+    long dom4jBytes = allocatedBytes() - before;
+    before = allocatedBytes();
+    readWithStax(dataset);
+    long staxBytes = allocatedBytes() - before;
+
+    long heapBefore = usedHeapAfterGc();
+    Document document = new SAXReader().read(new ByteArrayInputStream(dataset));
+    long treeBytes = usedHeapAfterGc() - heapBefore;
+
+    log.info("Read a dataset of {} bytes with {} records: StAX allocated {} bytes, dom4j {}, "
+        + "and the dom4j tree held {} bytes of heap", dataset.length, document.getRootElement().elements().size(),
+        staxBytes, dom4jBytes, treeBytes);
+  }
+
+  /**
+   * @return the bytes allocated by the current thread so far
+   */
+  private static long allocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * @return the heap in use once the unreachable objects have been collected, as far as the JVM honors the request
+   */
+  private static long usedHeapAfterGc() {
+    System.gc();
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  /**
+   * The dom4j path used by the import before the streaming reader: the whole tree is built and walked once per
+   * entity.
+   */
+  private static List<String> readWithDom4j(byte[] dataset) throws Exception {
+    Element root = new SAXReader().read(new ByteArrayInputStream(dataset)).getRootElement();
+    List<String> result = new ArrayList<>();
+    for (Element element : root.elements(UpdateLocalPackagesUtil.ETDEP_PACKAGE)) {
+      result.add(element.elementText(UpdateLocalPackagesUtil.ID) + ":"
+          + element.elementText(UpdateLocalPackagesUtil.ARTIFACT));
+    }
+    for (Element element : root.elements(UpdateLocalPackagesUtil.ETDEP_PACKAGE_VERSION)) {
+      result.add(element.elementText(UpdateLocalPackagesUtil.ID) + ":"
+          + element.element(UpdateLocalPackagesUtil.ETDEP_PACKAGE_TAG).attributeValue(UpdateLocalPackagesUtil.ID));
+    }
+    for (Element element : root.elements(UpdateLocalPackagesUtil.ETDEP_PACKAGE_DEPENDENCY)) {
+      result.add(element.elementText(UpdateLocalPackagesUtil.ID) + ":"
+          + element.element(UpdateLocalPackagesUtil.ETDEP_PACKAGE_VERSION_TAG)
+          .attributeValue(UpdateLocalPackagesUtil.ID));
+    }
+    return result;
+  }
+
+  /**
+   * The streaming reader, collecting the same summary per entity as {@link #readWithDom4j}.
+   */
+  private static List<String> readWithStax(byte[] dataset) throws XMLStreamException {
+    List<String> packages = new ArrayList<>();
+    List<String> versions = new ArrayList<>();
+    List<String> dependencies = new ArrayList<>();
+    PackageDatasetReader.read(new ByteArrayInputStream(dataset), record -> {
+      switch (record.getEntity()) {
+        case UpdateLocalPackagesUtil.ETDEP_PACKAGE:
+          packages.add(record.getId() + ":" + record.getValue(UpdateLocalPackagesUtil.ARTIFACT));
+          break;
+        case UpdateLocalPackagesUtil.ETDEP_PACKAGE_VERSION:
+          versions.add(record.getId() + ":" + record.getReference(UpdateLocalPackagesUtil.ETDEP_PACKAGE_TAG));
+          break;
+        default:
+          dependencies.add(record.getId() + ":"
+              + record.getReference(UpdateLocalPackagesUtil.ETDEP_PACKAGE_VERSION_TAG));
+      }
+    });
+    List<String> result = new ArrayList<>(packages);
+    result.addAll(versions);
+    result.addAll(dependencies);
+    return result;
+  }
+
+  private static String dataset(int packages, int versionsPerPackage, int dependenciesPerVersion) {
+    StringBuilder xml = new StringBuilder(HEADER);
+    for (int p = 0; p < packages; p++) {
+      xml.append("  <ETDEP_Package id=\"P").append(p).append("\" identifier=\"com.etendoerp.artifact").append(p)
+          .append("\">\n    <id>P").append(p).append("</id>\n    <active>true</active>\n")
+          .append("    <group>com.etendoerp</group>\n    <artifact>artifact").append(p).append("</artifact>\n")
+          .append("    <isBundle>false</isBundle>\n  </ETDEP_Package>\n");
+    }
+    for (int p = 0; p < packages; p++) {
+      for (int v = 0; v < versionsPerPackage; v++) {
+        xml.append("  <ETDEP_Package_Version id=\"V").append(p).append('.').append(v)
+            .append("\" identifier=\"1.").append(v).append(".0\">\n    <id>V").append(p).append('.').append(v)
+            .append("</id>\n    <active>true</active>\n    <package id=\"P").append(p)
+            .append("\" entity-name=\"ETDEP_Package\" identifier=\"artifact").append(p).append("\"/>\n")
+            .append("    <version>1.").append(v).append(".0</version>\n    <fromCore>24.1.0</fromCore>\n")
+            .append("    <latestCore>25.1.0</latestCore>\n  </ETDEP_Package_Version>\n");
+      }
+    }
+    for (int p = 0; p < packages; p++) {
+      for (int v = 0; v < versionsPerPackage; v++) {
+        for (int d = 0; d < dependenciesPerVersion; d++) {
+          xml.append("  <ETDEP_Package_Dependency id=\"D").append(p).append('.').append(v).append('.').append(d)
+              .append("\" identifier=\"dependency\">\n    <id>D").append(p).append('.').append(v).append('.')
+              .append(d).append("</id>\n    <active>true</active>\n    <packageVersion id=\"V").append(p)
+              .append('.').append(v).append("\" entity-name=\"ETDEP_Package_Version\" identifier=\"1.").append(v)
+              .append(".0\"/>\n    <group>com.etendoerp</group>\n    <artifact>dependency").append(d)
+              .append("</artifact>\n    <version>1.0.0</version>\n    <dependencyVersion xsi:nil=\"true\"/>\n")
+              .append("    <externalDependency>true</externalDependency>\n  </ETDEP_Package_Dependency>\n");
+        }
+      }
+    }
+    return xml.append(FOOTER).toString();
+  }
+
+  private static ByteArrayInputStream stream(String xml) {
+    return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,142 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.MockedStatic;
+import org.openbravo.base.structure.BaseOBObject;
+
+/**
+ * Unit tests for the {@link PackageDatasetShards} class.
+ */
+@DisplayName("PackageDatasetShards Tests")
+class PackageDatasetShardsTest {
+
+  private static final String CHECKSUM = "a".repeat(64);
+
+  @TempDir
+  Path directory;
+
+  /**
+   * Every package is exported to the shard of its id together with its versions and dependencies, and exporting
+   * the same catalog again does not rewrite any shard, while a changed package only rewrites its own.
+   */
+  @Test
+  @DisplayName("Should export every package to its shard and rewrite only the changed shards")
+  void testExport() throws Exception {
+    Path datasetFile = directory.resolve("standard").resolve("Packages_dataset.xml");
+    Path shardDirectory = directory.resolve("packages");
+    BaseOBObject pkg = object(UpdateLocalPackagesUtil.ETDEP_PACKAGE, "P1");
+    BaseOBObject version = object(UpdateLocalPackagesUtil.ETDEP_PACKAGE_VERSION, "V1");
+    BaseOBObject dependency = object(UpdateLocalPackagesUtil.ETDEP_PACKAGE_DEPENDENCY, "D1");
+    BaseOBObject otherPkg = object(UpdateLocalPackagesUtil.ETDEP_PACKAGE, "P2");
+    when(version.get(UpdateLocalPackagesUtil.ETDEP_PACKAGE_TAG)).thenReturn(pkg);
+    when(dependency.get(UpdateLocalPackagesUtil.ETDEP_PACKAGE_VERSION_TAG)).thenReturn(version);
+    List<BaseOBObject> catalog = new ArrayList<>(List.of(pkg, otherPkg, version, dependency));
+
+    int first;
+    int unchanged;
+    int changed;
+    try (MockedStatic<PackageDatasetWriter> writer = mockStatic(PackageDatasetWriter.class, CALLS_REAL_METHODS)) {
+      writer.when(() -> PackageDatasetWriter.exportRecords(any())).thenAnswer(invocation -> {
+        PackageDatasetWriter.RecordHandler handler = invocation.getArgument(0);
+        for (BaseOBObject object : catalog) {
+          handler.handle(object, List.of());
+        }
+        return null;
+      });
+      first = PackageDatasetShards.export(datasetFile, shardDirectory);
+      unchanged = PackageDatasetShards.export(datasetFile, shardDirectory);
+      catalog.remove(otherPkg);
+      changed = PackageDatasetShards.export(datasetFile, shardDirectory);
+    }
+
+    String shard = PackageDatasetShards.shardFile(PackageDatasetShards.shardOf("P1"));
+    List<String> entities = new ArrayList<>();
+    try (InputStream in = Files.newInputStream(shardDirectory.resolve(shard))) {
+      PackageDatasetReader.read(in, datasetRecord -> entities.add(datasetRecord.getEntity()));
+    }
+    Map<String, String> manifest = PackageDatasetShards.readManifest(
+        shardDirectory.resolve(PackageDatasetShards.MANIFEST_FILE));
+    try (var files = Files.list(shardDirectory)) {
+      assertEquals(PackageDatasetShards.SHARD_COUNT + 1, files.count());
+    }
+    assertAll(
+        () -> assertEquals(PackageDatasetShards.SHARD_COUNT, first),
+        () -> assertEquals(0, unchanged),
+        () -> assertEquals(1, changed),
+        () -> assertEquals(List.of(UpdateLocalPackagesUtil.ETDEP_PACKAGE, UpdateLocalPackagesUtil.ETDEP_PACKAGE_VERSION,
+            UpdateLocalPackagesUtil.ETDEP_PACKAGE_DEPENDENCY), entities),
+        () -> assertEquals(PackageDatasetShards.SHARD_COUNT, manifest.size()),
+        () -> assertEquals(DatasetImportHashes.hashFile(shardDirectory.resolve(shard)), manifest.get(shard)),
+        () -> assertTrue(Files.readString(datasetFile).contains("<ETDEP_Package_Dependency id=\"D1\""))
+    );
+  }
+
+  /**
+   * The shard of a package only depends on its id, and is always one of the shards.
+   */
+  @Test
+  @DisplayName("Should assign every package to a stable shard")
+  void testShardOf() {
+    for (String id : List.of("", "P1", "7F6A1B2C3D4E5F60718293A4B5C6D7E8", "com.etendoerp.copilot")) {
+      int shard = PackageDatasetShards.shardOf(id);
+      assertTrue(shard >= 0 && shard < PackageDatasetShards.SHARD_COUNT);
+      assertEquals(shard, PackageDatasetShards.shardOf(new String(id.toCharArray())));
+    }
+    assertEquals("Packages_03.xml", PackageDatasetShards.shardFile(3));
+  }
+
+  /**
+   * The manifest is written sorted by file in the format of sha256sum and read back, and lines that do not hold a
+   * checksum and a plain file name are rejected.
+   */
+  @Test
+  @DisplayName("Should write and read the manifest")
+  void testManifest() throws Exception {
+    Map<String, String> manifest = new TreeMap<>(Map.of("Packages_01.xml", CHECKSUM, "Packages_00.xml", CHECKSUM));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    PackageDatasetShards.writeManifest(manifest, out);
+    String content = out.toString(StandardCharsets.UTF_8);
+
+    assertAll(
+        () -> assertEquals(CHECKSUM + "  Packages_00.xml\n" + CHECKSUM + "  Packages_01.xml\n", content),
+        () -> assertEquals(manifest, PackageDatasetShards.readManifest(
+            new ByteArrayInputStream(out.toByteArray()))),
+        () -> assertThrows(IOException.class, () -> PackageDatasetShards.readManifest(
+            new ByteArrayInputStream((CHECKSUM + "  ../Packages_00.xml\n").getBytes(StandardCharsets.UTF_8)))),
+        () -> assertThrows(IOException.class, () -> PackageDatasetShards.readManifest(
+            new ByteArrayInputStream("abc  Packages_00.xml\n".getBytes(StandardCharsets.UTF_8))))
+    );
+  }
+
+  private static BaseOBObject object(String entity, String id) {
+    BaseOBObject object = mock(BaseOBObject.class);
+    when(object.getEntityName()).thenReturn(entity);
+    when(object.getId()).thenReturn(id);
+    return object;
+  }
+}
@@ -0,0 +1,109 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.etendoerp.dependencymanager.util.PackageDatasetReader.DatasetRecord;
+
+/**
+ * Unit tests for the {@link PackageDatasetWriter} class.
+ */
+@DisplayName("PackageDatasetWriter Tests")
+class PackageDatasetWriterTest {
+
+  @TempDir
+  Path directory;
+
+  /**
+   * The written records are read back by the {@link PackageDatasetReader}, with their values, empty values and
+   * references.
+   */
+  @Test
+  @DisplayName("Should write records readable by the dataset reader")
+  void testRoundTrip() throws Exception {
+    Path file = directory.resolve("Packages_dataset.xml");
+    PackageDatasetWriter.writeAtomically(file, out -> {
+      try (PackageDatasetWriter writer = new PackageDatasetWriter(out)) {
+        writer.startRecord(UpdateLocalPackagesUtil.ETDEP_PACKAGE, "P1", "com.etendoerp.copilot");
+        writer.writeValue(UpdateLocalPackagesUtil.GROUP, "com.etendoerp");
+        writer.writeValue(UpdateLocalPackagesUtil.ARTIFACT, "copilot & <tools>");
+        writer.endRecord();
+        writer.startRecord(UpdateLocalPackagesUtil.ETDEP_PACKAGE_VERSION, "V1", null);
+        writer.writeReference(UpdateLocalPackagesUtil.ETDEP_PACKAGE_TAG, UpdateLocalPackagesUtil.ETDEP_PACKAGE, "P1",
+            "com.etendoerp.copilot");
+        writer.writeValue(UpdateLocalPackagesUtil.FROM_CORE, null);
+        writer.endRecord();
+      } catch (XMLStreamException e) {
+        throw new IOException(e);
+      }
+    });
+
+    List<DatasetRecord> records = new ArrayList<>();
+    try (InputStream in = Files.newInputStream(file)) {
+      PackageDatasetReader.read(in, records::add);
+    }
+    String content = Files.readString(file, StandardCharsets.UTF_8);
+
+    assertAll(
+        () -> assertEquals(2, records.size()),
+        () -> assertEquals("copilot & <tools>", records.get(0).getValue(UpdateLocalPackagesUtil.ARTIFACT)),
+        () -> assertEquals("P1", records.get(1).getReference(UpdateLocalPackagesUtil.ETDEP_PACKAGE_TAG)),
+        () -> assertEquals("", records.get(1).getValue(UpdateLocalPackagesUtil.FROM_CORE)),
+        () -> assertNull(records.get(1).getReference(UpdateLocalPackagesUtil.FROM_CORE)),
+        () -> assertTrue(content.contains("<fromCore xsi:nil=\"true\"/>")),
+        () -> assertTrue(content.contains("<ob:Openbravo xmlns:ob=\"http://www.openbravo.com\""))
+    );
+  }
+
+  /**
+   * The target is replaced once the new content is completely written, and no temporary file is left behind.
+   */
+  @Test
+  @DisplayName("Should replace the target file")
+  void testWriteAtomically() throws Exception {
+    Path file = Files.writeString(directory.resolve("Packages_dataset.xml"), "old");
+
+    PackageDatasetWriter.writeAtomically(file, out -> out.write("new".getBytes(StandardCharsets.UTF_8)));
+
+    try (var files = Files.list(directory)) {
+      assertEquals(List.of(file), files.toList());
+    }
+    assertEquals("new", Files.readString(file));
+  }
+
+  /**
+   * A failure while writing leaves the previous file untouched and removes the temporary file.
+   */
+  @Test
+  @DisplayName("Should keep the previous file when the write fails")
+  void testFailedWriteKeepsTarget() throws Exception {
+    Path file = Files.writeString(directory.resolve("Packages_dataset.xml"), "old");
+
+    assertThrows(IOException.class, () -> PackageDatasetWriter.writeAtomically(file, out -> {
+      out.write("partial".getBytes(StandardCharsets.UTF_8));
+      throw new IOException("Disk full");
+    }));
+
+    try (var files = Files.list(directory)) {
+      assertEquals(List.of(file), files.toList());
+    }
+    assertEquals("old", Files.readString(file));
+  }
+}
@@ -0,0 +1,110 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the {@link PackageSyncWatermarks} class.
+ */
+@DisplayName("PackageSyncWatermarks Tests")
+class PackageSyncWatermarksTest {
+
+  private static final String PACKAGE = "com.etendoerp.copilot";
+  private static final String UPDATED_AT = "2024-05-10T08:00:00Z";
+
+  /**
+   * A package is only skipped when the stored timestamp is exactly the one reported now.
+   */
+  @Test
+  @DisplayName("Should detect unchanged packages by their updated_at timestamp")
+  void testIsUnchanged() {
+    Map<String, String> stored = new HashMap<>();
+    stored.put(PACKAGE, UPDATED_AT);
+    PackageSyncWatermarks watermarks = new PackageSyncWatermarks(stored);
+
+    assertAll(
+        () -> assertTrue(watermarks.isUnchanged(PACKAGE, UPDATED_AT)),
+        () -> assertFalse(watermarks.isUnchanged(PACKAGE, "2024-06-01T08:00:00Z")),
+        () -> assertFalse(watermarks.isUnchanged("com.etendoerp.other", UPDATED_AT)),
+        () -> assertFalse(watermarks.isUnchanged(PACKAGE, null))
+    );
+  }
+
+  /**
+   * Validates the stored watermarks are read with a single query.
+   */
+  @Test
+  @DisplayName("Should load the stored watermarks")
+  void testLoad() throws Exception {
+    Connection connection = mock(Connection.class);
+    PreparedStatement statement = mock(PreparedStatement.class);
+    ResultSet resultSet = mock(ResultSet.class);
+    when(connection.prepareStatement(anyString())).thenReturn(statement);
+    when(statement.executeQuery()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(true, false);
+    when(resultSet.getString(1)).thenReturn(PACKAGE);
+    when(resultSet.getString(2)).thenReturn(UPDATED_AT);
+
+    PackageSyncWatermarks watermarks = PackageSyncWatermarks.load(connection, false);
+
+    assertTrue(watermarks.isUnchanged(PACKAGE, UPDATED_AT));
+  }
+
+  /**
+   * A full rebuild ignores the stored watermarks without querying them.
+   */
+  @Test
+  @DisplayName("Should ignore the stored watermarks on a full rebuild")
+  void testLoadFullRebuild() {
+    Connection connection = mock(Connection.class);
+
+    PackageSyncWatermarks watermarks = PackageSyncWatermarks.load(connection, true);
+
+    assertFalse(watermarks.isUnchanged(PACKAGE, UPDATED_AT));
+    verifyNoInteractions(connection);
+  }
+
+  /**
+   * Only new or moved timestamps are written, in one batch per statement.
+   */
+  @Test
+  @DisplayName("Should save only the changed watermarks in batches")
+  void testSave() throws Exception {
+    Map<String, String> stored = new HashMap<>();
+    stored.put(PACKAGE, UPDATED_AT);
+    PackageSyncWatermarks watermarks = new PackageSyncWatermarks(stored);
+    watermarks.record(PACKAGE, UPDATED_AT);
+    watermarks.record("com.etendoerp.other", UPDATED_AT);
+    watermarks.record("com.etendoerp.third", UPDATED_AT);
+    assertEquals(2, watermarks.getPendingCount());
+
+    Connection connection = mock(Connection.class);
+    PreparedStatement statement = mock(PreparedStatement.class);
+    when(connection.prepareStatement(anyString())).thenReturn(statement);
+    watermarks.save(connection);
+
+    verify(statement, times(4)).addBatch();
+    verify(statement, times(2)).executeBatch();
+    verify(statement, never()).executeUpdate();
+    assertEquals(0, watermarks.getPendingCount());
+    assertTrue(watermarks.isUnchanged("com.etendoerp.other", UPDATED_AT));
+  }
+}
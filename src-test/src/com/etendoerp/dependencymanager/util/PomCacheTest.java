@@ -0,0 +1,133 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for the {@link PomCache} class.
+ */
+@DisplayName("PomCache Tests")
+class PomCacheTest {
+
+  private static final String GAV = PomCache.gav("com.etendoerp", "copilot", "1.0.0");
+  private static final String POM = "<project><artifactId>copilot</artifactId></project>";
+
+  @TempDir
+  Path cacheDir;
+
+  /**
+   * Validates a saved index survives a new cache instance.
+   */
+  @Test
+  @DisplayName("Should keep cached POM files across instances")
+  void testPersistsAcrossInstances() {
+    PomCache cache = new PomCache(cacheDir, 1024 * 1024);
+    cache.put(GAV, POM);
+    cache.save();
+
+    PomCache reopened = new PomCache(cacheDir, 1024 * 1024);
+
+    assertAll(
+        () -> assertTrue(reopened.contains(GAV)),
+        () -> assertEquals(POM, reopened.get(GAV)),
+        () -> assertNull(reopened.get(PomCache.gav("com.etendoerp", "copilot", "2.0.0")))
+    );
+  }
+
+  /**
+   * Identical POM files of different versions are stored once.
+   */
+  @Test
+  @DisplayName("Should store identical POM files once")
+  void testDeduplicatesContent() throws IOException {
+    PomCache cache = new PomCache(cacheDir, 1024 * 1024);
+    cache.put(GAV, POM);
+    cache.put(PomCache.gav("com.etendoerp", "copilot", "1.0.1"), POM);
+
+    assertAll(
+        () -> assertEquals(2, cache.size()),
+        () -> assertEquals(POM.getBytes(StandardCharsets.UTF_8).length, cache.getSizeBytes()),
+        () -> assertEquals(1, countObjects())
+    );
+  }
+
+  /**
+   * Once the limit is exceeded, the least recently used versions are evicted along with their files.
+   */
+  @Test
+  @DisplayName("Should evict the least recently used POM files beyond the size limit")
+  void testEvictsLeastRecentlyUsed() throws IOException {
+    String pom = StringUtils.repeat('x', 400);
+    PomCache cache = new PomCache(cacheDir, 1000);
+    cache.put("g:a:1", pom + "1");
+    cache.put("g:a:2", pom + "2");
+    cache.get("g:a:1");
+    cache.put("g:a:3", pom + "3");
+
+    assertAll(
+        () -> assertTrue(cache.contains("g:a:1")),
+        () -> assertFalse(cache.contains("g:a:2")),
+        () -> assertTrue(cache.contains("g:a:3")),
+        () -> assertTrue(cache.getSizeBytes() <= 1000),
+        () -> assertEquals(2, countObjects())
+    );
+  }
+
+  /**
+   * A POM whose file was removed is reported as missing and dropped from the index.
+   */
+  @Test
+  @DisplayName("Should drop entries whose file is missing")
+  void testDropsMissingFiles() throws IOException {
+    PomCache cache = new PomCache(cacheDir, 1024 * 1024);
+    cache.put(GAV, POM);
+    try (Stream<Path> files = Files.walk(cacheDir.resolve("objects"))) {
+      for (Path file : files.filter(Files::isRegularFile).toArray(Path[]::new)) {
+        Files.delete(file);
+      }
+    }
+
+    assertNull(cache.get(GAV));
+    assertFalse(cache.contains(GAV));
+    assertEquals(0, cache.getSizeBytes());
+  }
+
+  /**
+   * The POM of a SNAPSHOT version can be republished, so it is never cached.
+   */
+  @Test
+  @DisplayName("Should not cache SNAPSHOT POM files")
+  void testSkipsSnapshots() throws IOException {
+    PomCache cache = new PomCache(cacheDir, 1024 * 1024);
+    String snapshot = PomCache.gav("com.etendoerp", "copilot", "1.1.0-SNAPSHOT");
+
+    cache.put(snapshot, POM);
+
+    assertAll(
+        () -> assertFalse(cache.contains(snapshot)),
+        () -> assertNull(cache.get(snapshot)),
+        () -> assertEquals(0, cache.size()),
+        () -> assertEquals(0, countObjects())
+    );
+  }
+
+  private long countObjects() throws IOException {
+    try (Stream<Path> files = Files.walk(cacheDir.resolve("objects"))) {
+      return files.filter(Files::isRegularFile).count();
+    }
+  }
+}
@@ -0,0 +1,206 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.dom4j.Document;
+import org.dom4j.Element;
+import org.dom4j.io.SAXReader;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.etendoerp.dependencymanager.util.PomDependencyParser.PomDependency;
+
+/**
+ * Unit tests for the {@link PomDependencyParser} class.
+ * <p>
+ * The POM files below follow the layout of the modules published to the Etendo repositories. The streaming
+ * parser is compared with the dom4j tree previously used by the sync, in results and, in the benchmark tagged
+ * {@value #BENCHMARK_TAG}, in allocated memory.
+ * </p>
+ */
+@DisplayName("PomDependencyParser Tests")
+class PomDependencyParserTest {
+
+  private static final String BENCHMARK_TAG = "benchmark";
+  private static final String BENCHMARK_POM_PROPERTY = "etdep.benchmark.pom";
+  private static final int WARM_UP_ITERATIONS = 50;
+  private static final int BENCHMARK_ITERATIONS = 500;
+  private static final Logger log = LogManager.getLogger();
+
+  private static final String MODULE_POM = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+      + "<project xmlns=\"http://maven.apache.org/POM/4.0.0\" "
+      + "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" "
+      + "xsi:schemaLocation=\"http://maven.apache.org/POM/4.0.0 https://maven.apache.org/xsd/maven-4.0.0.xsd\">\n"
+      + "  <modelVersion>4.0.0</modelVersion>\n"
+      + "  <groupId>com.etendoerp</groupId>\n"
+      + "  <artifactId>copilot</artifactId>\n"
+      + "  <version>1.4.0</version>\n"
+      + "  <name>com.etendoerp.copilot</name>\n"
+      + "  <dependencyManagement>\n"
+      + "    <dependencies>\n"
+      + "      <dependency><groupId>com.managed</groupId><artifactId>bom</artifactId>"
+      + "<version>1.0</version></dependency>\n"
+      + "    </dependencies>\n"
+      + "  </dependencyManagement>\n"
+      + "  <dependencies>\n"
+      + "    <dependency>\n"
+      + "      <groupId>com.etendoerp.platform</groupId>\n"
+      + "      <artifactId>etendo-core</artifactId>\n"
+      + "      <version>[24.1.0,25.1.0)</version>\n"
+      + "      <scope>runtime</scope>\n"
+      + "    </dependency>\n"
+      + "    <dependency>\n"
+      + "      <groupId>com.etendoerp</groupId>\n"
+      + "      <artifactId>webhookevents</artifactId>\n"
+      + "      <version>1.7.0</version>\n"
+      + "      <exclusions><exclusion><groupId>x</groupId><artifactId>y</artifactId></exclusion></exclusions>\n"
+      + "    </dependency>\n"
+      + "    <dependency>\n"
+      + "      <groupId>com.etendoerp</groupId>\n"
+      + "      <artifactId>task</artifactId>\n"
+      + "    </dependency>\n"
+      + "  </dependencies>\n"
+      + "  <build><plugins><plugin><dependencies><dependency><groupId>com.plugin</groupId>"
+      + "<artifactId>dep</artifactId></dependency></dependencies></plugin></plugins></build>\n"
+      + "</project>\n";
+
+  private static final String BUNDLE_POM = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+      + "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n"
+      + "  <modelVersion>4.0.0</modelVersion>\n"
+      + "  <groupId>com.etendoerp</groupId>\n"
+      + "  <artifactId>financial.extensions</artifactId>\n"
+      + "  <version>2.3.1</version>\n"
+      + "  <packaging>pom</packaging>\n"
+      + "</project>\n";
+
+  /**
+   * Only the dependencies directly under the project are read, skipping managed and plugin dependencies.
+   */
+  @Test
+  @DisplayName("Should read only the project dependencies")
+  void testReadsProjectDependencies() throws XMLStreamException {
+    List<PomDependency> dependencies = PomDependencyParser.parse(MODULE_POM);
+
+    assertAll(
+        () -> assertEquals(3, dependencies.size()),
+        () -> assertEquals("com.etendoerp.platform", dependencies.get(0).getGroupId()),
+        () -> assertEquals("etendo-core", dependencies.get(0).getArtifactId()),
+        () -> assertEquals("[24.1.0,25.1.0)", dependencies.get(0).getVersion()),
+        () -> assertEquals("webhookevents", dependencies.get(1).getArtifactId()),
+        () -> assertEquals("1.7.0", dependencies.get(1).getVersion()),
+        () -> assertNull(dependencies.get(2).getVersion())
+    );
+  }
+
+  /**
+   * Validates POM files without dependencies and streamed POM files.
+   */
+  @Test
+  @DisplayName("Should read POM files without dependencies and from streams")
+  void testEmptyAndStreamedPoms() throws XMLStreamException {
+    assertTrue(PomDependencyParser.parse(BUNDLE_POM).isEmpty());
+    assertEquals(3, PomDependencyParser.parse(new ByteArrayInputStream(MODULE_POM.getBytes())).size());
+  }
+
+  /**
+   * Malformed POM files are reported instead of silently yielding no dependencies.
+   */
+  @Test
+  @DisplayName("Should fail on malformed POM files")
+  void testMalformedPom() {
+    assertThrows(XMLStreamException.class, () -> PomDependencyParser.parse("<project><dependencies>"));
+  }
+
+  /**
+   * Compares the streaming parser with the dom4j tree on the same POM file: both must yield the same dependencies.
+   */
+  @Test
+  @DisplayName("Should match the dom4j results")
+  void testComparisonWithDom4j() throws Exception {
+    assertEquals(describe(parseWithDom4j(MODULE_POM)), describe(PomDependencyParser.parse(MODULE_POM)));
+  }
+
+  /**
+   * Benchmarks the memory allocated by the streaming parser and by the dom4j tree to read the dependencies of a POM
+   * file, {@link #MODULE_POM} or the file given with the {@value #BENCHMARK_POM_PROPERTY} system property, such as
+   * a POM downloaded from the Etendo repositories. The allocated bytes depend on the JVM and on its warm-up, so they
+   * are only logged and not asserted.
+   */
+  @Test
+  @Tag(BENCHMARK_TAG)
+  @DisplayName("Should report the memory allocated by the streaming parser and by dom4j")
+  void testBenchmarkAllocationAgainstDom4j() throws Exception {
+    String pomFile = System.getProperty(BENCHMARK_POM_PROPERTY);
+    String pom = StringUtils.isNotBlank(pomFile)
+        ? Files.readString(Path.of(pomFile), StandardCharsets.UTF_8)
+        : MODULE_POM;
+    for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+      parseWithDom4j(pom);
+      PomDependencyParser.parse(pom);
+    }
+
+    long before = allocatedBytes();
+    for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+      parseWithDom4j(pom);
+    }
+    long dom4jBytes = allocatedBytes() - before;
+    before = allocatedBytes();
+    for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+      PomDependencyParser.parse(pom);
+    }
+    long staxBytes = allocatedBytes() - before;
+
+    log.info("Read the dependencies of a POM file of {} characters: StAX allocated {} bytes per POM, dom4j {}",
+        pom.length(), staxBytes / BENCHMARK_ITERATIONS, dom4jBytes / BENCHMARK_ITERATIONS);
+  }
+
+  /**
+   * @return the bytes allocated by the current thread so far
+   */
+  private static long allocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * The dom4j path used by the sync before the streaming parser.
+   */
+  private static List<PomDependency> parseWithDom4j(String pom) throws Exception {
+    Document document = new SAXReader().read(new ByteArrayInputStream(pom.getBytes()));
+    List<PomDependency> result = new ArrayList<>();
+    Element dependencies = document.getRootElement().element("dependencies");
+    if (dependencies != null) {
+      for (Element dependency : dependencies.elements("dependency")) {
+        result.add(new PomDependency(dependency.elementText("groupId"), dependency.elementText("artifactId"),
+            dependency.elementText("version")));
+      }
+    }
+    return result;
+  }
+
+  private static List<String> describe(List<PomDependency> dependencies) {
+    List<String> result = new ArrayList<>();
+    for (PomDependency dependency : dependencies) {
+      result.add(dependency.getGroupId() + ":" + dependency.getArtifactId() + ":" + dependency.getVersion());
+    }
+    return result;
+  }
+}
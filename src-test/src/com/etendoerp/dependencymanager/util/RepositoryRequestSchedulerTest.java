@@ -0,0 +1,201 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.openbravo.base.exception.OBException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for the {@link RepositoryRequestScheduler} class.
+ * <p>
+ * A local HTTP server replays a queue of scripted answers, and the waits are recorded instead of slept.
+ * </p>
+ */
+@DisplayName("RepositoryRequestScheduler Tests")
+class RepositoryRequestSchedulerTest {
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(10);
+  private static final long NOW = 1_700_000_000_000L;
+
+  private HttpServer server;
+  private final HttpTransport transport = new HttpTransport(HttpClient.newHttpClient(), TIMEOUT, 6);
+  private final Deque<ScriptedAnswer> answers = new ArrayDeque<>();
+  private final AtomicInteger requests = new AtomicInteger();
+  private final List<Long> waits = new ArrayList<>();
+
+  /**
+   * Starts the local HTTP stand-in, answering 200 once the scripted answers are consumed.
+   */
+  @BeforeEach
+  void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", exchange -> {
+      requests.incrementAndGet();
+      ScriptedAnswer answer;
+      synchronized (answers) {
+        answer = answers.isEmpty() ? new ScriptedAnswer(200) : answers.removeFirst();
+      }
+      answer.write(exchange);
+    });
+    server.start();
+  }
+
+  /**
+   * Stops the local HTTP stand-in.
+   */
+  @AfterEach
+  void tearDown() {
+    server.stop(0);
+  }
+
+  /**
+   * A secondary rate limit answer is retried after the time given in Retry-After.
+   */
+  @Test
+  @DisplayName("Should retry throttled requests honouring Retry-After")
+  void testRetriesAfterRetryAfter() throws Exception {
+    answers.add(new ScriptedAnswer(429).header(RepositoryRequestScheduler.RETRY_AFTER_HEADER, "3"));
+    answers.add(new ScriptedAnswer(403).header(RepositoryRequestScheduler.RETRY_AFTER_HEADER, "1"));
+    RepositoryRequestScheduler scheduler = newScheduler(8, 5);
+
+    HttpResponse<String> response = scheduler.send(transport::send, request());
+
+    assertAll(
+        () -> assertEquals(200, response.statusCode()),
+        () -> assertEquals(3, requests.get()),
+        () -> assertEquals(List.of(3000L, 1000L), waits)
+    );
+  }
+
+  /**
+   * Server errors are retried with a jittered exponential backoff, and the last answer is returned once
+   * the retries are exhausted.
+   */
+  @Test
+  @DisplayName("Should back off on server errors until the retries are exhausted")
+  void testBacksOffOnServerErrors() throws Exception {
+    for (int i = 0; i < 4; i++) {
+      answers.add(new ScriptedAnswer(502));
+    }
+    RepositoryRequestScheduler scheduler = newScheduler(8, 2);
+
+    HttpResponse<String> response = scheduler.send(transport::send, request());
+
+    assertAll(
+        () -> assertEquals(502, response.statusCode()),
+        () -> assertEquals(3, requests.get()),
+        () -> assertEquals(2, waits.size()),
+        () -> assertTrue(waits.get(0) >= 250 && waits.get(0) <= 500, "First backoff was " + waits.get(0)),
+        () -> assertTrue(waits.get(1) >= 500 && waits.get(1) <= 1000, "Second backoff was " + waits.get(1))
+    );
+  }
+
+  /**
+   * Once a host reports no remaining budget, the next request waits until the reported reset.
+   */
+  @Test
+  @DisplayName("Should wait for the rate limit reset when the budget is spent")
+  void testWaitsForResetWhenBudgetIsSpent() throws Exception {
+    long resetSeconds = NOW / 1000 + 42;
+    answers.add(new ScriptedAnswer(200)
+        .header(RepositoryRequestScheduler.RATE_LIMIT_REMAINING_HEADER, "0")
+        .header(RepositoryRequestScheduler.RATE_LIMIT_RESET_HEADER, String.valueOf(resetSeconds)));
+    RepositoryRequestScheduler scheduler = newScheduler(8, 5);
+
+    scheduler.send(transport::send, request());
+    scheduler.send(transport::send, request());
+
+    assertEquals(List.of(42_000L), waits);
+  }
+
+  /**
+   * Validates the concurrency limit is halved on throttled answers and grows back on successful ones.
+   */
+  @Test
+  @DisplayName("Should adapt the concurrency limit to the answers")
+  void testAdaptsConcurrencyLimit() throws Exception {
+    answers.add(new ScriptedAnswer(429).header(RepositoryRequestScheduler.RETRY_AFTER_HEADER, "0"));
+    answers.add(new ScriptedAnswer(429).header(RepositoryRequestScheduler.RETRY_AFTER_HEADER, "0"));
+    answers.add(new ScriptedAnswer(200));
+    RepositoryRequestScheduler scheduler = newScheduler(8, 5);
+
+    scheduler.send(transport::send, request());
+    assertEquals(3, scheduler.getConcurrencyLimit());
+    scheduler.send(transport::send, request());
+    assertEquals(4, scheduler.getConcurrencyLimit());
+  }
+
+  /**
+   * A wait longer than the configured maximum fails the request instead of blocking the caller.
+   */
+  @Test
+  @DisplayName("Should fail when the wait exceeds the maximum")
+  void testFailsWhenWaitIsTooLong() {
+    answers.add(new ScriptedAnswer(429).header(RepositoryRequestScheduler.RETRY_AFTER_HEADER, "3600"));
+    RepositoryRequestScheduler scheduler = newScheduler(8, 5);
+
+    assertThrows(OBException.class, () -> scheduler.send(transport::send, request()));
+    assertEquals(1, requests.get());
+  }
+
+  private RepositoryRequestScheduler newScheduler(int maxConcurrentRequests, int maxRetries) {
+    return new RepositoryRequestScheduler(maxConcurrentRequests, maxRetries, 60_000, () -> NOW, waits::add);
+  }
+
+  private HttpRequest request() {
+    return HttpRequest.newBuilder()
+        .uri(URI.create("http://localhost:" + server.getAddress().getPort() + "/versions"))
+        .GET()
+        .build();
+  }
+
+  /**
+   * An answer of the local HTTP stand-in.
+   */
+  private static class ScriptedAnswer {
+    private final int status;
+    private final List<String[]> headers = new ArrayList<>();
+
+    private ScriptedAnswer(int status) {
+      this.status = status;
+    }
+
+    private ScriptedAnswer header(String name, String value) {
+      headers.add(new String[] { name, value });
+      return this;
+    }
+
+    private void write(HttpExchange exchange) throws IOException {
+      headers.forEach(header -> exchange.getResponseHeaders().add(header[0], header[1]));
+      byte[] body = "[]".getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(status, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    }
+  }
+}
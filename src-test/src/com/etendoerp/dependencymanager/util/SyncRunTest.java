@@ -0,0 +1,133 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.openbravo.erpCommon.utility.SequenceIdData;
+
+/**
+ * Unit tests for the {@link SyncRun} class.
+ */
+@DisplayName("SyncRun Tests")
+class SyncRunTest {
+
+  private static final String RUN_ID = "RUN1";
+  private static final String FIRST_PAGE = "https://api.github.com/orgs/etendosoftware/packages?per_page=100";
+  private static final String NEXT_PAGE = FIRST_PAGE + "&page=3";
+  private static final String PACKAGE = "com.etendoerp.copilot";
+  private static final String UPDATED_AT = "2024-05-10T08:00:00Z";
+
+  /**
+   * An interrupted run is resumed from its stored page, with the state of its packages.
+   */
+  @Test
+  @DisplayName("Should resume the last interrupted run")
+  void testResume() throws Exception {
+    Connection connection = mock(Connection.class);
+    PreparedStatement statement = mock(PreparedStatement.class);
+    ResultSet resultSet = mock(ResultSet.class);
+    when(connection.prepareStatement(anyString())).thenReturn(statement);
+    when(statement.executeQuery()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(true, true, true, false);
+    when(resultSet.getString(1)).thenReturn(RUN_ID, PACKAGE, "com.etendoerp.other");
+    when(resultSet.getString(2)).thenReturn(NEXT_PAGE, SyncRun.ITEM_FAILED, SyncRun.ITEM_DONE);
+    when(resultSet.getString(3)).thenReturn(UPDATED_AT, UPDATED_AT);
+
+    SyncRun run = SyncRun.resumeOrStart(connection, false, FIRST_PAGE);
+
+    assertAll(
+        () -> assertTrue(run.isResumed()),
+        () -> assertEquals(RUN_ID, run.getId()),
+        () -> assertEquals(NEXT_PAGE, run.getNextPageUrl()),
+        () -> assertEquals(Map.of(PACKAGE, UPDATED_AT), run.getPackages(SyncRun.ITEM_FAILED)),
+        () -> assertTrue(run.isDone("com.etendoerp.other")),
+        () -> assertFalse(run.isDone(PACKAGE))
+    );
+    verify(statement).setString(1, SyncRun.STATUS_RUNNING);
+  }
+
+  /**
+   * Without an interrupted run, a new one starts from the first page and the previous runs are removed.
+   */
+  @Test
+  @DisplayName("Should start a new run when there is nothing to resume")
+  void testStart() throws Exception {
+    Connection connection = mock(Connection.class);
+    PreparedStatement statement = mock(PreparedStatement.class);
+    when(connection.prepareStatement(anyString())).thenReturn(statement);
+
+    try (MockedStatic<SequenceIdData> sequenceIdData = mockStatic(SequenceIdData.class)) {
+      sequenceIdData.when(SequenceIdData::getUUID).thenReturn(RUN_ID);
+
+      SyncRun run = SyncRun.resumeOrStart(connection, true, FIRST_PAGE);
+
+      assertFalse(run.isResumed());
+      assertEquals(FIRST_PAGE, run.getNextPageUrl());
+      verify(connection, times(0)).prepareStatement(startsWith("SELECT"));
+      verify(connection).prepareStatement(startsWith("DELETE FROM " + SyncRun.TABLE + " "));
+      verify(statement, times(3)).executeUpdate();
+    }
+  }
+
+  /**
+   * The package states recorded since the previous checkpoint are written in batches, and only once.
+   */
+  @Test
+  @DisplayName("Should store the recorded package states at every checkpoint")
+  void testCheckpoint() throws Exception {
+    SyncRun run = new SyncRun(RUN_ID, false, FIRST_PAGE, new HashMap<>());
+    run.versionsStored(PACKAGE, UPDATED_AT);
+    run.failed("com.etendoerp.other", UPDATED_AT, "Not found");
+    run.done(PACKAGE, UPDATED_AT);
+    run.setNextPageUrl(NEXT_PAGE);
+
+    Connection connection = mock(Connection.class);
+    PreparedStatement statement = mock(PreparedStatement.class);
+    when(connection.prepareStatement(anyString())).thenReturn(statement);
+    run.checkpoint(connection);
+    run.checkpoint(connection);
+
+    verify(statement, times(4)).addBatch();
+    verify(statement, times(2)).executeBatch();
+    verify(statement, times(2)).setString(2, NEXT_PAGE);
+    assertTrue(run.isDone(PACKAGE));
+    assertEquals(1, run.getPackages(SyncRun.ITEM_FAILED).size());
+  }
+
+  /**
+   * An interrupted run keeps the page of its last checkpoint, discarding the progress made after it.
+   */
+  @Test
+  @DisplayName("Should keep the last checkpointed page when interrupted")
+  void testInterrupt() throws Exception {
+    SyncRun run = new SyncRun(RUN_ID, false, FIRST_PAGE, new HashMap<>());
+    run.setNextPageUrl(NEXT_PAGE);
+
+    Connection connection = mock(Connection.class);
+    PreparedStatement statement = mock(PreparedStatement.class);
+    when(connection.prepareStatement(anyString())).thenReturn(statement);
+    run.interrupt(connection);
+
+    verify(statement).setString(1, SyncRun.STATUS_INTERRUPTED);
+    verify(statement).setString(2, FIRST_PAGE);
+    verify(statement).executeUpdate();
+  }
+}
@@ -0,0 +1,58 @@
+package com.etendoerp.dependencymanager.util;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the {@link SyncStatistics} class.
+ */
+@DisplayName("SyncStatistics Tests")
+class SyncStatisticsTest {
+
+  /**
+   * A single pass sync requests every page and every version list once, so the API calls
+   * are the sum of both and POM downloads are not counted as API calls.
+   */
+  @Test
+  @DisplayName("Should count package pages and version lists as API calls")
+  void testApiCallsForSinglePass() {
+    SyncStatistics statistics = new SyncStatistics();
+    statistics.packagePageRequested();
+    statistics.packagePageRequested();
+    for (int i = 0; i < 150; i++) {
+      statistics.versionListRequested();
+    }
+    statistics.pomRequested();
+
+    assertAll(
+        () -> assertEquals(152, statistics.getApiCalls()),
+        () -> assertEquals(1, statistics.getPomRequests()),
+        () -> assertTrue(statistics.toString().contains("152 API calls"))
+    );
+  }
+
+  /**
+   * Validates the request counters can be updated from several fetch workers at once.
+   */
+  @Test
+  @DisplayName("Should keep exact counts when updated concurrently")
+  void testConcurrentUpdates() throws InterruptedException {
+    SyncStatistics statistics = new SyncStatistics();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    for (int i = 0; i < 1000; i++) {
+      executor.execute(statistics::versionListRequested);
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+    assertEquals(1000, statistics.getVersionListRequests());
+  }
+}
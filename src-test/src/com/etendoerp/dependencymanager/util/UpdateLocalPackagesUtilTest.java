@@ -1,5 +1,10 @@
 package com.etendoerp.dependencymanager.util;
 
+import com.etendoerp.dependencymanager.data.Package;
+import com.etendoerp.dependencymanager.data.PackageDependency;
+import com.etendoerp.dependencymanager.data.PackageVersion;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.Session;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -8,21 +13,46 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.InOrder;
 import org.openbravo.base.session.OBPropertiesProvider;
 import org.openbravo.dal.core.OBContext;
 import org.openbravo.dal.service.OBDal;
-import org.openbravo.dal.xml.XMLUtil;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
+import javax.xml.stream.XMLStreamException;
+
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -33,7 +63,7 @@ import static org.mockito.Mockito.when;
  * integration with mocked dependencies.
  * </p>
  * <ul>
- *   <li>Ensures proper handling of `IOException` during file download.</li>
+ *   <li>Ensures errors importing the downloaded dataset are reported as an `IOException`.</li>
  *   <li>Validates correct admin mode handling, even in exceptional cases.</li>
  *   <li>Mocks static dependencies to isolate test behavior.</li>
  * </ul>
@@ -53,13 +83,40 @@ class UpdateLocalPackagesUtilTest {
   @Mock
   private Properties mockProperties;
 
-  @Mock
-  private XMLUtil mockXMLUtil;
+  private static final String DATASET = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+      + "<ob:Openbravo xmlns:ob=\"http://www.openbravo.com\" "
+      + "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n"
+      + "  <ETDEP_Package_Version id=\"V1\" identifier=\"1.0.0\">\n"
+      + "    <id>V1</id>\n"
+      + "    <active>true</active>\n"
+      + "    <package id=\"P1\" entity-name=\"ETDEP_Package\" identifier=\"com.etendoerp.copilot\"/>\n"
+      + "    <version>1.0.0</version>\n"
+      + "    <fromCore>24.1.0</fromCore>\n"
+      + "    <latestCore>25.1.0</latestCore>\n"
+      + "  </ETDEP_Package_Version>\n"
+      + "  <ETDEP_Package id=\"P1\" identifier=\"com.etendoerp.copilot\">\n"
+      + "    <id>P1</id>\n"
+      + "    <active>true</active>\n"
+      + "    <group>com.etendoerp</group>\n"
+      + "    <artifact>copilot</artifact>\n"
+      + "    <isBundle>false</isBundle>\n"
+      + "  </ETDEP_Package>\n"
+      + "  <ETDEP_Package_Dependency id=\"D1\" identifier=\"webhookevents\">\n"
+      + "    <id>D1</id>\n"
+      + "    <active>true</active>\n"
+      + "    <packageVersion id=\"V1\" entity-name=\"ETDEP_Package_Version\" identifier=\"1.0.0\"/>\n"
+      + "    <group>com.etendoerp</group>\n"
+      + "    <artifact>webhookevents</artifact>\n"
+      + "    <version>1.7.0</version>\n"
+      + "    <dependencyVersion xsi:nil=\"true\"/>\n"
+      + "    <externalDependency>true</externalDependency>\n"
+      + "  </ETDEP_Package_Dependency>\n"
+      + "</ob:Openbravo>\n";
 
   private MockedStatic<OBContext> mockedOBContext;
   private MockedStatic<OBDal> mockedOBDal;
   private MockedStatic<OBPropertiesProvider> mockedPropertiesProvider;
-  private MockedStatic<XMLUtil> mockedXMLUtil;
+  private MockedStatic<HttpTransport> mockedHttpTransport;
 
   /**
    * Sets up the mocked static dependencies and initializes the test environment.
@@ -69,11 +126,9 @@ class UpdateLocalPackagesUtilTest {
     mockedOBContext = mockStatic(OBContext.class);
     mockedOBDal = mockStatic(OBDal.class);
     mockedPropertiesProvider = mockStatic(OBPropertiesProvider.class);
-    mockedXMLUtil = mockStatic(XMLUtil.class);
 
     mockedOBDal.when(OBDal::getInstance).thenReturn(mockOBDal);
     mockedPropertiesProvider.when(OBPropertiesProvider::getInstance).thenReturn(mockPropertiesProvider);
-    mockedXMLUtil.when(XMLUtil::getInstance).thenReturn(mockXMLUtil);
 
     when(mockPropertiesProvider.getOpenbravoProperties()).thenReturn(mockProperties);
   }
@@ -86,28 +141,32 @@ class UpdateLocalPackagesUtilTest {
     mockedOBContext.close();
     mockedOBDal.close();
     mockedPropertiesProvider.close();
-    mockedXMLUtil.close();
+    if (mockedHttpTransport != null) {
+      mockedHttpTransport.close();
+    }
   }
 
   /**
-   * Validates that an `IOException` is handled correctly during file download.
+   * Validates that an error importing the downloaded dataset is reported as an `IOException`, once the shards and
+   * the snapshot are found not to be published, and that the downloaded file is deleted.
    */
   @Test
-  @DisplayName("Should handle IOException during file download")
-  void testUpdateWithIOException() {
+  @DisplayName("Should handle errors importing the downloaded dataset")
+  void testUpdateWithIOException() throws Exception {
     when(mockProperties.getProperty("branch.update.local.packages", "main"))
         .thenReturn("main");
-
-    when(mockXMLUtil.getRootElement(any(InputStream.class)))
-        .thenThrow(new RuntimeException("XML parsing error"));
+    List<Path> downloads = stubDownloads();
+    RuntimeException importError = new RuntimeException("Dataset import error");
+    when(mockOBDal.getConnection()).thenThrow(importError);
 
     IOException exception = assertThrows(IOException.class,
         UpdateLocalPackagesUtil::update);
 
     assertAll(
-        () -> assertNotNull(exception),
         () -> assertEquals("Error when updating packages", exception.getMessage()),
-        () -> assertNotNull(exception.getCause())
+        () -> assertSame(importError, exception.getCause()),
+        () -> assertEquals(3, downloads.size()),
+        () -> assertFalse(Files.exists(downloads.get(2)))
     );
 
     verifyAdminModeHandling();
@@ -118,19 +177,262 @@ class UpdateLocalPackagesUtilTest {
    */
   @Test
   @DisplayName("Should handle admin mode correctly even on exception")
-  void testAdminModeHandlingOnException() {
+  void testAdminModeHandlingOnException() throws Exception {
     when(mockProperties.getProperty("branch.update.local.packages", "main"))
         .thenReturn("main");
+    stubDownloads();
+    RuntimeException importError = new RuntimeException("Test exception");
+    when(mockOBDal.getConnection()).thenThrow(importError);
 
-    when(mockXMLUtil.getRootElement(any(InputStream.class)))
-        .thenThrow(new RuntimeException("Test exception"));
-
-    assertThrows(IOException.class, UpdateLocalPackagesUtil::update);
+    IOException exception = assertThrows(IOException.class, UpdateLocalPackagesUtil::update);
 
+    assertSame(importError, exception.getCause());
     mockedOBContext.verify(() -> OBContext.setAdminMode(true));
     mockedOBContext.verify(OBContext::restorePreviousMode);
   }
 
+  /**
+   * Validates the dataset is imported in a single pass: a version read before its package, and the dependency of
+   * that version, are kept aside and imported in order once the whole dataset has been read, and an empty
+   * dependency version is left empty.
+   */
+  @Test
+  @DisplayName("Should import the dataset records deferring forward references")
+  void testImportDatasetDefersForwardReferences() throws Exception {
+    Session session = mock(Session.class);
+    Package pkg = mock(Package.class);
+    PackageVersion version = mock(PackageVersion.class);
+    PackageDependency dependency = mock(PackageDependency.class);
+    when(mockOBDal.getSession()).thenReturn(session);
+    when(mockOBDal.get(Package.class, "P1")).thenReturn(null, pkg);
+    when(mockOBDal.get(PackageVersion.class, "V1")).thenReturn(null, version);
+    when(mockOBDal.get(PackageDependency.class, "D1")).thenReturn(dependency);
+
+    int records = UpdateLocalPackagesUtil.importDataset(xml(DATASET),
+        new DatasetImportHashes(null, new HashMap<>()));
+
+    InOrder order = inOrder(mockOBDal);
+    order.verify(mockOBDal).save(pkg);
+    order.verify(mockOBDal).flush();
+    order.verify(mockOBDal).save(version);
+    order.verify(mockOBDal).save(dependency);
+    assertEquals(3, records);
+    verify(pkg).setArtifact("copilot");
+    verify(version).setPackage(pkg);
+    verify(version).setFromCore("24.1.0");
+    verify(dependency).setPackageVersion(version);
+    verify(dependency).setDependencyVersion(null);
+    verify(dependency).setExternalDependency(true);
+    verify(session, atLeastOnce()).clear();
+  }
+
+  /**
+   * Validates records whose content did not change since the last import are skipped without reading or writing
+   * their rows, and only the changed record is saved.
+   */
+  @Test
+  @DisplayName("Should skip the dataset records that did not change")
+  void testImportDatasetSkipsUnchangedRecords() throws Exception {
+    Map<String, DatasetImportHashes.RecordHash> stored = new HashMap<>();
+    PackageDatasetReader.read(new ByteArrayInputStream(DATASET.getBytes(StandardCharsets.UTF_8)),
+        datasetRecord -> stored.put(datasetRecord.getId(), new DatasetImportHashes.RecordHash(
+            datasetRecord.getEntity(), DatasetImportHashes.hashRecord(datasetRecord))));
+    Package pkg = mock(Package.class);
+    when(mockOBDal.get(Package.class, "P1")).thenReturn(pkg);
+    when(mockOBDal.getSession()).thenReturn(mock(Session.class));
+    DatasetImportHashes hashes = new DatasetImportHashes(null, stored);
+
+    int records = UpdateLocalPackagesUtil.importDataset(
+        xml(DATASET.replace("<isBundle>false</isBundle>", "<isBundle>true</isBundle>")), hashes);
+
+    assertEquals(1, records);
+    verify(pkg).setBundle(true);
+    verify(mockOBDal).save(pkg);
+    verify(mockOBDal, never()).get(PackageVersion.class, "V1");
+    verify(mockOBDal, never()).get(PackageDependency.class, "D1");
+    assertTrue(hashes.getRemovedRecords().isEmpty());
+  }
+
+  /**
+   * Validates the record hashes are shared by every source of the dataset: once the XML dataset is imported, the
+   * first import of the catalog snapshot with the same records changes no rows and writes no record hashes, and the
+   * hash of the XML dataset is forgotten so it is not skipped if it is imported again.
+   */
+  @Test
+  @DisplayName("Should not import the unchanged records again when the dataset source changes")
+  void testUpdateSharesRecordHashesBetweenSources() throws Exception {
+    when(mockProperties.getProperty("branch.update.local.packages", "main"))
+        .thenReturn("main");
+    Map<String, byte[]> published = new HashMap<>();
+    String datasetUrl = UpdateLocalPackagesUtil.DATASET_FILE_URL.replace("<branch>", "main");
+    String snapshotUrl = UpdateLocalPackagesUtil.SNAPSHOT_FILE_URL.replace("<branch>", "main");
+    published.put(datasetUrl, DATASET.getBytes(StandardCharsets.UTF_8));
+    stubDownloads(published);
+    HashTables tables = new HashTables();
+    when(mockOBDal.getConnection()).thenReturn(tables.connection());
+    when(mockOBDal.getSession()).thenReturn(mock(Session.class));
+    when(mockOBDal.get(Package.class, "P1")).thenReturn(null, mock(Package.class));
+    when(mockOBDal.get(PackageVersion.class, "V1")).thenReturn(null, mock(PackageVersion.class));
+    try (MockedStatic<DependencyClosure> closure = mockStatic(DependencyClosure.class)) {
+      int xmlRows = UpdateLocalPackagesUtil.update();
+      int xmlRecordWrites = tables.recordWrites;
+      ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+      CatalogSnapshot.write(handler -> {
+        try {
+          xml(DATASET).read(handler);
+        } catch (XMLStreamException e) {
+          throw new IOException(e);
+        }
+      }, snapshot);
+      published.put(snapshotUrl, snapshot.toByteArray());
+
+      int snapshotRows = UpdateLocalPackagesUtil.update();
+
+      assertAll(
+          () -> assertEquals(3, xmlRows),
+          () -> assertEquals(3, xmlRecordWrites),
+          () -> assertEquals(0, snapshotRows),
+          () -> assertEquals(xmlRecordWrites, tables.recordWrites),
+          () -> assertEquals(3, tables.records.get(UpdateLocalPackagesUtil.CATALOG_DATASET).size()),
+          () -> assertEquals(List.of(snapshotUrl), new ArrayList<>(tables.files.keySet()))
+      );
+      closure.verify(() -> DependencyClosure.update(any(Connection.class), anyCollection(), anyCollection()),
+          times(2));
+    }
+  }
+
+  /**
+   * Stubs the downloads so that only the XML dataset of the main branch is published, written from {@link #DATASET}
+   * instead of downloaded.
+   *
+   * @return the files the downloads were written to, in download order
+   */
+  private List<Path> stubDownloads() throws Exception {
+    return stubDownloads(Map.of(UpdateLocalPackagesUtil.DATASET_FILE_URL.replace("<branch>", "main"),
+        DATASET.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Stubs the downloads so that only the given files are published, written from their content instead of
+   * downloaded.
+   *
+   * @param published the content of the published files by their URL, which may change between downloads
+   * @return the files the downloads were written to, in download order
+   */
+  private List<Path> stubDownloads(Map<String, byte[]> published) throws Exception {
+    HttpTransport transport = mock(HttpTransport.class);
+    mockedHttpTransport = mockStatic(HttpTransport.class);
+    mockedHttpTransport.when(HttpTransport::getInstance).thenReturn(transport);
+    List<Path> downloads = new ArrayList<>();
+    when(transport.download(any(HttpRequest.class), any(Path.class))).thenAnswer(invocation -> {
+      HttpRequest request = invocation.getArgument(0);
+      Path file = invocation.getArgument(1);
+      downloads.add(file);
+      @SuppressWarnings("unchecked")
+      HttpResponse<Path> response = mock(HttpResponse.class);
+      byte[] content = published.get(request.uri().toString());
+      if (content != null) {
+        Files.write(file, content);
+        when(response.statusCode()).thenReturn(HttpURLConnection.HTTP_OK);
+      } else {
+        when(response.statusCode()).thenReturn(HttpURLConnection.HTTP_NOT_FOUND);
+      }
+      return response;
+    });
+    return downloads;
+  }
+
+  private static UpdateLocalPackagesUtil.DatasetSource xml(String dataset) {
+    return handler -> PackageDatasetReader.read(
+        new ByteArrayInputStream(dataset.getBytes(StandardCharsets.UTF_8)), handler);
+  }
+
+  /**
+   * In-memory stand-in for the tables of the {@link DatasetImportHashes}, reached through a mocked connection that
+   * runs the statements the hashes are loaded and saved with.
+   */
+  private static final class HashTables {
+    private final Map<String, String> files = new HashMap<>();
+    private final Map<String, Map<String, String[]>> records = new HashMap<>();
+    private int recordWrites;
+
+    private Connection connection() {
+      return mock(Connection.class, invocation -> "prepareStatement".equals(invocation.getMethod().getName())
+          ? statement(invocation.getArgument(0)) : null);
+    }
+
+    private PreparedStatement statement(String sql) {
+      Map<Integer, String> parameters = new HashMap<>();
+      List<Map<Integer, String>> batch = new ArrayList<>();
+      return mock(PreparedStatement.class, invocation -> {
+        switch (invocation.getMethod().getName()) {
+          case "setString":
+            parameters.put(invocation.getArgument(0), invocation.getArgument(1));
+            return null;
+          case "addBatch":
+            batch.add(new HashMap<>(parameters));
+            return null;
+          case "executeBatch":
+            batch.forEach(batchParameters -> execute(sql, batchParameters));
+            return new int[batch.size()];
+          case "executeUpdate":
+            execute(sql, parameters);
+            return 1;
+          case "executeQuery":
+            return resultSet(query(sql, parameters));
+          default:
+            return null;
+        }
+      });
+    }
+
+    private void execute(String sql, Map<Integer, String> parameters) {
+      if (sql.contains(" LIKE ")) {
+        String prefix = StringUtils.removeEnd(parameters.get(1), "%").replace("\\_", "_");
+        (sql.startsWith("DELETE FROM " + DatasetImportHashes.TABLE) ? files : records).keySet()
+            .removeIf(name -> name.startsWith(prefix));
+      } else if (sql.startsWith("DELETE FROM " + DatasetImportHashes.TABLE)) {
+        files.remove(parameters.get(1));
+      } else if (sql.startsWith("INSERT INTO " + DatasetImportHashes.TABLE)) {
+        files.put(parameters.get(1), parameters.get(2));
+      } else if (sql.startsWith("DELETE FROM " + DatasetImportHashes.RECORD_TABLE)) {
+        records.get(parameters.get(1)).remove(parameters.get(2));
+        recordWrites++;
+      } else if (sql.startsWith("INSERT INTO " + DatasetImportHashes.RECORD_TABLE)) {
+        records.computeIfAbsent(parameters.get(1), name -> new HashMap<>()).put(parameters.get(2),
+            new String[] { parameters.get(3), parameters.get(4), parameters.get(5) });
+        recordWrites++;
+      }
+    }
+
+    private List<String[]> query(String sql, Map<Integer, String> parameters) {
+      List<String[]> rows = new ArrayList<>();
+      if (sql.startsWith("SELECT CONTENT_HASH")) {
+        if (files.containsKey(parameters.get(1))) {
+          rows.add(new String[] { files.get(parameters.get(1)) });
+        }
+      } else {
+        records.getOrDefault(parameters.get(1), Map.of()).forEach((id, hash) ->
+            rows.add(new String[] { id, hash[0], hash[1], hash[2], id }));
+      }
+      return rows;
+    }
+
+    private static ResultSet resultSet(List<String[]> rows) {
+      int[] row = { -1 };
+      return mock(ResultSet.class, invocation -> {
+        switch (invocation.getMethod().getName()) {
+          case "next":
+            return ++row[0] < rows.size();
+          case "getString":
+            return rows.get(row[0])[(int) invocation.getArgument(0) - 1];
+          default:
+            return null;
+        }
+      });
+    }
+  }
+
   /**
    * Verifies that admin mode is set and restored correctly.
    */
@@ -4,7 +4,10 @@ import com.etendoerp.dependencymanager.data.Dependency;
 import com.etendoerp.dependencymanager.data.PackageDependency;
 import com.etendoerp.dependencymanager.data.PackageVersion;
 import com.etendoerp.dependencymanager.util.DependencyManagerConstants;
+import com.etendoerp.dependencymanager.util.HttpResponseCache;
+import com.etendoerp.dependencymanager.util.PackageRepositoryClient;
 import com.etendoerp.dependencymanager.util.PackageUtil;
+import com.etendoerp.dependencymanager.util.SyncStatistics;
 import com.smf.jobs.Action;
 import com.smf.jobs.ActionResult;
 import com.smf.jobs.Result;
@@ -17,15 +20,7 @@ import org.openbravo.base.session.OBPropertiesProvider;
 import org.openbravo.dal.service.OBDal;
 import org.openbravo.erpCommon.utility.OBMessageUtils;
 import com.etendoerp.dependencymanager.data.Package;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.util.Base64;
 import java.util.List;
-import java.util.Map;
 
 import java.util.List;
 import java.util.Properties;
@@ -34,15 +29,8 @@ public class InstallDependency extends Action {
   private static final Logger log = LogManager.getLogger();
   private static final String PLATFORM_GROUP = "com.etendoerp.platform";
   private static final String CORE_ARTIFACT = "etendo-core";
-  private static final String GITHUB_VERSIONS_API_URL = "https://deps.labs.etendo.cloud/api/v1/packages/maven/";
-  private static final String GITHUB_API_URI_VERSIONS = "/versions";
-  private static final String AUTHORIZATION_HEADER = "Authorization";
-  public static final String LOCATION_HEADER = "Location";
-  private static final String BASIC_AUTH_TOKEN = "Basic ";
-  private static final HttpClient httpClient = HttpClient.newHttpClient();
-  private static final ObjectMapper objectMapper = new ObjectMapper();
-  public static final String GITHUB_USER = "githubUser";
-  public static final String GITHUB_TOKEN = "githubToken";
+  private static final String LATEST_VERSIONS_CACHE = "latest-versions";
+  private static PackageRepositoryClient repositoryClient;
 
   @Override
   protected ActionResult action(JSONObject parameters, MutableBoolean isStopped) {
@@ -75,44 +63,29 @@ public class InstallDependency extends Action {
         dependency.getArtifact(), CORE_ARTIFACT);
   }
 
-  private static String sendHttpRequest(String url) throws Exception {
-    Properties properties = OBPropertiesProvider.getInstance().getOpenbravoProperties();
-    String githubUser = properties.getProperty(GITHUB_USER, "");
-    String githubToken = properties.getProperty(GITHUB_TOKEN, "");
-
-    String authToken = BASIC_AUTH_TOKEN + Base64.getEncoder().encodeToString((githubUser + ":" + githubToken).getBytes());
-    HttpRequest request = HttpRequest.newBuilder()
-        .uri(new URI(url))
-        .header(AUTHORIZATION_HEADER, authToken)
-        .version(HttpClient.Version.HTTP_2)
-        .GET()
-        .build();
-    HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-    return response.body();
-  }
-
-  private static List<Map<String, Object>> fetchPackageVersions(String packageName) throws Exception {
-    String url = GITHUB_VERSIONS_API_URL + packageName + GITHUB_API_URI_VERSIONS;
-    String responseBody = sendHttpRequest(url);
-    return objectMapper.readValue(responseBody, new TypeReference<>() {});
-  }
-
   public static String fetchLatestVersion(String group, String artifact) {
     try {
-      String packageName = group + "." + artifact;
-      List<Map<String, Object>> versions = fetchPackageVersions(packageName);
-      if (!versions.isEmpty()) {
-        Map<String, Object> lastVersion = versions.get(0);
-        return (String) lastVersion.get("name");
-      } else {
-        return null;
-      }
+      return getRepositoryClient().fetchLatestVersion(group, artifact);
     } catch (Exception e) {
       log.error("Error fetching latest version for package: " + group + "." + artifact, e);
       return null;
     }
   }
 
+  /**
+   * @return the client the latest versions are looked up with, created on first use and shared by every lookup.
+   *     Its responses are cached apart from the ones of the sync, so a lookup never marks a resource the sync did
+   *     not process yet as not modified.
+   */
+  static synchronized PackageRepositoryClient getRepositoryClient() {
+    if (repositoryClient == null) {
+      Properties properties = OBPropertiesProvider.getInstance().getOpenbravoProperties();
+      repositoryClient = PackageRepositoryClient.fromProperties(properties,
+          HttpResponseCache.fromProperties(properties, LATEST_VERSIONS_CACHE), new SyncStatistics());
+    }
+    return repositoryClient;
+  }
+
   public static String determineVersionStatus(String installedVersion, String latestVersion) {
     return StringUtils.equals(installedVersion, latestVersion) ? "U" : "UA";
   }
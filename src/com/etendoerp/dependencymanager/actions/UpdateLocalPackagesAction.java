@@ -1,6 +1,6 @@
 package com.etendoerp.dependencymanager.actions;
 
-import com.etendoerp.dependencymanager.util.UpdateLocalPackagesUtil;
+import com.etendoerp.dependencymanager.util.CatalogRefreshService;
 import com.smf.jobs.Action;
 import com.smf.jobs.ActionResult;
 import com.smf.jobs.Result;
@@ -8,14 +8,32 @@ import org.apache.commons.lang3.mutable.MutableBoolean;
 import org.codehaus.jettison.json.JSONObject;
 import org.openbravo.erpCommon.utility.OBMessageUtils;
 
+import java.util.concurrent.ExecutionException;
+
 public class UpdateLocalPackagesAction extends Action {
   @Override
   protected ActionResult action(JSONObject parameters, MutableBoolean isStopped) {
     var result = new ActionResult();
     try {
-      UpdateLocalPackagesUtil.update();
-      result.setMessage(OBMessageUtils.messageBD("ETDEP_Package_Update_Success"));
-      result.setType(Result.Type.SUCCESS);
+      CatalogRefreshService.Status status = CatalogRefreshService.getInstance().refresh().get();
+      if (status != null && status.getLastOutcome() == CatalogRefreshService.Outcome.RUNNING_ON_OTHER_NODE) {
+        result.setMessage(OBMessageUtils.messageBD("ETDEP_Package_Update_Running_Other_Node"));
+        result.setType(Result.Type.WARNING);
+      } else if (status != null
+          && status.getLastOutcome() == CatalogRefreshService.Outcome.IMPORTED_BY_OTHER_NODE) {
+        result.setMessage(OBMessageUtils.messageBD("ETDEP_Package_Update_Other_Node"));
+        result.setType(Result.Type.SUCCESS);
+      } else {
+        result.setMessage(OBMessageUtils.messageBD("ETDEP_Package_Update_Success"));
+        result.setType(Result.Type.SUCCESS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      result.setMessage(e.getMessage());
+      result.setType(Result.Type.ERROR);
+    } catch (ExecutionException e) {
+      result.setMessage(e.getCause().getMessage());
+      result.setType(Result.Type.ERROR);
     } catch (Exception e) {
       result.setMessage(e.getMessage());
       result.setType(Result.Type.ERROR);
@@ -22,7 +22,8 @@ public class AddSubDependencyDS extends AbstractDependencyDS {
   /**
    * Retrieves and processes a list of sub-dependencies for the given PackageVersion.
    * This includes mapping dependencies to their parent artifacts and applying filters and sorting
-   * criteria provided in the parameters.
+   * criteria provided in the parameters. The sub-dependencies are read from the stored dependency closure of the
+   * version when there is one, and resolved from its dependencies otherwise.
    *
    * @param parameters
    *     A map of string parameters for filtering and sorting the results.
@@ -38,13 +39,14 @@ public class AddSubDependencyDS extends AbstractDependencyDS {
       PackageVersion packageVersion) throws JSONException {
     List<Map<String, Object>> result = new ArrayList<>();
 
-    List<PackageDependency> dependenciesList = packageVersion.getETDEPPackageDependencyList();
-    removeDependecyCore(dependenciesList);
-
     Map<String, PackageDependency> dependencyMap = new HashMap<>();
     Map<String, String> parentMap = new HashMap<>();
 
-    DependencyTreeBuilder.addDependenciesWithParents(dependenciesList, dependencyMap, parentMap);
+    if (!DependencyTreeBuilder.addDependenciesFromClosure(packageVersion, dependencyMap, parentMap)) {
+      List<PackageDependency> dependenciesList = packageVersion.getETDEPPackageDependencyList();
+      removeDependecyCore(dependenciesList);
+      DependencyTreeBuilder.addDependenciesWithParents(dependenciesList, dependencyMap, parentMap);
+    }
 
     List<PackageDependency> dependencyList = new ArrayList<>(dependencyMap.values());
     for (PackageDependency dependency : dependencyList) {
@@ -1,56 +1,65 @@
 package com.etendoerp.dependencymanager.process;
 
-import com.etendoerp.dependencymanager.data.Package;
-import com.etendoerp.dependencymanager.data.PackageDependency;
-import com.etendoerp.dependencymanager.data.PackageVersion;
-import com.etendoerp.dependencymanager.util.DependencyManagerConstants;
+import com.etendoerp.dependencymanager.util.CatalogGraph;
+import com.etendoerp.dependencymanager.util.CatalogIndex;
+import com.etendoerp.dependencymanager.util.CatalogIndex.CatalogPackage;
+import com.etendoerp.dependencymanager.util.CatalogIndex.CatalogVersion;
+import com.etendoerp.dependencymanager.util.CatalogWriter;
+import com.etendoerp.dependencymanager.util.ClusterLease;
+import com.etendoerp.dependencymanager.util.ConcurrentFetchEngine;
+import com.etendoerp.dependencymanager.util.DependencyClosure;
+import com.etendoerp.dependencymanager.util.HttpResponseCache;
+import com.etendoerp.dependencymanager.util.PackageRepositoryClient;
+import com.etendoerp.dependencymanager.util.PackageRepositoryClient.PackageListing;
+import com.etendoerp.dependencymanager.util.PackageRepositoryClient.PomFile;
+import com.etendoerp.dependencymanager.util.PackageRepositoryClient.RepositoryPackage;
+import com.etendoerp.dependencymanager.util.PackageRepositoryClient.RepositoryPage;
+import com.etendoerp.dependencymanager.util.PackageRepositoryClient.VersionList;
+import com.etendoerp.dependencymanager.util.PackageSyncWatermarks;
 import com.etendoerp.dependencymanager.util.PackageUtil;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.etendoerp.dependencymanager.util.PomDependencyParser;
+import com.etendoerp.dependencymanager.util.PomDependencyParser.PomDependency;
+import com.etendoerp.dependencymanager.util.PomCache;
+import com.etendoerp.dependencymanager.util.SyncRun;
+import com.etendoerp.dependencymanager.util.SyncStatistics;
 
+import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.dom4j.Element;
-import org.hibernate.criterion.Restrictions;
 import org.openbravo.base.exception.OBException;
 import org.openbravo.base.session.OBPropertiesProvider;
-import org.openbravo.dal.service.OBCriteria;
 import org.openbravo.dal.service.OBDal;
-import org.openbravo.dal.xml.XMLUtil;
 import org.openbravo.erpCommon.utility.OBMessageUtils;
 import org.openbravo.scheduling.ProcessBundle;
 import org.openbravo.service.db.DalBaseProcess;
 
-import java.io.ByteArrayInputStream;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * This process updates the packages and package versions from the GitHub API.
+ * This process updates the packages and package versions from the package repository, the GitHub API by default.
+ * When several nodes share the database, only the one holding the {@link ClusterLease} syncs at a time.
  */
 public class GetPackagesFromRepositories extends DalBaseProcess {
   private static final Logger log = LogManager.getLogger();
-  private static final String AUTHORIZATION_HEADER = "Authorization";
-  public static final String LOCATION_HEADER = "Location";
-  private static final String BASIC_AUTH_TOKEN = "Basic ";
-  private static final String GITHUB_API_URL = "https://api.github.com/orgs/etendosoftware/packages?package_type=maven&per_page=100&page=";
-  private static final String GITHUB_VERSIONS_API_URL = "https://api.github.com/orgs/etendosoftware/packages/maven/";
-  private static final String GITHUB_POM_URL = "https://maven.pkg.github.com/etendosoftware/etendo_core/";
-  private static final HttpClient httpClient = HttpClient.newHttpClient();
-  private static final ObjectMapper objectMapper = new ObjectMapper();
-  public static final String GITHUB_USER = "githubUser";
-  public static final String GITHUB_TOKEN = "githubToken";
-  public static final String NAME = "name";
-  public static final String GITHUB_API_URI_VERSIONS = "/versions";
-  private String _auth;
+  private static final int CHECKPOINT_INTERVAL = 50;
+  private PackageRepositoryClient repositoryClient;
+  private ConcurrentFetchEngine fetchEngine;
+  private SyncStatistics statistics;
+  private HttpResponseCache responseCache;
+  private PackageSyncWatermarks watermarks;
+  private PomCache pomCache;
+  private CatalogIndex catalog;
+  private CatalogWriter catalogWriter;
+  private ClusterLease lease;
+  private SyncRun syncRun;
   private static final List<String> EXCLUDED_PACKAGE_PREFIXES = Arrays.asList("com.etendorx");
   private static final List<String> EXCLUDED_PACKAGES = Arrays.asList(
     "com.etendoerp.platform.etendo-core", "com.etendoerp.gradleplugin",
@@ -67,142 +76,371 @@ public class GetPackagesFromRepositories extends DalBaseProcess {
   @Override
   protected void doExecute(ProcessBundle bundle) throws Exception {
     Properties properties = OBPropertiesProvider.getInstance().getOpenbravoProperties();
-    String githubUser = properties.getProperty(GITHUB_USER, "");
-    String githubToken = properties.getProperty(GITHUB_TOKEN, "");
-    // Base64 Basic Auth token
-    this._auth = BASIC_AUTH_TOKEN + Base64.getEncoder()
-      .encodeToString((githubUser + ":" + githubToken).getBytes());
+    Connection connection = OBDal.getInstance().getConnection();
+    this.lease = ClusterLease.tryAcquire(connection, ClusterLease.REPOSITORY_SYNC, ClusterLease.getTtl(properties));
+    if (lease == null) {
+      boolean released = ClusterLease.awaitRelease(connection, ClusterLease.REPOSITORY_SYNC,
+          ClusterLease.getWait(properties));
+      String message = "Package sync " + (released ? "done" : "still running") + " by another node, skipping it";
+      log.info(message);
+      if (bundle != null) {
+        bundle.getLogger().logln(message);
+      }
+      return;
+    }
     try {
-      processPackagesAndVersions();
-      processDependencies();
+      sync(bundle, properties);
+    } finally {
+      releaseLease();
+    }
+  }
+
+  /**
+   * Syncs the catalog with the package repository, holding the {@value ClusterLease#REPOSITORY_SYNC} lease.
+   *
+   * @param bundle The process bundle, or null when the process is not run by the scheduler.
+   * @param properties The Openbravo properties.
+   * @throws Exception If the sync fails.
+   */
+  private void sync(ProcessBundle bundle, Properties properties) throws Exception {
+    this.statistics = new SyncStatistics();
+    boolean fullRebuild = BooleanUtils.toBoolean(properties.getProperty(PackageSyncWatermarks.FULL_REBUILD_PROPERTY));
+    this.responseCache = HttpResponseCache.fromProperties(properties);
+    this.responseCache.setConditionalRequests(!fullRebuild);
+    this.repositoryClient = PackageRepositoryClient.fromProperties(properties, responseCache, statistics);
+    this.pomCache = PomCache.fromProperties(properties);
+    try (ConcurrentFetchEngine engine = ConcurrentFetchEngine.fromProperties(properties);
+         CatalogWriter writer = CatalogWriter.fromContext(OBDal.getInstance().getConnection())) {
+      this.fetchEngine = engine;
+      this.catalogWriter = writer;
+      if (fullRebuild) {
+        log.info("Full rebuild requested, every package will be synced again and the dependency closure rebuilt");
+      }
+      this.watermarks = PackageSyncWatermarks.load(OBDal.getInstance().getConnection(), fullRebuild);
+      this.catalog = CatalogIndex.load(OBDal.getInstance().getConnection());
+      this.syncRun = SyncRun.resumeOrStart(OBDal.getInstance().getConnection(), fullRebuild,
+          repositoryClient.getFirstPageCursor());
+      processCatalog();
+      if (fullRebuild) {
+        DependencyClosure.rebuild(OBDal.getInstance().getConnection());
+      }
+      syncRun.finish(OBDal.getInstance().getConnection());
+      OBDal.getInstance().flush();
+      OBDal.getInstance().commitAndClose();
+      CatalogGraph.rebuild(OBDal.getInstance().getConnection());
+      if (BooleanUtils.toBoolean(properties.getProperty(PomCache.WARM_PROPERTY))) {
+        warmPomCache();
+      }
     } catch (Exception e) {
       log.error("Failed to process packages", e);
-      bundle.getLogger().logln("Failed to process packages "+ e.getMessage());
+      if (bundle != null) {
+        bundle.getLogger().logln("Failed to process packages " + e.getMessage());
+      }
+      interruptSyncRun();
+      throw e;
+    } finally {
+      pomCache.save();
+      log.info(statistics);
+      if (bundle != null) {
+        bundle.getLogger().logln(statistics.toString());
+      }
+    }
+  }
+
+  /**
+   * Releases the lease of the sync, once its work is either committed or rolled back.
+   */
+  private void releaseLease() {
+    try {
+      lease.release(OBDal.getInstance().getConnection());
+      OBDal.getInstance().commitAndClose();
+    } catch (Exception e) {
+      log.warn("Could not release lease {}, it expires on its own", lease.getName(), e);
+    }
+  }
+
+  /**
+   * Rolls back the work done since the last checkpoint and marks the sync run as interrupted,
+   * so the next execution resumes it instead of starting from the first page.
+   */
+  private void interruptSyncRun() {
+    if (syncRun == null) {
+      return;
+    }
+    try {
+      OBDal.getInstance().rollbackAndClose();
+      syncRun.interrupt(OBDal.getInstance().getConnection());
+      OBDal.getInstance().commitAndClose();
+    } catch (Exception e) {
+      log.warn("Could not mark sync run {} as interrupted", syncRun.getId(), e);
     }
   }
 
   /**
-   * This method processes package dependencies.
-   * It fetches packages from the GitHub API in pages, with each page containing multiple packages.
-   * For each package, it attempts to process the package for its dependencies.
-   * If any exception occurs during the processing of a package, it is caught and logged, and the method continues with the next package.
-   * After all packages in a page have been processed, the method checks if there are more packages to fetch.
-   * If there are no more packages to fetch (i.e., the fetched list of packages is empty), it breaks the loop.
-   * After all packages have been processed, it flushes the session to synchronize with the database.
+   * Commits the catalog rows, the package watermarks and the sync run state written so far, renewing the lease of
+   * the sync. The dependency closure of the versions whose dependencies were written is updated in the same
+   * transaction, which is committed and closed with the DAL session, so the catalog writer continues on the
+   * connection of the next one.
+   * The HTTP responses of the packages completed since the previous checkpoint are only stored once the
+   * transaction is committed, so a rolled back package is never answered as not modified.
+   *
+   * @param completed The packages completed since the previous checkpoint.
+   * @throws Exception If the transaction could not be committed.
+   */
+  private void checkpoint(List<PackageVersionsFetch> completed) throws Exception {
+    Connection connection = OBDal.getInstance().getConnection();
+    catalogWriter.flush();
+    DependencyClosure.update(connection, catalogWriter.takeChangedVersions(), Set.of());
+    watermarks.save(connection);
+    syncRun.checkpoint(connection);
+    lease.renew(connection);
+    OBDal.getInstance().flush();
+    OBDal.getInstance().commitAndClose();
+    catalogWriter.setConnection(OBDal.getInstance().getConnection());
+    for (PackageVersionsFetch fetch : completed) {
+      fetch.versionList.commit();
+    }
+    completed.clear();
+  }
+
+  /**
+   * This method synchronizes the catalog in a single pass over the package repository.
+   * It lists the packages of the repository in pages, with each page containing multiple packages,
+   * prefetching the next pages when the repository allows it, and downloads the version list of every
+   * package only once, concurrently through the fetch engine.
+   * The first stage persists the packages and versions of every page and commits them before the next page is
+   * read, recording every package as pending its dependencies in the sync run. Once every package and version
+   * exists, the second stage hydrates the dependencies declared in the POM files of the versions without
+   * dependencies, so references to packages found in later pages can be resolved. It takes the pending packages
+   * from the sync run a few at a time, and only the POM downloads of those packages are held in memory.
+   * Packages whose updated_at timestamp did not move since the last successful sync are skipped without
+   * requesting their versions, unless a full rebuild is requested with the etdep.sync.full.rebuild property.
+   * POM files are read from the local POM cache when possible. The responses, the POM files and the package
+   * watermarks are only stored once they have been completely processed.
+   * The existing packages, versions and dependencies are looked up in the catalog index loaded at the start of the
+   * process, and the new ones are inserted in JDBC batches, so the number of queries does not grow with the catalog.
+   * The progress is committed after every page of packages and every few packages of the second stage, together
+   * with the state of every package in the sync run. When an interrupted run is resumed, its failed packages are
+   * processed first, the pages continue from the last checkpoint, and the packages whose dependencies were pending
+   * are hydrated by the second stage.
+   * If any exception occurs during the processing of a package, it is caught, logged and recorded as failed in
+   * the sync run, and the method continues with the next package.
    * @throws Exception If an error occurs during processing.
    */
-  private void processDependencies() throws Exception {
-    for (int page = 1; page < 10; page++) {
-      List<Map<String, Object>> packages = fetchPackages(page);
-      if (packages.isEmpty()) {
-        break;
+  private void processCatalog() throws Exception {
+    if (syncRun.isResumed()) {
+      checkpoint(processFetches(submitFailedPackages()));
+    }
+    String firstPage = syncRun.getNextPageUrl();
+    if (firstPage != null) {
+      PackageListing pages = repositoryClient.listPackages(fetchEngine, firstPage);
+      while (pages.hasNext()) {
+        RepositoryPage page = readPage(pages);
+        List<PackageVersionsFetch> stored = processFetches(submitVersionFetches(page.getPackages()));
+        syncRun.setNextPageUrl(page.getNextCursor());
+        checkpoint(stored);
+        page.commit();
       }
-      for (Map<String, Object> pkg : packages) {
-        try {
-          processPackageDependency(pkg);
-        } catch (Exception e) {
-          log.error("Failed to process package dependency - ERROR: {}", e.getMessage());
-        }
+    }
+    processPendingPackages();
+  }
+
+  /**
+   * Waits for the version lists of the given packages and stores them, recording every package as pending
+   * its dependencies or as failed in the sync run.
+   *
+   * @param fetches The packages together with the pending download of their versions.
+   * @return The packages whose versions were stored.
+   */
+  private List<PackageVersionsFetch> processFetches(List<PackageVersionsFetch> fetches) {
+    List<PackageVersionsFetch> stored = new ArrayList<>();
+    for (PackageVersionsFetch fetch : fetches) {
+      try {
+        processPackage(fetch);
+        stored.add(fetch);
+        syncRun.versionsStored(fetch.name, fetch.updatedAt);
+        statistics.packageProcessed();
+      } catch (Exception e) {
+        statistics.packageFailed();
+        syncRun.failed(fetch.name, fetch.updatedAt, e.getMessage());
+        log.error("Failed to process package {}", fetch.name, e);
       }
     }
-    OBDal.getInstance().flush();
+    return stored;
   }
 
   /**
-   * This method processes packages and their versions.
-   * It fetches packages from the GitHub API in pages, with each page containing multiple packages.
-   * For each package, it attempts to process the package.
-   * If any exception occurs during the processing of a package, it is caught and logged, and the method continues with the next package.
-   * After all packages in a page have been processed, the method checks if there are more packages to fetch.
-   * If there are no more packages to fetch (i.e., the fetched list of packages is empty), it breaks the loop.
-   * After all packages have been processed, it flushes the session to synchronize with the database.
-   * @throws Exception If an error occurs during processing.
+   * Hydrates the dependencies of the packages whose versions were stored, but not their dependencies, in batches
+   * of {@value #CHECKPOINT_INTERVAL} packages. The POM files of the versions without dependencies of a batch are
+   * downloaded concurrently and processed, and the batch is committed before the next one is scheduled.
+   *
+   * @throws Exception If a checkpoint could not be committed.
    */
-  private void processPackagesAndVersions() throws Exception {
-    for (int page = 1; page < 10; page++) {
-      List<Map<String, Object>> packages = fetchPackages(page);
-      if (packages.isEmpty()) {
-        break;
+  private void processPendingPackages() throws Exception {
+    List<Map.Entry<String, String>> pending = new ArrayList<>(
+        syncRun.getPackages(SyncRun.ITEM_PENDING_DEPENDENCIES).entrySet());
+    for (int start = 0; start < pending.size(); start += CHECKPOINT_INTERVAL) {
+      List<PackageVersionsFetch> batch = new ArrayList<>();
+      for (Map.Entry<String, String> entry : pending.subList(start,
+          Math.min(start + CHECKPOINT_INTERVAL, pending.size()))) {
+        batch.add(schedulePomFetches(findRepositoryPackage(entry.getKey(), entry.getValue())));
       }
-      for (Map<String, Object> pkg : packages) {
-        try {
-          processPackage(pkg);
-        } catch (Exception e) {
-          log.error("Failed to process package dependencies", e);
+      List<PackageVersionsFetch> completed = new ArrayList<>();
+      for (PackageVersionsFetch fetch : batch) {
+        for (PomFetch pomFetch : fetch.pomFetches) {
+          processPomFetch(pomFetch);
+        }
+        if (fetch.failed) {
+          statistics.packageFailed();
+          syncRun.failed(fetch.name, fetch.updatedAt, "Failed to fetch or store the dependencies of the package");
+        } else {
+          watermarks.record(fetch.name, fetch.updatedAt);
+          syncRun.done(fetch.name, fetch.updatedAt);
+          completed.add(fetch);
         }
       }
+      checkpoint(completed);
     }
-    OBDal.getInstance().flush();
   }
 
   /**
-   * Fetches the packages from the GitHub API.
+   * Schedules the POM download of the versions without dependencies of a package whose versions are stored.
    *
-   * @param page
-   * @return
-   * @throws Exception
+   * @param pkg The package.
+   * @return The package, with its scheduled POM downloads.
    */
-  private List<Map<String, Object>> fetchPackages(int page) throws OBException {
-    try {
-      String url = GITHUB_API_URL + page;
-      String responseBody = sendHttpRequest(url);
-      return objectMapper.readValue(responseBody, new TypeReference<>() {
-      });
-    } catch (Exception e) {
-      throw new OBException("Failed to fetch packages", e);
+  private PackageVersionsFetch schedulePomFetches(RepositoryPackage pkg) {
+    PackageVersionsFetch fetch = new PackageVersionsFetch(pkg, CompletableFuture.completedFuture(VersionList.empty()));
+    fetch.versionList = VersionList.empty();
+    String packageId = catalog.findPackage(fetch.group, fetch.artifact);
+    if (packageId != null) {
+      for (CatalogVersion version : catalog.getVersions(packageId)) {
+        PomFetch pomFetch = schedulePomFetch(fetch, version.getId(), version.getVersion());
+        if (pomFetch != null) {
+          fetch.pomFetches.add(pomFetch);
+        }
+      }
     }
+    return fetch;
   }
 
   /**
-   * Processes a package from the GitHub API.
-   * @param pkg
-   * @throws Exception
+   * Schedules again the download of the version list of the packages that failed in the interrupted sync run.
+   *
+   * @return The scheduled fetches.
    */
-  private void processPackage(Map<String, Object> pkg) throws Exception {
-    String name = (String) pkg.get(NAME);
-    log.debug("Processing package: {}", name);
-
-    if (!isPackageExcluded(pkg)) {
-      String[] parts = name.split("\\.");
-      String group = parts[0] + "." + parts[1];
-      String artifact = String.join(".", Arrays.copyOfRange(parts, 2, parts.length));
+  private List<PackageVersionsFetch> submitFailedPackages() {
+    List<PackageVersionsFetch> fetches = new ArrayList<>();
+    syncRun.getPackages(SyncRun.ITEM_FAILED).forEach((name, updatedAt) -> {
+      RepositoryPackage pkg = findRepositoryPackage(name, updatedAt);
+      fetches.add(new PackageVersionsFetch(pkg, fetchEngine.submit(() -> repositoryClient.fetchVersions(pkg))));
+    });
+    return fetches;
+  }
 
-      Package res = findOrCreatePackage(group, artifact);
+  /**
+   * Finds the group and artifact of a package of the interrupted sync run, which only records its name.
+   * They are taken from the catalog, or from the name itself if the package is not in the catalog yet.
+   *
+   * @param name The name of the package.
+   * @param updatedAt The updated_at timestamp recorded for the package.
+   * @return The package.
+   */
+  private RepositoryPackage findRepositoryPackage(String name, String updatedAt) {
+    CatalogPackage pkg = catalog.findPackageByName(name);
+    if (pkg == null) {
+      return RepositoryPackage.fromName(name, updatedAt, null);
+    }
+    return new RepositoryPackage(name, pkg.getGroup(), pkg.getArtifact(), updatedAt, null);
+  }
 
-      List<Map<String, Object>> versions = fetchPackageVersions(name);
-      for (Map<String, Object> version : versions) {
-        processPackageVersion(version, res);
+  /**
+   * Warms the POM cache from the existing catalog, downloading the POM XML of every package version
+   * that is not cached yet. Enabled with the etdep.pom.cache.warm property.
+   */
+  private void warmPomCache() {
+    List<PomFetch> downloads = new ArrayList<>();
+    for (CatalogVersion pkgVersion : catalog.getVersions()) {
+      CatalogPackage pkg = catalog.getPackage(pkgVersion.getPackageId());
+      String gav = PomCache.gav(pkg.getGroup(), pkg.getArtifact(), pkgVersion.getVersion());
+      if (!pomCache.contains(gav)) {
+        downloads.add(new PomFetch(null, pkgVersion.getId(), gav, fetchEngine.submit(
+            () -> downloadPom(gav, pkg.getGroup(), pkg.getArtifact(), pkgVersion.getVersion()))));
       }
-    } else {
-      log.debug("Skipping excluded package: {}", name);
     }
+    int warmed = 0;
+    for (PomFetch download : downloads) {
+      PomDownload pom = fetchPomXml(download);
+      if (pom != null && !pom.cached) {
+        pomCache.put(download.gav, pom.body);
+        warmed++;
+      }
+    }
+    log.info("POM cache warmed with {} of {} missing package versions", warmed, downloads.size());
   }
 
   /**
-   * Processes a package from the GitHub API for its dependencies.
-   * If the package is not excluded, it fetches the package versions and processes each version for dependencies.
-   * If the package is excluded, it skips the processing and logs a debug message.
+   * Schedules the download of the version list of every non excluded package of a page
+   * that changed since the last successful sync.
    *
-   * @param pkg The package map object from the GitHub API.
-   * @throws Exception If an error occurs during processing.
+   * @param packages The packages of the page, as listed by the repository.
+   * @return The scheduled fetches, in the same order as the packages.
    */
-  private void processPackageDependency(Map<String, Object> pkg) throws Exception {
-    String name = (String) pkg.get(NAME);
-    log.debug("Processing package: {}", name);
+  private List<PackageVersionsFetch> submitVersionFetches(List<RepositoryPackage> packages) {
+    List<PackageVersionsFetch> fetches = new ArrayList<>();
+    for (RepositoryPackage pkg : packages) {
+      String name = pkg.getName();
+      if (isPackageExcluded(pkg)) {
+        log.debug("Skipping excluded package: {}", name);
+        continue;
+      }
+      String updatedAt = pkg.getUpdatedAt();
+      if (watermarks.isUnchanged(name, updatedAt) || syncRun.isDone(name)) {
+        log.debug("Package {} not updated since {}, skipping", name, updatedAt);
+        statistics.packageSkipped();
+        continue;
+      }
+      fetches.add(new PackageVersionsFetch(pkg, fetchEngine.submit(() -> repositoryClient.fetchVersions(pkg))));
+    }
+    return fetches;
+  }
 
-    if (!isPackageExcluded(pkg)) {
-      String[] parts = name.split("\\.");
-      String group = parts[0] + "." + parts[1];
-      String artifact = String.join(".", Arrays.copyOfRange(parts, 2, parts.length));
+  /**
+   * Waits for the next page of packages from the package repository.
+   *
+   * @param pages
+   * @return
+   * @throws OBException
+   */
+  private RepositoryPage readPage(PackageListing pages) throws OBException {
+    try {
+      return pages.next();
+    } catch (Exception e) {
+      throw new OBException("Failed to fetch packages", e);
+    }
+  }
 
-      Package res = findOrCreatePackage(group, artifact);
+  /**
+   * Processes a package from the package repository.
+   * It waits for the package versions and persists them. The versions are not stored again if they were not
+   * modified since the last sync.
+   *
+   * @param fetch The package together with the pending download of its versions.
+   * @throws Exception If an error occurs during processing.
+   */
+  private void processPackage(PackageVersionsFetch fetch) throws Exception {
+    log.debug("Processing package: {}", fetch.name);
+    fetch.versionList = ConcurrentFetchEngine.await(fetch.versions);
+    if (fetch.versionList.isNotModified()) {
+      log.debug("Versions of package {} not modified since last sync, skipping", fetch.name);
+      statistics.resourceNotModified();
+      return;
+    }
+    String packageId = findOrCreatePackage(fetch.group, fetch.artifact);
 
-      List<Map<String, Object>> versions = fetchPackageVersions(name);
-      for (Map<String, Object> version : versions) {
-        processPackageDependencyVersion(version, res, group, artifact);
-      }
-    } else {
-      log.debug("Skipping excluded package: {}", name);
+    for (String version : fetch.versionList.getVersions()) {
+      findOrCreatePackageVersion(packageId, version);
+      statistics.versionProcessed();
     }
   }
 
@@ -213,300 +451,243 @@ public class GetPackagesFromRepositories extends DalBaseProcess {
    * @param pkg The package to check for exclusion.
    * @return true if the package is to be excluded, false otherwise.
    */
-  private boolean isPackageExcluded(Map<String, Object> pkg) {
-    String packageName = (String) pkg.get(NAME);
+  private boolean isPackageExcluded(RepositoryPackage pkg) {
+    String packageName = pkg.getName();
     for (String prefix : EXCLUDED_PACKAGE_PREFIXES) {
       if (StringUtils.startsWith(packageName, prefix)) {
         return true;
       }
     }
-    Map<String, Object> repository = (Map<String, Object>) pkg.get("repository");
-    return EXCLUDED_PACKAGES.contains(packageName) || EXCLUDED_REPOSITORIES.contains(repository.get(NAME));
+    return EXCLUDED_PACKAGES.contains(packageName) || EXCLUDED_REPOSITORIES.contains(pkg.getRepository());
   }
 
   /**
    * Finds or creates a package.
    * @param group
    * @param artifact
-   * @return
+   * @return The id of the package.
    */
-  private Package findOrCreatePackage(String group, String artifact) {
-    OBCriteria<Package> obCriteria = OBDal.getInstance().createCriteria(Package.class);
-    obCriteria.add(Restrictions.eq(DependencyManagerConstants.GROUP, group));
-    obCriteria.add(Restrictions.eq(DependencyManagerConstants.ARTIFACT, artifact));
-    obCriteria.setMaxResults(1);
-
-    Package pkg = (Package) obCriteria.uniqueResult();
-
-    if (pkg == null) {
-      pkg = new Package();
-      pkg.setGroup(group);
-      pkg.setArtifact(artifact);
-      OBDal.getInstance().save(pkg);
-      OBDal.getInstance().flush();
+  private String findOrCreatePackage(String group, String artifact) {
+    String packageId = catalog.findPackage(group, artifact);
+    if (packageId == null) {
+      packageId = catalogWriter.insertPackage(group, artifact);
+      catalog.addPackage(packageId, group, artifact);
     }
-    return pkg;
+    return packageId;
   }
 
   /**
-   * Fetches the package versions from the GitHub API.
-   * @param packageName
-   * @return
-   * @throws Exception
+   * Schedules the download of the POM XML of a package version, unless it already has dependencies.
+   *
+   * @param fetch The package the version belongs to.
+   * @param pkgVersion The id of the package version.
+   * @param versionName The version.
+   * @return The scheduled POM download, or null if the version already has dependencies.
    */
-  private List<Map<String, Object>> fetchPackageVersions(String packageName) throws Exception {
-    String url = GITHUB_VERSIONS_API_URL + packageName + GITHUB_API_URI_VERSIONS;
-    String responseBody = sendHttpRequest(url);
-    return objectMapper.readValue(responseBody, new TypeReference<>() {});
+  private PomFetch schedulePomFetch(PackageVersionsFetch fetch, String pkgVersion, String versionName) {
+    if (catalog.hasDependencies(pkgVersion)) {
+      return null;
+    }
+    String gav = PomCache.gav(fetch.group, fetch.artifact, versionName);
+    log.debug("Fetching POM XML of {}", gav);
+    return new PomFetch(fetch, pkgVersion, gav,
+        fetchEngine.submit(() -> downloadPom(gav, fetch.group, fetch.artifact, versionName)));
   }
 
   /**
-   * Processes a package version from the GitHub API.
+   * Reads a POM XML from the POM cache, or downloads it if it is not cached, and parses its dependencies.
+   * Runs on a fetch engine worker, so it must not touch the database.
+   *
+   * @param gav The GAV coordinate of the package version.
+   * @param group
+   * @param artifact
    * @param version
-   * @param pkg
+   * @return The POM download.
+   * @throws Exception
    */
-  private void processPackageVersion(Map<String, Object> version, Package pkg) {
-    String versionName = (String) version.get(NAME);
-    PackageVersion pkgVersion = findOrCreatePackageVersion(pkg, versionName);
-
-    OBDal.getInstance().save(pkgVersion);
+  private PomDownload downloadPom(String gav, String group, String artifact, String version) throws Exception {
+    String cached = pomCache.get(gav);
+    if (cached != null) {
+      statistics.pomCacheHit();
+      return new PomDownload(PomFile.STATUS_OK, cached, PomDependencyParser.parse(cached), true);
+    }
+    statistics.pomRequested();
+    PomFile pom = repositoryClient.fetchPom(group, artifact, version);
+    if (!pom.isFound()) {
+      return new PomDownload(pom.getStatusCode(), pom.getBody(), null, false);
+    }
+    return new PomDownload(PomFile.STATUS_OK, pom.getBody(), PomDependencyParser.parse(pom.getBody()), false);
   }
 
   /**
-   * Processes a package version from the GitHub API and checks for dependencies.
-   * If no dependencies are found for the package version, it fetches the POM XML and processes it.
+   * Waits for a scheduled POM download and stores the dependencies it declares.
+   * Downloaded POM files are added to the POM cache once they have been processed.
    *
-   * @param version The version map object from the GitHub API.
-   * @param pkg The package object to which the version belongs.
-   * @param group The group of the package.
-   * @param artifact The artifact of the package.
+   * @param pomFetch The scheduled POM download.
    */
-  private void processPackageDependencyVersion(Map<String, Object> version, Package pkg, String group, String artifact) {
-    String versionName = (String) version.get(NAME);
-    PackageVersion pkgVersion = findOrCreatePackageVersion(pkg, versionName);
-
-    if (OBDal.getInstance()
-      .createQuery(PackageDependency.class, "e where e.packageVersion.id = :packageVersionId")
-      .setNamedParameter("packageVersionId", pkgVersion.getId())
-      .count() == 0) {
-
-      String pomUrl = buildPomUrl(group, artifact, versionName);
-      log.debug("Fetching POM XML from {}", pomUrl);
-      try {
-        String pomXml = fetchPomXml(pomUrl);
-        if (pomXml != null) {
-          processPomXml(pomXml, pkgVersion);
-        } else {
-          log.error("No POM XML found or failed to fetch POM XML for URL: {}", pomUrl);
+  private void processPomFetch(PomFetch pomFetch) {
+    try {
+      PomDownload download = fetchPomXml(pomFetch);
+      if (download == null) {
+        pomFetch.owner.failed = true;
+        log.error("No POM XML found or failed to fetch POM XML of {}", pomFetch.gav);
+      } else if (processPomDependencies(download.dependencies, pomFetch.packageVersion)) {
+        if (!download.cached) {
+          pomCache.put(pomFetch.gav, download.body);
         }
-      } catch (Exception e) {
-        log.error("Error fetching or processing POM XML for URL: {}", pomUrl, e);
+      } else {
+        pomFetch.owner.failed = true;
       }
+    } catch (Exception e) {
+      pomFetch.owner.failed = true;
+      log.error("Error fetching or processing POM XML of {}", pomFetch.gav, e);
     }
   }
 
   /**
    * Finds or creates a package version.
-   * @param pkg
+   * @param packageId
    * @param version
-   * @return
+   * @return The id of the package version.
    */
-  private PackageVersion findOrCreatePackageVersion(Package pkg, String version) {
-    PackageVersion pkgVersion = OBDal.getInstance()
-      .createQuery(PackageVersion.class, "e where e.package.id = :packageId and e.version = :version")
-      .setNamedParameter("packageId", pkg.getId())
-      .setNamedParameter(DependencyManagerConstants.VERSION, version)
-      .uniqueResult();
-
-    if (pkgVersion == null) {
-      pkgVersion = new PackageVersion();
-      pkgVersion.setPackage(pkg);
-      pkgVersion.setVersion(version);
-
-      OBDal.getInstance().save(pkgVersion);
+  private String findOrCreatePackageVersion(String packageId, String version) {
+    String versionId = catalog.findVersion(packageId, version);
+    if (versionId == null) {
+      versionId = catalogWriter.insertVersion(packageId, version);
+      catalog.addVersion(versionId, packageId, version);
     }
-    return pkgVersion;
+    return versionId;
   }
 
   /**
-   * Builds the POM URL.
+   * Reads the POM XML downloaded from the package repository.
    *
-   * @param group
-   * @param artifact
-   * @param versionName
-   * @return
+   * @param pomFetch The scheduled POM download.
+   * @return The POM download, or null if it could not be fetched.
    */
-  private String buildPomUrl(String group, String artifact, String versionName) {
-    String groupPath = group.replace(".", "/");
-    String artifactPath = artifact.replace(".", "/");
-    String pomFileName = artifact + "-" + versionName + ".pom";
-    
-    StringBuilder urlBuilder = new StringBuilder();
-    urlBuilder.append(GITHUB_POM_URL)
-              .append(groupPath).append("/")
-              .append(artifactPath).append("/")
-              .append(versionName).append("/")
-              .append(pomFileName);
-
-    return urlBuilder.toString();
-  }
-
-  /**
-   * Fetches the POM XML from the GitHub API.
-   *
-   * @param url
-   * @return
-   */
-  private String fetchPomXml(String url) {
+  private PomDownload fetchPomXml(PomFetch pomFetch) {
     try {
-      HttpResponse<String> response = sendHttpRequestWithRedirect(url);
-      if (response.statusCode() != 200) {
-        log.error("Failed to fetch POM XML from {}", url);
+      PomDownload download = ConcurrentFetchEngine.await(pomFetch.response);
+      if (download.statusCode != PomFile.STATUS_OK) {
+        String errorMessage = String.format(
+            OBMessageUtils.messageBD("ETDEP_Redirect_HTTP_Request_Failed"),
+            download.statusCode,
+            download.body
+        );
+        log.error(errorMessage);
         return null;
       }
-      return response.body();
+      return download;
     } catch (Exception e) {
-      log.error("Failed to fetch POM XML from {}", url, e);
+      log.error("Failed to fetch POM XML of {}", pomFetch.gav, e);
       return null;
     }
   }
 
   /**
-   * Processes the POM XML.
+   * Stores the dependencies declared in a POM XML.
    *
-   * @param pomXml
-   * @param pkgVersion
+   * @param dependencies
+   * @param pkgVersion The id of the package version.
+   * @return true if the dependencies were stored, false otherwise.
    */
-  private void processPomXml(String pomXml, PackageVersion pkgVersion) {
+  private boolean processPomDependencies(List<PomDependency> dependencies, String pkgVersion) {
     try {
-      Element xmlRootElement = XMLUtil.getInstance()
-        .getRootElement(new ByteArrayInputStream(pomXml.getBytes()));
-      Element dependencies = xmlRootElement.element("dependencies");
-
-      if (dependencies != null) {
-        for (Element dependency : dependencies.elements("dependency")) {
-          String groupId = dependency.elementText("groupId");
-          String artifactId = dependency.elementText("artifactId");
-          String versionDep = dependency.elementText(DependencyManagerConstants.VERSION);
-
-          findOrCreatePackageDependency(pkgVersion, groupId, artifactId, versionDep);
-        }
+      for (PomDependency dependency : dependencies) {
+        findOrCreatePackageDependency(pkgVersion, dependency.getGroupId(), dependency.getArtifactId(),
+            dependency.getVersion());
       }
+      return true;
     } catch (Exception e) {
-      log.error("Failed to parse XML input for extracting root element.", e);
+      log.error("Failed to store the dependencies of package version {}", pkgVersion, e);
+      return false;
     }
   }
 
   /**
    * Finds or creates a package dependency.
-   * @param pkgVersion
+   * @param pkgVersion The id of the package version.
    * @param group
    * @param artifact
    * @param version
    */
-  private void findOrCreatePackageDependency(PackageVersion pkgVersion, String group, String artifact, String version) {
-    PackageDependency dep = OBDal.getInstance()
-      .createQuery(PackageDependency.class, "e where e.packageVersion.id = :packageVersionId and e.group = :group and e.artifact = :artifact and e.version = :version")
-      .setNamedParameter("packageVersionId", pkgVersion.getId())
-      .setNamedParameter(DependencyManagerConstants.GROUP, group)
-      .setNamedParameter(DependencyManagerConstants.ARTIFACT, artifact)
-      .setNamedParameter(DependencyManagerConstants.VERSION, version)
-      .uniqueResult();
-
-    if (dep == null){
-      if (StringUtils.equals(PackageUtil.ETENDO_CORE, artifact))  {
-        String[] coreVersionSplit = PackageUtil.splitCoreVersionRange(version);
-        pkgVersion.setFromCore(coreVersionSplit[0]);
-        pkgVersion.setLatestCore(coreVersionSplit[1]);
-        OBDal.getInstance().save(pkgVersion);
-      }
-      else {
-        dep = new PackageDependency();
-        dep.setPackageVersion(pkgVersion);
-        dep.setGroup(group);
-        dep.setArtifact(artifact);
-        dep.setVersion(version);
-        dep.setExternalDependency(false);
-        dep.setDependencyVersion(null);
-        OBCriteria<Package> packageCriteria = OBDal.getInstance().createCriteria(Package.class);
-        packageCriteria.add(Restrictions.eq(Package.PROPERTY_ARTIFACT, artifact));
-        packageCriteria.add(Restrictions.eq(Package.PROPERTY_GROUP, group));
-        Package dependencyPackage = (Package) packageCriteria.setMaxResults(1).uniqueResult();
-        dep.setExternalDependency(true);
-        if (dependencyPackage != null) {
-          PackageVersion packageVersion;
-          if (!PackageUtil.isMajorMinorPatchVersion(version)) {
-            packageVersion = PackageUtil.getLastPackageVersion(dependencyPackage);
-          } else {
-            packageVersion = PackageUtil.getPackageVersion(dependencyPackage, version);
-          }
-          dep.setDependencyVersion(packageVersion);
-          if (packageVersion != null) {
-            dep.setExternalDependency(false);
-          }
+  private void findOrCreatePackageDependency(String pkgVersion, String group, String artifact, String version) {
+    if (catalog.hasDependency(pkgVersion, group, artifact, version)) {
+      return;
+    }
+    if (StringUtils.equals(PackageUtil.ETENDO_CORE, artifact)) {
+      String[] coreVersionSplit = PackageUtil.splitCoreVersionRange(version);
+      catalogWriter.updateCoreRange(pkgVersion, coreVersionSplit[0], coreVersionSplit[1]);
+    } else {
+      String dependencyVersion = null;
+      String dependencyPackage = catalog.findPackage(group, artifact);
+      if (dependencyPackage != null) {
+        if (!PackageUtil.isMajorMinorPatchVersion(version)) {
+          dependencyVersion = catalog.findLastVersion(dependencyPackage);
+        } else {
+          dependencyVersion = catalog.findVersion(dependencyPackage, version);
         }
-        OBDal.getInstance().save(dep);
       }
+      catalogWriter.insertDependency(pkgVersion, group, artifact, version, dependencyVersion,
+          dependencyVersion == null);
+      catalog.addDependency(pkgVersion, group, artifact, version);
     }
   }
 
   /**
-   * Sends an HTTP request.
-   *
-   * @param url
-   * @return
-   * @throws Exception
+   * A package of the package repository together with the pending download of its versions.
    */
-  private String sendHttpRequest(String url) throws Exception {
-    HttpRequest request = HttpRequest.newBuilder()
-      .uri(new URI(url))
-      .header(AUTHORIZATION_HEADER, this._auth)
-      .version(HttpClient.Version.HTTP_2)
-      .GET()
-      .build();
-    HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-    if (response.statusCode() >= 200 && response.statusCode() < 300) {
-      return response.body();
-    } else {
-      log.error("HTTP Request failed with status code: " + response.statusCode() + " and body: " + response.body());
-      throw new OBException("HTTP Request failed with status code: " + response.statusCode());
+  private static class PackageVersionsFetch {
+    private final String name;
+    private final String group;
+    private final String artifact;
+    private final String updatedAt;
+    private final CompletableFuture<VersionList> versions;
+    private VersionList versionList;
+    private List<PomFetch> pomFetches = new ArrayList<>();
+    private boolean failed;
+
+    private PackageVersionsFetch(RepositoryPackage pkg, CompletableFuture<VersionList> versions) {
+      this.name = pkg.getName();
+      this.group = pkg.getGroup();
+      this.artifact = pkg.getArtifact();
+      this.updatedAt = pkg.getUpdatedAt();
+      this.versions = versions;
     }
   }
 
   /**
-   * Sends an HTTP request with redirect.
-   *
-   * @param url
-   * @return
-   * @throws Exception
+   * A package version together with the pending download of its POM XML.
    */
-  private HttpResponse<String> sendHttpRequestWithRedirect(String url) throws Exception {
-    HttpRequest request = HttpRequest.newBuilder()
-      .uri(new URI(url))
-      .header(AUTHORIZATION_HEADER, this._auth)
-      .version(HttpClient.Version.HTTP_2)
-      .GET()
-      .build();
-    HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-    if (response.statusCode() == 302) {
-      String newUrl = response.headers().firstValue(LOCATION_HEADER).orElseThrow(() -> new OBException("Redirect URL not found in the response"));
-      request = HttpRequest.newBuilder()
-        .uri(new URI(newUrl))
-        .header(AUTHORIZATION_HEADER, this._auth)
-        .GET()
-        .build();
-      response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-    }
-    if (response.statusCode() >= 200 && response.statusCode() < 300) {
-      return response;
-    } else {
-      String errorMessage = String.format(
-          OBMessageUtils.messageBD("ETDEP_Redirect_HTTP_Request_Failed"),
-          response.statusCode(),
-          response.body()
-      );
-      log.error(errorMessage);
-      throw new OBException(errorMessage);
+  private static class PomFetch {
+    private final PackageVersionsFetch owner;
+    private final String packageVersion;
+    private final String gav;
+    private final CompletableFuture<PomDownload> response;
+
+    private PomFetch(PackageVersionsFetch owner, String packageVersion, String gav,
+        CompletableFuture<PomDownload> response) {
+      this.owner = owner;
+      this.packageVersion = packageVersion;
+      this.gav = gav;
+      this.response = response;
+    }
+  }
+
+  /**
+   * A POM XML, either downloaded or read from the POM cache, together with the dependencies it declares.
+   */
+  private static class PomDownload {
+    private final int statusCode;
+    private final String body;
+    private final List<PomDependency> dependencies;
+    private final boolean cached;
+
+    private PomDownload(int statusCode, String body, List<PomDependency> dependencies, boolean cached) {
+      this.statusCode = statusCode;
+      this.body = body;
+      this.dependencies = dependencies;
+      this.cached = cached;
     }
   }
 }
@@ -6,6 +6,11 @@
  */
 package com.etendoerp.dependencymanager.process;
 
+import com.etendoerp.dependencymanager.util.CatalogDigest;
+import com.etendoerp.dependencymanager.util.CatalogSnapshot;
+import com.etendoerp.dependencymanager.util.PackageDatasetReader;
+import com.etendoerp.dependencymanager.util.PackageDatasetShards;
+import com.etendoerp.dependencymanager.util.PackageDatasetWriter;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -21,18 +26,22 @@ import org.openbravo.scheduling.ProcessBundle;
 import org.openbravo.scheduling.ProcessContext;
 import org.openbravo.scheduling.ProcessLogger;
 import org.openbravo.service.db.DalBaseProcess;
-import org.openbravo.service.db.DataExportService;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.BufferedReader;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.FileOutputStream;
 
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.HashMap;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import javax.xml.stream.XMLStreamException;
 
 /**
  * This class is responsible for executing the process of retrieving packages
@@ -45,6 +54,8 @@ public class GetPackagesFromRepositoriesAndCommit extends DalBaseProcess {
     private static final Logger log4j = LogManager.getLogger();
     private ProcessLogger logger;
     private static final String SUCCESS = "Success";
+    private static final String DATASET_FILE = "Packages_dataset.xml";
+    static final String SCRIPT_SUCCESS = "Script executed successfully.\n";
     public static final String AD_DATASET_ID = "9F0311EFA2C1406D81B03FE673FF0A17";
     public static final String AD_MODULE_ID = "2EC4FFAFFE984592BA9859A8C9E25BF0";
 
@@ -61,14 +72,68 @@ public class GetPackagesFromRepositoriesAndCommit extends DalBaseProcess {
         executeGetPackagesProcess(bundle);
         logger.logln("Get Packages Process: " + OBMessageUtils.messageBD(SUCCESS));
 
+        String catalogDigest = getCatalogDigest();
+        if (catalogDigest != null && StringUtils.equals(catalogDigest, getExportedCatalogDigest())) {
+            log4j.info("The catalog did not change since its last export, skipping the export and the git operations");
+            logger.logln("Export Reference Data: catalog unchanged, nothing to commit");
+            return;
+        }
+
         ProcessContext context = bundle.getContext();
         String language = context.getLanguage();
-        processButton(language, bundle.getConnection());
+        OBError exportResult = processButton(language, bundle.getConnection());
+        if (!StringUtils.equals(SUCCESS, exportResult.getType())) {
+            log4j.error("Failed to export the reference data, skipping the git operations: {}",
+                    exportResult.getMessage());
+            logger.logln("Export Reference Data: " + exportResult.getMessage());
+            return;
+        }
         logger.logln("Export Reference Data: " + OBMessageUtils.messageBD(SUCCESS));
 
         String scriptToRun = "git_operations.sh";
         String scriptOutput = executeScript(scriptToRun);
         logger.logln("Script Output for " + scriptToRun + ":\n" + scriptOutput);
+
+        if (catalogDigest != null && scriptOutput.endsWith(SCRIPT_SUCCESS)) {
+            saveExportedCatalogDigest(catalogDigest);
+        }
+    }
+
+    /**
+     * Computes the digest of the catalog as left by the sync, which is compared with the digest of the last export.
+     *
+     * @return The {@link CatalogDigest} of the catalog.
+     */
+    protected String getCatalogDigest() {
+        return CatalogDigest.compute(OBDal.getInstance().getConnection());
+    }
+
+    /**
+     * Gets the digest of the catalog last exported and pushed, if the dataset file and its shards still hold it.
+     *
+     * @return The digest of the last export, or {@code null} if there is none or the exported files are missing.
+     */
+    protected String getExportedCatalogDigest() {
+        DataSet myDataset = OBDal.getInstance().get(DataSet.class, AD_DATASET_ID);
+        String projectPath = getProjectPath();
+        String moduleJavaPackage = myDataset.getModule().getJavaPackage();
+        String modLocation = getModuleLocation(projectPath, moduleJavaPackage);
+        if (!Files.exists(getReferenceDataFolder(projectPath, modLocation, moduleJavaPackage).resolve(DATASET_FILE))
+                || !Files.exists(getShardFolder(projectPath, modLocation, moduleJavaPackage)
+                .resolve(PackageDatasetShards.MANIFEST_FILE))) {
+            return null;
+        }
+        return CatalogDigest.load(OBDal.getInstance().getConnection(), AD_DATASET_ID);
+    }
+
+    /**
+     * Stores the digest of the catalog once it is exported and the git operations succeeded. It is committed with
+     * the rest of the process when it ends.
+     *
+     * @param catalogDigest The digest of the exported catalog.
+     */
+    protected void saveExportedCatalogDigest(String catalogDigest) {
+        CatalogDigest.save(OBDal.getInstance().getConnection(), AD_DATASET_ID, catalogDigest);
     }
 
     /**
@@ -83,8 +148,7 @@ public class GetPackagesFromRepositoriesAndCommit extends DalBaseProcess {
     }
 
     /**
-     * Processes the button click event, exporting dataset data to XML, saving it to a file,
-     * and updating the dataset's checksum.
+     * Processes the button click event, exporting dataset data to its XML file and the catalog snapshot.
      *
      * @param language The language to be used for messages.
      * @param conn The {@link ConnectionProvider} for database connections.
@@ -100,11 +164,11 @@ public class GetPackagesFromRepositoriesAndCommit extends DalBaseProcess {
             }
 
             String moduleJavaPackage = myDataset.getModule().getJavaPackage();
-            String xml = exportDataSetToXML(myDataset);
             String projectPath = getProjectPath();
             updateModuleDirsToScan(projectPath);
             String modLocation = getModuleLocation(projectPath, moduleJavaPackage);
-            saveXMLToFile(xml, projectPath, modLocation, moduleJavaPackage);
+            Path datasetFile = exportDataSetToFile(projectPath, modLocation, moduleJavaPackage);
+            saveSnapshotToFile(datasetFile, projectPath, modLocation, moduleJavaPackage);
             myError = createSuccessOBError(conn, language);
 
         } catch (Exception e) {
@@ -153,17 +217,6 @@ public class GetPackagesFromRepositoriesAndCommit extends DalBaseProcess {
         return myError;
     }
 
-    /**
-     * Exports the given dataset to an XML string.
-     *
-     * @param myDataset The {@link DataSet} to export.
-     * @return The XML representation of the dataset.
-     */
-    protected String exportDataSetToXML(DataSet myDataset) {
-        return DataExportService.getInstance()
-                .exportDataSetToXML(myDataset, AD_MODULE_ID, new HashMap<>());
-    }
-
     /**
      * Gets the project path where the application is running.
      *
@@ -206,27 +259,56 @@ public class GetPackagesFromRepositoriesAndCommit extends DalBaseProcess {
     }
 
     /**
-     * Saves the XML content to a file in the specified module location.
+     * Exports the dataset to its file in the specified module location. The rows are streamed to a temporary file
+     * in the order of their ids, which then replaces the dataset file in a single step. In the same pass, they are
+     * written to the {@link PackageDatasetShards} of the dataset, replacing only the shards that changed.
      *
-     * @param xml The XML content to save.
      * @param projectPath The path of the project.
      * @param modLocation The location of the module.
      * @param moduleJavaPackage The Java package of the module.
-     * @throws Exception if an error occurs while saving the file.
+     * @return The dataset file.
+     * @throws Exception if an error occurs while exporting the dataset.
      */
-    protected void saveXMLToFile(String xml, String projectPath, String modLocation, String moduleJavaPackage) throws Exception {
-        File myFolder = new File(projectPath + (StringUtils.equals(AD_MODULE_ID, "0") ? "" : modLocation + moduleJavaPackage) + "/referencedata/standard");
-        File myFile = new File(myFolder.getPath() + "/Packages_dataset" + ".xml");
+    protected Path exportDataSetToFile(String projectPath, String modLocation, String moduleJavaPackage) throws Exception {
+        Path myFile = getReferenceDataFolder(projectPath, modLocation, moduleJavaPackage).resolve(DATASET_FILE);
+        PackageDatasetShards.export(myFile, getShardFolder(projectPath, modLocation, moduleJavaPackage));
 
-        if (!myFolder.exists()) {
-            myFolder.mkdirs();
-        }
+        log4j.info("Saved XML file to: " + myFile.toAbsolutePath());
+        return myFile;
+    }
 
-        try (FileOutputStream myOutputStream = new FileOutputStream(myFile)) {
-            myOutputStream.write(xml.getBytes("UTF-8"));
-        }
+    /**
+     * Saves the records of the exported dataset as a {@link CatalogSnapshot} next to the XML file, which the local
+     * package update downloads instead of the XML when it is available. The records are streamed from the exported
+     * file, which is read once for the string table of the snapshot and once per entity for its rows, and the
+     * snapshot replaces the previous one in a single step too.
+     *
+     * @param datasetFile The exported dataset file.
+     * @param projectPath The project path.
+     * @param modLocation The location of the module.
+     * @param moduleJavaPackage The Java package of the module.
+     * @throws Exception if an error occurs while reading the dataset or saving the file.
+     */
+    protected void saveSnapshotToFile(Path datasetFile, String projectPath, String modLocation, String moduleJavaPackage) throws Exception {
+        Path myFile = getReferenceDataFolder(projectPath, modLocation, moduleJavaPackage).resolve("Packages_snapshot.bin");
+
+        PackageDatasetWriter.writeAtomically(myFile, out -> CatalogSnapshot.write(handler -> {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(datasetFile))) {
+                PackageDatasetReader.read(in, handler);
+            } catch (XMLStreamException e) {
+                throw new IOException("Failed to read the exported dataset " + datasetFile, e);
+            }
+        }, out));
+
+        log4j.info("Saved catalog snapshot to: {}", myFile.toAbsolutePath());
+    }
+
+    private Path getReferenceDataFolder(String projectPath, String modLocation, String moduleJavaPackage) {
+        return Paths.get(projectPath + (StringUtils.equals(AD_MODULE_ID, "0") ? "" : modLocation + moduleJavaPackage) + "/referencedata/standard");
+    }
 
-        log4j.info("Saved XML file to: " + myFile.getAbsolutePath());
+    private Path getShardFolder(String projectPath, String modLocation, String moduleJavaPackage) {
+        return getReferenceDataFolder(projectPath, modLocation, moduleJavaPackage).resolveSibling("packages");
     }
 
     /**
@@ -271,7 +353,7 @@ public class GetPackagesFromRepositoriesAndCommit extends DalBaseProcess {
 
             int exitCode = process.waitFor();
             if (exitCode == 0) {
-                output.append("Script executed successfully.\n");
+                output.append(SCRIPT_SUCCESS);
             } else {
                 output.append("An error occurred during script execution. Exit code: ").append(exitCode).append("\n");
             }
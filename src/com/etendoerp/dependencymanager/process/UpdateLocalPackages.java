@@ -1,17 +1,30 @@
 package com.etendoerp.dependencymanager.process;
 
-import com.etendoerp.dependencymanager.util.UpdateLocalPackagesUtil;
+import com.etendoerp.dependencymanager.util.CatalogRefreshService;
+import org.openbravo.erpCommon.utility.OBMessageUtils;
 import org.openbravo.scheduling.ProcessBundle;
 import org.openbravo.service.db.DalBaseProcess;
 
+import java.util.concurrent.ExecutionException;
+
 /**
- * This class is responsible for updating local packages.
+ * This class is responsible for updating local packages. The update is run by the {@link CatalogRefreshService}, so
+ * it joins the one already running, if any.
  */
 public class UpdateLocalPackages extends DalBaseProcess {
 
   @Override
   protected void doExecute(ProcessBundle bundle) throws Exception {
-    UpdateLocalPackagesUtil.update();
+    try {
+      CatalogRefreshService.Status status = CatalogRefreshService.getInstance().refresh().get();
+      if (status.getLastOutcome() != CatalogRefreshService.Outcome.IMPORTED) {
+        bundle.getLogger().logln(OBMessageUtils.messageBD(
+            status.getLastOutcome() == CatalogRefreshService.Outcome.RUNNING_ON_OTHER_NODE
+                ? "ETDEP_Package_Update_Running_Other_Node" : "ETDEP_Package_Update_Other_Node"));
+      }
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+    }
   }
 
 }
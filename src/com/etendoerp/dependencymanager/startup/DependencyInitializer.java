@@ -2,16 +2,16 @@ package com.etendoerp.dependencymanager.startup;
 
 import java.util.Properties;
 
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 
-import com.etendoerp.dependencymanager.util.UpdateLocalPackagesUtil;
+import com.etendoerp.dependencymanager.util.CatalogRefreshService;
 
 import org.apache.commons.lang3.BooleanUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.openbravo.base.session.OBPropertiesProvider;
 import org.openbravo.client.kernel.ApplicationInitializer;
-import org.openbravo.dal.service.OBDal;
 
 @ApplicationScoped
 public class DependencyInitializer implements ApplicationInitializer {
@@ -20,22 +20,23 @@ public class DependencyInitializer implements ApplicationInitializer {
 
   /**
    * This class is responsible for initializing some operations related to package updates in the application.
+   * The update runs in the background, scheduled by the {@link CatalogRefreshService}.
    */
   public void initialize() {
     Properties properties = OBPropertiesProvider.getInstance().getOpenbravoProperties();
     String updateLocalPackages = properties.getProperty(UPDATE_LOCAL_PACKAGES_PROPERTY, "");
     if (!BooleanUtils.toBoolean(updateLocalPackages)){
-      new Thread(() -> {
-        try {
-          UpdateLocalPackagesUtil.update();
-          OBDal.getInstance().commitAndClose();
-          log.info("Etendo package update completed");
-        } catch (Exception e) {
-          log.error("Error when updating packages", e);
-        }
-      }).start();
+      CatalogRefreshService.getInstance().start(properties);
     } else {
       log.info("Etendo local package update skipped");
     }
   }
+
+  /**
+   * Stops the background update when the application is undeployed or reloaded, so its thread does not outlive it.
+   */
+  @PreDestroy
+  public void destroy() {
+    CatalogRefreshService.shutdown();
+  }
 }
@@ -0,0 +1,144 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openbravo.base.exception.OBException;
+
+/**
+ * Digest of the packages, versions and dependencies of the catalog, and of the last one exported to the dataset file,
+ * stored in the {@value #TABLE} table.
+ * <p>
+ * The digest is computed with one query per table, reading its rows in the order of their primary keys, and covers
+ * every column but the audit ones, so the same catalog has the same digest whenever it was written. When the digest
+ * of the catalog matches the last exported one, the dataset file and the repository already hold it and the export
+ * can be skipped.
+ * <p>
+ * The digests of the exports are internal state of the export process, so their table is not registered in the
+ * application dictionary and has no client, organization or audit columns.
+ */
+public class CatalogDigest {
+
+  static final String TABLE = "ETDEP_CATALOG_EXPORT";
+  static final List<String> TABLES = List.of("ETDEP_PACKAGE", "ETDEP_PACKAGE_VERSION", "ETDEP_PACKAGE_DEP");
+  static final Set<String> AUDIT_COLUMNS = Set.of("CREATED", "CREATEDBY", "UPDATED", "UPDATEDBY");
+  private static final String SELECT_SQL = "SELECT CATALOG_DIGEST FROM " + TABLE + " WHERE DATASET_ID = ?";
+  private static final String DELETE_SQL = "DELETE FROM " + TABLE + " WHERE DATASET_ID = ?";
+  private static final String INSERT_SQL = "INSERT INTO " + TABLE
+      + " (DATASET_ID, CATALOG_DIGEST, EXPORTED) VALUES (?, ?, ?)";
+  private static final byte VALUE_END = 0;
+  private static final byte NULL_VALUE = 1;
+  private static final Logger log = LogManager.getLogger();
+
+  private CatalogDigest() {
+  }
+
+  /**
+   * Computes the digest of the catalog.
+   *
+   * @param connection
+   *     the connection to read from
+   * @return the hexadecimal SHA-256 digest
+   */
+  public static String compute(Connection connection) {
+    MessageDigest digest = HttpResponseCache.newSha256();
+    long rows = 0;
+    try {
+      for (String table : TABLES) {
+        digest.update(table.getBytes(StandardCharsets.UTF_8));
+        digest.update(VALUE_END);
+        String sql = "SELECT * FROM " + table + " ORDER BY " + table + "_ID";
+        try (PreparedStatement statement = connection.prepareStatement(sql);
+             ResultSet resultSet = statement.executeQuery()) {
+          rows += digestRows(resultSet, digest);
+        }
+      }
+    } catch (SQLException e) {
+      throw new OBException("Failed to compute the catalog digest", e);
+    }
+    String hex = DatasetImportHashes.toHex(digest.digest());
+    log.debug("Computed catalog digest {} of {} rows", hex, rows);
+    return hex;
+  }
+
+  private static long digestRows(ResultSet resultSet, MessageDigest digest) throws SQLException {
+    ResultSetMetaData metaData = resultSet.getMetaData();
+    int columns = metaData.getColumnCount();
+    boolean[] included = new boolean[columns + 1];
+    for (int column = 1; column <= columns; column++) {
+      included[column] = !AUDIT_COLUMNS.contains(metaData.getColumnName(column).toUpperCase(Locale.ROOT));
+    }
+    long rows = 0;
+    while (resultSet.next()) {
+      for (int column = 1; column <= columns; column++) {
+        if (included[column]) {
+          String value = resultSet.getString(column);
+          if (value == null) {
+            digest.update(NULL_VALUE);
+          } else {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+            digest.update(VALUE_END);
+          }
+        }
+      }
+      rows++;
+    }
+    return rows;
+  }
+
+  /**
+   * @param connection
+   *     the connection to read from
+   * @param datasetId
+   *     the id of the exported dataset
+   * @return the digest of the catalog last exported to the dataset, or null if it was never exported
+   */
+  public static String load(Connection connection, String datasetId) {
+    try (PreparedStatement statement = connection.prepareStatement(SELECT_SQL)) {
+      statement.setString(1, datasetId);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        return resultSet.next() ? resultSet.getString(1) : null;
+      }
+    } catch (SQLException e) {
+      throw new OBException("Failed to load the catalog digest", e);
+    }
+  }
+
+  /**
+   * Stores the digest of the catalog exported to a dataset. The caller commits it.
+   *
+   * @param connection
+   *     the connection to write to
+   * @param datasetId
+   *     the id of the exported dataset
+   * @param digest
+   *     the digest of the exported catalog
+   */
+  public static void save(Connection connection, String datasetId, String digest) {
+    try {
+      try (PreparedStatement delete = connection.prepareStatement(DELETE_SQL)) {
+        delete.setString(1, datasetId);
+        delete.executeUpdate();
+      }
+      try (PreparedStatement insert = connection.prepareStatement(INSERT_SQL)) {
+        insert.setString(1, datasetId);
+        insert.setString(2, digest);
+        insert.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+        insert.executeUpdate();
+      }
+    } catch (SQLException e) {
+      throw new OBException("Failed to save the catalog digest", e);
+    }
+  }
+}
@@ -0,0 +1,352 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openbravo.base.exception.OBException;
+
+/**
+ * Read-only in-memory graph of the package catalog, rebuilt after every sync and import of the catalog and published
+ * with an atomic swap, so concurrent requests read it without locks or queries.
+ * <p>
+ * Package versions are numbered with {@code int} indexes, and the dependencies of every version are stored in
+ * compressed sparse row arrays: the dependencies of version {@code v} are the indexes from {@code edgeStart[v]} to
+ * {@code edgeStart[v + 1]}, each one with the index of the version it is followed to, or -1 if it is not followed.
+ * As in the {@link DependencyClosure}, the {@value DependencyTreeBuilder#ETENDO_CORE} dependencies are not part of
+ * the graph; they are folded into the core version range of their version, which is parsed once together with the
+ * version numbers, so compatibility checks only compare numbers.
+ * <p>
+ * The graph holds the catalog as it was committed when it was built. The versions written afterwards by other means
+ * are not in it, and the callers fall back to the database for them.
+ */
+public class CatalogGraph {
+
+  private static final String VERSIONS_SQL = "SELECT ETDEP_PACKAGE_VERSION_ID, ETDEP_PACKAGE_ID, VERSION, FROM_CORE, "
+      + "LATEST_CORE FROM ETDEP_PACKAGE_VERSION";
+  private static final String DEPENDENCIES_SQL = "SELECT ETDEP_PACKAGE_DEP_ID, ETDEP_PACKAGE_VERSION_ID, "
+      + "DEPENDENCY_VERSION_ID, ARTIFACT, VERSION, ISEXTERNALDEPENDENCY FROM ETDEP_PACKAGE_DEP "
+      + "ORDER BY ETDEP_PACKAGE_DEP_ID";
+  private static final AtomicReference<CatalogGraph> current = new AtomicReference<>();
+  private static final Logger log = LogManager.getLogger();
+
+  private final String[] versionIds;
+  private final String[] versionNames;
+  private final int[][] versionNumbers;
+  private final VersionRange[] coreRanges;
+  private final Map<String, Integer> versionIndex;
+  private final Map<String, int[]> packageVersions;
+  private final int[] edgeStart;
+  private final int[] edgeTarget;
+  private final String[] dependencyIds;
+
+  private CatalogGraph(Builder builder) {
+    int versions = builder.versionIds.size();
+    versionIds = builder.versionIds.toArray(new String[0]);
+    versionNames = builder.versionNames.toArray(new String[0]);
+    versionNumbers = new int[versions][];
+    coreRanges = new VersionRange[versions];
+    versionIndex = Collections.unmodifiableMap(builder.versionIndex);
+    for (int v = 0; v < versions; v++) {
+      versionNumbers[v] = parseVersion(versionNames[v]);
+      String coreRange = builder.coreDependencyRanges.get(v);
+      if (StringUtils.isEmpty(coreRange) && !StringUtils.isAllBlank(builder.fromCores.get(v),
+          builder.latestCores.get(v))) {
+        coreRange = "[" + builder.fromCores.get(v) + ", " + builder.latestCores.get(v) + ")";
+      }
+      coreRanges[v] = StringUtils.isEmpty(coreRange) ? null : VersionRange.parse(coreRange);
+    }
+
+    Map<String, int[]> byPackage = new HashMap<>();
+    builder.packageVersions.forEach((packageId, indexes) -> byPackage.put(packageId, indexes.stream()
+        .sorted((a, b) -> compareVersions(versionNumbers[b], versionNumbers[a]))
+        .mapToInt(Integer::intValue)
+        .toArray()));
+    packageVersions = Collections.unmodifiableMap(byPackage);
+
+    int edges = builder.edgeOwners.size();
+    edgeStart = new int[versions + 1];
+    for (int owner : builder.edgeOwners) {
+      edgeStart[owner + 1]++;
+    }
+    for (int v = 0; v < versions; v++) {
+      edgeStart[v + 1] += edgeStart[v];
+    }
+    edgeTarget = new int[edges];
+    dependencyIds = new String[edges];
+    int[] next = edgeStart.clone();
+    for (int e = 0; e < edges; e++) {
+      int position = next[builder.edgeOwners.get(e)]++;
+      edgeTarget[position] = builder.edgeTargets.get(e);
+      dependencyIds[position] = builder.edgeIds.get(e);
+    }
+  }
+
+  /**
+   * @return the graph published last, or null if none was built yet
+   */
+  public static CatalogGraph get() {
+    return current.get();
+  }
+
+  /**
+   * Builds the graph of the catalog and publishes it, replacing the previous one. If it cannot be built, the
+   * previous graph is kept.
+   *
+   * @param connection
+   *     the connection to read the committed catalog from
+   */
+  public static void rebuild(Connection connection) {
+    long start = System.nanoTime();
+    try {
+      CatalogGraph graph = build(connection);
+      current.set(graph);
+      log.info("Built the catalog graph of {} package versions and {} dependencies in {} ms",
+          graph.versionIds.length, graph.dependencyIds.length,
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    } catch (Exception e) {
+      log.warn("Could not build the catalog graph, keeping the previous one", e);
+    }
+  }
+
+  /**
+   * Builds the graph of the catalog with one query per table.
+   *
+   * @param connection
+   *     the connection to read from
+   * @return the graph, which is not published
+   */
+  public static CatalogGraph build(Connection connection) {
+    Builder builder = new Builder();
+    try {
+      try (PreparedStatement statement = connection.prepareStatement(VERSIONS_SQL);
+           ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          builder.addVersion(resultSet.getString(1), resultSet.getString(2), resultSet.getString(3),
+              resultSet.getString(4), resultSet.getString(5));
+        }
+      }
+      try (PreparedStatement statement = connection.prepareStatement(DEPENDENCIES_SQL);
+           ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          builder.addDependency(resultSet.getString(1), resultSet.getString(2), resultSet.getString(3),
+              resultSet.getString(4), resultSet.getString(5), StringUtils.equals("Y", resultSet.getString(6)));
+        }
+      }
+    } catch (SQLException e) {
+      throw new OBException("Failed to build the catalog graph", e);
+    }
+    return new CatalogGraph(builder);
+  }
+
+  /**
+   * @param versionId
+   *     the id of a package version
+   * @return true if the version is in the graph
+   */
+  public boolean contains(String versionId) {
+    return versionIndex.containsKey(versionId);
+  }
+
+  /**
+   * Walks breadth-first the closure of a package version, following the dependencies of every version once.
+   *
+   * @param versionId
+   *     the id of the package version
+   * @return the ids of the dependencies of its closure, by lowest depth, each one with the id of the dependency it is
+   *     reached through, or null for the dependencies of the version itself. Empty if the version is not in the graph.
+   */
+  public Map<String, String> closure(String versionId) {
+    Map<String, String> closure = new LinkedHashMap<>();
+    Integer root = versionIndex.get(versionId);
+    if (root == null) {
+      return closure;
+    }
+    boolean[] expanded = new boolean[versionIds.length];
+    int[] queue = new int[versionIds.length];
+    int[] reachedThrough = new int[versionIds.length];
+    int head = 0;
+    int tail = 0;
+    expanded[root] = true;
+    queue[tail] = root;
+    reachedThrough[tail++] = -1;
+    while (head < tail) {
+      int version = queue[head];
+      int through = reachedThrough[head++];
+      String parentId = through < 0 ? null : dependencyIds[through];
+      for (int e = edgeStart[version]; e < edgeStart[version + 1]; e++) {
+        closure.putIfAbsent(dependencyIds[e], parentId);
+        int target = edgeTarget[e];
+        if (target >= 0 && !expanded[target]) {
+          expanded[target] = true;
+          queue[tail] = target;
+          reachedThrough[tail++] = e;
+        }
+      }
+    }
+    return closure;
+  }
+
+  /**
+   * Finds the newest version of a package compatible with a core version, as
+   * {@link PackageUtil#getCoreCompatibleOrLatestVersion} does.
+   *
+   * @param packageId
+   *     the id of the package
+   * @param coreVersion
+   *     the core version to check
+   * @return the newest compatible version, the newest version if none is compatible, or null if the package has no
+   *     versions in the graph
+   */
+  public String getCoreCompatibleOrLatestVersion(String packageId, String coreVersion) {
+    int[] versions = packageVersions.get(packageId);
+    if (versions == null || versions.length == 0) {
+      return null;
+    }
+    int[] core = parseVersion(coreVersion);
+    for (int version : versions) {
+      if (isCoreCompatible(version, core)) {
+        return versionNames[version];
+      }
+    }
+    return versionNames[versions[0]];
+  }
+
+  private boolean isCoreCompatible(int version, int[] core) {
+    VersionRange range = coreRanges[version];
+    return range == null || (core != null && range.contains(core));
+  }
+
+  /**
+   * Parses a version of numbers separated by dots, as compared by {@link PackageUtil#compareVersions}.
+   *
+   * @return the numbers of the version, or null if it is not made of numbers only
+   */
+  static int[] parseVersion(String version) {
+    if (StringUtils.isEmpty(version)) {
+      return null;
+    }
+    String[] parts = version.split("\\.");
+    int[] numbers = new int[parts.length];
+    for (int i = 0; i < parts.length; i++) {
+      try {
+        numbers[i] = Integer.parseInt(parts[i]);
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+    return numbers;
+  }
+
+  /**
+   * Compares parsed versions as {@link PackageUtil#compareVersions} does, ordering the versions that could not be
+   * parsed first.
+   */
+  static int compareVersions(int[] version1, int[] version2) {
+    if (version1 == null || version2 == null) {
+      return version1 == null ? (version2 == null ? 0 : -1) : 1;
+    }
+    int length = Math.max(version1.length, version2.length);
+    for (int i = 0; i < length; i++) {
+      int part1 = i < version1.length ? version1[i] : 0;
+      int part2 = i < version2.length ? version2[i] : 0;
+      if (part1 != part2) {
+        return Integer.compare(part1, part2);
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Version range parsed as {@link PackageUtil#isCompatible} reads it. A range that cannot be parsed contains no
+   * version.
+   */
+  static class VersionRange {
+    private final int[] lower;
+    private final int[] upper;
+    private final boolean lowerInclusive;
+    private final boolean upperInclusive;
+
+    private VersionRange(int[] lower, int[] upper, boolean lowerInclusive, boolean upperInclusive) {
+      this.lower = lower;
+      this.upper = upper;
+      this.lowerInclusive = lowerInclusive;
+      this.upperInclusive = upperInclusive;
+    }
+
+    static VersionRange parse(String range) {
+      String cleanRange = range.length() > 2 ? range.substring(1, range.length() - 1) : "";
+      String[] limits = StringUtils.split(cleanRange, ",");
+      boolean valid = limits != null && limits.length >= 2;
+      return new VersionRange(valid ? parseVersion(StringUtils.trim(limits[0])) : null,
+          valid ? parseVersion(StringUtils.trim(limits[1])) : null, range.startsWith("["), range.endsWith("]"));
+    }
+
+    boolean contains(int[] version) {
+      if (lower == null || upper == null) {
+        return false;
+      }
+      int lowerComparison = compareVersions(version, lower);
+      int upperComparison = compareVersions(version, upper);
+      return (lowerInclusive ? lowerComparison >= 0 : lowerComparison > 0)
+          && (upperInclusive ? upperComparison <= 0 : upperComparison < 0);
+    }
+  }
+
+  /**
+   * Rows of the catalog read to build a graph.
+   */
+  private static class Builder {
+    private final List<String> versionIds = new ArrayList<>();
+    private final List<String> versionNames = new ArrayList<>();
+    private final List<String> fromCores = new ArrayList<>();
+    private final List<String> latestCores = new ArrayList<>();
+    private final List<String> coreDependencyRanges = new ArrayList<>();
+    private final Map<String, Integer> versionIndex = new HashMap<>();
+    private final Map<String, List<Integer>> packageVersions = new HashMap<>();
+    private final List<Integer> edgeOwners = new ArrayList<>();
+    private final List<Integer> edgeTargets = new ArrayList<>();
+    private final List<String> edgeIds = new ArrayList<>();
+
+    private void addVersion(String id, String packageId, String version, String fromCore, String latestCore) {
+      int index = versionIds.size();
+      versionIds.add(id);
+      versionNames.add(version);
+      fromCores.add(fromCore);
+      latestCores.add(latestCore);
+      coreDependencyRanges.add(null);
+      versionIndex.put(id, index);
+      packageVersions.computeIfAbsent(packageId, key -> new ArrayList<>()).add(index);
+    }
+
+    private void addDependency(String id, String versionId, String dependencyVersionId, String artifact,
+        String version, boolean external) {
+      Integer owner = versionIndex.get(versionId);
+      if (owner == null) {
+        return;
+      }
+      if (StringUtils.equals(DependencyTreeBuilder.ETENDO_CORE, artifact)) {
+        if (coreDependencyRanges.get(owner) == null) {
+          coreDependencyRanges.set(owner, StringUtils.defaultString(version));
+        }
+        return;
+      }
+      Integer target = external || dependencyVersionId == null ? null : versionIndex.get(dependencyVersionId);
+      edgeOwners.add(owner);
+      edgeTargets.add(target == null ? -1 : target);
+      edgeIds.add(id);
+    }
+  }
+}
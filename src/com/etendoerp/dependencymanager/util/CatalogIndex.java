@@ -0,0 +1,240 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openbravo.base.exception.OBException;
+
+/**
+ * In-memory index of the keys of the package catalog, used by the repository sync to check which packages,
+ * versions and dependencies already exist without querying the database for every row.
+ * <p>
+ * The index is loaded with a single projection query per table, and kept up to date by the sync as it inserts
+ * new rows through the {@link CatalogWriter}.
+ */
+public class CatalogIndex {
+
+  private static final String PACKAGES_SQL = "SELECT ETDEP_PACKAGE_ID, DEPGROUP, ARTIFACT FROM ETDEP_PACKAGE";
+  private static final String VERSIONS_SQL = "SELECT ETDEP_PACKAGE_VERSION_ID, ETDEP_PACKAGE_ID, VERSION "
+      + "FROM ETDEP_PACKAGE_VERSION";
+  private static final String DEPENDENCIES_SQL = "SELECT ETDEP_PACKAGE_VERSION_ID, DEPGROUP, ARTIFACT, VERSION "
+      + "FROM ETDEP_PACKAGE_DEP";
+  private static final Logger log = LogManager.getLogger();
+
+  private final Map<List<String>, String> packageIds = new HashMap<>();
+  private final Map<String, CatalogPackage> packages = new HashMap<>();
+  private final Map<String, CatalogPackage> packagesByName = new HashMap<>();
+  private final Map<List<String>, String> versionIds = new HashMap<>();
+  private final Map<String, CatalogVersion> versions = new HashMap<>();
+  private final Map<String, List<CatalogVersion>> versionsByPackage = new HashMap<>();
+  private final Set<String> versionsWithDependencies = new HashSet<>();
+  private final Set<List<String>> dependencies = new HashSet<>();
+
+  /**
+   * Loads the keys of the whole catalog.
+   *
+   * @param connection
+   *     the connection to read from
+   * @return the index
+   */
+  public static CatalogIndex load(Connection connection) {
+    CatalogIndex index = new CatalogIndex();
+    try {
+      try (PreparedStatement statement = connection.prepareStatement(PACKAGES_SQL);
+           ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          index.addPackage(resultSet.getString(1), resultSet.getString(2), resultSet.getString(3));
+        }
+      }
+      try (PreparedStatement statement = connection.prepareStatement(VERSIONS_SQL);
+           ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          index.addVersion(resultSet.getString(1), resultSet.getString(2), resultSet.getString(3));
+        }
+      }
+      try (PreparedStatement statement = connection.prepareStatement(DEPENDENCIES_SQL);
+           ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          index.addDependency(resultSet.getString(1), resultSet.getString(2), resultSet.getString(3),
+              resultSet.getString(4));
+        }
+      }
+    } catch (SQLException e) {
+      throw new OBException("Failed to load the package catalog", e);
+    }
+    log.debug("Loaded catalog index with {} packages, {} versions and {} dependencies", index.packages.size(),
+        index.versions.size(), index.dependencies.size());
+    return index;
+  }
+
+  /**
+   * @return the id of the package, or null if it does not exist
+   */
+  public String findPackage(String group, String artifact) {
+    return packageIds.get(List.of(StringUtils.defaultString(group), StringUtils.defaultString(artifact)));
+  }
+
+  /**
+   * Adds a package to the index. If the package already exists, the first id is kept.
+   */
+  public void addPackage(String id, String group, String artifact) {
+    packageIds.putIfAbsent(List.of(StringUtils.defaultString(group), StringUtils.defaultString(artifact)), id);
+    CatalogPackage pkg = new CatalogPackage(id, group, artifact);
+    packages.put(id, pkg);
+    packagesByName.putIfAbsent(group + "." + artifact, pkg);
+  }
+
+  /**
+   * @return the package with the given id, or null if it does not exist
+   */
+  public CatalogPackage getPackage(String packageId) {
+    return packages.get(packageId);
+  }
+
+  /**
+   * @return the package named {@code group.artifact}, as in the package repositories, or null if it does not exist
+   */
+  public CatalogPackage findPackageByName(String name) {
+    return packagesByName.get(name);
+  }
+
+  /**
+   * @return the id of the version of the package, or null if it does not exist
+   */
+  public String findVersion(String packageId, String version) {
+    return versionIds.get(List.of(packageId, StringUtils.defaultString(version)));
+  }
+
+  /**
+   * Adds a package version to the index. If the version already exists, the first id is kept.
+   */
+  public void addVersion(String id, String packageId, String version) {
+    CatalogVersion catalogVersion = new CatalogVersion(id, packageId, version);
+    versionIds.putIfAbsent(List.of(packageId, StringUtils.defaultString(version)), id);
+    versions.put(id, catalogVersion);
+    versionsByPackage.computeIfAbsent(packageId, key -> new ArrayList<>()).add(catalogVersion);
+  }
+
+  /**
+   * Finds the latest version of a package, ordering the versions by {@link PackageUtil#VERSION_ORDER}, as
+   * {@link PackageUtil#getLastPackageVersion} does.
+   *
+   * @return the id of the latest version, or null if the package has no versions
+   */
+  public String findLastVersion(String packageId) {
+    List<CatalogVersion> packageVersions = versionsByPackage.getOrDefault(packageId, Collections.emptyList());
+    return packageVersions.stream()
+        .max(Comparator.comparing(CatalogVersion::getVersion, Comparator.nullsFirst(PackageUtil.VERSION_ORDER)))
+        .map(CatalogVersion::getId)
+        .orElse(null);
+  }
+
+  /**
+   * @return every package version of the catalog
+   */
+  public List<CatalogVersion> getVersions() {
+    return new ArrayList<>(versions.values());
+  }
+
+  /**
+   * @return the versions of a package
+   */
+  public List<CatalogVersion> getVersions(String packageId) {
+    return new ArrayList<>(versionsByPackage.getOrDefault(packageId, Collections.emptyList()));
+  }
+
+  /**
+   * @return true if the package version has any dependency
+   */
+  public boolean hasDependencies(String versionId) {
+    return versionsWithDependencies.contains(versionId);
+  }
+
+  /**
+   * @return true if the package version already has the given dependency
+   */
+  public boolean hasDependency(String versionId, String group, String artifact, String version) {
+    return dependencies.contains(dependencyKey(versionId, group, artifact, version));
+  }
+
+  /**
+   * Adds a dependency of a package version to the index.
+   */
+  public void addDependency(String versionId, String group, String artifact, String version) {
+    dependencies.add(dependencyKey(versionId, group, artifact, version));
+    versionsWithDependencies.add(versionId);
+  }
+
+  private static List<String> dependencyKey(String versionId, String group, String artifact, String version) {
+    return List.of(versionId, StringUtils.defaultString(group), StringUtils.defaultString(artifact),
+        StringUtils.defaultString(version));
+  }
+
+  /**
+   * Key of a package of the catalog.
+   */
+  public static class CatalogPackage {
+    private final String id;
+    private final String group;
+    private final String artifact;
+
+    CatalogPackage(String id, String group, String artifact) {
+      this.id = id;
+      this.group = group;
+      this.artifact = artifact;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getGroup() {
+      return group;
+    }
+
+    public String getArtifact() {
+      return artifact;
+    }
+  }
+
+  /**
+   * Key of a package version of the catalog.
+   */
+  public static class CatalogVersion {
+    private final String id;
+    private final String packageId;
+    private final String version;
+
+    CatalogVersion(String id, String packageId, String version) {
+      this.id = id;
+      this.packageId = Objects.requireNonNull(packageId);
+      this.version = version;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getPackageId() {
+      return packageId;
+    }
+
+    public String getVersion() {
+      return version;
+    }
+  }
+}
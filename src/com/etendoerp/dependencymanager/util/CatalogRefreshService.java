@@ -0,0 +1,399 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openbravo.base.session.OBPropertiesProvider;
+import org.openbravo.dal.core.OBContext;
+import org.openbravo.dal.service.OBDal;
+
+/**
+ * Runs the import of the package catalog done by {@link UpdateLocalPackagesUtil#update()} in the background, on a
+ * single daemon thread shared by every trigger.
+ * <p>
+ * Refreshes are single-flight: a trigger that arrives while an import is running, such as the manual update while
+ * the startup one is still going, joins it instead of starting another one. Once {@link #start started}, the
+ * service runs a first refresh after {@value #STARTUP_DELAY_PROPERTY} seconds, so it does not compete with the
+ * warmup of the application, and then every {@value #INTERVAL_PROPERTY} minutes if it is set. Scheduled refreshes
+ * are skipped when the last successful one finished less than {@value #MIN_INTERVAL_PROPERTY} seconds before, and
+ * the thread runs with the lowest priority. The outcome of the last refresh is available from {@link #getStatus}.
+ * <p>
+ * When several nodes share the database, the import is only run by the one holding the {@link ClusterLease}.
+ * <p>
+ * The service is {@link #shutdown shut down} when the application is undeployed, which stops its thread.
+ */
+public class CatalogRefreshService {
+
+  public static final String STARTUP_DELAY_PROPERTY = "etdep.catalog.refresh.startup.delay.seconds";
+  public static final String INTERVAL_PROPERTY = "etdep.catalog.refresh.interval.minutes";
+  public static final String MIN_INTERVAL_PROPERTY = "etdep.catalog.refresh.min.interval.seconds";
+  static final long DEFAULT_STARTUP_DELAY_SECONDS = 60;
+  static final long DEFAULT_INTERVAL_MINUTES = 0;
+  static final long DEFAULT_MIN_INTERVAL_SECONDS = 300;
+  private static final String THREAD_NAME = "etdep-catalog-refresh";
+  private static final String SYSTEM_USER = "100";
+  private static final String SYSTEM_ROLE = "0";
+  private static final String SYSTEM_CLIENT = "0";
+  private static final String SYSTEM_ORG = "0";
+  private static final Logger log = LogManager.getLogger();
+
+  private static CatalogRefreshService instance;
+
+  private final Callable<Result> task;
+  private final ScheduledExecutorService executor;
+  private final AtomicReference<CompletableFuture<Status>> running = new AtomicReference<>();
+  private volatile Status status = new Status(false, null, null, null, 0, null, null);
+  private boolean started;
+
+  CatalogRefreshService(Callable<Result> task) {
+    this.task = task;
+    this.executor = Executors.newSingleThreadScheduledExecutor(new RefreshThreadFactory());
+  }
+
+  /**
+   * @return the service shared by the module, which imports the catalog with {@link UpdateLocalPackagesUtil}
+   */
+  public static synchronized CatalogRefreshService getInstance() {
+    if (instance == null) {
+      instance = new CatalogRefreshService(CatalogRefreshService::updateCatalog);
+    }
+    return instance;
+  }
+
+  /**
+   * Stops the service shared by the module, if it was created, so a redeployed application does not keep its thread
+   * running. The next {@link #getInstance} creates a new one.
+   */
+  public static synchronized void shutdown() {
+    if (instance != null) {
+      instance.stop();
+      instance = null;
+    }
+  }
+
+  /**
+   * Imports the catalog in the system context, as the refresh thread has no context of its own and the rows are
+   * written with the client, organization and user of the context.
+   */
+  private static Result updateCatalog() throws Exception {
+    OBContext previousContext = OBContext.getOBContext();
+    try {
+      OBContext.setOBContext(SYSTEM_USER, SYSTEM_ROLE, SYSTEM_CLIENT, SYSTEM_ORG);
+      return importCatalog();
+    } finally {
+      OBContext.setOBContext(previousContext);
+    }
+  }
+
+  /**
+   * Imports the catalog holding the {@value ClusterLease#CATALOG_IMPORT} lease, so only one of the nodes sharing the
+   * database imports it. If another node holds the lease, this one waits for it to finish and skips the import,
+   * reporting whether the other node finished or was still importing when the wait ended. Either way, the
+   * {@link CatalogGraph} is rebuilt from the imported catalog. The lease is renewed while the import runs, as it takes
+   * longer than the time to live on large catalogs.
+   */
+  private static Result importCatalog() throws Exception {
+    Properties properties = OBPropertiesProvider.getInstance().getOpenbravoProperties();
+    ClusterLease lease;
+    boolean released = false;
+    try {
+      Connection connection = OBDal.getInstance().getConnection();
+      lease = ClusterLease.tryAcquire(connection, ClusterLease.CATALOG_IMPORT, ClusterLease.getTtl(properties));
+      if (lease == null) {
+        released = ClusterLease.awaitRelease(connection, ClusterLease.CATALOG_IMPORT,
+            ClusterLease.getWait(properties));
+        log.info("Etendo package update {} by another node, skipping it", released ? "done" : "still running");
+      }
+    } finally {
+      OBDal.getInstance().commitAndClose();
+    }
+    if (lease == null) {
+      rebuildCatalogGraph();
+      return new Result(released ? Outcome.IMPORTED_BY_OTHER_NODE : Outcome.RUNNING_ON_OTHER_NODE, 0);
+    }
+    try {
+      int rows;
+      try (ClusterLease.Renewal renewal = lease.keepAlive(() -> renewLease(lease))) {
+        rows = UpdateLocalPackagesUtil.update();
+      }
+      lease.release(OBDal.getInstance().getConnection());
+      OBDal.getInstance().commitAndClose();
+      rebuildCatalogGraph();
+      return new Result(Outcome.IMPORTED, rows);
+    } catch (Exception e) {
+      OBDal.getInstance().rollbackAndClose();
+      try {
+        lease.release(OBDal.getInstance().getConnection());
+        OBDal.getInstance().commitAndClose();
+      } catch (Exception releaseException) {
+        log.warn("Could not release lease {}, it expires on its own", lease.getName(), releaseException);
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Renews the lease during the import, which commits only at its end, in a transaction of the renewal thread.
+   */
+  private static void renewLease(ClusterLease lease) {
+    try {
+      lease.renew(OBDal.getInstance().getConnection());
+      OBDal.getInstance().commitAndClose();
+    } catch (RuntimeException e) {
+      OBDal.getInstance().rollbackAndClose();
+      throw e;
+    }
+  }
+
+  /**
+   * Publishes a new {@link CatalogGraph} read from the catalog just committed.
+   */
+  private static void rebuildCatalogGraph() {
+    try {
+      CatalogGraph.rebuild(OBDal.getInstance().getConnection());
+    } finally {
+      OBDal.getInstance().commitAndClose();
+    }
+  }
+
+  /**
+   * Schedules the startup refresh and, if {@value #INTERVAL_PROPERTY} is set, the periodic ones. Later calls do
+   * nothing.
+   *
+   * @param properties
+   *     the Openbravo properties
+   */
+  public synchronized void start(Properties properties) {
+    if (started) {
+      return;
+    }
+    started = true;
+    long startupDelay = Math.max(0,
+        NumberUtils.toLong(properties.getProperty(STARTUP_DELAY_PROPERTY), DEFAULT_STARTUP_DELAY_SECONDS));
+    long interval = NumberUtils.toLong(properties.getProperty(INTERVAL_PROPERTY), DEFAULT_INTERVAL_MINUTES);
+    Duration minInterval = Duration.ofSeconds(
+        NumberUtils.toLong(properties.getProperty(MIN_INTERVAL_PROPERTY), DEFAULT_MIN_INTERVAL_SECONDS));
+    executor.schedule(() -> scheduledRefresh(minInterval), startupDelay, TimeUnit.SECONDS);
+    if (interval > 0) {
+      long period = TimeUnit.MINUTES.toSeconds(interval);
+      executor.scheduleWithFixedDelay(() -> scheduledRefresh(minInterval), startupDelay + period, period,
+          TimeUnit.SECONDS);
+    }
+    log.info("Etendo package update scheduled in {} seconds{}", startupDelay,
+        interval > 0 ? " and then every " + interval + " minutes" : "");
+  }
+
+  /**
+   * Stops the thread of the service: the running refresh is interrupted, the scheduled ones are cancelled and no
+   * refresh can be started any more. A refresh waiting to run fails.
+   */
+  public void stop() {
+    executor.shutdownNow();
+    CompletableFuture<Status> current = running.getAndSet(null);
+    if (current != null) {
+      current.completeExceptionally(new CancellationException("Etendo package update service stopped"));
+    }
+    log.debug("Etendo package update service stopped");
+  }
+
+  /**
+   * Starts a refresh of the catalog, or joins the one already running.
+   *
+   * @return a future completed with the status of the service once the refresh is done, or with the error that
+   *     made it fail
+   */
+  public CompletableFuture<Status> refresh() {
+    CompletableFuture<Status> refresh = new CompletableFuture<>();
+    CompletableFuture<Status> current = running.compareAndExchange(null, refresh);
+    if (current != null) {
+      log.debug("Joining the Etendo package update already running");
+      return current;
+    }
+    try {
+      executor.execute(() -> run(refresh));
+    } catch (RejectedExecutionException e) {
+      running.set(null);
+      refresh.completeExceptionally(e);
+    }
+    return refresh;
+  }
+
+  /**
+   * Starts a refresh unless one is running or the last successful one is more recent than the given interval.
+   *
+   * @param minInterval
+   *     the minimum time between the end of the last successful refresh and a new one
+   * @return true if a refresh was started
+   */
+  boolean scheduledRefresh(Duration minInterval) {
+    if (running.get() != null) {
+      return false;
+    }
+    Status current = status;
+    if (current.getLastSuccess() != null
+        && current.getLastSuccess().plus(minInterval).isAfter(Instant.now())) {
+      log.debug("Skipping the scheduled Etendo package update, the last one finished at {}",
+          current.getLastSuccess());
+      return false;
+    }
+    refresh();
+    return true;
+  }
+
+  private void run(CompletableFuture<Status> refresh) {
+    Instant startedAt = Instant.now();
+    long start = System.nanoTime();
+    status = new Status(true, startedAt, status.lastSuccess, status.lastDuration, status.lastRows, status.lastError,
+        status.lastOutcome);
+    Status result;
+    Exception error = null;
+    try {
+      Result refreshResult = task.call();
+      result = new Status(false, startedAt, Instant.now(), Duration.ofNanos(System.nanoTime() - start),
+          refreshResult.rows, null, refreshResult.outcome);
+      log.info("Etendo package update completed ({}): {} rows in {} ms", refreshResult.outcome, refreshResult.rows,
+          result.getLastDuration().toMillis());
+    } catch (Exception e) {
+      error = e;
+      result = new Status(false, startedAt, status.lastSuccess, Duration.ofNanos(System.nanoTime() - start), 0,
+          e.getMessage(), null);
+      log.error("Error when updating packages", e);
+    }
+    status = result;
+    running.set(null);
+    if (error == null) {
+      refresh.complete(result);
+    } else {
+      refresh.completeExceptionally(error);
+    }
+  }
+
+  /**
+   * @return the status of the service
+   */
+  public Status getStatus() {
+    return status;
+  }
+
+  /**
+   * How a refresh that did not fail ended.
+   */
+  public enum Outcome {
+    /** This node imported the catalog. */
+    IMPORTED,
+    /** Another node held the lease and finished importing the catalog while this one waited. */
+    IMPORTED_BY_OTHER_NODE,
+    /** Another node held the lease and was still importing the catalog when this one stopped waiting. */
+    RUNNING_ON_OTHER_NODE
+  }
+
+  /**
+   * Outcome of the import run by a refresh, and the number of rows it added, changed or removed.
+   */
+  static final class Result {
+    private final Outcome outcome;
+    private final int rows;
+
+    Result(Outcome outcome, int rows) {
+      this.outcome = outcome;
+      this.rows = rows;
+    }
+  }
+
+  /**
+   * Immutable view of the state of the service: whether a refresh is running and the outcome of the last one.
+   */
+  public static final class Status {
+    private final boolean running;
+    private final Instant lastStarted;
+    private final Instant lastSuccess;
+    private final Duration lastDuration;
+    private final int lastRows;
+    private final String lastError;
+    private final Outcome lastOutcome;
+
+    private Status(boolean running, Instant lastStarted, Instant lastSuccess, Duration lastDuration, int lastRows,
+        String lastError, Outcome lastOutcome) {
+      this.running = running;
+      this.lastStarted = lastStarted;
+      this.lastSuccess = lastSuccess;
+      this.lastDuration = lastDuration;
+      this.lastRows = lastRows;
+      this.lastError = lastError;
+      this.lastOutcome = lastOutcome;
+    }
+
+    /**
+     * @return true if a refresh is running
+     */
+    public boolean isRunning() {
+      return running;
+    }
+
+    /**
+     * @return when the last refresh started, or null if none did
+     */
+    public Instant getLastStarted() {
+      return lastStarted;
+    }
+
+    /**
+     * @return when the last successful refresh finished, or null if none did
+     */
+    public Instant getLastSuccess() {
+      return lastSuccess;
+    }
+
+    /**
+     * @return how long the last finished refresh took, or null if none finished
+     */
+    public Duration getLastDuration() {
+      return lastDuration;
+    }
+
+    /**
+     * @return the number of rows added, changed or removed by the last finished refresh
+     */
+    public int getLastRows() {
+      return lastRows;
+    }
+
+    /**
+     * @return the message of the error of the last refresh, or null if it succeeded
+     */
+    public String getLastError() {
+      return lastError;
+    }
+
+    /**
+     * @return how the last refresh ended, or null if it failed or none finished
+     */
+    public Outcome getLastOutcome() {
+      return lastOutcome;
+    }
+  }
+
+  private static class RefreshThreadFactory implements ThreadFactory {
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, THREAD_NAME);
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,325 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.etendoerp.dependencymanager.util.PackageDatasetReader.DatasetRecord;
+
+/**
+ * Compact binary snapshot of the package dataset, published next to {@code Packages_dataset.xml} and preferred by
+ * the import when it is available.
+ * <p>
+ * The snapshot holds the same records as the dataset, grouped by entity. Every entity section lists the names of
+ * its fields once and then one row per record, where every field is an index into a table of the distinct strings
+ * of the snapshot, so the groups, versions and ids repeated across the catalog are stored once. The body is gzip
+ * compressed and preceded by a header with the {@value #MAGIC_TEXT} marker, the format version and the SHA-256
+ * digest of the compressed body, which {@link #verify} checks before any record is read, so a truncated or corrupt
+ * download is rejected as a whole.
+ */
+public class CatalogSnapshot {
+
+  static final String MAGIC_TEXT = "ETDEPSNP";
+  static final int FORMAT_VERSION = 1;
+  private static final byte[] MAGIC = MAGIC_TEXT.getBytes(StandardCharsets.US_ASCII);
+  private static final int DIGEST_LENGTH = 32;
+  private static final int BUFFER_SIZE = 8192;
+  private static final int VARINT_MASK = 0x7F;
+  private static final int VARINT_CONTINUATION = 0x80;
+
+  private CatalogSnapshot() {
+  }
+
+  /**
+   * Writes a snapshot of the records of a source, which is read once to collect the string table and the fields of
+   * every entity, and then once per entity to write its rows. Only the string table and the fields are held in
+   * memory, and the compressed body is written to a temporary file until its digest is known.
+   *
+   * @param source
+   *     the records of the dataset, in the order they must be read back within each entity
+   * @param out
+   *     the stream the snapshot is written to, which is not closed
+   * @throws IOException
+   *     if the records cannot be read or the snapshot cannot be written
+   */
+  public static void write(RecordSource source, OutputStream out) throws IOException {
+    Map<String, Section> sections = new LinkedHashMap<>();
+    Map<String, Integer> strings = new LinkedHashMap<>();
+    source.read(datasetRecord -> {
+      sections.computeIfAbsent(datasetRecord.getEntity(), Section::new).add(datasetRecord);
+      intern(strings, datasetRecord.getEntity());
+      datasetRecord.getValues().forEach((name, value) -> {
+        intern(strings, name);
+        intern(strings, value);
+      });
+      datasetRecord.getReferences().forEach((name, id) -> {
+        intern(strings, name);
+        intern(strings, id);
+      });
+    });
+
+    Path body = Files.createTempFile("etdep-snapshot", ".gz");
+    try {
+      MessageDigest digest = HttpResponseCache.newSha256();
+      try (DataOutputStream data = new DataOutputStream(new GZIPOutputStream(
+          new DigestOutputStream(new BufferedOutputStream(Files.newOutputStream(body)), digest), BUFFER_SIZE))) {
+        writeVarInt(data, strings.size());
+        for (String string : strings.keySet()) {
+          data.writeUTF(string);
+        }
+        writeVarInt(data, sections.size());
+        for (Section section : sections.values()) {
+          section.write(data, strings, source);
+        }
+      }
+
+      DataOutputStream header = new DataOutputStream(out);
+      header.write(MAGIC);
+      header.writeInt(FORMAT_VERSION);
+      header.write(digest.digest());
+      Files.copy(body, header);
+      header.flush();
+    } finally {
+      Files.deleteIfExists(body);
+    }
+  }
+
+  /**
+   * Checks that a file is a snapshot of a supported version whose content matches its digest.
+   *
+   * @param file
+   *     the snapshot file
+   * @throws IOException
+   *     if the file is not a valid snapshot or cannot be read
+   */
+  public static void verify(Path file) throws IOException {
+    byte[] expected;
+    MessageDigest digest = HttpResponseCache.newSha256();
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      expected = readHeader(in);
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+    }
+    if (!MessageDigest.isEqual(expected, digest.digest())) {
+      throw new IOException("The digest of catalog snapshot " + file + " does not match its content");
+    }
+  }
+
+  /**
+   * Reads the records of a snapshot already checked with {@link #verify}.
+   *
+   * @param file
+   *     the snapshot file
+   * @param handler
+   *     the handler every record is passed to, grouped by entity in the order they were written
+   * @return the number of records read
+   * @throws IOException
+   *     if the snapshot cannot be read
+   */
+  public static int read(Path file, Consumer<DatasetRecord> handler) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      readHeader(in);
+      return readBody(new DataInputStream(new GZIPInputStream(in, BUFFER_SIZE)), handler);
+    }
+  }
+
+  private static byte[] readHeader(DataInputStream in) throws IOException {
+    byte[] magic = new byte[MAGIC.length];
+    byte[] expected = new byte[DIGEST_LENGTH];
+    try {
+      in.readFully(magic);
+      if (!Arrays.equals(MAGIC, magic)) {
+        throw new IOException("Not a catalog snapshot");
+      }
+      int version = in.readInt();
+      if (version != FORMAT_VERSION) {
+        throw new IOException("Unsupported catalog snapshot version " + version);
+      }
+      in.readFully(expected);
+    } catch (EOFException e) {
+      throw new IOException("Truncated catalog snapshot", e);
+    }
+    return expected;
+  }
+
+  private static int readBody(DataInputStream data, Consumer<DatasetRecord> handler) throws IOException {
+    String[] strings = new String[readVarInt(data)];
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = data.readUTF();
+    }
+    int records = 0;
+    int sections = readVarInt(data);
+    for (int s = 0; s < sections; s++) {
+      String entity = strings[readVarInt(data)];
+      String[] valueFields = readFields(data, strings);
+      String[] referenceFields = readFields(data, strings);
+      int rows = readVarInt(data);
+      for (int r = 0; r < rows; r++) {
+        DatasetRecord datasetRecord = new DatasetRecord(entity);
+        for (String field : valueFields) {
+          int index = readVarInt(data);
+          if (index > 0) {
+            datasetRecord.putValue(field, strings[index - 1]);
+          }
+        }
+        for (String field : referenceFields) {
+          int index = readVarInt(data);
+          if (index > 0) {
+            datasetRecord.putReference(field, strings[index - 1]);
+          }
+        }
+        handler.accept(datasetRecord);
+        records++;
+      }
+    }
+    return records;
+  }
+
+  private static String[] readFields(DataInputStream data, String[] strings) throws IOException {
+    String[] fields = new String[readVarInt(data)];
+    for (int i = 0; i < fields.length; i++) {
+      fields[i] = strings[readVarInt(data)];
+    }
+    return fields;
+  }
+
+  private static void intern(Map<String, Integer> strings, String string) {
+    strings.putIfAbsent(string, strings.size());
+  }
+
+  static void writeVarInt(DataOutputStream out, int value) throws IOException {
+    int remaining = value;
+    while ((remaining & ~VARINT_MASK) != 0) {
+      out.writeByte((remaining & VARINT_MASK) | VARINT_CONTINUATION);
+      remaining >>>= 7;
+    }
+    out.writeByte(remaining);
+  }
+
+  static int readVarInt(InputStream in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+      int b = in.read();
+      if (b == -1) {
+        throw new EOFException("Truncated catalog snapshot");
+      }
+      value |= (b & VARINT_MASK) << shift;
+      if ((b & VARINT_CONTINUATION) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed catalog snapshot");
+  }
+
+  /**
+   * A source of dataset records that can be read more than once, always returning the same records.
+   */
+  @FunctionalInterface
+  public interface RecordSource {
+
+    /**
+     * Reads every record of the source.
+     *
+     * @param handler
+     *     the handler every record is passed to
+     * @throws IOException
+     *     if the records cannot be read
+     */
+    void read(Consumer<DatasetRecord> handler) throws IOException;
+  }
+
+  /**
+   * The records of an entity, by the names of their fields and their number.
+   */
+  private static class Section {
+    private final String entity;
+    private final Set<String> valueFields = new LinkedHashSet<>();
+    private final Set<String> referenceFields = new LinkedHashSet<>();
+    private int rows;
+
+    private Section(String entity) {
+      this.entity = entity;
+    }
+
+    private void add(DatasetRecord datasetRecord) {
+      valueFields.addAll(datasetRecord.getValues().keySet());
+      referenceFields.addAll(datasetRecord.getReferences().keySet());
+      rows++;
+    }
+
+    /**
+     * Writes the fields of the entity and then its rows, reading them again from the source.
+     */
+    private void write(DataOutputStream data, Map<String, Integer> strings, RecordSource source) throws IOException {
+      writeVarInt(data, strings.get(entity));
+      writeFields(data, strings, valueFields);
+      writeFields(data, strings, referenceFields);
+      writeVarInt(data, rows);
+      int[] written = { 0 };
+      try {
+        source.read(datasetRecord -> {
+          if (entity.equals(datasetRecord.getEntity())) {
+            writeRow(data, strings, datasetRecord);
+            written[0]++;
+          }
+        });
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+      if (written[0] != rows) {
+        throw new IOException("The records of entity " + entity + " changed while the catalog snapshot was written");
+      }
+    }
+
+    private void writeRow(DataOutputStream data, Map<String, Integer> strings, DatasetRecord datasetRecord) {
+      try {
+        for (String field : valueFields) {
+          writeIndex(data, strings, datasetRecord.getValue(field));
+        }
+        for (String field : referenceFields) {
+          writeIndex(data, strings, datasetRecord.getReference(field));
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private static void writeFields(DataOutputStream data, Map<String, Integer> strings, Set<String> fields)
+        throws IOException {
+      writeVarInt(data, fields.size());
+      for (String field : fields) {
+        writeVarInt(data, strings.get(field));
+      }
+    }
+
+    /**
+     * Writes the index of a string plus one, or zero if the record does not have the field.
+     */
+    private static void writeIndex(DataOutputStream data, Map<String, Integer> strings, String string)
+        throws IOException {
+      writeVarInt(data, string == null ? 0 : strings.get(string) + 1);
+    }
+  }
+}
@@ -0,0 +1,286 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openbravo.base.exception.OBException;
+import org.openbravo.dal.core.OBContext;
+import org.openbravo.erpCommon.utility.SequenceIdData;
+
+/**
+ * Writes new rows of the package catalog with JDBC batches, used by the repository sync together with the
+ * {@link CatalogIndex}.
+ * <p>
+ * Rows are queued and sent in batches of {@value #BATCH_SIZE}. Batches are always executed in the order of the
+ * foreign keys (packages, versions, dependencies and then the updates of the versions), so a row is never sent
+ * before the rows it references.
+ * <p>
+ * The rows bypass the DAL, so they are given the values the DAL would set on a new object: the client,
+ * organization and user of the context as AD_CLIENT_ID, AD_ORG_ID, CREATEDBY and UPDATEDBY, ISACTIVE as 'Y', and
+ * the same time as CREATED and UPDATED. The other columns take the defaults of the application dictionary. No
+ * entity observer is registered for the catalog tables, and the rows are not in the DAL session, so they are looked
+ * up through the {@link CatalogIndex} instead.
+ */
+public class CatalogWriter implements AutoCloseable {
+
+  static final int BATCH_SIZE = 500;
+  private static final String AUDIT_COLUMNS = "AD_CLIENT_ID, AD_ORG_ID, ISACTIVE, CREATED, CREATEDBY, UPDATED, UPDATEDBY";
+  private static final String AUDIT_VALUES = "?, ?, 'Y', ?, ?, ?, ?";
+  private static final String INSERT_PACKAGE_SQL = "INSERT INTO ETDEP_PACKAGE (ETDEP_PACKAGE_ID, " + AUDIT_COLUMNS
+      + ", DEPGROUP, ARTIFACT, UPDATE_PACKAGES, BUNDLE) VALUES (?, " + AUDIT_VALUES + ", ?, ?, 'N', 'N')";
+  private static final String INSERT_VERSION_SQL = "INSERT INTO ETDEP_PACKAGE_VERSION (ETDEP_PACKAGE_VERSION_ID, "
+      + AUDIT_COLUMNS + ", ETDEP_PACKAGE_ID, VERSION) VALUES (?, " + AUDIT_VALUES + ", ?, ?)";
+  private static final String INSERT_DEPENDENCY_SQL = "INSERT INTO ETDEP_PACKAGE_DEP (ETDEP_PACKAGE_DEP_ID, "
+      + AUDIT_COLUMNS + ", ETDEP_PACKAGE_VERSION_ID, DEPGROUP, ARTIFACT, VERSION, DEPENDENCY_VERSION_ID, "
+      + "ISEXTERNALDEPENDENCY) VALUES (?, " + AUDIT_VALUES + ", ?, ?, ?, ?, ?, ?)";
+  private static final String UPDATE_CORE_RANGE_SQL = "UPDATE ETDEP_PACKAGE_VERSION SET FROM_CORE = ?, "
+      + "LATEST_CORE = ?, UPDATED = ?, UPDATEDBY = ? WHERE ETDEP_PACKAGE_VERSION_ID = ?";
+  private static final Logger log = LogManager.getLogger();
+
+  private Connection connection;
+  private final String clientId;
+  private final String orgId;
+  private final String userId;
+  private final PreparedStatement[] statements = new PreparedStatement[4];
+  private final int[] pending = new int[4];
+  private int pendingTotal;
+  private int insertedRows;
+  private Set<String> changedVersions = new LinkedHashSet<>();
+
+  private static final int PACKAGES = 0;
+  private static final int VERSIONS = 1;
+  private static final int DEPENDENCIES = 2;
+  private static final int CORE_RANGES = 3;
+  private static final String[] SQL = { INSERT_PACKAGE_SQL, INSERT_VERSION_SQL, INSERT_DEPENDENCY_SQL,
+      UPDATE_CORE_RANGE_SQL };
+
+  /**
+   * Creates a writer that stores the rows with the given audit values.
+   *
+   * @param connection
+   *     the connection to write to, which is committed together with the rest of the process
+   * @param clientId
+   *     the client of the new rows
+   * @param orgId
+   *     the organization of the new rows
+   * @param userId
+   *     the user stored as creator and last updater of the rows
+   */
+  public CatalogWriter(Connection connection, String clientId, String orgId, String userId) {
+    this.connection = connection;
+    this.clientId = clientId;
+    this.orgId = orgId;
+    this.userId = userId;
+  }
+
+  /**
+   * Creates a writer that stores the rows with the client, organization and user of the current context,
+   * as the DAL would.
+   *
+   * @param connection
+   *     the connection to write to
+   * @return the writer
+   */
+  public static CatalogWriter fromContext(Connection connection) {
+    OBContext context = OBContext.getOBContext();
+    return new CatalogWriter(connection, context.getCurrentClient().getId(),
+        context.getCurrentOrganization().getId(), context.getUser().getId());
+  }
+
+  /**
+   * Queues a new package.
+   *
+   * @return the id of the package
+   */
+  public String insertPackage(String group, String artifact) {
+    String id = SequenceIdData.getUUID();
+    PreparedStatement statement = prepare(PACKAGES, id);
+    try {
+      statement.setString(8, group);
+      statement.setString(9, artifact);
+    } catch (SQLException e) {
+      throw new OBException("Failed to queue package " + group + "." + artifact, e);
+    }
+    addBatch(PACKAGES);
+    return id;
+  }
+
+  /**
+   * Queues a new package version.
+   *
+   * @return the id of the package version
+   */
+  public String insertVersion(String packageId, String version) {
+    String id = SequenceIdData.getUUID();
+    PreparedStatement statement = prepare(VERSIONS, id);
+    try {
+      statement.setString(8, packageId);
+      statement.setString(9, version);
+    } catch (SQLException e) {
+      throw new OBException("Failed to queue package version " + version, e);
+    }
+    addBatch(VERSIONS);
+    return id;
+  }
+
+  /**
+   * Queues a new dependency of a package version.
+   *
+   * @param dependencyVersionId
+   *     the package version the dependency resolves to, or null if it is not in the catalog
+   * @param external
+   *     true if the dependency does not resolve to a package version of the catalog
+   * @return the id of the dependency
+   */
+  public String insertDependency(String versionId, String group, String artifact, String version,
+      String dependencyVersionId, boolean external) {
+    String id = SequenceIdData.getUUID();
+    PreparedStatement statement = prepare(DEPENDENCIES, id);
+    try {
+      statement.setString(8, versionId);
+      statement.setString(9, group);
+      statement.setString(10, artifact);
+      statement.setString(11, version);
+      statement.setString(12, dependencyVersionId);
+      statement.setString(13, external ? "Y" : "N");
+    } catch (SQLException e) {
+      throw new OBException("Failed to queue dependency " + group + "." + artifact, e);
+    }
+    addBatch(DEPENDENCIES);
+    changedVersions.add(versionId);
+    return id;
+  }
+
+  /**
+   * Queues the update of the core version range supported by a package version.
+   */
+  public void updateCoreRange(String versionId, String fromCore, String latestCore) {
+    PreparedStatement statement = statement(CORE_RANGES);
+    try {
+      statement.setString(1, fromCore);
+      statement.setString(2, latestCore);
+      statement.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+      statement.setString(4, userId);
+      statement.setString(5, versionId);
+    } catch (SQLException e) {
+      throw new OBException("Failed to queue core range of package version " + versionId, e);
+    }
+    addBatch(CORE_RANGES);
+  }
+
+  /**
+   * Executes every queued row.
+   */
+  public void flush() {
+    if (pendingTotal == 0) {
+      return;
+    }
+    try {
+      for (int i = 0; i < statements.length; i++) {
+        if (pending[i] > 0) {
+          statements[i].executeBatch();
+          if (i != CORE_RANGES) {
+            insertedRows += pending[i];
+          }
+          pending[i] = 0;
+        }
+      }
+      pendingTotal = 0;
+    } catch (SQLException e) {
+      throw new OBException("Failed to write the package catalog", e);
+    }
+  }
+
+  /**
+   * Writes the next rows to another connection, such as the one of the DAL session opened after the previous one
+   * was committed and closed. The queued rows must have been flushed.
+   *
+   * @param connection
+   *     the connection to write to
+   */
+  public void setConnection(Connection connection) {
+    close();
+    Arrays.fill(statements, null);
+    this.connection = connection;
+  }
+
+  /**
+   * Returns the package versions whose dependencies changed since the previous call, so their
+   * {@link DependencyClosure} can be updated once the rows are flushed.
+   *
+   * @return the ids of the package versions with dependencies queued since the previous call
+   */
+  public Set<String> takeChangedVersions() {
+    Set<String> versions = changedVersions;
+    changedVersions = new LinkedHashSet<>();
+    return versions;
+  }
+
+  /**
+   * @return the number of rows inserted so far
+   */
+  public int getInsertedRows() {
+    return insertedRows;
+  }
+
+  @Override
+  public void close() {
+    for (PreparedStatement statement : statements) {
+      if (statement != null) {
+        try {
+          statement.close();
+        } catch (SQLException e) {
+          log.warn("Could not close catalog statement", e);
+        }
+      }
+    }
+  }
+
+  private PreparedStatement prepare(int type, String id) {
+    PreparedStatement statement = statement(type);
+    Timestamp now = new Timestamp(System.currentTimeMillis());
+    try {
+      statement.setString(1, id);
+      statement.setString(2, clientId);
+      statement.setString(3, orgId);
+      statement.setTimestamp(4, now);
+      statement.setString(5, userId);
+      statement.setTimestamp(6, now);
+      statement.setString(7, userId);
+    } catch (SQLException e) {
+      throw new OBException("Failed to queue catalog row", e);
+    }
+    return statement;
+  }
+
+  private PreparedStatement statement(int type) {
+    if (statements[type] == null) {
+      try {
+        statements[type] = connection.prepareStatement(SQL[type]);
+      } catch (SQLException e) {
+        throw new OBException("Failed to prepare catalog statement", e);
+      }
+    }
+    return statements[type];
+  }
+
+  private void addBatch(int type) {
+    try {
+      statements[type].addBatch();
+    } catch (SQLException e) {
+      throw new OBException("Failed to queue catalog row", e);
+    }
+    pending[type]++;
+    pendingTotal++;
+    if (pendingTotal >= BATCH_SIZE) {
+      flush();
+    }
+  }
+}
@@ -0,0 +1,299 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openbravo.base.exception.OBException;
+
+/**
+ * Lease on a task stored in the {@value #TABLE} table, so that when several nodes share the same database only one
+ * of them runs the catalog import or the repository sync at a time.
+ * <p>
+ * A lease is held until it is released or its expiration time passes, so the lease of a node that stopped in the
+ * middle of a task is taken over by another node once it expires. The expiration is set {@value #TTL_PROPERTY}
+ * seconds ahead when the lease is acquired and every time it is {@link #renew renewed}, which long tasks do at
+ * every commit, or periodically with {@link #keepAlive} when they only commit at their end. The expiration is
+ * written and checked with the clock of the database, so the clocks of the nodes do not need to agree. The nodes
+ * that do not get the lease can {@link #awaitRelease wait} for the holder to finish, as its result is stored in the
+ * same database.
+ * <p>
+ * Leases are shared by all the clients of the instance, so the table is a technical one outside the application
+ * dictionary, with no client, organization or audit columns.
+ */
+public class ClusterLease {
+
+  public static final String CATALOG_IMPORT = "CATALOG_IMPORT";
+  public static final String REPOSITORY_SYNC = "REPOSITORY_SYNC";
+  public static final String TTL_PROPERTY = "etdep.lease.ttl.seconds";
+  public static final String WAIT_PROPERTY = "etdep.lease.wait.seconds";
+  static final String TABLE = "ETDEP_LEASE";
+  static final long DEFAULT_TTL_SECONDS = 900;
+  static final long DEFAULT_WAIT_SECONDS = 600;
+  static final long POLL_INTERVAL_MILLIS = 5000;
+  private static final String EXPIRES_SQL = "CURRENT_TIMESTAMP + ? * INTERVAL '1' SECOND";
+  private static final String TAKE_SQL = "UPDATE " + TABLE + " SET HOLDER = ?, EXPIRES = " + EXPIRES_SQL
+      + ", UPDATED = CURRENT_TIMESTAMP WHERE NAME = ? AND EXPIRES < CURRENT_TIMESTAMP";
+  private static final String INSERT_SQL = "INSERT INTO " + TABLE
+      + " (NAME, HOLDER, EXPIRES, UPDATED) VALUES (?, ?, " + EXPIRES_SQL + ", CURRENT_TIMESTAMP)";
+  private static final String RENEW_SQL = "UPDATE " + TABLE + " SET EXPIRES = " + EXPIRES_SQL
+      + ", UPDATED = CURRENT_TIMESTAMP WHERE NAME = ? AND HOLDER = ?";
+  private static final String DELETE_SQL = "DELETE FROM " + TABLE + " WHERE NAME = ? AND HOLDER = ?";
+  private static final String SELECT_SQL = "SELECT HOLDER FROM " + TABLE
+      + " WHERE NAME = ? AND EXPIRES >= CURRENT_TIMESTAMP";
+  private static final int RENEWALS_PER_TTL = 3;
+  private static final String NODE = nodeName();
+  private static final Logger log = LogManager.getLogger();
+
+  private final String name;
+  private final String holder;
+  private final Duration ttl;
+
+  ClusterLease(String name, String holder, Duration ttl) {
+    this.name = name;
+    this.holder = holder;
+    this.ttl = ttl;
+  }
+
+  /**
+   * @param properties
+   *     the Openbravo properties
+   * @return the time a lease is held without being renewed, from the {@value #TTL_PROPERTY} property
+   */
+  public static Duration getTtl(Properties properties) {
+    return Duration.ofSeconds(
+        Math.max(1, NumberUtils.toLong(properties.getProperty(TTL_PROPERTY), DEFAULT_TTL_SECONDS)));
+  }
+
+  /**
+   * @param properties
+   *     the Openbravo properties
+   * @return the time to wait for a lease held by another node, from the {@value #WAIT_PROPERTY} property
+   */
+  public static Duration getWait(Properties properties) {
+    return Duration.ofSeconds(
+        Math.max(0, NumberUtils.toLong(properties.getProperty(WAIT_PROPERTY), DEFAULT_WAIT_SECONDS)));
+  }
+
+  /**
+   * Acquires a lease if no other node holds it, or if the lease it holds expired. The transaction of the connection
+   * is committed, so the other nodes see the lease, and must not hold any pending work.
+   *
+   * @param connection
+   *     the connection to write to
+   * @param name
+   *     the name of the lease, such as {@value #CATALOG_IMPORT}
+   * @param ttl
+   *     the time the lease is held without being renewed
+   * @return the lease, or null if another node holds it
+   */
+  public static ClusterLease tryAcquire(Connection connection, String name, Duration ttl) {
+    ClusterLease lease = new ClusterLease(name, NODE + "/" + UUID.randomUUID(), ttl);
+    try {
+      boolean acquired;
+      try (PreparedStatement take = connection.prepareStatement(TAKE_SQL)) {
+        take.setString(1, lease.holder);
+        take.setLong(2, ttl.getSeconds());
+        take.setString(3, name);
+        acquired = take.executeUpdate() > 0;
+      }
+      if (!acquired) {
+        acquired = insert(connection, lease);
+      }
+      connection.commit();
+      if (!acquired) {
+        log.info("Lease {} is held by {}", name, getHolder(connection, name));
+        return null;
+      }
+      log.debug("Acquired lease {} as {}", name, lease.holder);
+      return lease;
+    } catch (SQLException e) {
+      throw new OBException("Failed to acquire the lease " + name, e);
+    }
+  }
+
+  /**
+   * Inserts the row of a lease that is not held yet. A node that inserts it at the same time makes the insert fail
+   * with a duplicate key, which is rolled back to a savepoint so the transaction can still be committed.
+   */
+  private static boolean insert(Connection connection, ClusterLease lease) throws SQLException {
+    Savepoint savepoint = connection.setSavepoint();
+    try (PreparedStatement insert = connection.prepareStatement(INSERT_SQL)) {
+      insert.setString(1, lease.name);
+      insert.setString(2, lease.holder);
+      insert.setLong(3, lease.ttl.getSeconds());
+      insert.executeUpdate();
+      return true;
+    } catch (SQLException e) {
+      connection.rollback(savepoint);
+      return false;
+    }
+  }
+
+  /**
+   * @param connection
+   *     the connection to read from
+   * @param name
+   *     the name of the lease
+   * @return the node holding the lease, or null if it is not held
+   */
+  public static String getHolder(Connection connection, String name) {
+    try (PreparedStatement select = connection.prepareStatement(SELECT_SQL)) {
+      select.setString(1, name);
+      try (ResultSet resultSet = select.executeQuery()) {
+        return resultSet.next() ? resultSet.getString(1) : null;
+      }
+    } catch (SQLException e) {
+      throw new OBException("Failed to read the lease " + name, e);
+    }
+  }
+
+  /**
+   * Waits until no node holds a lease, ending the transaction of the connection after every check so the releases
+   * committed by other nodes are seen.
+   *
+   * @param connection
+   *     the connection to read from
+   * @param name
+   *     the name of the lease
+   * @param maxWait
+   *     the maximum time to wait
+   * @return true if the lease was released, false if it is still held after waiting
+   * @throws InterruptedException
+   *     if the thread is interrupted while waiting
+   */
+  public static boolean awaitRelease(Connection connection, String name, Duration maxWait)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + maxWait.toMillis();
+    try {
+      while (true) {
+        boolean held = getHolder(connection, name) != null;
+        connection.rollback();
+        if (!held) {
+          return true;
+        }
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+          return false;
+        }
+        Thread.sleep(Math.min(POLL_INTERVAL_MILLIS, remaining));
+      }
+    } catch (SQLException e) {
+      throw new OBException("Failed to read the lease " + name, e);
+    }
+  }
+
+  /**
+   * Extends the lease for another time to live. The caller commits it, together with the work done so far.
+   *
+   * @param connection
+   *     the connection to write to
+   * @throws OBException
+   *     if the lease expired and another node took it over
+   */
+  public void renew(Connection connection) {
+    int updated;
+    try (PreparedStatement renew = connection.prepareStatement(RENEW_SQL)) {
+      renew.setLong(1, ttl.getSeconds());
+      renew.setString(2, name);
+      renew.setString(3, holder);
+      updated = renew.executeUpdate();
+    } catch (SQLException e) {
+      throw new OBException("Failed to renew the lease " + name, e);
+    }
+    if (updated == 0) {
+      throw new OBException("Lost the lease " + name + ", another node took it over");
+    }
+  }
+
+  /**
+   * Keeps the lease alive while a task that cannot commit before it ends runs, such as the catalog import, renewing
+   * it {@value #RENEWALS_PER_TTL} times per time to live from a daemon thread.
+   *
+   * @param renewal
+   *     renews the lease with {@link #renew} in a transaction of its own, and commits it
+   * @return the renewal, which is stopped when closed
+   */
+  public Renewal keepAlive(Runnable renewal) {
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "etdep-lease-" + name);
+      thread.setDaemon(true);
+      return thread;
+    });
+    long period = Math.max(1, ttl.toMillis() / RENEWALS_PER_TTL);
+    executor.scheduleWithFixedDelay(() -> {
+      try {
+        renewal.run();
+      } catch (RuntimeException e) {
+        log.warn("Could not renew lease {}", name, e);
+      }
+    }, period, period, TimeUnit.MILLISECONDS);
+    return executor::shutdownNow;
+  }
+
+  /**
+   * Releases the lease. The caller commits it.
+   *
+   * @param connection
+   *     the connection to write to
+   */
+  public void release(Connection connection) {
+    try (PreparedStatement delete = connection.prepareStatement(DELETE_SQL)) {
+      delete.setString(1, name);
+      delete.setString(2, holder);
+      delete.executeUpdate();
+    } catch (SQLException e) {
+      throw new OBException("Failed to release the lease " + name, e);
+    }
+  }
+
+  /**
+   * @return the name of the lease
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return the holder of the lease: the node and a unique id of the acquisition
+   */
+  public String getHolder() {
+    return holder;
+  }
+
+  /**
+   * The periodic renewal of a lease started by {@link #keepAlive}.
+   */
+  @FunctionalInterface
+  public interface Renewal extends AutoCloseable {
+
+    /**
+     * Stops renewing the lease.
+     */
+    @Override
+    void close();
+  }
+
+  private static String nodeName() {
+    String host;
+    try {
+      host = InetAddress.getLocalHost().getHostName();
+    } catch (UnknownHostException e) {
+      host = "unknown";
+    }
+    return host + ":" + ProcessHandle.current().pid();
+  }
+}
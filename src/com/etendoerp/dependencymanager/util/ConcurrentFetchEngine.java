@@ -0,0 +1,139 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.openbravo.base.exception.OBException;
+
+/**
+ * Bounded pool used by the repository sync to run HTTP fetches concurrently.
+ * <p>
+ * Tasks submitted here must only perform network I/O and parsing. Every DAL write has to stay on
+ * the thread that consumes the returned futures, which acts as the single writer of the OBDal
+ * session.
+ */
+public class ConcurrentFetchEngine implements AutoCloseable {
+
+  public static final String MAX_CONCURRENT_REQUESTS_PROPERTY = "etdep.sync.max.concurrent.requests";
+  public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 8;
+  private static final String THREAD_NAME_PREFIX = "etdep-sync-fetch-";
+
+  private final ExecutorService executor;
+  private final int maxConcurrentRequests;
+  private final Set<CompletableFuture<?>> pending = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Creates an engine that never has more than the given number of requests in flight.
+   *
+   * @param maxConcurrentRequests
+   *     the maximum number of tasks running at the same time, values lower than 1 are treated as 1
+   */
+  public ConcurrentFetchEngine(int maxConcurrentRequests) {
+    this.maxConcurrentRequests = Math.max(1, maxConcurrentRequests);
+    this.executor = Executors.newFixedThreadPool(this.maxConcurrentRequests, new FetchThreadFactory());
+  }
+
+  /**
+   * Creates an engine sized with the {@value #MAX_CONCURRENT_REQUESTS_PROPERTY} property.
+   *
+   * @param properties
+   *     the Openbravo properties
+   * @return a new engine, using {@value #DEFAULT_MAX_CONCURRENT_REQUESTS} when the property is missing or invalid
+   */
+  public static ConcurrentFetchEngine fromProperties(Properties properties) {
+    int limit = NumberUtils.toInt(properties.getProperty(MAX_CONCURRENT_REQUESTS_PROPERTY),
+        DEFAULT_MAX_CONCURRENT_REQUESTS);
+    return new ConcurrentFetchEngine(limit);
+  }
+
+  /**
+   * Schedules a fetch task.
+   *
+   * @param task
+   *     the task to run, it must not touch the OBDal session
+   * @return a future completed with the task result or with the exception it threw, or cancelled if the engine is
+   *     closed before the task completes
+   */
+  public <T> CompletableFuture<T> submit(Callable<T> task) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    pending.add(future);
+    future.whenComplete((result, exception) -> pending.remove(future));
+    try {
+      executor.execute(() -> {
+        try {
+          future.complete(task.call());
+        } catch (Exception e) {
+          future.completeExceptionally(e);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  /**
+   * Waits for a submitted task and unwraps the exception it may have thrown.
+   *
+   * @param future
+   *     the future returned by {@link #submit(Callable)}
+   * @return the task result
+   * @throws Exception
+   *     the exception thrown by the task
+   */
+  public static <T> T await(Future<T> future) throws Exception {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OBException("Interrupted while waiting for a repository request", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      throw new OBException(cause);
+    }
+  }
+
+  /**
+   * @return the maximum number of requests this engine runs at the same time
+   */
+  public int getMaxConcurrentRequests() {
+    return maxConcurrentRequests;
+  }
+
+  /**
+   * Stops the workers, cancelling any pending fetch. The futures of the fetches that did not complete are cancelled,
+   * so nobody waits on them forever.
+   */
+  @Override
+  public void close() {
+    executor.shutdownNow();
+    for (CompletableFuture<?> future : pending) {
+      future.cancel(true);
+    }
+  }
+
+  private static class FetchThreadFactory implements ThreadFactory {
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,301 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Properties;
+
+import org.apache.commons.lang3.BooleanUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openbravo.base.exception.OBException;
+import org.openbravo.dal.core.OBContext;
+
+import com.etendoerp.dependencymanager.util.PackageDatasetReader.DatasetRecord;
+
+/**
+ * Set-based loader of the package dataset, used instead of the DAL import on PostgreSQL.
+ * <p>
+ * The records are streamed into temporary staging tables with JDBC batches of {@value #BATCH_SIZE} rows, and then
+ * merged into the catalog with one {@code INSERT ... ON CONFLICT DO UPDATE} statement per table, in the order of
+ * the foreign keys, so the import takes a handful of round trips whatever the size of the dataset. The staging
+ * tables are emptied before a load starts staging, so a previous load in the same transaction never leaks rows
+ * into it, and they are dropped when the transaction ends. The mode is disabled with the
+ * {@value #BULK_LOAD_PROPERTY} property.
+ */
+public class DatasetBulkLoader implements AutoCloseable {
+
+  public static final String BULK_LOAD_PROPERTY = "etdep.dataset.bulk.load";
+  static final String RDBMS_PROPERTY = "bbdd.rdbms";
+  static final String POSTGRESQL = "POSTGRE";
+  static final int BATCH_SIZE = 1000;
+  static final String STAGE_PACKAGE = "ETDEP_STAGE_PACKAGE";
+  static final String STAGE_VERSION = "ETDEP_STAGE_PACKAGE_VERSION";
+  static final String STAGE_DEPENDENCY = "ETDEP_STAGE_PACKAGE_DEP";
+  private static final String CREATE_STAGE_SQL = "CREATE TEMPORARY TABLE IF NOT EXISTS %s (%s) ON COMMIT DROP";
+  private static final String[] CREATE_STAGES_SQL = {
+      String.format(CREATE_STAGE_SQL, STAGE_PACKAGE, "ID VARCHAR(32) PRIMARY KEY, ISACTIVE CHAR(1), "
+          + "DEPGROUP VARCHAR(255), ARTIFACT VARCHAR(255), BUNDLE CHAR(1)"),
+      String.format(CREATE_STAGE_SQL, STAGE_VERSION, "ID VARCHAR(32) PRIMARY KEY, ISACTIVE CHAR(1), "
+          + "ETDEP_PACKAGE_ID VARCHAR(32), VERSION VARCHAR(255), FROM_CORE VARCHAR(255), LATEST_CORE VARCHAR(255)"),
+      String.format(CREATE_STAGE_SQL, STAGE_DEPENDENCY, "ID VARCHAR(32) PRIMARY KEY, ISACTIVE CHAR(1), "
+          + "ETDEP_PACKAGE_VERSION_ID VARCHAR(32), DEPGROUP VARCHAR(255), ARTIFACT VARCHAR(255), "
+          + "VERSION VARCHAR(255), DEPENDENCY_VERSION_ID VARCHAR(32), ISEXTERNALDEPENDENCY CHAR(1)") };
+  static final String TRUNCATE_STAGES_SQL = "TRUNCATE TABLE " + STAGE_PACKAGE + ", " + STAGE_VERSION + ", "
+      + STAGE_DEPENDENCY;
+  private static final String[] STAGE_SQL = {
+      "INSERT INTO " + STAGE_PACKAGE + " (ID, ISACTIVE, DEPGROUP, ARTIFACT, BUNDLE) VALUES (?, ?, ?, ?, ?)",
+      "INSERT INTO " + STAGE_VERSION + " (ID, ISACTIVE, ETDEP_PACKAGE_ID, VERSION, FROM_CORE, LATEST_CORE) "
+          + "VALUES (?, ?, ?, ?, ?, ?)",
+      "INSERT INTO " + STAGE_DEPENDENCY + " (ID, ISACTIVE, ETDEP_PACKAGE_VERSION_ID, DEPGROUP, ARTIFACT, VERSION, "
+          + "DEPENDENCY_VERSION_ID, ISEXTERNALDEPENDENCY) VALUES (?, ?, ?, ?, ?, ?, ?, ?)" };
+  private static final String AUDIT_COLUMNS = "AD_CLIENT_ID, AD_ORG_ID, ISACTIVE, CREATED, CREATEDBY, UPDATED, "
+      + "UPDATEDBY";
+  private static final String AUDIT_VALUES = "?, ?, S.ISACTIVE, ?, ?, ?, ?";
+  private static final String AUDIT_UPDATES = "ISACTIVE = EXCLUDED.ISACTIVE, UPDATED = EXCLUDED.UPDATED, "
+      + "UPDATEDBY = EXCLUDED.UPDATEDBY";
+  private static final String MISSING_PACKAGE_SQL = "SELECT S.ID, S.ETDEP_PACKAGE_ID FROM " + STAGE_VERSION
+      + " S WHERE NOT EXISTS (SELECT 1 FROM ETDEP_PACKAGE P WHERE P.ETDEP_PACKAGE_ID = S.ETDEP_PACKAGE_ID)"
+      + " AND NOT EXISTS (SELECT 1 FROM " + STAGE_PACKAGE + " SP WHERE SP.ID = S.ETDEP_PACKAGE_ID) LIMIT 1";
+  private static final String MISSING_VERSION_SQL = "SELECT S.ID, S.ETDEP_PACKAGE_VERSION_ID FROM "
+      + STAGE_DEPENDENCY + " S WHERE NOT EXISTS (SELECT 1 FROM ETDEP_PACKAGE_VERSION V"
+      + " WHERE V.ETDEP_PACKAGE_VERSION_ID = S.ETDEP_PACKAGE_VERSION_ID) AND NOT EXISTS (SELECT 1 FROM "
+      + STAGE_VERSION + " SV WHERE SV.ID = S.ETDEP_PACKAGE_VERSION_ID) LIMIT 1";
+  static final String MERGE_PACKAGES_SQL = "INSERT INTO ETDEP_PACKAGE (ETDEP_PACKAGE_ID, " + AUDIT_COLUMNS
+      + ", DEPGROUP, ARTIFACT, UPDATE_PACKAGES, BUNDLE) SELECT S.ID, " + AUDIT_VALUES
+      + ", S.DEPGROUP, S.ARTIFACT, 'N', S.BUNDLE FROM " + STAGE_PACKAGE + " S"
+      + " ON CONFLICT (ETDEP_PACKAGE_ID) DO UPDATE SET " + AUDIT_UPDATES
+      + ", DEPGROUP = EXCLUDED.DEPGROUP, ARTIFACT = EXCLUDED.ARTIFACT, BUNDLE = EXCLUDED.BUNDLE";
+  static final String MERGE_VERSIONS_SQL = "INSERT INTO ETDEP_PACKAGE_VERSION (ETDEP_PACKAGE_VERSION_ID, "
+      + AUDIT_COLUMNS + ", ETDEP_PACKAGE_ID, VERSION, FROM_CORE, LATEST_CORE) SELECT S.ID, " + AUDIT_VALUES
+      + ", S.ETDEP_PACKAGE_ID, S.VERSION, S.FROM_CORE, S.LATEST_CORE FROM " + STAGE_VERSION + " S"
+      + " ON CONFLICT (ETDEP_PACKAGE_VERSION_ID) DO UPDATE SET " + AUDIT_UPDATES
+      + ", ETDEP_PACKAGE_ID = EXCLUDED.ETDEP_PACKAGE_ID, VERSION = EXCLUDED.VERSION"
+      + ", FROM_CORE = EXCLUDED.FROM_CORE, LATEST_CORE = EXCLUDED.LATEST_CORE";
+  static final String MERGE_DEPENDENCIES_SQL = "INSERT INTO ETDEP_PACKAGE_DEP (ETDEP_PACKAGE_DEP_ID, "
+      + AUDIT_COLUMNS + ", ETDEP_PACKAGE_VERSION_ID, DEPGROUP, ARTIFACT, VERSION, DEPENDENCY_VERSION_ID, "
+      + "ISEXTERNALDEPENDENCY) SELECT S.ID, " + AUDIT_VALUES + ", S.ETDEP_PACKAGE_VERSION_ID, S.DEPGROUP, "
+      + "S.ARTIFACT, S.VERSION, V.ETDEP_PACKAGE_VERSION_ID, S.ISEXTERNALDEPENDENCY FROM " + STAGE_DEPENDENCY + " S"
+      + " LEFT JOIN ETDEP_PACKAGE_VERSION V ON V.ETDEP_PACKAGE_VERSION_ID = S.DEPENDENCY_VERSION_ID"
+      + " ON CONFLICT (ETDEP_PACKAGE_DEP_ID) DO UPDATE SET " + AUDIT_UPDATES
+      + ", ETDEP_PACKAGE_VERSION_ID = EXCLUDED.ETDEP_PACKAGE_VERSION_ID, DEPGROUP = EXCLUDED.DEPGROUP"
+      + ", ARTIFACT = EXCLUDED.ARTIFACT, VERSION = EXCLUDED.VERSION"
+      + ", DEPENDENCY_VERSION_ID = EXCLUDED.DEPENDENCY_VERSION_ID"
+      + ", ISEXTERNALDEPENDENCY = EXCLUDED.ISEXTERNALDEPENDENCY";
+  private static final Logger log = LogManager.getLogger();
+
+  private static final int PACKAGES = 0;
+  private static final int VERSIONS = 1;
+  private static final int DEPENDENCIES = 2;
+
+  private final Connection connection;
+  private final String clientId;
+  private final String orgId;
+  private final String userId;
+  private final PreparedStatement[] statements = new PreparedStatement[3];
+  private final int[] pending = new int[3];
+  private boolean staging;
+  private int stagedRows;
+
+  /**
+   * Creates a loader that stores the rows with the given audit values.
+   *
+   * @param connection
+   *     the connection to write to, which is committed together with the rest of the import
+   * @param clientId
+   *     the client of the new rows
+   * @param orgId
+   *     the organization of the new rows
+   * @param userId
+   *     the user stored as creator and last updater of the rows
+   */
+  public DatasetBulkLoader(Connection connection, String clientId, String orgId, String userId) {
+    this.connection = connection;
+    this.clientId = clientId;
+    this.orgId = orgId;
+    this.userId = userId;
+  }
+
+  /**
+   * Creates a loader that stores the rows with the client, organization and user of the current context.
+   *
+   * @param connection
+   *     the connection to write to
+   * @return the loader
+   */
+  public static DatasetBulkLoader fromContext(Connection connection) {
+    OBContext context = OBContext.getOBContext();
+    return new DatasetBulkLoader(connection, context.getCurrentClient().getId(),
+        context.getCurrentOrganization().getId(), context.getUser().getId());
+  }
+
+  /**
+   * @param properties
+   *     the Openbravo properties
+   * @return true if the database is PostgreSQL and the bulk load is not disabled with {@value #BULK_LOAD_PROPERTY}
+   */
+  public static boolean isEnabled(Properties properties) {
+    return StringUtils.equalsIgnoreCase(POSTGRESQL, properties.getProperty(RDBMS_PROPERTY))
+        && BooleanUtils.toBoolean(properties.getProperty(BULK_LOAD_PROPERTY, "true"));
+  }
+
+  /**
+   * Queues a record of the dataset into its staging table.
+   *
+   * @param datasetRecord
+   *     the record
+   * @return false if the record is not of an entity of the catalog, and was skipped
+   */
+  public boolean stage(DatasetRecord datasetRecord) {
+    try {
+      switch (datasetRecord.getEntity()) {
+        case UpdateLocalPackagesUtil.ETDEP_PACKAGE:
+          stagePackage(datasetRecord);
+          return true;
+        case UpdateLocalPackagesUtil.ETDEP_PACKAGE_VERSION:
+          stageVersion(datasetRecord);
+          return true;
+        case UpdateLocalPackagesUtil.ETDEP_PACKAGE_DEPENDENCY:
+          stageDependency(datasetRecord);
+          return true;
+        default:
+          log.debug("Skipping dataset record of entity {}", datasetRecord.getEntity());
+          return false;
+      }
+    } catch (SQLException e) {
+      throw new OBException("Failed to stage dataset record " + datasetRecord.getId(), e);
+    }
+  }
+
+  private void stagePackage(DatasetRecord datasetRecord) throws SQLException {
+    PreparedStatement statement = prepare(PACKAGES, datasetRecord);
+    statement.setString(3, datasetRecord.getValue(UpdateLocalPackagesUtil.GROUP));
+    statement.setString(4, datasetRecord.getValue(UpdateLocalPackagesUtil.ARTIFACT));
+    statement.setString(5, toYesNo(datasetRecord.getValue(UpdateLocalPackagesUtil.ISBUNDLE)));
+    addBatch(PACKAGES);
+  }
+
+  private void stageVersion(DatasetRecord datasetRecord) throws SQLException {
+    PreparedStatement statement = prepare(VERSIONS, datasetRecord);
+    statement.setString(3, datasetRecord.getReference(UpdateLocalPackagesUtil.ETDEP_PACKAGE_TAG));
+    statement.setString(4, datasetRecord.getValue(UpdateLocalPackagesUtil.VERSION));
+    statement.setString(5, datasetRecord.getValue(UpdateLocalPackagesUtil.FROM_CORE));
+    statement.setString(6, datasetRecord.getValue(UpdateLocalPackagesUtil.LATEST_CORE));
+    addBatch(VERSIONS);
+  }
+
+  private void stageDependency(DatasetRecord datasetRecord) throws SQLException {
+    PreparedStatement statement = prepare(DEPENDENCIES, datasetRecord);
+    statement.setString(3, datasetRecord.getReference(UpdateLocalPackagesUtil.ETDEP_PACKAGE_VERSION_TAG));
+    statement.setString(4, datasetRecord.getValue(UpdateLocalPackagesUtil.GROUP));
+    statement.setString(5, datasetRecord.getValue(UpdateLocalPackagesUtil.ARTIFACT));
+    statement.setString(6, datasetRecord.getValue(UpdateLocalPackagesUtil.VERSION));
+    statement.setString(7, datasetRecord.getReference(UpdateLocalPackagesUtil.DEPENDENCY_VERSION));
+    statement.setString(8, toYesNo(datasetRecord.getValue(UpdateLocalPackagesUtil.EXTERNAL_DEPENDENCY)));
+    addBatch(DEPENDENCIES);
+  }
+
+  /**
+   * Sends the queued records and merges the staging tables into the catalog: packages, then versions and then
+   * dependencies. Dependency versions that are not in the catalog are left empty, as the DAL import does.
+   *
+   * @return the number of rows inserted or updated
+   * @throws OBException
+   *     if a version references a package, or a dependency a version, that is neither staged nor in the catalog
+   */
+  public int apply() {
+    if (!staging) {
+      return 0;
+    }
+    try {
+      flush();
+      checkReferences(MISSING_PACKAGE_SQL, "Package %2$s of package version %1$s not found in the dataset");
+      checkReferences(MISSING_VERSION_SQL,
+          "Package version %2$s of package dependency %1$s not found in the dataset");
+      int merged = 0;
+      Timestamp now = new Timestamp(System.currentTimeMillis());
+      for (String sql : new String[] { MERGE_PACKAGES_SQL, MERGE_VERSIONS_SQL, MERGE_DEPENDENCIES_SQL }) {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+          statement.setString(1, clientId);
+          statement.setString(2, orgId);
+          statement.setTimestamp(3, now);
+          statement.setString(4, userId);
+          statement.setTimestamp(5, now);
+          statement.setString(6, userId);
+          merged += statement.executeUpdate();
+        }
+      }
+      log.debug("Merged {} staged dataset rows into {} catalog rows", stagedRows, merged);
+      return merged;
+    } catch (SQLException e) {
+      throw new OBException("Failed to merge the package dataset", e);
+    }
+  }
+
+  private void checkReferences(String sql, String message) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(sql);
+         ResultSet resultSet = statement.executeQuery()) {
+      if (resultSet.next()) {
+        throw new OBException(String.format(message, resultSet.getString(1), resultSet.getString(2)));
+      }
+    }
+  }
+
+  private void flush() throws SQLException {
+    for (int i = 0; i < statements.length; i++) {
+      if (pending[i] > 0) {
+        statements[i].executeBatch();
+        pending[i] = 0;
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    for (PreparedStatement statement : statements) {
+      if (statement != null) {
+        try {
+          statement.close();
+        } catch (SQLException e) {
+          log.warn("Could not close staging statement", e);
+        }
+      }
+    }
+  }
+
+  private PreparedStatement prepare(int type, DatasetRecord datasetRecord) throws SQLException {
+    if (!staging) {
+      try (Statement statement = connection.createStatement()) {
+        for (String sql : CREATE_STAGES_SQL) {
+          statement.execute(sql);
+        }
+        statement.execute(TRUNCATE_STAGES_SQL);
+      }
+      staging = true;
+    }
+    if (statements[type] == null) {
+      statements[type] = connection.prepareStatement(STAGE_SQL[type]);
+    }
+    PreparedStatement statement = statements[type];
+    statement.setString(1, datasetRecord.getId());
+    statement.setString(2, toYesNo(datasetRecord.getValue(UpdateLocalPackagesUtil.ACTIVE)));
+    return statement;
+  }
+
+  private void addBatch(int type) throws SQLException {
+    statements[type].addBatch();
+    stagedRows++;
+    if (++pending[type] >= BATCH_SIZE) {
+      statements[type].executeBatch();
+      pending[type] = 0;
+    }
+  }
+
+  private static String toYesNo(String value) {
+    return BooleanUtils.toBoolean(value) ? "Y" : "N";
+  }
+}
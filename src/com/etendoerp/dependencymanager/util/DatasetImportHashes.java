@@ -0,0 +1,418 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openbravo.base.exception.OBException;
+
+import com.etendoerp.dependencymanager.util.PackageDatasetReader.DatasetRecord;
+
+/**
+ * Content hashes of the last import of a package dataset, stored in the {@value #TABLE} and {@value #RECORD_TABLE}
+ * tables.
+ * <p>
+ * The hash of the whole file tells whether the dataset changed at all since it was last imported, and the hash of
+ * every record tells which records were added, changed or removed, so only their rows are written. The record
+ * hashes are kept per dataset, whichever file it is read from, while the file hashes are kept per file. They are
+ * checked against the catalog when loaded, so a row deleted from the catalog since the last import is written again.
+ * The tables hold internal import state only, so they are not registered in the application dictionary, have no
+ * client, organization or audit columns, and are accessed through plain JDBC on the DAL connection.
+ * <p>
+ * When the dataset is imported from its shards, only the shards that changed are read, so every record hash also
+ * keeps the shard the record was read from, and only the records of the shards read can be found removed.
+ */
+public class DatasetImportHashes {
+
+  static final String TABLE = "ETDEP_DATASET_IMPORT";
+  static final String RECORD_TABLE = "ETDEP_DATASET_RECORD";
+  private static final String SELECT_SQL = "SELECT CONTENT_HASH FROM " + TABLE + " WHERE DATASET_NAME = ?";
+  private static final String SELECT_RECORDS_SQL = "SELECT R.RECORD_ID, R.ENTITY, R.RECORD_HASH, R.SHARD, "
+      + "COALESCE(P.ETDEP_PACKAGE_ID, V.ETDEP_PACKAGE_VERSION_ID, D.ETDEP_PACKAGE_DEP_ID) FROM " + RECORD_TABLE + " R "
+      + "LEFT JOIN ETDEP_PACKAGE P ON R.ENTITY = '" + UpdateLocalPackagesUtil.ETDEP_PACKAGE
+      + "' AND P.ETDEP_PACKAGE_ID = R.RECORD_ID "
+      + "LEFT JOIN ETDEP_PACKAGE_VERSION V ON R.ENTITY = '" + UpdateLocalPackagesUtil.ETDEP_PACKAGE_VERSION
+      + "' AND V.ETDEP_PACKAGE_VERSION_ID = R.RECORD_ID "
+      + "LEFT JOIN ETDEP_PACKAGE_DEP D ON R.ENTITY = '" + UpdateLocalPackagesUtil.ETDEP_PACKAGE_DEPENDENCY
+      + "' AND D.ETDEP_PACKAGE_DEP_ID = R.RECORD_ID "
+      + "WHERE R.DATASET_NAME = ?";
+  private static final String DELETE_SQL = "DELETE FROM " + TABLE + " WHERE DATASET_NAME = ?";
+  private static final String DELETE_PREFIX_SQL = "DELETE FROM " + TABLE + " WHERE DATASET_NAME LIKE ? ESCAPE '\\'";
+  private static final String DELETE_PREFIX_RECORDS_SQL = "DELETE FROM " + RECORD_TABLE
+      + " WHERE DATASET_NAME LIKE ? ESCAPE '\\'";
+  private static final String INSERT_SQL = "INSERT INTO " + TABLE
+      + " (DATASET_NAME, CONTENT_HASH, IMPORTED) VALUES (?, ?, ?)";
+  private static final String DELETE_RECORD_SQL = "DELETE FROM " + RECORD_TABLE
+      + " WHERE DATASET_NAME = ? AND RECORD_ID = ?";
+  private static final String INSERT_RECORD_SQL = "INSERT INTO " + RECORD_TABLE
+      + " (DATASET_NAME, RECORD_ID, ENTITY, RECORD_HASH, SHARD) VALUES (?, ?, ?, ?, ?)";
+  private static final int BUFFER_SIZE = 8192;
+  private static final Logger log = LogManager.getLogger();
+
+  private final String datasetHash;
+  private final Map<String, RecordHash> stored;
+  private final Map<String, RecordHash> current = new HashMap<>();
+  private final Map<String, String> storedShards;
+  private final Map<String, String> currentShards = new HashMap<>();
+  private final Set<String> readShards = new HashSet<>();
+  private final Set<String> missingShards = new HashSet<>();
+  private boolean missingRows;
+  private String shard;
+
+  DatasetImportHashes(String datasetHash, Map<String, RecordHash> stored) {
+    this(datasetHash, stored, new HashMap<>());
+  }
+
+  DatasetImportHashes(String datasetHash, Map<String, RecordHash> stored, Map<String, String> storedShards) {
+    this.datasetHash = datasetHash;
+    this.stored = stored;
+    this.storedShards = storedShards;
+    findMissingRows();
+  }
+
+  /**
+   * Loads the hashes stored by the last import of a dataset. The hash of a record whose row is no longer in the
+   * catalog, such as a row deleted by hand, is loaded as unknown, so the record is imported again.
+   *
+   * @param connection
+   *     the connection to read from
+   * @param datasetName
+   *     the name of the dataset the records belong to, whichever file they are read from
+   * @param fileName
+   *     the name of the file being imported, such as its URL
+   * @return the hashes
+   */
+  public static DatasetImportHashes load(Connection connection, String datasetName, String fileName) {
+    String datasetHash = loadDatasetHash(connection, fileName);
+    Map<String, RecordHash> stored = new HashMap<>();
+    Map<String, String> storedShards = new HashMap<>();
+    int missing = 0;
+    try (PreparedStatement statement = connection.prepareStatement(SELECT_RECORDS_SQL)) {
+      statement.setString(1, datasetName);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          boolean rowExists = resultSet.getString(5) != null;
+          stored.put(resultSet.getString(1),
+              new RecordHash(resultSet.getString(2), rowExists ? resultSet.getString(3) : null));
+          String recordShard = resultSet.getString(4);
+          if (recordShard != null) {
+            storedShards.put(resultSet.getString(1), recordShard);
+          }
+          if (!rowExists) {
+            missing++;
+          }
+        }
+      }
+    } catch (SQLException e) {
+      throw new OBException("Failed to load the dataset import hashes", e);
+    }
+    log.debug("Loaded {} dataset record hashes, {} of rows no longer in the catalog", stored.size(), missing);
+    return new DatasetImportHashes(datasetHash, stored, storedShards);
+  }
+
+  /**
+   * Loads the hash of the file last imported for a dataset or a shard of a dataset.
+   *
+   * @param connection
+   *     the connection to read from
+   * @param datasetName
+   *     the name of the dataset or of the shard, such as its URL
+   * @return the hash, or null if it was never imported
+   */
+  public static String loadDatasetHash(Connection connection, String datasetName) {
+    try (PreparedStatement statement = connection.prepareStatement(SELECT_SQL)) {
+      statement.setString(1, datasetName);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        return resultSet.next() ? resultSet.getString(1) : null;
+      }
+    } catch (SQLException e) {
+      throw new OBException("Failed to load the dataset import hash", e);
+    }
+  }
+
+  /**
+   * Computes the hexadecimal SHA-256 digest of a file.
+   *
+   * @param file
+   *     the file to digest
+   * @return the digest
+   * @throws IOException
+   *     if the file cannot be read
+   */
+  public static String hashFile(Path file) throws IOException {
+    MessageDigest digest = HttpResponseCache.newSha256();
+    byte[] buffer = new byte[BUFFER_SIZE];
+    try (InputStream in = Files.newInputStream(file)) {
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+    }
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Computes the hexadecimal SHA-256 digest of the content of a record: its entity, values and references, sorted by
+   * name so the order of the fields in the file does not matter.
+   *
+   * @param datasetRecord
+   *     the record
+   * @return the digest
+   */
+  public static String hashRecord(DatasetRecord datasetRecord) {
+    StringBuilder content = new StringBuilder(datasetRecord.getEntity()).append('\n');
+    new TreeMap<>(datasetRecord.getValues()).forEach(
+        (name, value) -> content.append(name).append('=').append(value).append('\n'));
+    new TreeMap<>(datasetRecord.getReferences()).forEach(
+        (name, id) -> content.append(name).append("->").append(id).append('\n'));
+    return toHex(HttpResponseCache.newSha256().digest(content.toString().getBytes(StandardCharsets.UTF_8)));
+  }
+
+  static String toHex(byte[] digest) {
+    return HexFormat.of().formatHex(digest);
+  }
+
+  /**
+   * @param contentHash
+   *     the hash of the file being imported
+   * @return true if the last import of the dataset was of a file with the same hash and all its rows are still in
+   *     the catalog
+   */
+  public boolean isDatasetUnchanged(String contentHash) {
+    return !missingRows && StringUtils.isNotEmpty(contentHash) && StringUtils.equals(datasetHash, contentHash);
+  }
+
+  /**
+   * @param shardName
+   *     the name of a shard of the dataset
+   * @return true if a row of a record last imported from the shard is no longer in the catalog, so the shard must
+   *     be imported again even if it did not change
+   */
+  public boolean hasMissingRows(String shardName) {
+    return missingShards.contains(shardName);
+  }
+
+  /**
+   * Records a record of the file being imported, which is then not removed on {@link #getRemovedRecords}.
+   *
+   * @param datasetRecord
+   *     the record
+   * @return true if the record is new or its content changed since the last import
+   */
+  public boolean isChanged(DatasetRecord datasetRecord) {
+    RecordHash hash = new RecordHash(datasetRecord.getEntity(), hashRecord(datasetRecord));
+    current.put(datasetRecord.getId(), hash);
+    if (shard != null) {
+      currentShards.put(datasetRecord.getId(), shard);
+    }
+    return !hash.equals(stored.get(datasetRecord.getId()));
+  }
+
+  /**
+   * Sets the shard the next records are read from. Once a shard is read, only the records of the shards read, and
+   * the ones never read from a shard, can be found removed.
+   *
+   * @param shardName
+   *     the name of the shard
+   */
+  public void startShard(String shardName) {
+    shard = shardName;
+    readShards.add(shardName);
+  }
+
+  /**
+   * @return the entities of the records imported last time that are not in the files being imported, by record id
+   */
+  public Map<String, String> getRemovedRecords() {
+    Map<String, String> removed = new LinkedHashMap<>();
+    stored.forEach((id, hash) -> {
+      if (!current.containsKey(id) && isRead(storedShards.get(id))) {
+        removed.put(id, hash.entity);
+      }
+    });
+    return removed;
+  }
+
+  /**
+   * @return the entities of the records read that were added or changed since the last import, by record id
+   */
+  public Map<String, String> getChangedRecords() {
+    Map<String, String> changed = new LinkedHashMap<>();
+    current.forEach((id, hash) -> {
+      if (!hash.equals(stored.get(id))) {
+        changed.put(id, hash.entity);
+      }
+    });
+    return changed;
+  }
+
+  private boolean isRead(String recordShard) {
+    return readShards.isEmpty() || recordShard == null || readShards.contains(recordShard);
+  }
+
+  /**
+   * Saves the hash of the imported file and of its added and changed records, and removes the hashes of the removed
+   * records, in JDBC batches.
+   *
+   * @param connection
+   *     the connection to write to, which is committed together with the imported rows
+   * @param datasetName
+   *     the name of the dataset the records belong to
+   * @param fileName
+   *     the name of the imported file
+   * @param contentHash
+   *     the hash of the imported file
+   */
+  public void save(Connection connection, String datasetName, String fileName, String contentHash) {
+    Map<String, String> removed = getRemovedRecords();
+    try (PreparedStatement delete = connection.prepareStatement(DELETE_RECORD_SQL);
+         PreparedStatement insert = connection.prepareStatement(INSERT_RECORD_SQL)) {
+      int changes = 0;
+      for (String id : removed.keySet()) {
+        delete.setString(1, datasetName);
+        delete.setString(2, id);
+        delete.addBatch();
+        changes++;
+      }
+      for (Map.Entry<String, RecordHash> hash : current.entrySet()) {
+        RecordHash previous = stored.get(hash.getKey());
+        String recordShard = currentShards.getOrDefault(hash.getKey(), storedShards.get(hash.getKey()));
+        if (hash.getValue().equals(previous)
+            && StringUtils.equals(recordShard, storedShards.get(hash.getKey()))) {
+          continue;
+        }
+        if (previous != null) {
+          delete.setString(1, datasetName);
+          delete.setString(2, hash.getKey());
+          delete.addBatch();
+        }
+        insert.setString(1, datasetName);
+        insert.setString(2, hash.getKey());
+        insert.setString(3, hash.getValue().entity);
+        insert.setString(4, hash.getValue().hash);
+        insert.setString(5, recordShard);
+        insert.addBatch();
+        changes++;
+      }
+      if (changes > 0) {
+        delete.executeBatch();
+        insert.executeBatch();
+      }
+    } catch (SQLException e) {
+      throw new OBException("Failed to save the dataset record hashes", e);
+    }
+    saveDatasetHash(connection, fileName, contentHash);
+    stored.keySet().removeAll(removed.keySet());
+    storedShards.keySet().removeAll(removed.keySet());
+    stored.putAll(current);
+    storedShards.putAll(currentShards);
+    findMissingRows();
+  }
+
+  private void findMissingRows() {
+    missingRows = false;
+    missingShards.clear();
+    stored.forEach((id, hash) -> {
+      if (hash.hash == null) {
+        missingRows = true;
+        missingShards.add(storedShards.get(id));
+      }
+    });
+  }
+
+  /**
+   * Deletes the hashes of the files whose name starts with a prefix, such as the files of every source of a dataset,
+   * so they are imported again even if they did not change. Record hashes kept under the name of one of those files,
+   * as they were before the sources shared them, are deleted as well.
+   *
+   * @param connection
+   *     the connection to write to, which is committed together with the imported rows
+   * @param prefix
+   *     the prefix of the names of the files
+   */
+  public static void deleteDatasetHashes(Connection connection, String prefix) {
+    String pattern = prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    try (PreparedStatement delete = connection.prepareStatement(DELETE_PREFIX_SQL);
+         PreparedStatement deleteRecords = connection.prepareStatement(DELETE_PREFIX_RECORDS_SQL)) {
+      delete.setString(1, pattern);
+      delete.executeUpdate();
+      deleteRecords.setString(1, pattern);
+      deleteRecords.executeUpdate();
+    } catch (SQLException e) {
+      throw new OBException("Failed to delete the dataset import hashes", e);
+    }
+  }
+
+  /**
+   * Saves the hash of the file imported for a dataset or a shard of a dataset.
+   *
+   * @param connection
+   *     the connection to write to, which is committed together with the imported rows
+   * @param datasetName
+   *     the name of the dataset or of the shard
+   * @param contentHash
+   *     the hash of the imported file
+   */
+  public static void saveDatasetHash(Connection connection, String datasetName, String contentHash) {
+    try (PreparedStatement delete = connection.prepareStatement(DELETE_SQL);
+         PreparedStatement insert = connection.prepareStatement(INSERT_SQL)) {
+      delete.setString(1, datasetName);
+      delete.executeUpdate();
+      insert.setString(1, datasetName);
+      insert.setString(2, contentHash);
+      insert.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+      insert.executeUpdate();
+    } catch (SQLException e) {
+      throw new OBException("Failed to save the dataset import hash", e);
+    }
+  }
+
+  /**
+   * Entity and content hash of a record.
+   */
+  static class RecordHash {
+    private final String entity;
+    private final String hash;
+
+    RecordHash(String entity, String hash) {
+      this.entity = entity;
+      this.hash = hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof RecordHash)) {
+        return false;
+      }
+      RecordHash recordHash = (RecordHash) other;
+      return StringUtils.equals(entity, recordHash.entity) && StringUtils.equals(hash, recordHash.hash);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(entity, hash);
+    }
+  }
+}
@@ -0,0 +1,333 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openbravo.base.exception.OBException;
+
+/**
+ * Transitive closure of the package dependencies, materialized in the {@value #TABLE} table so the dependency tree
+ * of a package version is read with a single indexed query instead of being resolved again on every request.
+ * <p>
+ * Every row holds a root package version, a dependency row reachable from it, the depth it is reached at and the
+ * dependency row it is reached through, empty for the dependencies of the root itself. The closure is walked
+ * breadth-first, so every dependency is stored at its lowest depth, and as in the {@link DependencyResolver} the
+ * {@value DependencyTreeBuilder#ETENDO_CORE} dependencies are left out and the ones of a version are only followed
+ * once, which ends cycles.
+ * <p>
+ * The closure is maintained by the writers of the catalog: the repository sync and the local package update pass
+ * the package versions and dependencies they wrote, and only the roots whose closure reaches them are rebuilt, in
+ * the same transaction. When the table is empty, the closure of the whole catalog is built.
+ * <p>
+ * The closure is derived data, rebuilt from the catalog, so its table is kept outside the application dictionary,
+ * without client, organization or audit columns, and read and written with plain JDBC.
+ */
+public class DependencyClosure {
+
+  static final String TABLE = "ETDEP_PACKAGE_DEP_CLOSURE";
+  private static final String ANY_ROW_SQL = "SELECT ROOT_VERSION_ID FROM " + TABLE;
+  private static final String ALL_VERSIONS_SQL = "SELECT ETDEP_PACKAGE_VERSION_ID FROM ETDEP_PACKAGE_VERSION";
+  private static final String VERSIONS_OF_DEPENDENCIES_SQL = "SELECT ETDEP_PACKAGE_VERSION_ID FROM ETDEP_PACKAGE_DEP "
+      + "WHERE ETDEP_PACKAGE_DEP_ID IN (%s)";
+  private static final String ROOTS_REACHING_VERSIONS_SQL = "SELECT DISTINCT c.ROOT_VERSION_ID FROM " + TABLE
+      + " c JOIN ETDEP_PACKAGE_DEP d ON d.ETDEP_PACKAGE_DEP_ID = c.ETDEP_PACKAGE_DEP_ID "
+      + "WHERE d.DEPENDENCY_VERSION_ID IN (%s)";
+  private static final String ROOTS_REACHING_DEPENDENCIES_SQL = "SELECT DISTINCT ROOT_VERSION_ID FROM " + TABLE
+      + " WHERE ETDEP_PACKAGE_DEP_ID IN (%s)";
+  private static final String DEPENDENCIES_SQL = "SELECT ETDEP_PACKAGE_DEP_ID, ETDEP_PACKAGE_VERSION_ID, "
+      + "DEPENDENCY_VERSION_ID, ARTIFACT, ISEXTERNALDEPENDENCY FROM ETDEP_PACKAGE_DEP "
+      + "WHERE ETDEP_PACKAGE_VERSION_ID IN (%s) ORDER BY ETDEP_PACKAGE_DEP_ID";
+  private static final String DELETE_SQL = "DELETE FROM " + TABLE + " WHERE ROOT_VERSION_ID IN (%s)";
+  private static final String DELETE_ALL_SQL = "DELETE FROM " + TABLE;
+  private static final String INSERT_SQL = "INSERT INTO " + TABLE
+      + " (ROOT_VERSION_ID, ETDEP_PACKAGE_DEP_ID, DEPTH, PARENT_DEP_ID) VALUES (?, ?, ?, ?)";
+  private static final String READ_SQL = "SELECT ETDEP_PACKAGE_DEP_ID, PARENT_DEP_ID FROM " + TABLE
+      + " WHERE ROOT_VERSION_ID = ? ORDER BY DEPTH, ETDEP_PACKAGE_DEP_ID";
+  private static final Logger log = LogManager.getLogger();
+
+  private DependencyClosure() {
+  }
+
+  /**
+   * Rebuilds the closure of the package versions affected by a change of the catalog: the changed versions, the
+   * versions of the changed dependencies, and every version whose closure reaches any of them. The closure of the
+   * whole catalog is built instead if the table is empty. The caller commits it.
+   *
+   * @param connection
+   *     the connection to write to, which must already hold the changes
+   * @param versionIds
+   *     the ids of the package versions whose dependencies were added, changed or removed
+   * @param dependencyIds
+   *     the ids of the dependencies added or changed
+   * @return the number of package versions whose closure was rebuilt
+   */
+  public static int update(Connection connection, Collection<String> versionIds, Collection<String> dependencyIds) {
+    if (versionIds.isEmpty() && dependencyIds.isEmpty()) {
+      return 0;
+    }
+    try {
+      if (isEmpty(connection)) {
+        return rebuild(connection);
+      }
+      Set<String> roots = new LinkedHashSet<>(versionIds);
+      roots.addAll(queryIds(connection, VERSIONS_OF_DEPENDENCIES_SQL, dependencyIds));
+      roots.addAll(queryIds(connection, ROOTS_REACHING_DEPENDENCIES_SQL, dependencyIds));
+      roots.addAll(queryIds(connection, ROOTS_REACHING_VERSIONS_SQL, new ArrayList<>(roots)));
+      execute(connection, DELETE_SQL, roots);
+      int rows = write(connection, roots);
+      log.debug("Rebuilt the dependency closure of {} package versions, {} rows", roots.size(), rows);
+      return roots.size();
+    } catch (SQLException e) {
+      throw new OBException("Failed to update the dependency closure", e);
+    }
+  }
+
+  /**
+   * Rebuilds the closure of every package version of the catalog. The caller commits it.
+   *
+   * @param connection
+   *     the connection to write to
+   * @return the number of package versions of the catalog
+   */
+  public static int rebuild(Connection connection) {
+    try {
+      try (PreparedStatement delete = connection.prepareStatement(DELETE_ALL_SQL)) {
+        delete.executeUpdate();
+      }
+      List<String> roots = new ArrayList<>();
+      try (PreparedStatement statement = connection.prepareStatement(ALL_VERSIONS_SQL);
+           ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          roots.add(resultSet.getString(1));
+        }
+      }
+      int rows = write(connection, roots);
+      log.info("Built the dependency closure of {} package versions, {} rows", roots.size(), rows);
+      return roots.size();
+    } catch (SQLException e) {
+      throw new OBException("Failed to rebuild the dependency closure", e);
+    }
+  }
+
+  /**
+   * Reads the closure of a package version.
+   *
+   * @param connection
+   *     the connection to read from
+   * @param rootVersionId
+   *     the id of the package version
+   * @return the ids of the dependencies of its closure, by lowest depth, each one with the id of the dependency it is
+   *     reached through, or null for the dependencies of the version itself. Empty if the closure of the version is
+   *     not stored.
+   */
+  public static Map<String, String> read(Connection connection, String rootVersionId) {
+    Map<String, String> closure = new LinkedHashMap<>();
+    try (PreparedStatement statement = connection.prepareStatement(READ_SQL)) {
+      statement.setString(1, rootVersionId);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          closure.put(resultSet.getString(1), resultSet.getString(2));
+        }
+      }
+    } catch (SQLException e) {
+      throw new OBException("Failed to read the dependency closure of package version " + rootVersionId, e);
+    }
+    return closure;
+  }
+
+  private static boolean isEmpty(Connection connection) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(ANY_ROW_SQL)) {
+      statement.setMaxRows(1);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        return !resultSet.next();
+      }
+    }
+  }
+
+  /**
+   * Computes and inserts the closure of some package versions, loading the dependency graph below them one level at
+   * a time.
+   */
+  private static int write(Connection connection, Collection<String> roots) throws SQLException {
+    Map<String, List<Edge>> graph = loadGraph(connection, roots);
+    int rows = 0;
+    int pending = 0;
+    try (PreparedStatement insert = connection.prepareStatement(INSERT_SQL)) {
+      for (String root : roots) {
+        for (ClosureRow row : closureOf(root, graph)) {
+          insert.setString(1, root);
+          insert.setString(2, row.dependencyId);
+          insert.setInt(3, row.depth);
+          insert.setString(4, row.parentId);
+          insert.addBatch();
+          rows++;
+          if (++pending >= CatalogWriter.BATCH_SIZE) {
+            insert.executeBatch();
+            pending = 0;
+          }
+        }
+      }
+      if (pending > 0) {
+        insert.executeBatch();
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * Loads breadth-first the dependencies of some package versions and of every version they reach, with one query
+   * per level of the graph.
+   */
+  static Map<String, List<Edge>> loadGraph(Connection connection, Collection<String> roots) throws SQLException {
+    Map<String, List<Edge>> graph = new HashMap<>();
+    Set<String> frontier = new LinkedHashSet<>(roots);
+    while (!frontier.isEmpty()) {
+      for (String versionId : frontier) {
+        graph.put(versionId, new ArrayList<>());
+      }
+      Set<String> next = new LinkedHashSet<>();
+      List<String> versionIds = new ArrayList<>(frontier);
+      for (int from = 0; from < versionIds.size(); from += DependencyResolver.MAX_IN_LIST_SIZE) {
+        List<String> chunk = versionIds.subList(from,
+            Math.min(from + DependencyResolver.MAX_IN_LIST_SIZE, versionIds.size()));
+        try (PreparedStatement statement = connection.prepareStatement(inList(DEPENDENCIES_SQL, chunk.size()))) {
+          setIds(statement, chunk);
+          try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+              if (StringUtils.equals(DependencyTreeBuilder.ETENDO_CORE, resultSet.getString(4))) {
+                continue;
+              }
+              String dependencyVersionId = StringUtils.equals("Y", resultSet.getString(5)) ? null
+                  : resultSet.getString(3);
+              graph.get(resultSet.getString(2)).add(new Edge(resultSet.getString(1), dependencyVersionId));
+              if (dependencyVersionId != null && !graph.containsKey(dependencyVersionId)) {
+                next.add(dependencyVersionId);
+              }
+            }
+          }
+        }
+      }
+      frontier = next;
+    }
+    return graph;
+  }
+
+  /**
+   * Walks breadth-first the closure of a package version, following the dependencies of every version once.
+   */
+  static List<ClosureRow> closureOf(String root, Map<String, List<Edge>> graph) {
+    List<ClosureRow> rows = new ArrayList<>();
+    Set<String> expanded = new HashSet<>(Collections.singleton(root));
+    Deque<ClosureRow> queue = new ArrayDeque<>();
+    queue.add(new ClosureRow(null, root, 0, null));
+    while (!queue.isEmpty()) {
+      ClosureRow reached = queue.poll();
+      for (Edge edge : graph.getOrDefault(reached.versionId, List.of())) {
+        ClosureRow row = new ClosureRow(edge.id, edge.dependencyVersionId, reached.depth + 1, reached.dependencyId);
+        rows.add(row);
+        if (edge.dependencyVersionId != null && expanded.add(edge.dependencyVersionId)) {
+          queue.add(row);
+        }
+      }
+    }
+    return rows;
+  }
+
+  private static Set<String> queryIds(Connection connection, String sql, Collection<String> ids)
+      throws SQLException {
+    Set<String> result = new LinkedHashSet<>();
+    List<String> idList = new ArrayList<>(ids);
+    for (int from = 0; from < idList.size(); from += DependencyResolver.MAX_IN_LIST_SIZE) {
+      List<String> chunk = idList.subList(from, Math.min(from + DependencyResolver.MAX_IN_LIST_SIZE, idList.size()));
+      try (PreparedStatement statement = connection.prepareStatement(inList(sql, chunk.size()))) {
+        setIds(statement, chunk);
+        try (ResultSet resultSet = statement.executeQuery()) {
+          while (resultSet.next()) {
+            result.add(resultSet.getString(1));
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  private static void execute(Connection connection, String sql, Collection<String> ids) throws SQLException {
+    List<String> idList = new ArrayList<>(ids);
+    for (int from = 0; from < idList.size(); from += DependencyResolver.MAX_IN_LIST_SIZE) {
+      List<String> chunk = idList.subList(from, Math.min(from + DependencyResolver.MAX_IN_LIST_SIZE, idList.size()));
+      try (PreparedStatement statement = connection.prepareStatement(inList(sql, chunk.size()))) {
+        setIds(statement, chunk);
+        statement.executeUpdate();
+      }
+    }
+  }
+
+  private static String inList(String sql, int size) {
+    return String.format(sql, String.join(", ", Collections.nCopies(size, "?")));
+  }
+
+  private static void setIds(PreparedStatement statement, List<String> ids) throws SQLException {
+    for (int i = 0; i < ids.size(); i++) {
+      statement.setString(i + 1, ids.get(i));
+    }
+  }
+
+  /**
+   * Dependency of a package version, with the version it is followed to, or null if it is not followed.
+   */
+  static class Edge {
+    private final String id;
+    private final String dependencyVersionId;
+
+    Edge(String id, String dependencyVersionId) {
+      this.id = id;
+      this.dependencyVersionId = dependencyVersionId;
+    }
+  }
+
+  /**
+   * Dependency reached from a root package version.
+   */
+  static class ClosureRow {
+    private final String dependencyId;
+    private final String versionId;
+    private final int depth;
+    private final String parentId;
+
+    private ClosureRow(String dependencyId, String versionId, int depth, String parentId) {
+      this.dependencyId = dependencyId;
+      this.versionId = versionId;
+      this.depth = depth;
+      this.parentId = parentId;
+    }
+
+    String getDependencyId() {
+      return dependencyId;
+    }
+
+    int getDepth() {
+      return depth;
+    }
+
+    String getParentId() {
+      return parentId;
+    }
+  }
+}
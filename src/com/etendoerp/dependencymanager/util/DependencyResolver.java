@@ -0,0 +1,234 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.BooleanUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openbravo.dal.service.OBDal;
+
+import com.etendoerp.dependencymanager.data.PackageDependency;
+import com.etendoerp.dependencymanager.data.PackageVersion;
+
+/**
+ * Resolver of the transitive dependencies of package versions, leaving out the
+ * {@value DependencyTreeBuilder#ETENDO_CORE} dependencies.
+ * <p>
+ * The closure of a package version, every dependency reachable from it, is computed once and cached by version id,
+ * so a version reached through several paths is only expanded once and resolving takes time linear in the number of
+ * versions and dependencies reached. The graph is walked with an explicit stack, so deep graphs do not exhaust the
+ * thread stack, and a dependency on a version that is still being expanded is logged as a cycle and not followed.
+ * The closures of the versions inside a cycle are not cached, as they are only complete for the version the cycle
+ * is entered by.
+ * <p>
+ * The dependencies of the versions are not read from their lazy dependency lists, which would take one query per
+ * version, but loaded breadth-first before expanding: the dependencies of every version of a level of the graph are
+ * loaded with a single {@code IN} query, in chunks of {@value #MAX_IN_LIST_SIZE} ids, so the number of queries
+ * depends on the depth of the graph and not on the number of versions. The dependency lists of the versions are not
+ * modified. A resolver holds DAL objects, so it is meant to be used within a single request.
+ */
+public class DependencyResolver {
+
+  private static final Logger log = LogManager.getLogger();
+  static final int MAX_IN_LIST_SIZE = 1000;
+  private static final String DEPENDENCIES_OF_VERSIONS_HQL = "as pd where pd.packageVersion.id in (:versionIds)";
+
+  private final DependencyLoader loader;
+  private final Map<String, List<PackageDependency>> dependencies = new HashMap<>();
+  private final Map<String, Set<PackageDependency>> closures = new HashMap<>();
+
+  /**
+   * Creates a resolver loading the dependencies through the DAL.
+   */
+  public DependencyResolver() {
+    this(DependencyResolver::loadDependencies);
+  }
+
+  DependencyResolver(DependencyLoader loader) {
+    this.loader = loader;
+  }
+
+  /**
+   * Loads breadth-first the dependency graph below some package versions, one query per level, so resolving them
+   * does not load anything else. Loading the versions to resolve at once shares the queries of their levels.
+   *
+   * @param versions
+   *     the package versions
+   */
+  public void load(Collection<PackageVersion> versions) {
+    Set<String> frontier = new LinkedHashSet<>();
+    for (PackageVersion version : versions) {
+      if (version != null && !dependencies.containsKey(version.getId())) {
+        frontier.add(version.getId());
+      }
+    }
+    int levels = 0;
+    while (!frontier.isEmpty()) {
+      for (String versionId : frontier) {
+        dependencies.put(versionId, new ArrayList<>());
+      }
+      Set<String> next = new LinkedHashSet<>();
+      List<String> versionIds = new ArrayList<>(frontier);
+      for (int from = 0; from < versionIds.size(); from += MAX_IN_LIST_SIZE) {
+        List<String> chunk = versionIds.subList(from, Math.min(from + MAX_IN_LIST_SIZE, versionIds.size()));
+        for (PackageDependency dependency : loader.load(chunk)) {
+          dependencies.get(dependency.getPackageVersion().getId()).add(dependency);
+          if (!isLeaf(dependency) && !dependencies.containsKey(dependency.getDependencyVersion().getId())) {
+            next.add(dependency.getDependencyVersion().getId());
+          }
+        }
+      }
+      frontier = next;
+      levels++;
+    }
+    log.debug("Loaded {} levels of the dependency graph, {} package versions in total", levels, dependencies.size());
+  }
+
+  /**
+   * Resolves the dependencies below a dependency: the closure of its dependency version.
+   *
+   * @param dependency
+   *     the dependency
+   * @return the transitive dependencies, empty for external dependencies and dependencies without version
+   */
+  public List<PackageDependency> resolve(PackageDependency dependency) {
+    if (isLeaf(dependency)) {
+      return new ArrayList<>();
+    }
+    return new ArrayList<>(closureOf(dependency.getDependencyVersion()));
+  }
+
+  /**
+   * Computes the closure of a package version: its dependencies, each one followed by the closure of its version.
+   *
+   * @param version
+   *     the package version
+   * @return the transitive dependencies of the version, which must not be modified
+   */
+  public Set<PackageDependency> closureOf(PackageVersion version) {
+    Set<PackageDependency> cached = closures.get(version.getId());
+    if (cached != null) {
+      return Collections.unmodifiableSet(cached);
+    }
+    load(List.of(version));
+    Deque<Expansion> stack = new ArrayDeque<>();
+    Map<String, Expansion> expanding = new HashMap<>();
+    push(version, stack, expanding);
+    Set<PackageDependency> closure = null;
+    while (closure == null) {
+      Expansion expansion = stack.peek();
+      if (expansion.pending.hasNext()) {
+        PackageDependency dependency = expansion.pending.next();
+        if (StringUtils.equals(DependencyTreeBuilder.ETENDO_CORE, dependency.getArtifact())) {
+          continue;
+        }
+        expansion.closure.add(dependency);
+        if (!isLeaf(dependency)) {
+          follow(expansion, dependency.getDependencyVersion(), stack, expanding);
+        }
+        continue;
+      }
+      stack.pop();
+      expanding.remove(expansion.versionId);
+      if (expansion.lowestDepth >= expansion.depth) {
+        closures.put(expansion.versionId, expansion.closure);
+      }
+      Expansion parent = stack.peek();
+      if (parent == null) {
+        closure = expansion.closure;
+      } else {
+        parent.closure.addAll(expansion.closure);
+        parent.lowestDepth = Math.min(parent.lowestDepth, expansion.lowestDepth);
+      }
+    }
+    return Collections.unmodifiableSet(closure);
+  }
+
+  /**
+   * Adds the closure of the version of a dependency to the version being expanded, from the cache if it is already
+   * computed, or expanding the version next otherwise.
+   */
+  private void follow(Expansion expansion, PackageVersion version, Deque<Expansion> stack,
+      Map<String, Expansion> expanding) {
+    Set<PackageDependency> cached = closures.get(version.getId());
+    if (cached != null) {
+      expansion.closure.addAll(cached);
+      return;
+    }
+    Expansion ancestor = expanding.get(version.getId());
+    if (ancestor != null) {
+      log.warn("Dependency cycle between package versions {} and {}, not following it", expansion.versionId,
+          ancestor.versionId);
+      expansion.lowestDepth = Math.min(expansion.lowestDepth, ancestor.depth);
+      return;
+    }
+    push(version, stack, expanding);
+  }
+
+  private void push(PackageVersion version, Deque<Expansion> stack, Map<String, Expansion> expanding) {
+    Expansion expansion = new Expansion(version.getId(), dependencies.get(version.getId()), stack.size());
+    stack.push(expansion);
+    expanding.put(expansion.versionId, expansion);
+  }
+
+  private static boolean isLeaf(PackageDependency dependency) {
+    return BooleanUtils.isTrue(dependency.isExternalDependency()) || dependency.getDependencyVersion() == null;
+  }
+
+  /**
+   * Loads the dependencies of some package versions with a single query, without filters, as their dependency lists
+   * would. Only the ids of their dependency versions are read, so those are not loaded.
+   */
+  private static List<PackageDependency> loadDependencies(Collection<String> versionIds) {
+    return OBDal.getInstance()
+        .createQuery(PackageDependency.class, DEPENDENCIES_OF_VERSIONS_HQL)
+        .setNamedParameter("versionIds", versionIds)
+        .setFilterOnActive(false)
+        .setFilterOnReadableClients(false)
+        .setFilterOnReadableOrganization(false)
+        .list();
+  }
+
+  /**
+   * Loader of the dependencies of a set of package versions.
+   */
+  @FunctionalInterface
+  interface DependencyLoader {
+    /**
+     * @param versionIds
+     *     the ids of the package versions, at most {@value DependencyResolver#MAX_IN_LIST_SIZE}
+     * @return the dependencies of all of them
+     */
+    List<PackageDependency> load(Collection<String> versionIds);
+  }
+
+  /**
+   * Package version being expanded: the dependencies still to follow, the closure so far, and the depth of the
+   * shallowest version being expanded it reaches through a cycle.
+   */
+  private static class Expansion {
+    private final String versionId;
+    private final int depth;
+    private final Iterator<PackageDependency> pending;
+    private final Set<PackageDependency> closure = new LinkedHashSet<>();
+    private int lowestDepth;
+
+    private Expansion(String versionId, List<PackageDependency> dependencies, int depth) {
+      this.versionId = versionId;
+      this.depth = depth;
+      this.pending = dependencies.iterator();
+      this.lowestDepth = depth;
+    }
+  }
+}
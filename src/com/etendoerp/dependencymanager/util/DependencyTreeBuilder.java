@@ -1,10 +1,13 @@
 package com.etendoerp.dependencymanager.util;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -23,6 +26,7 @@ public class DependencyTreeBuilder {
 
   public static final String RELEASE = "RELEASE";
   public static final String ETENDO_CORE = "etendo-core";
+  private static final String DEPENDENCIES_BY_ID_HQL = "as pd where pd.id in (:ids)";
 
   /**
    * Private constructor to prevent instantiation of this utility class.
@@ -31,7 +35,9 @@ public class DependencyTreeBuilder {
   }
 
   /**
-   * Creates a dependency tree for the given package version.
+   * Creates a dependency tree for the given package version, reading its transitive dependencies from the
+   * {@link CatalogGraph} or its stored {@link DependencyClosure}, or resolving them with a {@link DependencyResolver}
+   * if neither holds it.
    *
    * @param packageVersion
    *     the package version to process
@@ -40,18 +46,15 @@ public class DependencyTreeBuilder {
    *     if an error occurs while resolving dependencies
    */
   public static List<PackageDependency> createDependencyTree(PackageVersion packageVersion) {
-    List<PackageDependency> dependencyList = packageVersion.getETDEPPackageDependencyList();
     try {
-      removeDependecyCore(dependencyList);
-
       Map<String, PackageDependency> dependencyMap = new HashMap<>();
 
-      for (PackageDependency dependency : dependencyList) {
+      Map<String, String> closure = readClosure(packageVersion.getId());
+      Collection<PackageDependency> dependencies = closure.isEmpty()
+          ? new DependencyResolver().closureOf(packageVersion)
+          : loadDependencies(closure.keySet()).values();
+      for (PackageDependency dependency : dependencies) {
         addDependency(dependencyMap, dependency);
-        List<PackageDependency> subDependencies = searchDependency(dependency, dependencyMap);
-        for (PackageDependency subDependency : subDependencies) {
-          addDependency(dependencyMap, subDependency);
-        }
       }
       return dependencyMap.values().stream().filter(dependency -> !isBundle(dependency)).collect(Collectors.toList());
     } catch (Exception e) {
@@ -59,6 +62,77 @@ public class DependencyTreeBuilder {
     }
   }
 
+  /**
+   * Adds the sub-dependencies of a package version from the {@link CatalogGraph} or its stored
+   * {@link DependencyClosure}: every dependency of the closure that is not a dependency of the version itself, with
+   * the dependency of the version it is reached through as parent.
+   *
+   * @param packageVersion
+   *     the package version
+   * @param dependencyMap
+   *     the map the sub-dependencies are added to
+   * @param parentMap
+   *     the map updated with the parent of every sub-dependency
+   * @return false if the closure of the version is not available, so nothing was added
+   */
+  public static boolean addDependenciesFromClosure(PackageVersion packageVersion,
+      Map<String, PackageDependency> dependencyMap, Map<String, String> parentMap) {
+    Map<String, String> closure = readClosure(packageVersion.getId());
+    if (closure.isEmpty()) {
+      return false;
+    }
+    Map<String, String> topParents = new LinkedHashMap<>();
+    closure.forEach((id, parentId) -> {
+      if (parentId != null) {
+        topParents.put(id, topParents.getOrDefault(parentId, parentId));
+      }
+    });
+    for (PackageDependency dependency : loadDependencies(topParents.keySet()).values()) {
+      addDependency(dependencyMap, dependency);
+      parentMap.put(dependency.getId(), topParents.get(dependency.getId()));
+    }
+    return true;
+  }
+
+  /**
+   * Reads the closure of a package version from the {@link CatalogGraph} if it holds the version, or from the
+   * {@link DependencyClosure} table otherwise.
+   */
+  private static Map<String, String> readClosure(String versionId) {
+    CatalogGraph graph = CatalogGraph.get();
+    if (graph != null && graph.contains(versionId)) {
+      return graph.closure(versionId);
+    }
+    return DependencyClosure.read(OBDal.getInstance().getConnection(), versionId);
+  }
+
+  /**
+   * Loads dependencies by id, in chunks that fit in an {@code IN} list.
+   *
+   * @return the dependencies found, in the order of the ids
+   */
+  private static Map<String, PackageDependency> loadDependencies(Collection<String> ids) {
+    Map<String, PackageDependency> dependencies = new LinkedHashMap<>();
+    for (String id : ids) {
+      dependencies.put(id, null);
+    }
+    List<String> idList = new ArrayList<>(ids);
+    for (int from = 0; from < idList.size(); from += DependencyResolver.MAX_IN_LIST_SIZE) {
+      List<String> chunk = idList.subList(from, Math.min(from + DependencyResolver.MAX_IN_LIST_SIZE, idList.size()));
+      for (PackageDependency dependency : OBDal.getInstance()
+          .createQuery(PackageDependency.class, DEPENDENCIES_BY_ID_HQL)
+          .setNamedParameter("ids", chunk)
+          .setFilterOnActive(false)
+          .setFilterOnReadableClients(false)
+          .setFilterOnReadableOrganization(false)
+          .list()) {
+        dependencies.put(dependency.getId(), dependency);
+      }
+    }
+    dependencies.values().removeIf(Objects::isNull);
+    return dependencies;
+  }
+
   /**
    * Removes 'etendo-core' dependencies from the list.
    *
@@ -95,7 +169,8 @@ public class DependencyTreeBuilder {
   }
 
   /**
-   * Recursively searches for sub-dependencies, excluding 'etendo-core'.
+   * Searches for the transitive sub-dependencies of a dependency, excluding 'etendo-core', with a
+   * {@link DependencyResolver}.
    *
    * @param dependency
    *     the dependency to process
@@ -105,24 +180,7 @@ public class DependencyTreeBuilder {
    */
   public static List<PackageDependency> searchDependency(PackageDependency dependency,
       Map<String, PackageDependency> dependencyMap) {
-    if (dependency.isExternalDependency()) {
-      return new ArrayList<>();
-    }
-
-    List<PackageDependency> dependencies = dependency.getDependencyVersion().getETDEPPackageDependencyList();
-
-    if (dependencies.size() == 1 && StringUtils.equals(ETENDO_CORE, dependencies.get(0).getArtifact())) {
-      return new ArrayList<>();
-    }
-    removeDependecyCore(dependencies);
-    Set<PackageDependency> allDependencies = new HashSet<>(dependencies);
-
-    for (PackageDependency dep : dependencies) {
-      List<PackageDependency> subDependencies = searchDependency(dep, dependencyMap);
-      allDependencies.addAll(subDependencies);
-    }
-
-    return new ArrayList<>(allDependencies);
+    return new DependencyResolver().resolve(dependency);
   }
 
   /**
@@ -141,6 +199,7 @@ public class DependencyTreeBuilder {
    * Recursively finds all sub-dependencies of the given dependency.
    * This method returns a list of all sub-dependencies, excluding external dependencies and those with the artifact "ETENDO_CORE".
    * It also updates the parent map with parent-child relationships.
+   * Every package version is expanded once, so shared sub-trees are not walked again and cycles end the recursion.
    *
    * @param dependency
    *     The dependency for which to find sub-dependencies.
@@ -150,11 +209,20 @@ public class DependencyTreeBuilder {
    */
   public static List<PackageDependency> searchSubDependency(PackageDependency dependency,
       Map<String, String> parentMap) {
+    return searchSubDependency(dependency, parentMap, new HashSet<>());
+  }
+
+  private static List<PackageDependency> searchSubDependency(PackageDependency dependency,
+      Map<String, String> parentMap, Set<String> expandedVersions) {
     if (dependency.isExternalDependency()) {
       return new ArrayList<>();
     }
 
-    List<PackageDependency> dependencies = dependency.getDependencyVersion().getETDEPPackageDependencyList();
+    PackageVersion dependencyVersion = dependency.getDependencyVersion();
+    if (!expandedVersions.add(dependencyVersion.getId())) {
+      return new ArrayList<>();
+    }
+    List<PackageDependency> dependencies = dependencyVersion.getETDEPPackageDependencyList();
     if (dependencies.size() == 1 && StringUtils.equals(ETENDO_CORE, dependencies.get(0).getArtifact())) {
       return new ArrayList<>();
     }
@@ -164,7 +232,7 @@ public class DependencyTreeBuilder {
     for (PackageDependency dep : dependencies) {
       parentMap.put(dep.getId(), dependency.getId());
 
-      List<PackageDependency> subDependencies = searchSubDependency(dep, parentMap);
+      List<PackageDependency> subDependencies = searchSubDependency(dep, parentMap, expandedVersions);
       allDependencies.addAll(subDependencies);
     }
     return  new ArrayList<>(allDependencies);
@@ -173,7 +241,8 @@ public class DependencyTreeBuilder {
   /**
    * Adds dependencies based on the provided JSON array and returns the list of dependencies.
    * This method processes each JSON object in the array to retrieve dependencies by their IDs,
-   * adds them to a map, and also includes their sub-dependencies. The resulting list excludes any
+   * adds them to a map, and also includes their sub-dependencies, resolved by a single {@link DependencyResolver}
+   * so the sub-trees shared by several of them are only loaded and walked once. The resulting list excludes any
    * dependencies that are bundles.
    *
    * @param paramsSelect
@@ -184,13 +253,23 @@ public class DependencyTreeBuilder {
    */
   public static List<PackageDependency> addDependenciesFromParams(JSONArray paramsSelect) throws JSONException {
     Map<String, PackageDependency> dependencyMap = new HashMap<>();
+    List<PackageDependency> selectedDependencies = new ArrayList<>();
+    List<PackageVersion> selectedVersions = new ArrayList<>();
 
     for (int i = 0; i < paramsSelect.length(); i++) {
       JSONObject jsonObject = paramsSelect.getJSONObject(i);
       String id = jsonObject.getString("id");
       PackageDependency dependency = OBDal.getInstance().get(PackageDependency.class, id);
+      selectedDependencies.add(dependency);
+      if (!dependency.isExternalDependency()) {
+        selectedVersions.add(dependency.getDependencyVersion());
+      }
+    }
+    DependencyResolver resolver = new DependencyResolver();
+    resolver.load(selectedVersions);
+    for (PackageDependency dependency : selectedDependencies) {
       addDependency(dependencyMap, dependency);
-      List<PackageDependency> subDependencies = searchDependency(dependency, dependencyMap);
+      List<PackageDependency> subDependencies = resolver.resolve(dependency);
       for (PackageDependency subDependency : subDependencies) {
         addDependency(dependencyMap, subDependency);
       }
@@ -0,0 +1,218 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openbravo.base.exception.OBException;
+
+import com.etendoerp.dependencymanager.util.HttpResponseCache.CachedResponse;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Client of the GitHub Packages API of the Etendo organization.
+ * <p>
+ * The listings are paginated with the {@code Link} header and sent as conditional requests through the
+ * {@link HttpResponseCache}, and every request goes through the {@link RepositoryRequestScheduler} and the shared
+ * {@link HttpTransport}. The POM files are downloaded from the GitHub Maven registry, whose redirect to the storage
+ * URL is followed by the transport.
+ */
+public class GitHubRepositoryClient implements PackageRepositoryClient {
+
+  public static final String GITHUB_USER = "githubUser";
+  public static final String GITHUB_TOKEN = "githubToken";
+  public static final String NAME = "name";
+  public static final String UPDATED_AT = "updated_at";
+  public static final String REPOSITORY = "repository";
+  public static final String GITHUB_API_URI_VERSIONS = "/versions";
+  static final String GITHUB_API_URL = "https://api.github.com/orgs/etendosoftware/packages?package_type=maven&per_page=100";
+  static final String GITHUB_VERSIONS_API_URL = "https://api.github.com/orgs/etendosoftware/packages/maven/";
+  static final String GITHUB_POM_URL = "https://maven.pkg.github.com/etendosoftware/etendo_core/";
+  static final String LATEST_VERSIONS_API_URL = "https://deps.labs.etendo.cloud/api/v1/packages/maven/";
+  private static final String AUTHORIZATION_HEADER = "Authorization";
+  private static final String BASIC_AUTH_TOKEN = "Basic ";
+  private static final String PER_PAGE_PARAMETER = "?per_page=100";
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+  private static final Logger log = LogManager.getLogger();
+
+  private final String packagesUrl;
+  private final String versionsUrl;
+  private final String pomUrl;
+  private final String latestVersionsUrl;
+  private final String auth;
+  private final HttpResponseCache responseCache;
+  private final HttpResponseCache.Sender sender;
+  private final SyncStatistics statistics;
+
+  GitHubRepositoryClient(String packagesUrl, String versionsUrl, String pomUrl, String latestVersionsUrl,
+      String auth, HttpResponseCache responseCache, HttpResponseCache.Sender sender, SyncStatistics statistics) {
+    this.packagesUrl = packagesUrl;
+    this.versionsUrl = versionsUrl;
+    this.pomUrl = pomUrl;
+    this.latestVersionsUrl = latestVersionsUrl;
+    this.auth = auth;
+    this.responseCache = responseCache;
+    this.sender = sender;
+    this.statistics = statistics;
+  }
+
+  /**
+   * Creates a client authenticated with the {@value #GITHUB_USER} and {@value #GITHUB_TOKEN} properties, whose
+   * requests go through the shared {@link RepositoryRequestScheduler} and {@link HttpTransport}.
+   *
+   * @param properties
+   *     the Openbravo properties
+   * @param responseCache
+   *     the cache used to send conditional requests
+   * @param statistics
+   *     the statistics the requests are counted in
+   * @return the client
+   */
+  public static GitHubRepositoryClient fromProperties(Properties properties, HttpResponseCache responseCache,
+      SyncStatistics statistics) {
+    String githubUser = properties.getProperty(GITHUB_USER, "");
+    String githubToken = properties.getProperty(GITHUB_TOKEN, "");
+    // Base64 Basic Auth token
+    String auth = BASIC_AUTH_TOKEN + Base64.getEncoder().encodeToString((githubUser + ":" + githubToken).getBytes());
+    RepositoryRequestScheduler scheduler = RepositoryRequestScheduler.getInstance();
+    HttpTransport transport = HttpTransport.getInstance();
+    return new GitHubRepositoryClient(GITHUB_API_URL, GITHUB_VERSIONS_API_URL, GITHUB_POM_URL,
+        LATEST_VERSIONS_API_URL, auth, responseCache, request -> scheduler.send(transport::send, request),
+        statistics);
+  }
+
+  @Override
+  public String getFirstPageCursor() {
+    return packagesUrl;
+  }
+
+  @Override
+  public PackageListing listPackages(ConcurrentFetchEngine engine, String cursor) {
+    LinkPagination pages = new LinkPagination(engine, url -> {
+      statistics.packagePageRequested();
+      return sendHttpRequest(url);
+    }, cursor);
+    return new PackageListing() {
+      @Override
+      public boolean hasNext() {
+        return pages.hasNext();
+      }
+
+      @Override
+      public RepositoryPage next() throws Exception {
+        CachedResponse page = pages.next();
+        List<Map<String, Object>> packages = objectMapper.readValue(page.body(), new TypeReference<>() {
+        });
+        List<RepositoryPackage> result = new ArrayList<>();
+        for (Map<String, Object> pkg : packages) {
+          Map<String, Object> repository = (Map<String, Object>) pkg.get(REPOSITORY);
+          result.add(RepositoryPackage.fromName((String) pkg.get(NAME), (String) pkg.get(UPDATED_AT),
+              repository != null ? (String) repository.get(NAME) : null));
+        }
+        String nextCursor = LinkPagination.parseLinks(page.header(HttpResponseCache.LINK_HEADER).orElse(null))
+            .get(LinkPagination.REL_NEXT);
+        return new RepositoryPage(result, nextCursor, page::commit);
+      }
+    };
+  }
+
+  /**
+   * Fetches every page of the package versions. The pages are fetched sequentially, as this runs on a fetch
+   * engine worker.
+   */
+  @Override
+  public VersionList fetchVersions(RepositoryPackage pkg) throws Exception {
+    String url = versionsUrl + pkg.getName() + GITHUB_API_URI_VERSIONS + PER_PAGE_PARAMETER;
+    List<CachedResponse> pages = LinkPagination.fetchAll(pageUrl -> {
+      statistics.versionListRequested();
+      return sendHttpRequest(pageUrl);
+    }, url);
+    List<String> versions = new ArrayList<>();
+    for (CachedResponse page : pages) {
+      for (Map<String, Object> version : readList(page.body())) {
+        versions.add((String) version.get(NAME));
+      }
+    }
+    boolean notModified = pages.stream().allMatch(CachedResponse::isNotModified);
+    return new VersionList(versions, notModified, () -> pages.forEach(CachedResponse::commit));
+  }
+
+  @Override
+  public PomFile fetchPom(String group, String artifact, String version) throws Exception {
+    HttpResponse<String> response = sender.send(newRequest(buildPomUrl(group, artifact, version)).build());
+    return new PomFile(response.statusCode(), response.body());
+  }
+
+  /**
+   * Looks up the latest version in the dependencies API, which lists the versions of a package newest first.
+   */
+  @Override
+  public String fetchLatestVersion(String group, String artifact) throws Exception {
+    String url = latestVersionsUrl + group + "." + artifact + GITHUB_API_URI_VERSIONS;
+    CachedResponse response = sendHttpRequest(url);
+    List<Map<String, Object>> versions = readList(response.body());
+    response.commit();
+    return versions.isEmpty() ? null : (String) versions.get(0).get(NAME);
+  }
+
+  private static List<Map<String, Object>> readList(String body) throws Exception {
+    return objectMapper.readValue(body, new TypeReference<List<Map<String, Object>>>() {
+    });
+  }
+
+  /**
+   * Builds the POM URL.
+   *
+   * @param group
+   * @param artifact
+   * @param versionName
+   * @return
+   */
+  String buildPomUrl(String group, String artifact, String versionName) {
+    String groupPath = group.replace(".", "/");
+    String artifactPath = artifact.replace(".", "/");
+    String pomFileName = artifact + "-" + versionName + ".pom";
+
+    StringBuilder urlBuilder = new StringBuilder();
+    urlBuilder.append(pomUrl)
+              .append(groupPath).append("/")
+              .append(artifactPath).append("/")
+              .append(versionName).append("/")
+              .append(pomFileName);
+
+    return urlBuilder.toString();
+  }
+
+  private HttpRequest.Builder newRequest(String url) throws Exception {
+    return HttpRequest.newBuilder()
+      .uri(new URI(url))
+      .header(AUTHORIZATION_HEADER, auth)
+      .GET();
+  }
+
+  /**
+   * Sends an HTTP request through the HTTP response cache.
+   * If a response of the same URL was cached, the request is sent as a conditional one.
+   *
+   * @param url
+   * @return The response, flagged as not modified when the cached body is still valid.
+   * @throws Exception
+   */
+  private CachedResponse sendHttpRequest(String url) throws Exception {
+    CachedResponse response = responseCache.send(sender, newRequest(url).build());
+    if (response.isSuccessful()) {
+      return response;
+    } else {
+      log.error("HTTP Request failed with status code: " + response.statusCode() + " and body: " + response.body());
+      throw new OBException("HTTP Request failed with status code: " + response.statusCode());
+    }
+  }
+}
@@ -0,0 +1,438 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openbravo.base.exception.OBException;
+
+/**
+ * Persistent cache of HTTP responses used to send conditional requests to the repositories.
+ * <p>
+ * The validators ({@code ETag} and {@code Last-Modified}) and the body of every cached response are stored
+ * in a local directory, one file per URL. When a request is sent through {@link #send(Sender, HttpRequest)}
+ * the validators are added as {@code If-None-Match} and {@code If-Modified-Since} headers, and a
+ * {@code 304 Not Modified} answer is resolved with the stored body. The {@code Link} header used for pagination
+ * is stored as well, since the {@code 304} answers do not always repeat it.
+ * <p>
+ * Responses are not stored until {@link CachedResponse#commit()} is called, so callers can wait until the
+ * resource has been completely processed before trusting a later {@code 304} to skip it.
+ */
+public class HttpResponseCache {
+
+  public static final String CACHE_DIR_PROPERTY = "etdep.http.cache.dir";
+  public static final String ETAG_HEADER = "ETag";
+  public static final String LAST_MODIFIED_HEADER = "Last-Modified";
+  public static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+  public static final String IF_MODIFIED_SINCE_HEADER = "If-Modified-Since";
+  public static final String LINK_HEADER = "Link";
+  public static final int HTTP_NOT_MODIFIED = 304;
+  private static final List<String> STORED_HEADERS = List.of(LINK_HEADER);
+  private static final int FORMAT_VERSION = 2;
+  private static final String ATTACH_PATH_PROPERTY = "attach.path";
+  private static final String CACHE_SUBDIR = "etdep/http-cache";
+  private static final String ENTRY_EXTENSION = ".entry";
+  private static final Logger log = LogManager.getLogger();
+
+  private final Path directory;
+  private boolean conditionalRequests = true;
+
+  /**
+   * Creates a cache stored in the given directory, creating it if needed.
+   *
+   * @param directory
+   *     the directory where the entries are stored, or null to disable the cache
+   */
+  public HttpResponseCache(Path directory) {
+    Path cacheDirectory = directory;
+    if (cacheDirectory != null) {
+      try {
+        Files.createDirectories(cacheDirectory);
+      } catch (IOException e) {
+        log.warn("HTTP response cache disabled, cannot create directory {}", cacheDirectory, e);
+        cacheDirectory = null;
+      }
+    }
+    this.directory = cacheDirectory;
+  }
+
+  /**
+   * Creates a cache stored in the directory set in the {@value #CACHE_DIR_PROPERTY} property. If the property
+   * is not set, the cache is stored under the attachments folder, or the temporary folder if it is not
+   * configured either.
+   *
+   * @param properties
+   *     the Openbravo properties
+   * @return the cache
+   */
+  public static HttpResponseCache fromProperties(Properties properties) {
+    return new HttpResponseCache(resolveDirectory(properties, CACHE_DIR_PROPERTY, CACHE_SUBDIR));
+  }
+
+  /**
+   * Creates a cache stored in a subdirectory of the directory of {@link #fromProperties(Properties)}, for the
+   * requests that must not commit the entries of the sync, as a committed entry is answered as not modified.
+   *
+   * @param properties
+   *     the Openbravo properties
+   * @param partition
+   *     the name of the subdirectory
+   * @return the cache
+   */
+  public static HttpResponseCache fromProperties(Properties properties, String partition) {
+    return new HttpResponseCache(resolveDirectory(properties, CACHE_DIR_PROPERTY, CACHE_SUBDIR).resolve(partition));
+  }
+
+  /**
+   * Resolves a working directory of the module from the properties.
+   *
+   * @param properties
+   *     the Openbravo properties
+   * @param property
+   *     the property that overrides the directory
+   * @param subdirectory
+   *     the subdirectory used under the attachments or temporary folder
+   * @return the resolved directory
+   */
+  public static Path resolveDirectory(Properties properties, String property, String subdirectory) {
+    String configured = properties.getProperty(property);
+    if (StringUtils.isNotBlank(configured)) {
+      return Paths.get(configured);
+    }
+    String base = properties.getProperty(ATTACH_PATH_PROPERTY);
+    if (StringUtils.isBlank(base)) {
+      base = System.getProperty("java.io.tmpdir");
+    }
+    return Paths.get(base, subdirectory);
+  }
+
+  /**
+   * Enables or disables the conditional requests. When disabled, requests are always sent without validators,
+   * but the responses can still be committed to the cache.
+   *
+   * @param conditionalRequests
+   *     false to ignore the cached entries
+   */
+  public void setConditionalRequests(boolean conditionalRequests) {
+    this.conditionalRequests = conditionalRequests;
+  }
+
+  /**
+   * Sends a request through the given sender, such as the {@link RepositoryRequestScheduler}, adding the validators
+   * of the cached response of the same URL, if any.
+   *
+   * @param sender
+   *     the function that sends the request
+   * @param request
+   *     the request to send
+   * @return the response, resolved with the cached body when the server answers {@code 304 Not Modified}
+   * @throws IOException
+   *     if the request fails
+   * @throws InterruptedException
+   *     if the thread is interrupted while waiting for the response
+   */
+  public CachedResponse send(Sender sender, HttpRequest request) throws IOException, InterruptedException {
+    String url = request.uri().toString();
+    Entry entry = lookup(url);
+    HttpRequest conditionalRequest = entry == null ? request
+        : addValidators(HttpRequest.newBuilder(request, (name, value) -> true), entry).build();
+    return resolve(url, entry, sender.send(conditionalRequest));
+  }
+
+  /**
+   * Adds the validators of a cached entry to a request.
+   *
+   * @param builder
+   *     the builder of the request
+   * @param entry
+   *     the cached entry, or null if there is none
+   * @return the same builder
+   */
+  public static HttpRequest.Builder addValidators(HttpRequest.Builder builder, Entry entry) {
+    if (entry != null) {
+      if (StringUtils.isNotEmpty(entry.etag)) {
+        builder.header(IF_NONE_MATCH_HEADER, entry.etag);
+      }
+      if (StringUtils.isNotEmpty(entry.lastModified)) {
+        builder.header(IF_MODIFIED_SINCE_HEADER, entry.lastModified);
+      }
+    }
+    return builder;
+  }
+
+  /**
+   * Resolves a response of a conditional request against the cached entry of its URL.
+   *
+   * @param url
+   *     the URL the entry is stored for
+   * @param entry
+   *     the cached entry whose validators were sent, or null if there was none
+   * @param response
+   *     the received response
+   * @return the resolved response
+   */
+  public CachedResponse resolve(String url, Entry entry, HttpResponse<String> response) {
+    if (response.statusCode() == HTTP_NOT_MODIFIED && entry != null) {
+      return new CachedResponse(this, url, HTTP_NOT_MODIFIED, entry, true);
+    }
+    Map<String, String> headers = new LinkedHashMap<>();
+    for (String name : STORED_HEADERS) {
+      response.headers().firstValue(name).ifPresent(value -> headers.put(name, value));
+    }
+    Entry received = new Entry(response.headers().firstValue(ETAG_HEADER).orElse(null),
+        response.headers().firstValue(LAST_MODIFIED_HEADER).orElse(null), headers, response.body());
+    return new CachedResponse(this, url, response.statusCode(), received, false);
+  }
+
+  /**
+   * Reads the cached entry of a URL.
+   *
+   * @param url
+   *     the URL of the resource
+   * @return the entry, or null if there is none, it cannot be read or conditional requests are disabled
+   */
+  public Entry lookup(String url) {
+    if (directory == null || !conditionalRequests) {
+      return null;
+    }
+    Path file = entryFile(url);
+    if (!Files.isRegularFile(file)) {
+      return null;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != FORMAT_VERSION || !StringUtils.equals(url, in.readUTF())) {
+        return null;
+      }
+      String etag = readNullable(in);
+      String lastModified = readNullable(in);
+      Map<String, String> headers = new LinkedHashMap<>();
+      int headerCount = in.readInt();
+      for (int i = 0; i < headerCount; i++) {
+        headers.put(in.readUTF(), in.readUTF());
+      }
+      byte[] body = in.readAllBytes();
+      return new Entry(etag, lastModified, headers, new String(body, StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      log.warn("Ignoring unreadable HTTP cache entry {}", file, e);
+      return null;
+    }
+  }
+
+  /**
+   * Stores the body and validators of a response. Nothing is stored if the response has no validators.
+   *
+   * @param url
+   *     the URL of the resource
+   * @param entry
+   *     the validators, stored headers and body of the response
+   */
+  public void store(String url, Entry entry) {
+    if (directory == null || entry.body == null
+        || (StringUtils.isEmpty(entry.etag) && StringUtils.isEmpty(entry.lastModified))) {
+      return;
+    }
+    Path file = entryFile(url);
+    try {
+      Path tempFile = Files.createTempFile(directory, "entry", ".tmp");
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(url);
+        writeNullable(out, entry.etag);
+        writeNullable(out, entry.lastModified);
+        out.writeInt(entry.headers.size());
+        for (Map.Entry<String, String> header : entry.headers.entrySet()) {
+          out.writeUTF(header.getKey());
+          out.writeUTF(header.getValue());
+        }
+        out.write(entry.body.getBytes(StandardCharsets.UTF_8));
+      }
+      Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      log.warn("Could not store HTTP cache entry for {}", url, e);
+    }
+  }
+
+  /**
+   * Removes the cached entry of a URL, if any.
+   *
+   * @param url
+   *     the URL of the resource
+   */
+  public void invalidate(String url) {
+    if (directory == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(entryFile(url));
+    } catch (IOException e) {
+      log.warn("Could not remove HTTP cache entry for {}", url, e);
+    }
+  }
+
+  private Path entryFile(String url) {
+    return directory.resolve(sha256(url) + ENTRY_EXTENSION);
+  }
+
+  /**
+   * Computes the hexadecimal SHA-256 digest of a text.
+   *
+   * @param text
+   *     the text to digest
+   * @return the digest
+   */
+  public static String sha256(String text) {
+    return HexFormat.of().formatHex(newSha256().digest(text.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * @return a new SHA-256 message digest
+   */
+  public static MessageDigest newSha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new OBException(e);
+    }
+  }
+
+  private static String readNullable(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  private static void writeNullable(DataOutputStream out, String value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value);
+    }
+  }
+
+  /**
+   * Sends a request and reads its body as a string.
+   */
+  @FunctionalInterface
+  public interface Sender {
+    HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException;
+  }
+
+  /**
+   * Validators, headers and body stored for a URL.
+   */
+  public static class Entry {
+    private final String etag;
+    private final String lastModified;
+    private final Map<String, String> headers;
+    private final String body;
+
+    public Entry(String etag, String lastModified, String body) {
+      this(etag, lastModified, Collections.emptyMap(), body);
+    }
+
+    public Entry(String etag, String lastModified, Map<String, String> headers, String body) {
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.headers = headers;
+      this.body = body;
+    }
+
+    public String getEtag() {
+      return etag;
+    }
+
+    public String getLastModified() {
+      return lastModified;
+    }
+
+    public Map<String, String> getHeaders() {
+      return headers;
+    }
+
+    public String getBody() {
+      return body;
+    }
+  }
+
+  /**
+   * Response of a request sent through the cache.
+   */
+  public static class CachedResponse {
+    private final HttpResponseCache cache;
+    private final String url;
+    private final int statusCode;
+    private final Entry entry;
+    private final boolean notModified;
+
+    private CachedResponse(HttpResponseCache cache, String url, int statusCode, Entry entry, boolean notModified) {
+      this.cache = cache;
+      this.url = url;
+      this.statusCode = statusCode;
+      this.entry = entry;
+      this.notModified = notModified;
+    }
+
+    public String url() {
+      return url;
+    }
+
+    public int statusCode() {
+      return statusCode;
+    }
+
+    public String body() {
+      return entry.body;
+    }
+
+    /**
+     * @param name
+     *     one of the headers kept in the cache, such as {@value HttpResponseCache#LINK_HEADER}
+     * @return the value of the header, taken from the cached entry when the response was not modified
+     */
+    public Optional<String> header(String name) {
+      return Optional.ofNullable(entry.headers.get(name));
+    }
+
+    /**
+     * @return true if the server answered that the cached response is still valid
+     */
+    public boolean isNotModified() {
+      return notModified;
+    }
+
+    /**
+     * @return true if the request succeeded, either with a new body or with a still valid cached one
+     */
+    public boolean isSuccessful() {
+      return notModified || (statusCode >= 200 && statusCode < 300);
+    }
+
+    /**
+     * Stores this response in the cache, so later requests of the same URL are sent as conditional ones.
+     * Call it once the response has been completely processed.
+     */
+    public void commit() {
+      if (!notModified && statusCode >= 200 && statusCode < 300) {
+        cache.store(url, entry);
+      }
+    }
+  }
+}
@@ -0,0 +1,381 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import javax.net.ssl.SSLSession;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.openbravo.base.session.OBPropertiesProvider;
+
+/**
+ * HTTP transport shared by every client of the package repositories, so the whole module reuses the same
+ * connections.
+ * <p>
+ * The underlying client prefers HTTP/2, so the requests to a host are multiplexed over a single connection, and runs
+ * on its own pool of {@value #THREADS_PROPERTY} daemon threads. On top of it, the transport:
+ * <ul>
+ * <li>bounds the connection with {@value #CONNECT_TIMEOUT_PROPERTY} and the whole exchange, body included, with
+ * {@value #REQUEST_TIMEOUT_PROPERTY}, answering an {@link HttpTimeoutException} so a stalled connection is retried
+ * by the {@link RepositoryRequestScheduler} instead of blocking the calling thread;</li>
+ * <li>asks for gzip encoded bodies and inflates them while they are read;</li>
+ * <li>follows up to {@value #MAX_REDIRECTS} redirects, dropping the {@code Authorization} header when the redirect
+ * leaves the host, as the storage URLs the registries redirect to are already signed;</li>
+ * <li>limits the requests in flight to the same host to {@value #MAX_CONNECTIONS_PER_HOST_PROPERTY}.</li>
+ * </ul>
+ */
+public class HttpTransport {
+
+  public static final String CONNECT_TIMEOUT_PROPERTY = "etdep.http.connect.timeout.seconds";
+  public static final String REQUEST_TIMEOUT_PROPERTY = "etdep.http.request.timeout.seconds";
+  public static final String MAX_CONNECTIONS_PER_HOST_PROPERTY = "etdep.http.max.connections.per.host";
+  public static final String THREADS_PROPERTY = "etdep.http.threads";
+  public static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+  public static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+  public static final String AUTHORIZATION_HEADER = "Authorization";
+  public static final String LOCATION_HEADER = "Location";
+  public static final String GZIP = "gzip";
+  static final long DEFAULT_CONNECT_TIMEOUT_SECONDS = 10;
+  static final long DEFAULT_REQUEST_TIMEOUT_SECONDS = 60;
+  static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 6;
+  static final int DEFAULT_THREADS = 4;
+  static final int MAX_REDIRECTS = 5;
+  private static final Set<Integer> REDIRECT_STATUS_CODES = Set.of(301, 302, 303, 307, 308);
+  private static final int HTTP_SEE_OTHER = 303;
+  private static final String THREAD_NAME_PREFIX = "etdep-http-";
+
+  private static HttpTransport instance;
+
+  private final HttpClient client;
+  private final Duration requestTimeout;
+  private final int maxConnectionsPerHost;
+  private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+  HttpTransport(HttpClient client, Duration requestTimeout, int maxConnectionsPerHost) {
+    this.client = client;
+    this.requestTimeout = requestTimeout;
+    this.maxConnectionsPerHost = Math.max(1, maxConnectionsPerHost);
+  }
+
+  /**
+   * @return the transport shared by the module, configured from the Openbravo properties on first use
+   */
+  public static synchronized HttpTransport getInstance() {
+    if (instance == null) {
+      instance = fromProperties(OBPropertiesProvider.getInstance().getOpenbravoProperties());
+    }
+    return instance;
+  }
+
+  /**
+   * Creates a transport configured with the {@value #CONNECT_TIMEOUT_PROPERTY}, {@value #REQUEST_TIMEOUT_PROPERTY},
+   * {@value #MAX_CONNECTIONS_PER_HOST_PROPERTY} and {@value #THREADS_PROPERTY} properties.
+   *
+   * @param properties
+   *     the Openbravo properties
+   * @return a new transport
+   */
+  public static HttpTransport fromProperties(Properties properties) {
+    ExecutorService executor = Executors.newFixedThreadPool(
+        Math.max(1, NumberUtils.toInt(properties.getProperty(THREADS_PROPERTY), DEFAULT_THREADS)),
+        new TransportThreadFactory());
+    HttpClient client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_2)
+        .connectTimeout(Duration.ofSeconds(
+            NumberUtils.toLong(properties.getProperty(CONNECT_TIMEOUT_PROPERTY), DEFAULT_CONNECT_TIMEOUT_SECONDS)))
+        .followRedirects(HttpClient.Redirect.NEVER)
+        .executor(executor)
+        .build();
+    return new HttpTransport(client, Duration.ofSeconds(
+        NumberUtils.toLong(properties.getProperty(REQUEST_TIMEOUT_PROPERTY), DEFAULT_REQUEST_TIMEOUT_SECONDS)),
+        NumberUtils.toInt(properties.getProperty(MAX_CONNECTIONS_PER_HOST_PROPERTY),
+            DEFAULT_MAX_CONNECTIONS_PER_HOST));
+  }
+
+  /**
+   * Sends a request, following its redirects, and reads the body as a string. It matches
+   * {@link HttpResponseCache.Sender}, so it can be passed to the {@link RepositoryRequestScheduler} and the
+   * {@link HttpResponseCache}.
+   *
+   * @param request
+   *     the request to send
+   * @return the response of the last request
+   * @throws HttpTimeoutException
+   *     if the connection or the exchange timed out
+   * @throws IOException
+   *     if the request could not be sent
+   * @throws InterruptedException
+   *     if the thread is interrupted while waiting
+   */
+  public HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+    return follow(withDefaults(request), HttpTransport::streamingSubscriber, this::decode);
+  }
+
+  /**
+   * Downloads the body of a request into a file, following its redirects, with the same timeouts and limits as
+   * {@link #send}. The body is stored as received, so it is not asked to be gzip encoded.
+   *
+   * @param request
+   *     the request to send
+   * @param file
+   *     the file the body is written to, replacing its content
+   * @return the response of the last request, whose body is the file
+   * @throws HttpTimeoutException
+   *     if the connection or the exchange timed out
+   * @throws IOException
+   *     if the request could not be sent or the file written
+   * @throws InterruptedException
+   *     if the thread is interrupted while waiting
+   */
+  public HttpResponse<Path> download(HttpRequest request, Path file) throws IOException, InterruptedException {
+    return follow(request, HttpResponse.BodyHandlers.ofFile(file), (response, deadline) -> response);
+  }
+
+  private <T, R> HttpResponse<R> follow(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler,
+      BodyReader<T, R> bodyReader) throws IOException, InterruptedException {
+    HttpRequest current = request;
+    HttpResponse<R> response = exchange(current, bodyHandler, bodyReader);
+    for (int redirects = 0; redirects < MAX_REDIRECTS && REDIRECT_STATUS_CODES.contains(response.statusCode());
+        redirects++) {
+      Optional<String> location = response.headers().firstValue(LOCATION_HEADER);
+      if (location.isEmpty()) {
+        break;
+      }
+      current = redirect(current, response.statusCode(), current.uri().resolve(location.get()));
+      response = exchange(current, bodyHandler, bodyReader);
+    }
+    return response;
+  }
+
+  /**
+   * Builds the request that follows a redirect. The method is changed to GET on a {@code 303} answer, and the
+   * {@code Authorization} header is only kept while the redirect stays on the same host.
+   */
+  static HttpRequest redirect(HttpRequest request, int statusCode, URI location) {
+    boolean sameHost = StringUtils.equalsIgnoreCase(request.uri().getHost(), location.getHost());
+    HttpRequest.Builder builder = HttpRequest.newBuilder(request,
+        (name, value) -> sameHost || !AUTHORIZATION_HEADER.equalsIgnoreCase(name)).uri(location);
+    if (statusCode == HTTP_SEE_OTHER) {
+      builder.GET();
+    }
+    return builder.build();
+  }
+
+  private HttpRequest withDefaults(HttpRequest request) {
+    if (request.headers().firstValue(ACCEPT_ENCODING_HEADER).isPresent()) {
+      return request;
+    }
+    return HttpRequest.newBuilder(request, (name, value) -> true).header(ACCEPT_ENCODING_HEADER, GZIP).build();
+  }
+
+  /**
+   * Sends a single request and reads its body, holding a permit of the host until the body is read. The connection,
+   * the answer and the body are all bounded by the same deadline.
+   */
+  private <T, R> HttpResponse<R> exchange(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler,
+      BodyReader<T, R> bodyReader) throws IOException, InterruptedException {
+    Semaphore permits = hostPermits.computeIfAbsent(StringUtils.defaultString(request.uri().getHost()),
+        host -> new Semaphore(maxConnectionsPerHost, true));
+    long deadline = System.nanoTime() + requestTimeout.toNanos();
+    if (!permits.tryAcquire(requestTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+      throw new HttpTimeoutException("Timed out waiting for a connection to " + request.uri().getHost());
+    }
+    CompletableFuture<HttpResponse<T>> future = client.sendAsync(request, bodyHandler);
+    try {
+      return bodyReader.read(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS), deadline);
+    } catch (TimeoutException e) {
+      future.cancel(true);
+      throw timeout(request);
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      throw e;
+    } catch (ExecutionException e) {
+      throw unwrap(e);
+    } finally {
+      permits.release();
+    }
+  }
+
+  private HttpTimeoutException timeout(HttpRequest request) {
+    return new HttpTimeoutException("Request to " + request.uri() + " timed out after "
+        + requestTimeout.getSeconds() + " seconds");
+  }
+
+  private static IOException unwrap(ExecutionException e) {
+    Throwable cause = e.getCause();
+    if (cause instanceof UncheckedIOException) {
+      cause = cause.getCause();
+    }
+    if (cause instanceof IOException) {
+      return (IOException) cause;
+    }
+    return new IOException(cause);
+  }
+
+  /**
+   * Receives the body as a stream, so it is decoded while it arrives. The bodies of the redirects are discarded.
+   */
+  static HttpResponse.BodySubscriber<InputStream> streamingSubscriber(HttpResponse.ResponseInfo info) {
+    if (REDIRECT_STATUS_CODES.contains(info.statusCode())) {
+      return HttpResponse.BodySubscribers.replacing(InputStream.nullInputStream());
+    }
+    return HttpResponse.BodySubscribers.ofInputStream();
+  }
+
+  /**
+   * Reads the body stream as a string in the charset of the response, inflating gzip encoded bodies while they are
+   * read, so neither the compressed nor the inflated bytes are buffered whole. The stream is closed if the deadline
+   * passes before it ends, failing the read with a timeout.
+   */
+  private HttpResponse<String> decode(HttpResponse<InputStream> response, long deadline) throws IOException {
+    AtomicBoolean expired = new AtomicBoolean();
+    InputStream body = response.body();
+    CompletableFuture<Void> watchdog = CompletableFuture.runAsync(() -> {
+      expired.set(true);
+      closeQuietly(body);
+    }, CompletableFuture.delayedExecutor(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+    try (PushbackInputStream in = new PushbackInputStream(body)) {
+      int first = in.read();
+      if (first < 0) {
+        return new DecodedResponse(response, "");
+      }
+      in.unread(first);
+      boolean gzip = GZIP.equalsIgnoreCase(response.headers().firstValue(CONTENT_ENCODING_HEADER).orElse(null));
+      try (Reader reader = new InputStreamReader(gzip ? new GZIPInputStream(in) : in, charset(response.headers()))) {
+        StringWriter writer = new StringWriter();
+        reader.transferTo(writer);
+        return new DecodedResponse(response, writer.toString());
+      }
+    } catch (IOException e) {
+      if (expired.get()) {
+        throw timeout(response.request());
+      }
+      throw e;
+    } finally {
+      watchdog.cancel(false);
+    }
+  }
+
+  private static void closeQuietly(InputStream stream) {
+    try {
+      stream.close();
+    } catch (IOException e) {
+      // The read fails with the timeout anyway
+    }
+  }
+
+  private static Charset charset(HttpHeaders headers) {
+    String contentType = headers.firstValue("Content-Type").orElse("");
+    String name = StringUtils.trim(StringUtils.substringBefore(
+        StringUtils.substringAfter(contentType.toLowerCase(), "charset="), ";"));
+    try {
+      return StringUtils.isEmpty(name) ? StandardCharsets.UTF_8 : Charset.forName(name.replace("\"", ""));
+    } catch (IllegalArgumentException e) {
+      return StandardCharsets.UTF_8;
+    }
+  }
+
+  /**
+   * Reads the body of an answer before the permit of its host is released.
+   */
+  @FunctionalInterface
+  private interface BodyReader<T, R> {
+    HttpResponse<R> read(HttpResponse<T> response, long deadline) throws IOException;
+  }
+
+  /**
+   * Answer whose body stream was read as a string.
+   */
+  private static class DecodedResponse implements HttpResponse<String> {
+    private final HttpResponse<InputStream> response;
+    private final String body;
+
+    private DecodedResponse(HttpResponse<InputStream> response, String body) {
+      this.response = response;
+      this.body = body;
+    }
+
+    @Override
+    public int statusCode() {
+      return response.statusCode();
+    }
+
+    @Override
+    public HttpRequest request() {
+      return response.request();
+    }
+
+    @Override
+    public Optional<HttpResponse<String>> previousResponse() {
+      return Optional.empty();
+    }
+
+    @Override
+    public HttpHeaders headers() {
+      return response.headers();
+    }
+
+    @Override
+    public String body() {
+      return body;
+    }
+
+    @Override
+    public Optional<SSLSession> sslSession() {
+      return response.sslSession();
+    }
+
+    @Override
+    public URI uri() {
+      return response.uri();
+    }
+
+    @Override
+    public HttpClient.Version version() {
+      return response.version();
+    }
+  }
+
+  private static class TransportThreadFactory implements ThreadFactory {
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,178 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+
+import com.etendoerp.dependencymanager.util.HttpResponseCache.CachedResponse;
+
+/**
+ * Walks a paginated listing of the GitHub API following the {@code Link} header of every page.
+ * <p>
+ * While a page is being processed, the next one is already being downloaded through the fetch engine.
+ * Once a page reports the {@code last} relation, the page number is known, so every remaining page is
+ * scheduled at once and downloaded concurrently. Pages are always returned in order.
+ */
+public class LinkPagination {
+
+  public static final String REL_NEXT = "next";
+  public static final String REL_LAST = "last";
+  private static final Pattern LINK_PATTERN = Pattern.compile("<([^>]*)>\\s*;\\s*rel=\"([^\"]*)\"");
+  private static final Pattern PAGE_PATTERN = Pattern.compile("([?&]page=)(\\d+)");
+
+  /**
+   * Fetches a single page of a listing.
+   */
+  @FunctionalInterface
+  public interface PageFetcher {
+    CachedResponse fetch(String url) throws Exception;
+  }
+
+  private final ConcurrentFetchEngine engine;
+  private final PageFetcher fetcher;
+  private final Deque<CompletableFuture<CachedResponse>> pending = new ArrayDeque<>();
+  private final Set<String> scheduled = new HashSet<>();
+  private boolean lastPageKnown;
+
+  /**
+   * Starts walking a listing, scheduling the download of its first page.
+   *
+   * @param engine
+   *     the engine used to download the pages
+   * @param fetcher
+   *     the function that downloads a page
+   * @param firstUrl
+   *     the URL of the first page
+   */
+  public LinkPagination(ConcurrentFetchEngine engine, PageFetcher fetcher, String firstUrl) {
+    this.engine = engine;
+    this.fetcher = fetcher;
+    schedule(firstUrl);
+  }
+
+  /**
+   * @return true if there are pages left to return
+   */
+  public boolean hasNext() {
+    return !pending.isEmpty();
+  }
+
+  /**
+   * Waits for the next page, scheduling the pages it links to.
+   *
+   * @return the next page
+   * @throws Exception
+   *     if the page could not be fetched
+   */
+  public CachedResponse next() throws Exception {
+    if (pending.isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    CachedResponse page;
+    try {
+      page = ConcurrentFetchEngine.await(pending.removeFirst());
+    } catch (Exception e) {
+      pending.forEach(future -> future.cancel(true));
+      pending.clear();
+      throw e;
+    }
+    if (!lastPageKnown) {
+      Map<String, String> links = parseLinks(page.header(HttpResponseCache.LINK_HEADER).orElse(null));
+      List<String> remaining = expandPages(links.get(REL_NEXT), links.get(REL_LAST));
+      if (!remaining.isEmpty() && links.containsKey(REL_LAST)) {
+        lastPageKnown = true;
+      }
+      remaining.forEach(this::schedule);
+    }
+    return page;
+  }
+
+  private void schedule(String url) {
+    if (scheduled.add(url)) {
+      pending.addLast(engine.submit(() -> fetcher.fetch(url)));
+    }
+  }
+
+  /**
+   * Fetches every page of a listing sequentially on the calling thread.
+   * Meant for listings fetched from a fetch engine worker, which must not wait on other tasks of the engine.
+   *
+   * @param fetcher
+   *     the function that downloads a page
+   * @param firstUrl
+   *     the URL of the first page
+   * @return every page, in order
+   * @throws Exception
+   *     if any page could not be fetched
+   */
+  public static List<CachedResponse> fetchAll(PageFetcher fetcher, String firstUrl) throws Exception {
+    List<CachedResponse> pages = new ArrayList<>();
+    Set<String> visited = new HashSet<>();
+    String url = firstUrl;
+    while (url != null && visited.add(url)) {
+      CachedResponse page = fetcher.fetch(url);
+      pages.add(page);
+      url = parseLinks(page.header(HttpResponseCache.LINK_HEADER).orElse(null)).get(REL_NEXT);
+    }
+    return pages;
+  }
+
+  /**
+   * Parses a {@code Link} header.
+   *
+   * @param header
+   *     the value of the header, may be null
+   * @return the URL of every relation of the header
+   */
+  public static Map<String, String> parseLinks(String header) {
+    Map<String, String> links = new HashMap<>();
+    if (StringUtils.isBlank(header)) {
+      return links;
+    }
+    Matcher matcher = LINK_PATTERN.matcher(header);
+    while (matcher.find()) {
+      for (String rel : StringUtils.split(matcher.group(2))) {
+        links.put(rel, matcher.group(1));
+      }
+    }
+    return links;
+  }
+
+  /**
+   * Lists the URLs of the pages from {@code next} to {@code last}, both included. If any of them is missing or
+   * their page numbers cannot be read, only the {@code next} page is returned.
+   */
+  static List<String> expandPages(String next, String last) {
+    List<String> pages = new ArrayList<>();
+    if (next == null) {
+      return pages;
+    }
+    int nextPage = pageNumber(next);
+    int lastPage = last == null ? -1 : pageNumber(last);
+    if (nextPage < 0 || lastPage < nextPage) {
+      pages.add(next);
+      return pages;
+    }
+    for (int page = nextPage; page <= lastPage; page++) {
+      pages.add(PAGE_PATTERN.matcher(last).replaceFirst("$1" + page));
+    }
+    return pages;
+  }
+
+  private static int pageNumber(String url) {
+    Matcher matcher = PAGE_PATTERN.matcher(url);
+    return matcher.find() ? NumberUtils.toInt(matcher.group(2), -1) : -1;
+  }
+}
@@ -0,0 +1,133 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Client of a directory with the Maven layout, such as a mirror of the package repository or a local Maven
+ * repository.
+ * <p>
+ * Every directory holding version directories with their POM file is listed as a package, in a single page. The
+ * last modification time of its POM files is reported as the update time of the package, so packages that did not
+ * change since the last sync are skipped by the package watermarks.
+ */
+public class LocalMirrorRepositoryClient implements PackageRepositoryClient {
+
+  private static final String POM_EXTENSION = ".pom";
+
+  private final Path root;
+
+  /**
+   * @param root
+   *     the root directory of the mirror
+   */
+  public LocalMirrorRepositoryClient(Path root) {
+    this.root = root;
+  }
+
+  @Override
+  public String getFirstPageCursor() {
+    return root.toUri().toString();
+  }
+
+  @Override
+  public PackageListing listPackages(ConcurrentFetchEngine engine, String cursor) {
+    Map<Path, Long> lastModified = new TreeMap<>();
+    try (Stream<Path> files = Files.walk(root)) {
+      files.filter(this::isVersionPom).forEach(pom -> lastModified.merge(pom.getParent().getParent(),
+          pom.toFile().lastModified(), Math::max));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to list the packages of " + root, e);
+    }
+    List<RepositoryPackage> packages = new ArrayList<>();
+    lastModified.forEach((artifactDir, modified) -> {
+      String group = toGroup(root.relativize(artifactDir.getParent()));
+      String artifact = artifactDir.getFileName().toString();
+      packages.add(new RepositoryPackage(group + "." + artifact, group, artifact,
+          Instant.ofEpochMilli(modified).toString(), null));
+    });
+    return MavenRepositoryClient.singlePage(packages);
+  }
+
+  /**
+   * Lists the version directories holding a POM file, the latest first.
+   */
+  @Override
+  public VersionList fetchVersions(RepositoryPackage pkg) throws Exception {
+    Path artifactDir = artifactDir(pkg.getGroup(), pkg.getArtifact());
+    if (!Files.isDirectory(artifactDir)) {
+      return VersionList.empty();
+    }
+    try (Stream<Path> children = Files.list(artifactDir)) {
+      List<String> versions = children.filter(Files::isDirectory)
+          .map(dir -> dir.getFileName().toString())
+          .filter(version -> Files.isRegularFile(pomFile(pkg.getGroup(), pkg.getArtifact(), version)))
+          .sorted(PackageUtil.VERSION_ORDER.reversed())
+          .collect(Collectors.toList());
+      return new VersionList(versions, false, null);
+    }
+  }
+
+  @Override
+  public PomFile fetchPom(String group, String artifact, String version) throws Exception {
+    try {
+      return new PomFile(PomFile.STATUS_OK,
+          new String(Files.readAllBytes(pomFile(group, artifact, version)), StandardCharsets.UTF_8));
+    } catch (NoSuchFileException e) {
+      return new PomFile(PomFile.STATUS_NOT_FOUND, "POM file not found in the mirror: " + e.getFile());
+    }
+  }
+
+  @Override
+  public String fetchLatestVersion(String group, String artifact) throws Exception {
+    List<String> versions = fetchVersions(new RepositoryPackage(group + "." + artifact, group, artifact, null, null))
+        .getVersions();
+    return versions.isEmpty() ? null : versions.get(0);
+  }
+
+  /**
+   * @return true if the file is the POM of a version directory, under an artifact directory with a group
+   */
+  private boolean isVersionPom(Path file) {
+    // group/artifact/version/artifact-version.pom, with at least one group segment
+    if (root.relativize(file).getNameCount() < 4) {
+      return false;
+    }
+    Path versionDir = file.getParent();
+    Path artifactDir = versionDir.getParent();
+    String artifact = artifactDir.getFileName().toString();
+    return StringUtils.equals(file.getFileName().toString(),
+        artifact + "-" + versionDir.getFileName() + POM_EXTENSION) && Files.isRegularFile(file);
+  }
+
+  private static String toGroup(Path groupPath) {
+    List<String> segments = new ArrayList<>();
+    groupPath.forEach(segment -> segments.add(segment.toString()));
+    return String.join(".", segments);
+  }
+
+  private Path artifactDir(String group, String artifact) {
+    Path dir = root;
+    for (String segment : StringUtils.split(group, '.')) {
+      dir = dir.resolve(segment);
+    }
+    return dir.resolve(artifact);
+  }
+
+  private Path pomFile(String group, String artifact, String version) {
+    return artifactDir(group, artifact).resolve(version).resolve(artifact + "-" + version + POM_EXTENSION);
+  }
+}
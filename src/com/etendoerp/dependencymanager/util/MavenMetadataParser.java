@@ -0,0 +1,145 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streaming reader of the {@code maven-metadata.xml} file of an artifact in a repository with the Maven layout.
+ * Only the {@code <versioning>} element is read.
+ */
+public class MavenMetadataParser {
+
+  private static final String VERSIONING = "versioning";
+  private static final String VERSION = "version";
+  private static final String LATEST = "latest";
+  private static final String RELEASE = "release";
+  private static final String LAST_UPDATED = "lastUpdated";
+  private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+  private MavenMetadataParser() {
+  }
+
+  private static XMLInputFactory createInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    return factory;
+  }
+
+  /**
+   * Reads a metadata file.
+   *
+   * @param metadata
+   *     the content of the metadata file
+   * @return the versioning of the artifact
+   * @throws XMLStreamException
+   *     if the metadata file is not well formed
+   */
+  public static MavenMetadata parse(String metadata) throws XMLStreamException {
+    return parse(new StringReader(metadata));
+  }
+
+  /**
+   * Reads a metadata file from a reader.
+   *
+   * @param metadata
+   *     the content of the metadata file
+   * @return the versioning of the artifact
+   * @throws XMLStreamException
+   *     if the metadata file is not well formed
+   */
+  public static MavenMetadata parse(Reader metadata) throws XMLStreamException {
+    XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(metadata);
+    try {
+      return read(reader);
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static MavenMetadata read(XMLStreamReader reader) throws XMLStreamException {
+    List<String> versions = new ArrayList<>();
+    String latest = null;
+    String release = null;
+    String lastUpdated = null;
+    boolean inVersioning = false;
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        String name = reader.getLocalName();
+        if (VERSIONING.equals(name)) {
+          inVersioning = true;
+        } else if (inVersioning && VERSION.equals(name)) {
+          versions.add(reader.getElementText().trim());
+        } else if (inVersioning && LATEST.equals(name)) {
+          latest = reader.getElementText().trim();
+        } else if (inVersioning && RELEASE.equals(name)) {
+          release = reader.getElementText().trim();
+        } else if (inVersioning && LAST_UPDATED.equals(name)) {
+          lastUpdated = reader.getElementText().trim();
+        }
+      } else if (event == XMLStreamConstants.END_ELEMENT && VERSIONING.equals(reader.getLocalName())) {
+        break;
+      }
+    }
+    return new MavenMetadata(versions, latest, release, lastUpdated);
+  }
+
+  /**
+   * Versioning of an artifact declared in its metadata file. Any of the values is null if it is not declared.
+   */
+  public static class MavenMetadata {
+    private final List<String> versions;
+    private final String latest;
+    private final String release;
+    private final String lastUpdated;
+
+    public MavenMetadata(List<String> versions, String latest, String release, String lastUpdated) {
+      this.versions = versions;
+      this.latest = latest;
+      this.release = release;
+      this.lastUpdated = lastUpdated;
+    }
+
+    /**
+     * @return the versions, in the order they were published
+     */
+    public List<String> getVersions() {
+      return versions;
+    }
+
+    public String getLatest() {
+      return latest;
+    }
+
+    public String getRelease() {
+      return release;
+    }
+
+    public String getLastUpdated() {
+      return lastUpdated;
+    }
+
+    /**
+     * @return the release version, or the latest one if there is no release, or the last published one if
+     *     neither is declared, or null if there are no versions
+     */
+    public String getLatestVersion() {
+      if (release != null) {
+        return release;
+      }
+      if (latest != null) {
+        return latest;
+      }
+      return versions.isEmpty() ? null : versions.get(versions.size() - 1);
+    }
+  }
+}
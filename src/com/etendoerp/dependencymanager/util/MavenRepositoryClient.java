@@ -0,0 +1,178 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openbravo.base.exception.OBException;
+
+import com.etendoerp.dependencymanager.util.HttpResponseCache.CachedResponse;
+import com.etendoerp.dependencymanager.util.MavenMetadataParser.MavenMetadata;
+
+/**
+ * Client of a repository with the plain Maven layout, such as an on-premise Nexus or Artifactory.
+ * <p>
+ * The versions of a package are read from its {@code maven-metadata.xml} file, sent as a conditional request
+ * through the {@link HttpResponseCache}, and the POM files from their standard path. Maven repositories cannot be
+ * listed, so the packages to sync are the {@code group:artifact} coordinates of the
+ * {@value PackageRepositoryClient#PACKAGES_PROPERTY} property, returned in a single page.
+ */
+public class MavenRepositoryClient implements PackageRepositoryClient {
+
+  static final String METADATA_FILE = "maven-metadata.xml";
+  private static final String AUTHORIZATION_HEADER = "Authorization";
+  private static final String BASIC_AUTH_TOKEN = "Basic ";
+  private static final Logger log = LogManager.getLogger();
+
+  private final String baseUrl;
+  private final List<RepositoryPackage> packages;
+  private final String auth;
+  private final HttpResponseCache responseCache;
+  private final HttpResponseCache.Sender sender;
+  private final SyncStatistics statistics;
+
+  MavenRepositoryClient(String baseUrl, List<RepositoryPackage> packages, String auth,
+      HttpResponseCache responseCache, HttpResponseCache.Sender sender, SyncStatistics statistics) {
+    this.baseUrl = StringUtils.appendIfMissing(baseUrl, "/");
+    this.packages = packages;
+    this.auth = auth;
+    this.responseCache = responseCache;
+    this.sender = sender;
+    this.statistics = statistics;
+  }
+
+  /**
+   * Creates a client of the repository of the {@value PackageRepositoryClient#URL_PROPERTY} property, authenticated
+   * with the {@value PackageRepositoryClient#USER_PROPERTY} and {@value PackageRepositoryClient#PASSWORD_PROPERTY}
+   * properties if they are set, whose requests go through the shared {@link RepositoryRequestScheduler} and
+   * {@link HttpTransport}.
+   *
+   * @param properties
+   *     the Openbravo properties
+   * @param responseCache
+   *     the cache used to send conditional requests
+   * @param statistics
+   *     the statistics the requests are counted in
+   * @return the client
+   */
+  public static MavenRepositoryClient fromProperties(Properties properties, HttpResponseCache responseCache,
+      SyncStatistics statistics) {
+    String url = properties.getProperty(URL_PROPERTY);
+    if (StringUtils.isBlank(url)) {
+      throw new OBException("The " + URL_PROPERTY + " property is required by the Maven repository");
+    }
+    String user = properties.getProperty(USER_PROPERTY);
+    String auth = StringUtils.isBlank(user) ? null : BASIC_AUTH_TOKEN + Base64.getEncoder()
+        .encodeToString((user + ":" + properties.getProperty(PASSWORD_PROPERTY, "")).getBytes());
+    RepositoryRequestScheduler scheduler = RepositoryRequestScheduler.getInstance();
+    HttpTransport transport = HttpTransport.getInstance();
+    return new MavenRepositoryClient(url, parsePackages(properties.getProperty(PACKAGES_PROPERTY)), auth,
+        responseCache, request -> scheduler.send(transport::send, request), statistics);
+  }
+
+  /**
+   * Reads a comma separated list of {@code group:artifact} coordinates.
+   */
+  static List<RepositoryPackage> parsePackages(String coordinates) {
+    List<RepositoryPackage> result = new ArrayList<>();
+    for (String coordinate : StringUtils.split(StringUtils.defaultString(coordinates), ',')) {
+      String group = StringUtils.trim(StringUtils.substringBefore(coordinate, ":"));
+      String artifact = StringUtils.trim(StringUtils.substringAfter(coordinate, ":"));
+      if (StringUtils.isAnyBlank(group, artifact)) {
+        log.warn("Ignoring invalid package coordinate {}, expected group:artifact", coordinate);
+        continue;
+      }
+      result.add(new RepositoryPackage(group + "." + artifact, group, artifact, null, null));
+    }
+    return result;
+  }
+
+  @Override
+  public String getFirstPageCursor() {
+    return baseUrl;
+  }
+
+  @Override
+  public PackageListing listPackages(ConcurrentFetchEngine engine, String cursor) {
+    return singlePage(packages);
+  }
+
+  /**
+   * @return a listing of a single page with the given packages
+   */
+  static PackageListing singlePage(List<RepositoryPackage> packages) {
+    return new PackageListing() {
+      private boolean returned;
+
+      @Override
+      public boolean hasNext() {
+        return !returned;
+      }
+
+      @Override
+      public RepositoryPage next() {
+        returned = true;
+        return new RepositoryPage(packages, null, null);
+      }
+    };
+  }
+
+  /**
+   * Reads the versions of the metadata file, the latest first.
+   */
+  @Override
+  public VersionList fetchVersions(RepositoryPackage pkg) throws Exception {
+    statistics.versionListRequested();
+    CachedResponse response = responseCache.send(sender,
+        newRequest(metadataUrl(pkg.getGroup(), pkg.getArtifact())));
+    if (!response.isSuccessful()) {
+      throw new OBException(String.format("Failed to fetch the metadata of %s, status code %d", pkg.getName(),
+          response.statusCode()));
+    }
+    List<String> versions = new ArrayList<>(MavenMetadataParser.parse(response.body()).getVersions());
+    Collections.reverse(versions);
+    return new VersionList(versions, response.isNotModified(), response::commit);
+  }
+
+  @Override
+  public PomFile fetchPom(String group, String artifact, String version) throws Exception {
+    HttpResponse<String> response = sender.send(newRequest(artifactUrl(group, artifact)
+        + version + "/" + artifact + "-" + version + ".pom"));
+    return new PomFile(response.statusCode(), response.body());
+  }
+
+  @Override
+  public String fetchLatestVersion(String group, String artifact) throws Exception {
+    CachedResponse response = responseCache.send(sender, newRequest(metadataUrl(group, artifact)));
+    if (!response.isSuccessful()) {
+      return null;
+    }
+    MavenMetadata metadata = MavenMetadataParser.parse(response.body());
+    response.commit();
+    return metadata.getLatestVersion();
+  }
+
+  private String artifactUrl(String group, String artifact) {
+    return baseUrl + group.replace('.', '/') + "/" + artifact + "/";
+  }
+
+  private String metadataUrl(String group, String artifact) {
+    return artifactUrl(group, artifact) + METADATA_FILE;
+  }
+
+  private HttpRequest newRequest(String url) throws Exception {
+    HttpRequest.Builder builder = HttpRequest.newBuilder().uri(new URI(url)).GET();
+    if (auth != null) {
+      builder.header(AUTHORIZATION_HEADER, auth);
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,154 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Streaming reader of the package dataset exported by Etendo, such as {@code Packages_dataset.xml}.
+ * <p>
+ * Every element directly under the root is a record, named after its entity, whose children are either values or
+ * references to other records, which carry the id of the referenced record in their {@code id} attribute. Records
+ * are handed over one at a time, in document order, as soon as they are closed, so only the record being read is
+ * kept in memory.
+ */
+public class PackageDatasetReader {
+
+  private static final String ID_ATTRIBUTE = "id";
+  private static final int RECORD_DEPTH = 2;
+  private static final int FIELD_DEPTH = 3;
+  private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+  private PackageDatasetReader() {
+  }
+
+  private static XMLInputFactory createInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    return factory;
+  }
+
+  /**
+   * Reads the records of a dataset.
+   *
+   * @param dataset
+   *     the content of the dataset
+   * @param handler
+   *     the handler every record is passed to, in document order
+   * @return the number of records read
+   * @throws XMLStreamException
+   *     if the dataset is not well formed
+   */
+  public static int read(InputStream dataset, Consumer<DatasetRecord> handler) throws XMLStreamException {
+    XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(dataset);
+    try {
+      return read(reader, handler);
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static int read(XMLStreamReader reader, Consumer<DatasetRecord> handler) throws XMLStreamException {
+    int records = 0;
+    int depth = 0;
+    DatasetRecord current = null;
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+        if (depth == RECORD_DEPTH) {
+          current = new DatasetRecord(reader.getLocalName());
+        } else if (depth == FIELD_DEPTH && current != null) {
+          String name = reader.getLocalName();
+          String referenceId = reader.getAttributeValue(null, ID_ATTRIBUTE);
+          String text = reader.getElementText();
+          depth--;
+          if (StringUtils.isNotEmpty(referenceId)) {
+            current.putReference(name, referenceId);
+          } else {
+            current.putValue(name, text);
+          }
+        }
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        if (depth == RECORD_DEPTH && current != null) {
+          handler.accept(current);
+          records++;
+          current = null;
+        }
+        depth--;
+      }
+    }
+    return records;
+  }
+
+  /**
+   * A record of the dataset.
+   */
+  public static class DatasetRecord {
+    private final String entity;
+    private final Map<String, String> values = new HashMap<>();
+    private final Map<String, String> references = new HashMap<>();
+
+    DatasetRecord(String entity) {
+      this.entity = entity;
+    }
+
+    void putValue(String name, String value) {
+      values.put(name, value);
+    }
+
+    void putReference(String name, String id) {
+      references.put(name, id);
+    }
+
+    /**
+     * @return the name of the entity of the record, such as {@code ETDEP_Package}
+     */
+    public String getEntity() {
+      return entity;
+    }
+
+    public String getId() {
+      return values.get(ID_ATTRIBUTE);
+    }
+
+    /**
+     * @return the text of the value, or null if the record does not have it
+     */
+    public String getValue(String name) {
+      return values.get(name);
+    }
+
+    /**
+     * @return the id of the referenced record, or null if the reference is empty or the record does not have it
+     */
+    public String getReference(String name) {
+      return references.get(name);
+    }
+
+    /**
+     * @return the values of the record by name
+     */
+    public Map<String, String> getValues() {
+      return Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * @return the ids of the referenced records by name
+     */
+    public Map<String, String> getReferences() {
+      return Collections.unmodifiableMap(references);
+    }
+  }
+}
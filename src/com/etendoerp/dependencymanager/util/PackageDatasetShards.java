@@ -0,0 +1,246 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openbravo.base.structure.BaseOBObject;
+
+/**
+ * Sharded layout of the package dataset: the catalog split into {@value #SHARD_COUNT} dataset files, plus a
+ * {@value #MANIFEST_FILE} with the SHA-256 checksum of every shard.
+ * <p>
+ * Every package goes to the shard of the hash bucket of its id, together with its versions and their dependencies,
+ * so a change in a package only rewrites its shard. The manifest lists one {@code <checksum>  <file>} line per
+ * shard, sorted by file, in the format of {@code sha256sum}. Exporting rewrites only the shards whose checksum
+ * changed, and the local package update downloads and imports only the shards whose checksum differs from the one
+ * imported last time.
+ */
+public class PackageDatasetShards {
+
+  public static final String MANIFEST_FILE = "Packages_manifest.txt";
+  static final int SHARD_COUNT = 16;
+  private static final String SHARD_FILE_FORMAT = "Packages_%02d.xml";
+  private static final String MANIFEST_SEPARATOR = "  ";
+  private static final int CHECKSUM_LENGTH = 64;
+  private static final Logger log = LogManager.getLogger();
+
+  private PackageDatasetShards() {
+  }
+
+  /**
+   * @param packageId
+   *     the id of a package
+   * @return the index of the shard of the package, which only depends on the id
+   */
+  static int shardOf(String packageId) {
+    return Math.floorMod(packageId.hashCode(), SHARD_COUNT);
+  }
+
+  /**
+   * @param shard
+   *     the index of a shard
+   * @return the name of the file of the shard
+   */
+  static String shardFile(int shard) {
+    return String.format(SHARD_FILE_FORMAT, shard);
+  }
+
+  /**
+   * Exports the catalog in a single pass both to the whole dataset file and to its shards. The dataset file is
+   * replaced in a single step, and so is every shard whose content changed, while the unchanged shards are left
+   * untouched. The manifest is rewritten last, so it never lists a checksum of a shard that is not written yet.
+   *
+   * @param datasetFile
+   *     the file of the whole dataset
+   * @param shardDirectory
+   *     the directory of the shards and their manifest
+   * @return the number of rewritten shards
+   * @throws IOException
+   *     if the dataset or the shards cannot be written
+   */
+  public static int export(Path datasetFile, Path shardDirectory) throws IOException {
+    Files.createDirectories(shardDirectory);
+    Path manifestFile = shardDirectory.resolve(MANIFEST_FILE);
+    Map<String, String> previous = Files.exists(manifestFile) ? readManifest(manifestFile) : Map.of();
+    ShardFile[] shards = new ShardFile[SHARD_COUNT];
+    try {
+      for (int shard = 0; shard < SHARD_COUNT; shard++) {
+        shards[shard] = new ShardFile(shardDirectory, shardFile(shard));
+      }
+      PackageDatasetWriter.writeAtomically(datasetFile, out -> {
+        try (PackageDatasetWriter datasetWriter = new PackageDatasetWriter(out)) {
+          Map<String, Integer> versionShards = new HashMap<>();
+          PackageDatasetWriter.exportRecords((object, properties) -> {
+            datasetWriter.writeObject(object, properties);
+            shards[route(object, versionShards)].writer.writeObject(object, properties);
+          });
+        } catch (XMLStreamException e) {
+          throw new IOException("Failed to write the package dataset", e);
+        }
+      });
+      Map<String, String> manifest = new TreeMap<>();
+      for (ShardFile shard : shards) {
+        shard.close();
+        manifest.put(shard.name, DatasetImportHashes.hashFile(shard.tempFile));
+      }
+      int rewritten = publish(shards, shardDirectory, previous, manifest);
+      PackageDatasetWriter.writeAtomically(manifestFile, out -> writeManifest(manifest, out));
+      log.info("Exported the package dataset to {} shards, {} of them changed", SHARD_COUNT, rewritten);
+      return rewritten;
+    } finally {
+      for (ShardFile shard : shards) {
+        if (shard != null) {
+          shard.discard();
+        }
+      }
+    }
+  }
+
+  /**
+   * Moves the written shards whose checksum changed over the previous ones.
+   */
+  private static int publish(ShardFile[] shards, Path shardDirectory, Map<String, String> previous,
+      Map<String, String> manifest) throws IOException {
+    int rewritten = 0;
+    for (ShardFile shard : shards) {
+      Path target = shardDirectory.resolve(shard.name);
+      if (StringUtils.equals(previous.get(shard.name), manifest.get(shard.name)) && Files.exists(target)) {
+        continue;
+      }
+      PackageDatasetWriter.moveIntoPlace(shard.tempFile, target);
+      rewritten++;
+    }
+    return rewritten;
+  }
+
+  /**
+   * Finds the shard of a record: the one of its package. The shards of the versions are kept while exporting, as
+   * the versions are exported before their dependencies.
+   */
+  private static int route(BaseOBObject object, Map<String, Integer> versionShards) {
+    switch (object.getEntityName()) {
+      case UpdateLocalPackagesUtil.ETDEP_PACKAGE:
+        return shardOf((String) object.getId());
+      case UpdateLocalPackagesUtil.ETDEP_PACKAGE_VERSION:
+        int shard = shardOf(getReferenceId(object, UpdateLocalPackagesUtil.ETDEP_PACKAGE_TAG));
+        versionShards.put((String) object.getId(), shard);
+        return shard;
+      default:
+        BaseOBObject version = (BaseOBObject) object.get(UpdateLocalPackagesUtil.ETDEP_PACKAGE_VERSION_TAG);
+        return versionShards.computeIfAbsent((String) version.getId(),
+            id -> shardOf(getReferenceId(version, UpdateLocalPackagesUtil.ETDEP_PACKAGE_TAG)));
+    }
+  }
+
+  private static String getReferenceId(BaseOBObject object, String property) {
+    return (String) ((BaseOBObject) object.get(property)).getId();
+  }
+
+  /**
+   * Reads a manifest.
+   *
+   * @param manifestFile
+   *     the manifest
+   * @return the checksum of every shard, by file name
+   * @throws IOException
+   *     if the manifest cannot be read or is not valid
+   */
+  public static Map<String, String> readManifest(Path manifestFile) throws IOException {
+    try (InputStream in = Files.newInputStream(manifestFile)) {
+      return readManifest(in);
+    }
+  }
+
+  static Map<String, String> readManifest(InputStream in) throws IOException {
+    Map<String, String> manifest = new TreeMap<>();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (StringUtils.isBlank(line)) {
+        continue;
+      }
+      int separator = line.indexOf(MANIFEST_SEPARATOR);
+      String file = separator < 0 ? "" : line.substring(separator + MANIFEST_SEPARATOR.length()).trim();
+      if (separator != CHECKSUM_LENGTH || file.isEmpty() || file.contains("/") || file.contains("\\")) {
+        throw new IOException("Invalid package dataset manifest line: " + line);
+      }
+      manifest.put(file, line.substring(0, separator));
+    }
+    return manifest;
+  }
+
+  /**
+   * Writes a manifest.
+   *
+   * @param manifest
+   *     the checksum of every shard, by file name
+   * @param out
+   *     the stream to write to, which is not closed
+   * @throws IOException
+   *     if the manifest cannot be written
+   */
+  static void writeManifest(Map<String, String> manifest, OutputStream out) throws IOException {
+    StringBuilder content = new StringBuilder();
+    new TreeMap<>(manifest).forEach(
+        (file, checksum) -> content.append(checksum).append(MANIFEST_SEPARATOR).append(file).append('\n'));
+    out.write(content.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Shard being exported to a temporary file next to its target.
+   */
+  private static class ShardFile {
+    private final String name;
+    private final Path tempFile;
+    private final OutputStream out;
+    private final PackageDatasetWriter writer;
+    private boolean closed;
+
+    private ShardFile(Path directory, String name) throws IOException {
+      this.name = name;
+      this.tempFile = Files.createTempFile(directory, name, ".tmp");
+      this.out = new BufferedOutputStream(Files.newOutputStream(tempFile));
+      try {
+        this.writer = new PackageDatasetWriter(out);
+      } catch (XMLStreamException e) {
+        out.close();
+        throw new IOException("Failed to write the package dataset shard " + name, e);
+      }
+    }
+
+    private void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try (out) {
+        writer.close();
+      } catch (XMLStreamException e) {
+        throw new IOException("Failed to write the package dataset shard " + name, e);
+      }
+    }
+
+    private void discard() throws IOException {
+      if (!closed) {
+        closed = true;
+        out.close();
+      }
+      Files.deleteIfExists(tempFile);
+    }
+  }
+}
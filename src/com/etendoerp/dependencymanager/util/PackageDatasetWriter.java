@@ -0,0 +1,352 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openbravo.base.model.Entity;
+import org.openbravo.base.model.ModelProvider;
+import org.openbravo.base.model.Property;
+import org.openbravo.base.structure.BaseOBObject;
+import org.openbravo.dal.service.OBDal;
+import org.openbravo.dal.service.OBQuery;
+import org.openbravo.dal.xml.XMLTypeConverter;
+
+/**
+ * Streaming writer of the package dataset, in the format read by {@link PackageDatasetReader} and by the Etendo
+ * dataset import.
+ * <p>
+ * Records are written as they are handed over, so only the record being written is kept in memory. The
+ * {@link #export} of the catalog reads its rows page by page in the order of their ids, so the file is the same for
+ * the same catalog, and writes them to a temporary file next to the target, which is then moved over it in a single
+ * step: readers of the target see either the previous dataset or the new one, never a partially written file.
+ */
+public class PackageDatasetWriter implements AutoCloseable {
+
+  static final String ROOT_ELEMENT = "Openbravo";
+  static final String OB_PREFIX = "ob";
+  static final String OB_NAMESPACE = "http://www.openbravo.com";
+  static final String XSI_PREFIX = "xsi";
+  static final String XSI_NAMESPACE = "http://www.w3.org/2001/XMLSchema-instance";
+  static final List<String> ENTITIES = List.of(UpdateLocalPackagesUtil.ETDEP_PACKAGE,
+      UpdateLocalPackagesUtil.ETDEP_PACKAGE_VERSION, UpdateLocalPackagesUtil.ETDEP_PACKAGE_DEPENDENCY);
+  private static final int PAGE_SIZE = 500;
+  private static final String ID_ATTRIBUTE = "id";
+  private static final String IDENTIFIER_ATTRIBUTE = "identifier";
+  private static final String ENTITY_NAME_ATTRIBUTE = "entity-name";
+  private static final String NIL_ATTRIBUTE = "nil";
+  private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+  private static final Logger log = LogManager.getLogger();
+
+  private final XMLStreamWriter writer;
+  private int records;
+
+  /**
+   * Starts a dataset, writing its root element.
+   *
+   * @param out
+   *     the stream the dataset is written to, which is not closed
+   * @throws XMLStreamException
+   *     if the dataset cannot be written
+   */
+  public PackageDatasetWriter(OutputStream out) throws XMLStreamException {
+    writer = OUTPUT_FACTORY.createXMLStreamWriter(out, StandardCharsets.UTF_8.name());
+    writer.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+    writer.writeCharacters("\n");
+    writer.writeStartElement(OB_PREFIX, ROOT_ELEMENT, OB_NAMESPACE);
+    writer.writeNamespace(OB_PREFIX, OB_NAMESPACE);
+    writer.writeNamespace(XSI_PREFIX, XSI_NAMESPACE);
+    writer.writeCharacters("\n");
+  }
+
+  /**
+   * Exports the packages, versions and dependencies of the catalog, without audit info, and replaces the target
+   * file with the result.
+   *
+   * @param target
+   *     the dataset file
+   * @return the number of exported records
+   * @throws IOException
+   *     if the dataset cannot be written
+   */
+  public static int export(Path target) throws IOException {
+    int[] exported = new int[1];
+    writeAtomically(target, out -> {
+      try (PackageDatasetWriter datasetWriter = new PackageDatasetWriter(out)) {
+        exportRecords(datasetWriter::writeObject);
+        exported[0] = datasetWriter.getRecords();
+      } catch (XMLStreamException e) {
+        throw new IOException("Failed to write the package dataset", e);
+      }
+    });
+    log.info("Exported {} records of the package dataset to {}", exported[0], target);
+    return exported[0];
+  }
+
+  /**
+   * Writes a file through a temporary file in the same directory, which replaces the target once it is completely
+   * written. The temporary file is removed if the content cannot be written.
+   *
+   * @param target
+   *     the file to write
+   * @param content
+   *     the writer of the content of the file
+   * @throws IOException
+   *     if the file cannot be written
+   */
+  public static void writeAtomically(Path target, FileContent content) throws IOException {
+    Path directory = target.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    Path tempFile = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+    try {
+      try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempFile))) {
+        content.write(out);
+      }
+      moveIntoPlace(tempFile, target);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  /**
+   * Moves a completely written file over its target in a single step when the file system supports it.
+   *
+   * @param file
+   *     the written file, in the directory of the target
+   * @param target
+   *     the file to replace
+   * @throws IOException
+   *     if the file cannot be moved
+   */
+  static void moveIntoPlace(Path file, Path target) throws IOException {
+    try {
+      Files.move(file, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Reads the packages, versions and dependencies of the catalog and passes every record to a handler, together
+   * with the properties to write.
+   *
+   * @param handler
+   *     the handler of the records, in the order of the dataset
+   * @throws XMLStreamException
+   *     if the handler fails to write a record
+   */
+  static void exportRecords(RecordHandler handler) throws XMLStreamException {
+    for (String entity : ENTITIES) {
+      exportEntity(entity, handler);
+    }
+  }
+
+  /**
+   * Reads every record of an entity in pages ordered by id, clearing the session after every page.
+   */
+  private static void exportEntity(String entityName, RecordHandler handler) throws XMLStreamException {
+    Entity entity = ModelProvider.getInstance().getEntity(entityName);
+    List<Property> properties = new ArrayList<>();
+    for (Property property : entity.getProperties()) {
+      if (!property.isOneToMany() && !property.isAuditInfo() && !property.isComputedColumn()) {
+        properties.add(property);
+      }
+    }
+    String lastId = "";
+    List<BaseOBObject> page;
+    do {
+      OBQuery<BaseOBObject> query = OBDal.getInstance()
+          .createQuery(entityName, "as e where e.id > :lastId order by e.id");
+      query.setNamedParameter("lastId", lastId);
+      query.setFilterOnActive(false);
+      query.setFilterOnReadableClients(false);
+      query.setFilterOnReadableOrganization(false);
+      query.setMaxResult(PAGE_SIZE);
+      page = query.list();
+      for (BaseOBObject object : page) {
+        handler.handle(object, properties);
+        lastId = (String) object.getId();
+      }
+      OBDal.getInstance().getSession().clear();
+    } while (page.size() == PAGE_SIZE);
+  }
+
+  /**
+   * Writes a record of the catalog.
+   *
+   * @param object
+   *     the object of the record
+   * @param properties
+   *     the properties of the object to write
+   * @throws XMLStreamException
+   *     if the record cannot be written
+   */
+  void writeObject(BaseOBObject object, List<Property> properties) throws XMLStreamException {
+    startRecord(object.getEntityName(), (String) object.getId(), object.getIdentifier());
+    for (Property property : properties) {
+      Object value = object.get(property.getName());
+      if (property.isPrimitive()) {
+        writeValue(property.getName(), value == null ? null : XMLTypeConverter.getInstance().toXML(value));
+      } else if (value == null) {
+        writeValue(property.getName(), null);
+      } else {
+        BaseOBObject reference = (BaseOBObject) value;
+        writeReference(property.getName(), reference.getEntityName(), (String) reference.getId(),
+            reference.getIdentifier());
+      }
+    }
+    endRecord();
+  }
+
+  /**
+   * Starts a record.
+   *
+   * @param entity
+   *     the name of the entity of the record
+   * @param id
+   *     the id of the record
+   * @param identifier
+   *     the identifier of the record, or null to leave it out
+   * @throws XMLStreamException
+   *     if the record cannot be written
+   */
+  public void startRecord(String entity, String id, String identifier) throws XMLStreamException {
+    writer.writeCharacters("  ");
+    writer.writeStartElement(entity);
+    writer.writeAttribute(ID_ATTRIBUTE, id);
+    if (identifier != null) {
+      writer.writeAttribute(IDENTIFIER_ATTRIBUTE, identifier);
+    }
+    writer.writeCharacters("\n");
+  }
+
+  /**
+   * Writes a value of the current record.
+   *
+   * @param name
+   *     the name of the property
+   * @param value
+   *     the value in its XML form, or null for an empty value
+   * @throws XMLStreamException
+   *     if the value cannot be written
+   */
+  public void writeValue(String name, String value) throws XMLStreamException {
+    writer.writeCharacters("    ");
+    if (value == null) {
+      writer.writeEmptyElement(name);
+      writer.writeAttribute(XSI_PREFIX, XSI_NAMESPACE, NIL_ATTRIBUTE, "true");
+    } else {
+      writer.writeStartElement(name);
+      writer.writeCharacters(value);
+      writer.writeEndElement();
+    }
+    writer.writeCharacters("\n");
+  }
+
+  /**
+   * Writes a reference of the current record to another record.
+   *
+   * @param name
+   *     the name of the property
+   * @param entity
+   *     the name of the entity of the referenced record
+   * @param id
+   *     the id of the referenced record
+   * @param identifier
+   *     the identifier of the referenced record, or null to leave it out
+   * @throws XMLStreamException
+   *     if the reference cannot be written
+   */
+  public void writeReference(String name, String entity, String id, String identifier) throws XMLStreamException {
+    writer.writeCharacters("    ");
+    writer.writeEmptyElement(name);
+    writer.writeAttribute(ID_ATTRIBUTE, id);
+    writer.writeAttribute(ENTITY_NAME_ATTRIBUTE, entity);
+    if (identifier != null) {
+      writer.writeAttribute(IDENTIFIER_ATTRIBUTE, identifier);
+    }
+    writer.writeCharacters("\n");
+  }
+
+  /**
+   * Ends the current record.
+   *
+   * @throws XMLStreamException
+   *     if the record cannot be written
+   */
+  public void endRecord() throws XMLStreamException {
+    writer.writeCharacters("  ");
+    writer.writeEndElement();
+    writer.writeCharacters("\n");
+    records++;
+  }
+
+  /**
+   * @return the number of records written
+   */
+  public int getRecords() {
+    return records;
+  }
+
+  /**
+   * Ends the dataset, writing the end of its root element.
+   *
+   * @throws XMLStreamException
+   *     if the dataset cannot be written
+   */
+  @Override
+  public void close() throws XMLStreamException {
+    writer.writeEndElement();
+    writer.writeCharacters("\n");
+    writer.writeEndDocument();
+    writer.flush();
+    writer.close();
+  }
+
+  /**
+   * Handler of the records read by {@link #exportRecords}.
+   */
+  @FunctionalInterface
+  interface RecordHandler {
+    /**
+     * Handles a record.
+     *
+     * @param object
+     *     the object of the record
+     * @param properties
+     *     the properties of the object to write
+     * @throws XMLStreamException
+     *     if the record cannot be written
+     */
+    void handle(BaseOBObject object, List<Property> properties) throws XMLStreamException;
+  }
+
+  /**
+   * Writer of the content of a file.
+   */
+  @FunctionalInterface
+  public interface FileContent {
+    /**
+     * Writes the content.
+     *
+     * @param out
+     *     the stream of the file, closed by the caller
+     * @throws IOException
+     *     if the content cannot be written
+     */
+    void write(OutputStream out) throws IOException;
+  }
+}
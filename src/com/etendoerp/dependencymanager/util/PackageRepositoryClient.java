@@ -0,0 +1,314 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openbravo.base.exception.OBException;
+
+/**
+ * Client of a repository the package catalog is synced from, and where the latest versions of the packages are
+ * looked up.
+ * <p>
+ * The repository is chosen with the {@value #TYPE_PROPERTY} property:
+ * <ul>
+ * <li>{@value #TYPE_GITHUB}, the default, reads the GitHub Packages API of the Etendo organization.</li>
+ * <li>{@value #TYPE_MAVEN} reads a repository with the plain Maven layout, such as an on-premise Nexus, from the
+ * {@value #URL_PROPERTY} URL. Maven repositories cannot be listed, so the packages are taken from the
+ * {@value #PACKAGES_PROPERTY} property.</li>
+ * <li>{@value #TYPE_LOCAL} reads a directory with the Maven layout, such as a mirror, from the
+ * {@value #DIR_PROPERTY} directory.</li>
+ * </ul>
+ * The listing is consumed from the process thread, while the versions and the POM files are fetched from the
+ * fetch engine workers, so implementations must be thread safe and must not touch the database.
+ */
+public interface PackageRepositoryClient {
+
+  String TYPE_PROPERTY = "etdep.repository.type";
+  String URL_PROPERTY = "etdep.repository.url";
+  String DIR_PROPERTY = "etdep.repository.dir";
+  String PACKAGES_PROPERTY = "etdep.repository.packages";
+  String USER_PROPERTY = "etdep.repository.user";
+  String PASSWORD_PROPERTY = "etdep.repository.password";
+  String TYPE_GITHUB = "github";
+  String TYPE_MAVEN = "maven";
+  String TYPE_LOCAL = "local";
+
+  /**
+   * @return the cursor of the first page of the package listing
+   */
+  String getFirstPageCursor();
+
+  /**
+   * Starts listing the packages of the repository.
+   *
+   * @param engine
+   *     the engine the pages may be prefetched with
+   * @param cursor
+   *     the cursor of the page to start from, as returned by {@link #getFirstPageCursor} or
+   *     {@link RepositoryPage#getNextCursor}
+   * @return the listing
+   */
+  PackageListing listPackages(ConcurrentFetchEngine engine, String cursor);
+
+  /**
+   * Fetches the versions of a package.
+   *
+   * @param pkg
+   *     the package
+   * @return the versions
+   * @throws Exception
+   *     if the versions could not be fetched
+   */
+  VersionList fetchVersions(RepositoryPackage pkg) throws Exception;
+
+  /**
+   * Fetches the POM file of a package version.
+   *
+   * @return the POM file, with the status of the request
+   * @throws Exception
+   *     if the request could not be sent
+   */
+  PomFile fetchPom(String group, String artifact, String version) throws Exception;
+
+  /**
+   * Looks up the latest version of a package.
+   *
+   * @return the latest version, or null if the package has no versions
+   * @throws Exception
+   *     if the versions could not be fetched
+   */
+  String fetchLatestVersion(String group, String artifact) throws Exception;
+
+  /**
+   * Creates the client of the repository configured with the {@value #TYPE_PROPERTY} property.
+   *
+   * @param properties
+   *     the Openbravo properties
+   * @param responseCache
+   *     the cache used to send conditional requests, or null to send plain requests
+   * @param statistics
+   *     the statistics the requests are counted in, or null to not count them
+   * @return the client
+   */
+  static PackageRepositoryClient fromProperties(Properties properties, HttpResponseCache responseCache,
+      SyncStatistics statistics) {
+    HttpResponseCache cache = responseCache != null ? responseCache : new HttpResponseCache(null);
+    SyncStatistics stats = statistics != null ? statistics : new SyncStatistics();
+    String type = StringUtils.defaultIfBlank(properties.getProperty(TYPE_PROPERTY), TYPE_GITHUB);
+    switch (type) {
+      case TYPE_GITHUB:
+        return GitHubRepositoryClient.fromProperties(properties, cache, stats);
+      case TYPE_MAVEN:
+        return MavenRepositoryClient.fromProperties(properties, cache, stats);
+      case TYPE_LOCAL:
+        String directory = properties.getProperty(DIR_PROPERTY);
+        if (StringUtils.isBlank(directory)) {
+          throw new OBException("The " + DIR_PROPERTY + " property is required by the local repository");
+        }
+        return new LocalMirrorRepositoryClient(Paths.get(directory));
+      default:
+        throw new OBException("Unknown package repository type: " + type);
+    }
+  }
+
+  /**
+   * Listing of the packages of a repository, returned in pages.
+   */
+  interface PackageListing {
+
+    /**
+     * @return true if there are pages left to return
+     */
+    boolean hasNext();
+
+    /**
+     * Waits for the next page.
+     *
+     * @return the next page
+     * @throws Exception
+     *     if the page could not be fetched
+     */
+    RepositoryPage next() throws Exception;
+  }
+
+  /**
+   * A package of a repository.
+   */
+  class RepositoryPackage {
+    private final String name;
+    private final String group;
+    private final String artifact;
+    private final String updatedAt;
+    private final String repository;
+
+    /**
+     * @param name
+     *     the name of the package, unique in the repository
+     * @param group
+     *     the group of the package
+     * @param artifact
+     *     the artifact of the package
+     * @param updatedAt
+     *     the last time the package changed, or null if the repository does not report it
+     * @param repository
+     *     the source repository the package was published from, or null if it is unknown
+     */
+    public RepositoryPackage(String name, String group, String artifact, String updatedAt, String repository) {
+      this.name = name;
+      this.group = group;
+      this.artifact = artifact;
+      this.updatedAt = updatedAt;
+      this.repository = repository;
+    }
+
+    /**
+     * Creates a package from a name in the {@code group.artifact} form, where the group is made of the first two
+     * segments of the name, as in the Etendo packages.
+     */
+    public static RepositoryPackage fromName(String name, String updatedAt, String repository) {
+      String[] parts = StringUtils.split(name, '.');
+      if (parts.length < 3) {
+        return new RepositoryPackage(name, name, name, updatedAt, repository);
+      }
+      return new RepositoryPackage(name, parts[0] + "." + parts[1],
+          StringUtils.join(parts, '.', 2, parts.length), updatedAt, repository);
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String getGroup() {
+      return group;
+    }
+
+    public String getArtifact() {
+      return artifact;
+    }
+
+    public String getUpdatedAt() {
+      return updatedAt;
+    }
+
+    public String getRepository() {
+      return repository;
+    }
+  }
+
+  /**
+   * A page of a package listing.
+   */
+  class RepositoryPage {
+    private final List<RepositoryPackage> packages;
+    private final String nextCursor;
+    private final Runnable onCommit;
+
+    /**
+     * @param packages
+     *     the packages of the page
+     * @param nextCursor
+     *     the cursor of the next page, or null if this is the last one
+     * @param onCommit
+     *     the action that stores the page once processed, or null if there is nothing to store
+     */
+    public RepositoryPage(List<RepositoryPackage> packages, String nextCursor, Runnable onCommit) {
+      this.packages = packages;
+      this.nextCursor = nextCursor;
+      this.onCommit = onCommit;
+    }
+
+    public List<RepositoryPackage> getPackages() {
+      return packages;
+    }
+
+    public String getNextCursor() {
+      return nextCursor;
+    }
+
+    /**
+     * Stores the page, for instance in the HTTP response cache. Call it once the page has been completely processed.
+     */
+    public void commit() {
+      if (onCommit != null) {
+        onCommit.run();
+      }
+    }
+  }
+
+  /**
+   * The versions of a package.
+   */
+  class VersionList {
+    private final List<String> versions;
+    private final boolean notModified;
+    private final Runnable onCommit;
+
+    /**
+     * @param versions
+     *     the versions, the latest first when the repository reports their order
+     * @param notModified
+     *     true if the versions did not change since they were last committed
+     * @param onCommit
+     *     the action that stores the versions once processed, or null if there is nothing to store
+     */
+    public VersionList(List<String> versions, boolean notModified, Runnable onCommit) {
+      this.versions = versions;
+      this.notModified = notModified;
+      this.onCommit = onCommit;
+    }
+
+    /**
+     * @return an empty list that is not stored anywhere
+     */
+    public static VersionList empty() {
+      return new VersionList(Collections.emptyList(), false, null);
+    }
+
+    public List<String> getVersions() {
+      return versions;
+    }
+
+    public boolean isNotModified() {
+      return notModified;
+    }
+
+    /**
+     * Stores the versions, for instance in the HTTP response cache. Call it once they have been completely processed.
+     */
+    public void commit() {
+      if (onCommit != null) {
+        onCommit.run();
+      }
+    }
+  }
+
+  /**
+   * The POM file of a package version, with the status of the request that fetched it.
+   */
+  class PomFile {
+    public static final int STATUS_OK = 200;
+    public static final int STATUS_NOT_FOUND = 404;
+    private final int statusCode;
+    private final String body;
+
+    public PomFile(int statusCode, String body) {
+      this.statusCode = statusCode;
+      this.body = body;
+    }
+
+    public int getStatusCode() {
+      return statusCode;
+    }
+
+    public String getBody() {
+      return body;
+    }
+
+    public boolean isFound() {
+      return statusCode == STATUS_OK;
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openbravo.base.exception.OBException;
+
+/**
+ * Per package watermarks of the repository sync, stored in the {@value #TABLE} table.
+ * <p>
+ * The watermark of a package is the {@code updated_at} timestamp the GitHub API reported for it in the last
+ * sync that processed it successfully. Packages whose timestamp has not moved since then are skipped.
+ * The table holds internal sync state only: it is not registered in the application dictionary, has none of the
+ * client, organization and audit columns, and is accessed through plain JDBC on the DAL connection.
+ */
+public class PackageSyncWatermarks {
+
+  public static final String FULL_REBUILD_PROPERTY = "etdep.sync.full.rebuild";
+  static final String TABLE = "ETDEP_PACKAGE_SYNC";
+  private static final String SELECT_SQL = "SELECT PACKAGE_NAME, LAST_UPDATED_AT FROM " + TABLE;
+  private static final String DELETE_SQL = "DELETE FROM " + TABLE + " WHERE PACKAGE_NAME = ?";
+  private static final String INSERT_SQL = "INSERT INTO " + TABLE
+      + " (PACKAGE_NAME, LAST_UPDATED_AT, SYNCED) VALUES (?, ?, ?)";
+  private static final Logger log = LogManager.getLogger();
+
+  private final Map<String, String> stored;
+  private final Map<String, String> pending = new LinkedHashMap<>();
+
+  PackageSyncWatermarks(Map<String, String> stored) {
+    this.stored = stored;
+  }
+
+  /**
+   * Loads the watermarks stored by the previous syncs.
+   *
+   * @param connection
+   *     the connection to read from
+   * @param fullRebuild
+   *     if true, the stored watermarks are ignored so every package is processed again
+   * @return the watermarks
+   */
+  public static PackageSyncWatermarks load(Connection connection, boolean fullRebuild) {
+    Map<String, String> stored = new HashMap<>();
+    if (!fullRebuild) {
+      try (PreparedStatement statement = connection.prepareStatement(SELECT_SQL);
+           ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          stored.put(resultSet.getString(1), resultSet.getString(2));
+        }
+      } catch (SQLException e) {
+        throw new OBException("Failed to load the package sync watermarks", e);
+      }
+    }
+    log.debug("Loaded {} package sync watermarks", stored.size());
+    return new PackageSyncWatermarks(stored);
+  }
+
+  /**
+   * @param packageName
+   *     the name of the package in the GitHub API
+   * @param updatedAt
+   *     the {@code updated_at} timestamp currently reported for the package
+   * @return true if the package was synced successfully with the same timestamp
+   */
+  public boolean isUnchanged(String packageName, String updatedAt) {
+    return StringUtils.isNotEmpty(updatedAt) && StringUtils.equals(stored.get(packageName), updatedAt);
+  }
+
+  /**
+   * Records the timestamp of a package that was synced successfully. It is not stored until {@link #save}.
+   *
+   * @param packageName
+   *     the name of the package in the GitHub API
+   * @param updatedAt
+   *     the {@code updated_at} timestamp reported for the package
+   */
+  public void record(String packageName, String updatedAt) {
+    if (StringUtils.isNotEmpty(updatedAt) && !StringUtils.equals(stored.get(packageName), updatedAt)) {
+      pending.put(packageName, updatedAt);
+    }
+  }
+
+  /**
+   * @return the number of watermarks recorded and not saved yet
+   */
+  public int getPendingCount() {
+    return pending.size();
+  }
+
+  /**
+   * Saves the recorded watermarks in two JDBC batches.
+   *
+   * @param connection
+   *     the connection to write to, which is committed together with the rest of the sync
+   */
+  public void save(Connection connection) {
+    if (pending.isEmpty()) {
+      return;
+    }
+    Timestamp now = new Timestamp(System.currentTimeMillis());
+    try (PreparedStatement delete = connection.prepareStatement(DELETE_SQL);
+         PreparedStatement insert = connection.prepareStatement(INSERT_SQL)) {
+      for (Map.Entry<String, String> watermark : pending.entrySet()) {
+        delete.setString(1, watermark.getKey());
+        delete.addBatch();
+        insert.setString(1, watermark.getKey());
+        insert.setString(2, watermark.getValue());
+        insert.setTimestamp(3, now);
+        insert.addBatch();
+      }
+      delete.executeBatch();
+      insert.executeBatch();
+    } catch (SQLException e) {
+      throw new OBException("Failed to save the package sync watermarks", e);
+    }
+    stored.putAll(pending);
+    pending.clear();
+  }
+}
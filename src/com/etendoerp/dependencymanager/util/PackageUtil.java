@@ -1,9 +1,11 @@
 package com.etendoerp.dependencymanager.util;
 
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.codehaus.jettison.json.JSONException;
@@ -33,6 +35,17 @@ public class PackageUtil {
   public static final String VERSION_V2 = "version_v2";
   public static final String PACKAGE_VERSION_ID = "packageVersion.id";
   public static final String IS_COMPATIBLE = "isCompatible";
+  /**
+   * Orders versions by their numeric major, minor and patch numbers, ignoring any qualifier after a dash. Missing
+   * or non numeric numbers sort first, and between versions with the same numbers a release sorts after its
+   * qualified versions, and the rest in text order.
+   */
+  public static final Comparator<String> VERSION_ORDER = Comparator
+      .comparingLong((String version) -> versionPart(version, 0))
+      .thenComparingLong(version -> versionPart(version, 1))
+      .thenComparingLong(version -> versionPart(version, 2))
+      .thenComparing(version -> !StringUtils.contains(version, '-'))
+      .thenComparing(Comparator.naturalOrder());
   // Constants
   private static final Logger log = LogManager.getLogger();
 
@@ -147,17 +160,28 @@ public class PackageUtil {
   }
 
   /**
-   * Retrieves the latest version of a given package.
+   * Retrieves the latest version of a given package. The versions are ordered by {@link #VERSION_ORDER}, as the
+   * catalog index orders them during the sync.
    *
    * @param depPackage The package for which to retrieve the latest version.
-   * @return The latest PackageVersion object for the specified package.
+   * @return The latest PackageVersion object for the specified package, or null if it has no versions.
    */
   public static PackageVersion getLastPackageVersion(Package depPackage) {
     return OBDal.getInstance()
-        .createQuery(PackageVersion.class, "as pv where pv.package.id = :packageId order by etdep_split_string1(pv.version) desc, etdep_split_string2(pv.version) desc, etdep_split_string3(pv.version) desc")
+        .createQuery(PackageVersion.class, "as pv where pv.package.id = :packageId")
         .setNamedParameter("packageId", depPackage.getId())
-        .setMaxResult(1)
-        .uniqueResult();
+        .list()
+        .stream()
+        .max(Comparator.comparing(PackageVersion::getVersion, Comparator.nullsFirst(VERSION_ORDER)))
+        .orElse(null);
+  }
+
+  /**
+   * Reads a numeric part of a version, ignoring any qualifier after a dash.
+   */
+  private static long versionPart(String version, int position) {
+    String[] parts = StringUtils.split(StringUtils.substringBefore(version, "-"), '.');
+    return position < parts.length ? NumberUtils.toLong(parts[position], -1) : -1;
   }
 
   /**
@@ -321,6 +345,16 @@ public class PackageUtil {
   }
   
   public static String getCoreCompatibleOrLatestVersion(Package pkg) {
+    // Answer from the catalog graph when it holds the package
+    CatalogGraph graph = CatalogGraph.get();
+    if (graph != null) {
+      String currentCoreVersion = OBDal.getInstance().get(Module.class, "0").getVersion();
+      String version = graph.getCoreCompatibleOrLatestVersion(pkg.getId(), currentCoreVersion);
+      if (version != null) {
+        return version;
+      }
+    }
+
     // Get Package Versions
     OBCriteria<PackageVersion> versionCriteria = OBDal.getInstance().createCriteria(PackageVersion.class);
     versionCriteria.add(Restrictions.eq(PackageVersion.PROPERTY_PACKAGE, pkg));
@@ -0,0 +1,327 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Durable local cache of the POM files of the package versions, keyed by their GAV coordinate.
+ * <p>
+ * Published POM files never change, so a cached POM is used without contacting the repository at all. SNAPSHOT
+ * versions are republished under the same coordinate, so they are never cached and always fetched again.
+ * The files are stored by the SHA-256 of their content, so identical POM files are only stored once, and a compact
+ * binary index maps every GAV coordinate to its content hash. The least recently used entries are evicted once the
+ * stored content exceeds the {@value #MAX_SIZE_PROPERTY} limit.
+ * <p>
+ * The index is kept in memory and written to disk by {@link #save()}. Every method is thread safe, so the cache can be
+ * read and filled from the fetch engine workers.
+ */
+public class PomCache {
+
+  public static final String CACHE_DIR_PROPERTY = "etdep.pom.cache.dir";
+  public static final String MAX_SIZE_PROPERTY = "etdep.pom.cache.max.size.mb";
+  public static final String WARM_PROPERTY = "etdep.pom.cache.warm";
+  static final long DEFAULT_MAX_SIZE_MB = 256;
+  private static final String CACHE_SUBDIR = "etdep/pom-cache";
+  private static final String INDEX_FILE = "index.bin";
+  private static final String OBJECTS_DIR = "objects";
+  private static final String OBJECT_EXTENSION = ".pom";
+  private static final int INDEX_FORMAT_VERSION = 1;
+  private static final String SNAPSHOT_SUFFIX = "-SNAPSHOT";
+  private static final Logger log = LogManager.getLogger();
+
+  private final Path directory;
+  private final long maxSizeBytes;
+  private final LinkedHashMap<String, IndexEntry> index = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<String, Integer> references = new HashMap<>();
+  private long sizeBytes;
+  private boolean dirty;
+
+  /**
+   * Opens the cache stored in the given directory, loading its index.
+   *
+   * @param directory
+   *     the directory of the cache, or null to disable it
+   * @param maxSizeBytes
+   *     the maximum size of the stored POM files
+   */
+  public PomCache(Path directory, long maxSizeBytes) {
+    Path cacheDirectory = directory;
+    if (cacheDirectory != null) {
+      try {
+        Files.createDirectories(cacheDirectory.resolve(OBJECTS_DIR));
+      } catch (IOException e) {
+        log.warn("POM cache disabled, cannot create directory {}", cacheDirectory, e);
+        cacheDirectory = null;
+      }
+    }
+    this.directory = cacheDirectory;
+    this.maxSizeBytes = maxSizeBytes;
+    loadIndex();
+  }
+
+  /**
+   * Opens the cache stored in the directory set in the {@value #CACHE_DIR_PROPERTY} property, or under the
+   * attachments folder if it is not set, bounded by the {@value #MAX_SIZE_PROPERTY} property.
+   *
+   * @param properties
+   *     the Openbravo properties
+   * @return the cache
+   */
+  public static PomCache fromProperties(Properties properties) {
+    long maxSizeMb = NumberUtils.toLong(properties.getProperty(MAX_SIZE_PROPERTY), DEFAULT_MAX_SIZE_MB);
+    return new PomCache(HttpResponseCache.resolveDirectory(properties, CACHE_DIR_PROPERTY, CACHE_SUBDIR),
+        maxSizeMb * 1024 * 1024);
+  }
+
+  /**
+   * Builds the key of a package version.
+   *
+   * @param group
+   *     the group of the package
+   * @param artifact
+   *     the artifact of the package
+   * @param version
+   *     the version
+   * @return the GAV coordinate
+   */
+  public static String gav(String group, String artifact, String version) {
+    return group + ":" + artifact + ":" + version;
+  }
+
+  /**
+   * @param gav
+   *     the GAV coordinate of the package version
+   * @return true if the POM of the package version is cached
+   */
+  public synchronized boolean contains(String gav) {
+    return !isSnapshot(gav) && index.containsKey(gav);
+  }
+
+  /**
+   * @param gav
+   *     the GAV coordinate of a package version
+   * @return true if the version is a SNAPSHOT, whose POM can change and is not cached
+   */
+  static boolean isSnapshot(String gav) {
+    return gav.endsWith(SNAPSHOT_SUFFIX);
+  }
+
+  /**
+   * Reads a cached POM.
+   *
+   * @param gav
+   *     the GAV coordinate of the package version
+   * @return the POM, or null if it is not cached
+   */
+  public String get(String gav) {
+    if (isSnapshot(gav)) {
+      return null;
+    }
+    IndexEntry entry;
+    synchronized (this) {
+      entry = index.get(gav);
+    }
+    if (entry == null) {
+      return null;
+    }
+    try {
+      return new String(Files.readAllBytes(objectFile(entry.hash)), StandardCharsets.UTF_8);
+    } catch (NoSuchFileException e) {
+      log.debug("POM of {} missing from the cache", gav);
+    } catch (IOException e) {
+      log.warn("Could not read the cached POM of {}", gav, e);
+    }
+    synchronized (this) {
+      if (index.get(gav) == entry) {
+        removeEntry(gav);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Stores a POM, evicting the least recently used entries if the cache grows beyond its limit. The POM of a SNAPSHOT
+   * version is not stored.
+   *
+   * @param gav
+   *     the GAV coordinate of the package version
+   * @param pom
+   *     the POM
+   */
+  public void put(String gav, String pom) {
+    if (directory == null || pom == null || isSnapshot(gav)) {
+      return;
+    }
+    byte[] content = pom.getBytes(StandardCharsets.UTF_8);
+    String hash = HttpResponseCache.sha256(pom);
+    Path file = objectFile(hash);
+    try {
+      writeObject(file, content);
+    } catch (IOException e) {
+      log.warn("Could not store the POM of {}", gav, e);
+      return;
+    }
+    synchronized (this) {
+      IndexEntry previous = index.get(gav);
+      if (previous != null && previous.hash.equals(hash)) {
+        return;
+      }
+      try {
+        // An eviction may have removed the file since it was written
+        writeObject(file, content);
+      } catch (IOException e) {
+        log.warn("Could not store the POM of {}", gav, e);
+        return;
+      }
+      if (previous != null) {
+        removeEntry(gav);
+      }
+      index.put(gav, new IndexEntry(hash, content.length));
+      if (references.merge(hash, 1, Integer::sum) == 1) {
+        sizeBytes += content.length;
+      }
+      dirty = true;
+      evict();
+    }
+  }
+
+  private void writeObject(Path file, byte[] content) throws IOException {
+    if (Files.exists(file)) {
+      return;
+    }
+    Files.createDirectories(file.getParent());
+    Path tempFile = Files.createTempFile(directory, "object", ".tmp");
+    Files.write(tempFile, content);
+    Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * @return the number of cached package versions
+   */
+  public synchronized int size() {
+    return index.size();
+  }
+
+  /**
+   * @return the size of the stored POM files, in bytes
+   */
+  public synchronized long getSizeBytes() {
+    return sizeBytes;
+  }
+
+  /**
+   * Writes the index to disk if it changed since it was loaded or last saved.
+   */
+  public synchronized void save() {
+    if (directory == null || !dirty) {
+      return;
+    }
+    try {
+      Path tempFile = Files.createTempFile(directory, "index", ".tmp");
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+        out.writeInt(INDEX_FORMAT_VERSION);
+        out.writeInt(index.size());
+        for (Map.Entry<String, IndexEntry> entry : index.entrySet()) {
+          out.writeUTF(entry.getKey());
+          out.writeUTF(entry.getValue().hash);
+          out.writeInt(entry.getValue().size);
+        }
+      }
+      Files.move(tempFile, directory.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      dirty = false;
+    } catch (IOException e) {
+      log.warn("Could not save the POM cache index", e);
+    }
+  }
+
+  private void loadIndex() {
+    if (directory == null || !Files.isRegularFile(directory.resolve(INDEX_FILE))) {
+      return;
+    }
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(directory.resolve(INDEX_FILE))))) {
+      if (in.readInt() != INDEX_FORMAT_VERSION) {
+        return;
+      }
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        String gav = in.readUTF();
+        IndexEntry entry = new IndexEntry(in.readUTF(), in.readInt());
+        index.put(gav, entry);
+        if (references.merge(entry.hash, 1, Integer::sum) == 1) {
+          sizeBytes += entry.size;
+        }
+      }
+    } catch (IOException e) {
+      log.warn("Ignoring unreadable POM cache index", e);
+      index.clear();
+      references.clear();
+      sizeBytes = 0;
+    }
+  }
+
+  private void evict() {
+    Iterator<Map.Entry<String, IndexEntry>> eldest = index.entrySet().iterator();
+    while (sizeBytes > maxSizeBytes && eldest.hasNext()) {
+      Map.Entry<String, IndexEntry> entry = eldest.next();
+      eldest.remove();
+      release(entry.getValue());
+    }
+  }
+
+  private void removeEntry(String gav) {
+    IndexEntry entry = index.remove(gav);
+    if (entry != null) {
+      release(entry);
+      dirty = true;
+    }
+  }
+
+  private void release(IndexEntry entry) {
+    if (references.merge(entry.hash, -1, Integer::sum) > 0) {
+      return;
+    }
+    references.remove(entry.hash);
+    sizeBytes -= entry.size;
+    try {
+      Files.deleteIfExists(objectFile(entry.hash));
+    } catch (IOException e) {
+      log.warn("Could not remove the cached POM {}", entry.hash, e);
+    }
+  }
+
+  private Path objectFile(String hash) {
+    return directory.resolve(OBJECTS_DIR).resolve(hash.substring(0, 2)).resolve(hash + OBJECT_EXTENSION);
+  }
+
+  /**
+   * Content hash and size of the POM of a package version.
+   */
+  private static class IndexEntry {
+    private final String hash;
+    private final int size;
+
+    private IndexEntry(String hash, int size) {
+      this.hash = hash;
+      this.size = size;
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streaming reader of the dependencies declared in a POM file.
+ * <p>
+ * Only the {@code <dependencies>} element directly under {@code <project>} is read, so the dependencies of
+ * {@code <dependencyManagement>}, profiles or plugins are ignored, and the parsing stops as soon as it is closed.
+ * No document tree is built, so it can be used from the fetch engine workers without the allocations of a DOM parse.
+ */
+public class PomDependencyParser {
+
+  private static final String DEPENDENCIES = "dependencies";
+  private static final String DEPENDENCY = "dependency";
+  private static final String GROUP_ID = "groupId";
+  private static final String ARTIFACT_ID = "artifactId";
+  private static final String VERSION = "version";
+  private static final int PROJECT_CHILD_DEPTH = 2;
+  private static final int DEPENDENCY_DEPTH = 3;
+  private static final int COORDINATE_DEPTH = 4;
+  private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+  private PomDependencyParser() {
+  }
+
+  private static XMLInputFactory createInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    return factory;
+  }
+
+  /**
+   * Reads the dependencies of a POM file.
+   *
+   * @param pom
+   *     the content of the POM file
+   * @return the dependencies, in declaration order
+   * @throws XMLStreamException
+   *     if the POM file is not well formed
+   */
+  public static List<PomDependency> parse(String pom) throws XMLStreamException {
+    return parse(new StringReader(pom));
+  }
+
+  /**
+   * Reads the dependencies of a POM file from a stream, such as the body of an HTTP response.
+   *
+   * @param pom
+   *     the content of the POM file
+   * @return the dependencies, in declaration order
+   * @throws XMLStreamException
+   *     if the POM file is not well formed
+   */
+  public static List<PomDependency> parse(InputStream pom) throws XMLStreamException {
+    XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(pom);
+    try {
+      return read(reader);
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Reads the dependencies of a POM file from a reader.
+   *
+   * @param pom
+   *     the content of the POM file
+   * @return the dependencies, in declaration order
+   * @throws XMLStreamException
+   *     if the POM file is not well formed
+   */
+  public static List<PomDependency> parse(Reader pom) throws XMLStreamException {
+    XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(pom);
+    try {
+      return read(reader);
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static List<PomDependency> read(XMLStreamReader reader) throws XMLStreamException {
+    List<PomDependency> dependencies = new ArrayList<>();
+    int depth = 0;
+    boolean inDependencies = false;
+    String groupId = null;
+    String artifactId = null;
+    String version = null;
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+        String name = reader.getLocalName();
+        if (depth == PROJECT_CHILD_DEPTH && DEPENDENCIES.equals(name)) {
+          inDependencies = true;
+        } else if (inDependencies && depth == DEPENDENCY_DEPTH && DEPENDENCY.equals(name)) {
+          groupId = null;
+          artifactId = null;
+          version = null;
+        } else if (inDependencies && depth == COORDINATE_DEPTH) {
+          if (GROUP_ID.equals(name)) {
+            groupId = reader.getElementText();
+            depth--;
+          } else if (ARTIFACT_ID.equals(name)) {
+            artifactId = reader.getElementText();
+            depth--;
+          } else if (VERSION.equals(name)) {
+            version = reader.getElementText();
+            depth--;
+          }
+        }
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        if (inDependencies && depth == DEPENDENCY_DEPTH && DEPENDENCY.equals(reader.getLocalName())) {
+          dependencies.add(new PomDependency(groupId, artifactId, version));
+        } else if (inDependencies && depth == PROJECT_CHILD_DEPTH) {
+          break;
+        }
+        depth--;
+      }
+    }
+    return dependencies;
+  }
+
+  /**
+   * Coordinates of a dependency declared in a POM file. Any of them is null if it is not declared.
+   */
+  public static class PomDependency {
+    private final String groupId;
+    private final String artifactId;
+    private final String version;
+
+    public PomDependency(String groupId, String artifactId, String version) {
+      this.groupId = groupId;
+      this.artifactId = artifactId;
+      this.version = version;
+    }
+
+    public String getGroupId() {
+      return groupId;
+    }
+
+    public String getArtifactId() {
+      return artifactId;
+    }
+
+    public String getVersion() {
+      return version;
+    }
+  }
+}
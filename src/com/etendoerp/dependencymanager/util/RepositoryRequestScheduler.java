@@ -0,0 +1,255 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openbravo.base.exception.OBException;
+import org.openbravo.base.session.OBPropertiesProvider;
+
+/**
+ * Scheduler every request to the package repositories goes through, shared by the whole module so the sync
+ * process and the install actions spend a single rate limit budget.
+ * <p>
+ * It tracks the {@code X-RateLimit-Remaining} and {@code X-RateLimit-Reset} headers of every host and waits for
+ * the reset once the budget is spent. Throttled answers ({@code 429}, a {@code 403} with no budget left or with a
+ * {@code Retry-After} header), {@code 5xx} answers and network errors are retried after a delay, honouring
+ * {@code Retry-After} when present and using an exponential backoff with jitter otherwise.
+ * <p>
+ * The number of requests in flight is adapted as well: it is halved on every throttled or failed answer and grows
+ * back by one on every successful answer, up to the {@value ConcurrentFetchEngine#MAX_CONCURRENT_REQUESTS_PROPERTY}
+ * limit.
+ */
+public class RepositoryRequestScheduler {
+
+  public static final String MAX_RETRIES_PROPERTY = "etdep.http.max.retries";
+  public static final String MAX_WAIT_SECONDS_PROPERTY = "etdep.http.max.wait.seconds";
+  public static final String RATE_LIMIT_REMAINING_HEADER = "X-RateLimit-Remaining";
+  public static final String RATE_LIMIT_RESET_HEADER = "X-RateLimit-Reset";
+  public static final String RETRY_AFTER_HEADER = "Retry-After";
+  static final int DEFAULT_MAX_RETRIES = 5;
+  static final long DEFAULT_MAX_WAIT_SECONDS = 900;
+  private static final long BASE_BACKOFF_MILLIS = 500;
+  private static final long MAX_BACKOFF_MILLIS = 60_000;
+  private static final int HTTP_FORBIDDEN = 403;
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+  private static final int HTTP_SERVER_ERROR = 500;
+  private static final Logger log = LogManager.getLogger();
+
+  private static RepositoryRequestScheduler instance;
+
+  private final int maxConcurrentRequests;
+  private final int maxRetries;
+  private final long maxWaitMillis;
+  private final LongSupplier clock;
+  private final Sleeper sleeper;
+  private final Map<String, RateLimitBudget> budgets = new ConcurrentHashMap<>();
+  private int concurrencyLimit;
+  private int inFlight;
+
+  /**
+   * Waits for a given time, replaceable in tests.
+   */
+  @FunctionalInterface
+  interface Sleeper {
+    void sleep(long millis) throws InterruptedException;
+  }
+
+  RepositoryRequestScheduler(int maxConcurrentRequests, int maxRetries, long maxWaitMillis, LongSupplier clock,
+      Sleeper sleeper) {
+    this.maxConcurrentRequests = Math.max(1, maxConcurrentRequests);
+    this.maxRetries = Math.max(0, maxRetries);
+    this.maxWaitMillis = maxWaitMillis;
+    this.clock = clock;
+    this.sleeper = sleeper;
+    this.concurrencyLimit = this.maxConcurrentRequests;
+  }
+
+  /**
+   * @return the scheduler shared by the module, configured from the Openbravo properties on first use
+   */
+  public static synchronized RepositoryRequestScheduler getInstance() {
+    if (instance == null) {
+      instance = fromProperties(OBPropertiesProvider.getInstance().getOpenbravoProperties());
+    }
+    return instance;
+  }
+
+  /**
+   * Creates a scheduler configured with the {@value #MAX_RETRIES_PROPERTY}, {@value #MAX_WAIT_SECONDS_PROPERTY} and
+   * {@value ConcurrentFetchEngine#MAX_CONCURRENT_REQUESTS_PROPERTY} properties.
+   *
+   * @param properties
+   *     the Openbravo properties
+   * @return a new scheduler
+   */
+  public static RepositoryRequestScheduler fromProperties(Properties properties) {
+    return new RepositoryRequestScheduler(
+        NumberUtils.toInt(properties.getProperty(ConcurrentFetchEngine.MAX_CONCURRENT_REQUESTS_PROPERTY),
+            ConcurrentFetchEngine.DEFAULT_MAX_CONCURRENT_REQUESTS),
+        NumberUtils.toInt(properties.getProperty(MAX_RETRIES_PROPERTY), DEFAULT_MAX_RETRIES),
+        TimeUnit.SECONDS.toMillis(
+            NumberUtils.toLong(properties.getProperty(MAX_WAIT_SECONDS_PROPERTY), DEFAULT_MAX_WAIT_SECONDS)),
+        System::currentTimeMillis, Thread::sleep);
+  }
+
+  /**
+   * Sends a request through the given sender, such as the shared {@link HttpTransport}, waiting for the rate limit
+   * budget and retrying it while it is throttled, fails or times out.
+   *
+   * @param sender
+   *     the sender used to send every attempt
+   * @param request
+   *     the request to send
+   * @return the first answer that is not retried, or the last one once the retries are exhausted
+   * @throws IOException
+   *     if the request could not be sent in any of the attempts
+   * @throws InterruptedException
+   *     if the thread is interrupted while waiting
+   */
+  public HttpResponse<String> send(HttpResponseCache.Sender sender, HttpRequest request)
+      throws IOException, InterruptedException {
+    RateLimitBudget budget = budgets.computeIfAbsent(StringUtils.defaultString(request.uri().getHost()),
+        host -> new RateLimitBudget());
+    for (int attempt = 0; ; attempt++) {
+      waitFor(budget.millisUntilAvailable(clock.getAsLong()), request);
+      HttpResponse<String> response = null;
+      IOException failure = null;
+      acquire();
+      try {
+        response = sender.send(request);
+      } catch (IOException e) {
+        failure = e;
+      } finally {
+        release();
+      }
+      if (failure != null) {
+        adapt(false);
+        if (attempt >= maxRetries) {
+          throw failure;
+        }
+        log.warn("Request to {} failed, retrying: {}", request.uri(), failure.getMessage());
+        waitFor(backoffMillis(attempt), request);
+        continue;
+      }
+      budget.update(response, clock.getAsLong());
+      boolean retry = isThrottled(response) || response.statusCode() >= HTTP_SERVER_ERROR;
+      adapt(!retry);
+      if (!retry || attempt >= maxRetries) {
+        return response;
+      }
+      long delay = retryDelayMillis(response, budget, attempt);
+      log.warn("Request to {} answered {}, retrying in {} ms", request.uri(), response.statusCode(), delay);
+      waitFor(delay, request);
+    }
+  }
+
+  /**
+   * @return the current number of requests allowed in flight
+   */
+  public synchronized int getConcurrencyLimit() {
+    return concurrencyLimit;
+  }
+
+  private synchronized void acquire() throws InterruptedException {
+    while (inFlight >= concurrencyLimit) {
+      wait();
+    }
+    inFlight++;
+  }
+
+  private synchronized void release() {
+    inFlight--;
+    notifyAll();
+  }
+
+  private synchronized void adapt(boolean success) {
+    if (success) {
+      concurrencyLimit = Math.min(maxConcurrentRequests, concurrencyLimit + 1);
+    } else {
+      concurrencyLimit = Math.max(1, concurrencyLimit / 2);
+    }
+    notifyAll();
+  }
+
+  private void waitFor(long millis, HttpRequest request) throws InterruptedException {
+    if (millis <= 0) {
+      return;
+    }
+    if (millis > maxWaitMillis) {
+      throw new OBException(String.format("Rate limit of %s exhausted, it would take %d seconds to retry the request",
+          request.uri().getHost(), TimeUnit.MILLISECONDS.toSeconds(millis)));
+    }
+    sleeper.sleep(millis);
+  }
+
+  private static boolean isThrottled(HttpResponse<String> response) {
+    int status = response.statusCode();
+    if (status == HTTP_TOO_MANY_REQUESTS) {
+      return true;
+    }
+    return status == HTTP_FORBIDDEN && (response.headers().firstValue(RETRY_AFTER_HEADER).isPresent()
+        || StringUtils.equals(response.headers().firstValue(RATE_LIMIT_REMAINING_HEADER).orElse(null), "0"));
+  }
+
+  private long retryDelayMillis(HttpResponse<String> response, RateLimitBudget budget, int attempt) {
+    long retryAfter = NumberUtils.toLong(response.headers().firstValue(RETRY_AFTER_HEADER).orElse(null), -1);
+    if (retryAfter >= 0) {
+      return TimeUnit.SECONDS.toMillis(retryAfter);
+    }
+    long untilReset = budget.millisUntilAvailable(clock.getAsLong());
+    return untilReset > 0 ? untilReset : backoffMillis(attempt);
+  }
+
+  /**
+   * Exponential backoff with jitter: a random delay between half and the whole exponential ceiling of the attempt.
+   */
+  static long backoffMillis(int attempt) {
+    long ceiling = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(attempt, 16));
+    return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+  }
+
+  /**
+   * Rate limit budget last reported by a host.
+   */
+  private static class RateLimitBudget {
+    private int remaining = -1;
+    private long resetMillis;
+
+    private synchronized void update(HttpResponse<String> response, long now) {
+      int reportedRemaining = NumberUtils.toInt(
+          response.headers().firstValue(RATE_LIMIT_REMAINING_HEADER).orElse(null), -1);
+      long reportedReset = NumberUtils.toLong(response.headers().firstValue(RATE_LIMIT_RESET_HEADER).orElse(null), -1);
+      if (reportedRemaining >= 0 && reportedReset >= 0) {
+        remaining = reportedRemaining;
+        resetMillis = TimeUnit.SECONDS.toMillis(reportedReset);
+      } else if (remaining > 0) {
+        remaining--;
+      }
+      if (remaining == 0 && resetMillis <= now) {
+        remaining = -1;
+      }
+    }
+
+    private synchronized long millisUntilAvailable(long now) {
+      if (remaining != 0) {
+        return 0;
+      }
+      if (resetMillis <= now) {
+        remaining = -1;
+        return 0;
+      }
+      return resetMillis - now;
+    }
+  }
+}
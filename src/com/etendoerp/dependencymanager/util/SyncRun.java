@@ -0,0 +1,325 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openbravo.base.exception.OBException;
+import org.openbravo.erpCommon.utility.SequenceIdData;
+
+/**
+ * Checkpointed record of a run of the repository sync, stored in the {@value #TABLE} and {@value #ITEM_TABLE}
+ * tables.
+ * <p>
+ * The run keeps the URL of the next page of packages to process and the state of every package it touched: whether
+ * its versions are stored and its dependencies are still pending, it is done, or it failed. The state is written at
+ * every {@link #checkpoint}, which the sync commits, so a run interrupted by an error or a restart is resumed by the
+ * next one: the pending and failed packages are processed again and the listing continues from the last checkpoint.
+ * Runs that got to the end are never resumed, as their failed packages are not watermarked and are synced again
+ * by the next run anyway.
+ * <p>
+ * Both are technical tables outside the application dictionary, without client, organization or audit columns,
+ * written through plain JDBC like the other sync state.
+ */
+public class SyncRun {
+
+  public static final String STATUS_RUNNING = "RUNNING";
+  public static final String STATUS_INTERRUPTED = "INTERRUPTED";
+  public static final String STATUS_COMPLETED = "COMPLETED";
+  public static final String STATUS_COMPLETED_WITH_ERRORS = "COMPLETED_WITH_ERRORS";
+  public static final String ITEM_PENDING_DEPENDENCIES = "PENDING_DEPENDENCIES";
+  public static final String ITEM_DONE = "DONE";
+  public static final String ITEM_FAILED = "FAILED";
+  static final String TABLE = "ETDEP_SYNC_RUN";
+  static final String ITEM_TABLE = "ETDEP_SYNC_RUN_ITEM";
+  private static final int MAX_ERROR_LENGTH = 2000;
+  private static final String SELECT_RESUMABLE_SQL = "SELECT ETDEP_SYNC_RUN_ID, NEXT_PAGE_URL FROM " + TABLE
+      + " WHERE STATUS IN ('" + STATUS_RUNNING + "', '" + STATUS_INTERRUPTED + "') ORDER BY STARTED DESC";
+  private static final String SELECT_ITEMS_SQL = "SELECT PACKAGE_NAME, STATUS, LAST_UPDATED_AT FROM " + ITEM_TABLE
+      + " WHERE ETDEP_SYNC_RUN_ID = ?";
+  private static final String DELETE_OLD_ITEMS_SQL = "DELETE FROM " + ITEM_TABLE + " WHERE ETDEP_SYNC_RUN_ID <> ?";
+  private static final String DELETE_OLD_RUNS_SQL = "DELETE FROM " + TABLE + " WHERE ETDEP_SYNC_RUN_ID <> ?";
+  private static final String INSERT_RUN_SQL = "INSERT INTO " + TABLE
+      + " (ETDEP_SYNC_RUN_ID, STATUS, NEXT_PAGE_URL, STARTED, UPDATED) VALUES (?, ?, ?, ?, ?)";
+  private static final String UPDATE_RUN_SQL = "UPDATE " + TABLE
+      + " SET STATUS = ?, NEXT_PAGE_URL = ?, UPDATED = ?, ENDED = ? WHERE ETDEP_SYNC_RUN_ID = ?";
+  private static final String DELETE_ITEM_SQL = "DELETE FROM " + ITEM_TABLE
+      + " WHERE ETDEP_SYNC_RUN_ID = ? AND PACKAGE_NAME = ?";
+  private static final String INSERT_ITEM_SQL = "INSERT INTO " + ITEM_TABLE
+      + " (ETDEP_SYNC_RUN_ID, PACKAGE_NAME, STATUS, LAST_UPDATED_AT, ERROR_MSG, UPDATED) VALUES (?, ?, ?, ?, ?, ?)";
+  private static final Logger log = LogManager.getLogger();
+
+  private final String id;
+  private final boolean resumed;
+  private final Map<String, Item> items;
+  private final Map<String, Item> pending = new LinkedHashMap<>();
+  private String nextPageUrl;
+  private String checkpointedPageUrl;
+
+  SyncRun(String id, boolean resumed, String nextPageUrl, Map<String, Item> items) {
+    this.id = id;
+    this.resumed = resumed;
+    this.nextPageUrl = nextPageUrl;
+    this.checkpointedPageUrl = nextPageUrl;
+    this.items = items;
+  }
+
+  /**
+   * Resumes the last interrupted run, or starts a new one if there is none. Starting a new run removes the
+   * records of the previous ones.
+   *
+   * @param connection
+   *     the connection to read from and write to
+   * @param fullRebuild
+   *     if true, a new run is always started
+   * @param firstPageUrl
+   *     the URL of the first page of packages, where a new run starts
+   * @return the run
+   */
+  public static SyncRun resumeOrStart(Connection connection, boolean fullRebuild, String firstPageUrl) {
+    try {
+      if (!fullRebuild) {
+        SyncRun interrupted = findResumable(connection);
+        if (interrupted != null) {
+          log.info("Resuming interrupted sync run {}: {} packages pending, {} failed", interrupted.id,
+              interrupted.getPackages(ITEM_PENDING_DEPENDENCIES).size(), interrupted.getPackages(ITEM_FAILED).size());
+          interrupted.updateRun(connection, STATUS_RUNNING, interrupted.nextPageUrl, null);
+          return interrupted;
+        }
+      }
+      SyncRun run = new SyncRun(SequenceIdData.getUUID(), false, firstPageUrl, new HashMap<>());
+      Timestamp now = new Timestamp(System.currentTimeMillis());
+      try (PreparedStatement insert = connection.prepareStatement(INSERT_RUN_SQL)) {
+        insert.setString(1, run.id);
+        insert.setString(2, STATUS_RUNNING);
+        insert.setString(3, firstPageUrl);
+        insert.setTimestamp(4, now);
+        insert.setTimestamp(5, now);
+        insert.executeUpdate();
+      }
+      try (PreparedStatement deleteItems = connection.prepareStatement(DELETE_OLD_ITEMS_SQL);
+           PreparedStatement deleteRuns = connection.prepareStatement(DELETE_OLD_RUNS_SQL)) {
+        deleteItems.setString(1, run.id);
+        deleteItems.executeUpdate();
+        deleteRuns.setString(1, run.id);
+        deleteRuns.executeUpdate();
+      }
+      return run;
+    } catch (SQLException e) {
+      throw new OBException("Failed to start the sync run", e);
+    }
+  }
+
+  private static SyncRun findResumable(Connection connection) throws SQLException {
+    String runId;
+    String nextPageUrl;
+    try (PreparedStatement statement = connection.prepareStatement(SELECT_RESUMABLE_SQL);
+         ResultSet resultSet = statement.executeQuery()) {
+      if (!resultSet.next()) {
+        return null;
+      }
+      runId = resultSet.getString(1);
+      nextPageUrl = resultSet.getString(2);
+    }
+    Map<String, Item> items = new HashMap<>();
+    try (PreparedStatement statement = connection.prepareStatement(SELECT_ITEMS_SQL)) {
+      statement.setString(1, runId);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          items.put(resultSet.getString(1), new Item(resultSet.getString(2), resultSet.getString(3), null));
+        }
+      }
+    }
+    return new SyncRun(runId, true, nextPageUrl, items);
+  }
+
+  /**
+   * @return the id of the run
+   */
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * @return true if the run was interrupted before and is being resumed
+   */
+  public boolean isResumed() {
+    return resumed;
+  }
+
+  /**
+   * @return the URL of the next page of packages to process, or null if every page was processed
+   */
+  public String getNextPageUrl() {
+    return nextPageUrl;
+  }
+
+  /**
+   * Sets the URL of the next page of packages to process. It is not stored until the next {@link #checkpoint}.
+   *
+   * @param nextPageUrl
+   *     the URL, or null once every page was processed
+   */
+  public void setNextPageUrl(String nextPageUrl) {
+    this.nextPageUrl = nextPageUrl;
+  }
+
+  /**
+   * @param packageName
+   *     the name of the package in the GitHub API
+   * @return true if the package was completely processed by this run
+   */
+  public boolean isDone(String packageName) {
+    Item item = items.get(packageName);
+    return item != null && ITEM_DONE.equals(item.status);
+  }
+
+  /**
+   * Lists the packages of the run in a given state, such as the failed ones.
+   *
+   * @param status
+   *     the state of the packages
+   * @return the {@code updated_at} timestamp of every package in the given state, by package name
+   */
+  public Map<String, String> getPackages(String status) {
+    Map<String, String> packages = new LinkedHashMap<>();
+    items.forEach((name, item) -> {
+      if (status.equals(item.status)) {
+        packages.put(name, item.updatedAt);
+      }
+    });
+    return packages;
+  }
+
+  /**
+   * Records that the versions of a package are stored, while its dependencies are still pending.
+   */
+  public void versionsStored(String packageName, String updatedAt) {
+    record(packageName, new Item(ITEM_PENDING_DEPENDENCIES, updatedAt, null));
+  }
+
+  /**
+   * Records that a package was completely processed.
+   */
+  public void done(String packageName, String updatedAt) {
+    record(packageName, new Item(ITEM_DONE, updatedAt, null));
+  }
+
+  /**
+   * Records that a package failed, so it is retried if the run is resumed.
+   */
+  public void failed(String packageName, String updatedAt, String error) {
+    record(packageName, new Item(ITEM_FAILED, updatedAt, StringUtils.abbreviate(error, MAX_ERROR_LENGTH)));
+  }
+
+  private void record(String packageName, Item item) {
+    items.put(packageName, item);
+    pending.put(packageName, item);
+  }
+
+  /**
+   * Stores the recorded package states and the next page URL. The caller commits them together with the rows
+   * of the packages they refer to.
+   *
+   * @param connection
+   *     the connection to write to
+   */
+  public void checkpoint(Connection connection) {
+    Timestamp now = new Timestamp(System.currentTimeMillis());
+    try {
+      if (!pending.isEmpty()) {
+        try (PreparedStatement delete = connection.prepareStatement(DELETE_ITEM_SQL);
+             PreparedStatement insert = connection.prepareStatement(INSERT_ITEM_SQL)) {
+          for (Map.Entry<String, Item> entry : pending.entrySet()) {
+            delete.setString(1, id);
+            delete.setString(2, entry.getKey());
+            delete.addBatch();
+            insert.setString(1, id);
+            insert.setString(2, entry.getKey());
+            insert.setString(3, entry.getValue().status);
+            insert.setString(4, entry.getValue().updatedAt);
+            insert.setString(5, entry.getValue().error);
+            insert.setTimestamp(6, now);
+            insert.addBatch();
+          }
+          delete.executeBatch();
+          insert.executeBatch();
+        }
+      }
+      updateRun(connection, STATUS_RUNNING, nextPageUrl, null);
+    } catch (SQLException e) {
+      throw new OBException("Failed to checkpoint the sync run", e);
+    }
+    checkpointedPageUrl = nextPageUrl;
+    pending.clear();
+  }
+
+  /**
+   * Stores the recorded package states and ends the run, as completed or completed with errors depending on
+   * whether any package failed.
+   *
+   * @param connection
+   *     the connection to write to
+   */
+  public void finish(Connection connection) {
+    checkpoint(connection);
+    boolean failures = !getPackages(ITEM_FAILED).isEmpty();
+    try {
+      updateRun(connection, failures ? STATUS_COMPLETED_WITH_ERRORS : STATUS_COMPLETED, nextPageUrl,
+          new Timestamp(System.currentTimeMillis()));
+    } catch (SQLException e) {
+      throw new OBException("Failed to finish the sync run", e);
+    }
+  }
+
+  /**
+   * Marks the run as interrupted, so the next run resumes it from its last checkpoint. The package states and the
+   * page recorded since the last checkpoint are discarded, as the rows they refer to are rolled back.
+   *
+   * @param connection
+   *     the connection to write to
+   */
+  public void interrupt(Connection connection) {
+    pending.clear();
+    try {
+      updateRun(connection, STATUS_INTERRUPTED, checkpointedPageUrl, null);
+    } catch (SQLException e) {
+      throw new OBException("Failed to interrupt the sync run", e);
+    }
+  }
+
+  private void updateRun(Connection connection, String status, String pageUrl, Timestamp ended)
+      throws SQLException {
+    try (PreparedStatement update = connection.prepareStatement(UPDATE_RUN_SQL)) {
+      update.setString(1, status);
+      update.setString(2, pageUrl);
+      update.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+      update.setTimestamp(4, ended);
+      update.setString(5, id);
+      update.executeUpdate();
+    }
+  }
+
+  /**
+   * State of a package in a run.
+   */
+  static class Item {
+    private final String status;
+    private final String updatedAt;
+    private final String error;
+
+    Item(String status, String updatedAt, String error) {
+      this.status = status;
+      this.updatedAt = updatedAt;
+      this.error = error;
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package com.etendoerp.dependencymanager.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counters collected during a repository sync.
+ * <p>
+ * Request counters are updated from the fetch engine workers, so every counter is thread safe.
+ */
+public class SyncStatistics {
+
+  private final AtomicInteger packagePageRequests = new AtomicInteger();
+  private final AtomicInteger versionListRequests = new AtomicInteger();
+  private final AtomicInteger pomRequests = new AtomicInteger();
+  private final AtomicInteger pomCacheHits = new AtomicInteger();
+  private final AtomicInteger notModifiedResources = new AtomicInteger();
+  private final AtomicInteger skippedPackages = new AtomicInteger();
+  private final AtomicInteger processedPackages = new AtomicInteger();
+  private final AtomicInteger processedVersions = new AtomicInteger();
+  private final AtomicInteger failedPackages = new AtomicInteger();
+  private final long startTime = System.currentTimeMillis();
+
+  public void packagePageRequested() {
+    packagePageRequests.incrementAndGet();
+  }
+
+  public void versionListRequested() {
+    versionListRequests.incrementAndGet();
+  }
+
+  public void pomRequested() {
+    pomRequests.incrementAndGet();
+  }
+
+  public void pomCacheHit() {
+    pomCacheHits.incrementAndGet();
+  }
+
+  public void resourceNotModified() {
+    notModifiedResources.incrementAndGet();
+  }
+
+  public void packageSkipped() {
+    skippedPackages.incrementAndGet();
+  }
+
+  public void packageProcessed() {
+    processedPackages.incrementAndGet();
+  }
+
+  public void versionProcessed() {
+    processedVersions.incrementAndGet();
+  }
+
+  public void packageFailed() {
+    failedPackages.incrementAndGet();
+  }
+
+  public int getPackagePageRequests() {
+    return packagePageRequests.get();
+  }
+
+  public int getVersionListRequests() {
+    return versionListRequests.get();
+  }
+
+  public int getPomRequests() {
+    return pomRequests.get();
+  }
+
+  /**
+   * @return the number of calls made to the GitHub packages API, that is, package pages and version lists
+   */
+  public int getApiCalls() {
+    return getPackagePageRequests() + getVersionListRequests();
+  }
+
+  /**
+   * @return the number of POM files read from the POM cache instead of downloading them
+   */
+  public int getPomCacheHits() {
+    return pomCacheHits.get();
+  }
+
+  /**
+   * @return the number of version lists answered with 304 Not Modified
+   */
+  public int getNotModifiedResources() {
+    return notModifiedResources.get();
+  }
+
+  /**
+   * @return the number of packages skipped because they did not change since the last successful sync
+   */
+  public int getSkippedPackages() {
+    return skippedPackages.get();
+  }
+
+  public int getProcessedPackages() {
+    return processedPackages.get();
+  }
+
+  public int getProcessedVersions() {
+    return processedVersions.get();
+  }
+
+  public int getFailedPackages() {
+    return failedPackages.get();
+  }
+
+  /**
+   * @return the milliseconds elapsed since these statistics were created
+   */
+  public long getElapsedMillis() {
+    return System.currentTimeMillis() - startTime;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "Sync statistics: %d API calls (%d package pages, %d version lists), %d POM downloads, "
+            + "%d POM cache hits, %d not modified, %d packages unchanged, %d packages and %d versions processed, %d packages failed, %d ms",
+        getApiCalls(), getPackagePageRequests(), getVersionListRequests(), getPomRequests(),
+        getPomCacheHits(), getNotModifiedResources(), getSkippedPackages(), getProcessedPackages(), getProcessedVersions(), getFailedPackages(), getElapsedMillis());
+  }
+}
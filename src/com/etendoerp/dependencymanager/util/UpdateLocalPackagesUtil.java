@@ -3,23 +3,36 @@ package com.etendoerp.dependencymanager.util;
 import com.etendoerp.dependencymanager.data.Package;
 import com.etendoerp.dependencymanager.data.PackageDependency;
 import com.etendoerp.dependencymanager.data.PackageVersion;
+import com.etendoerp.dependencymanager.util.PackageDatasetReader.DatasetRecord;
 import org.apache.commons.lang3.BooleanUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.dom4j.Element;
+import org.openbravo.base.exception.OBException;
 import org.openbravo.base.session.OBPropertiesProvider;
 import org.openbravo.dal.core.OBContext;
 import org.openbravo.dal.service.OBDal;
-import org.openbravo.dal.xml.XMLUtil;
 
-import java.io.File;
-import java.io.FileInputStream;
+import javax.xml.stream.XMLStreamException;
+
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public class UpdateLocalPackagesUtil {
 
@@ -39,136 +52,556 @@ public class UpdateLocalPackagesUtil {
   public static final String DEPENDENCY_VERSION = "dependencyVersion";
   public static final String ISBUNDLE = "isBundle";
   public static final String DATASET_FILE_URL = "https://raw.githubusercontent.com/etendosoftware/com.etendoerp.dependencymanager/<branch>/referencedata/standard/Packages_dataset.xml";
+  public static final String SNAPSHOT_FILE_URL = "https://raw.githubusercontent.com/etendosoftware/com.etendoerp.dependencymanager/<branch>/referencedata/standard/Packages_snapshot.bin";
+  public static final String MANIFEST_FILE_URL = "https://raw.githubusercontent.com/etendosoftware/com.etendoerp.dependencymanager/<branch>/referencedata/packages/Packages_manifest.txt";
+
+  static final String CATALOG_DATASET = "catalog";
 
   private static final String BRANCH_LOCAL_PACKAGES_PROPERTY = "branch.update.local.packages";
+  private static final String BRANCH_PLACEHOLDER = "<branch>";
+  private static final int BATCH_SIZE = 100;
+  private static final Logger log = LogManager.getLogger();
 
   private UpdateLocalPackagesUtil() {
   }
 
   /**
    * This method is overridden from the DalBaseProcess class.
-   * It reads an XML file and processes its elements to update local packages, versions, and dependencies.
+   * It downloads the manifest of the dataset shards and only the shards that changed since the last import, or the
+   * catalog snapshot if there is no manifest, or the XML dataset if there is no valid snapshot either, and processes
+   * their records to update local packages, versions, and dependencies.
+   * The file is streamed, so no document tree of the whole dataset is built. If the file is the same one imported
+   * last time nothing is written, and otherwise only the records added, changed or removed since then are. On
+   * PostgreSQL, they are written with set-based statements by a {@link DatasetBulkLoader}.
    *
+   * @return The number of rows added, changed or removed.
    * @throws Exception If an error occurs during the execution of the method.
    */
-  public static void update() throws IOException {
+  public static int update() throws IOException {
     try {
       OBContext.setAdminMode(true);
 
       Properties properties = OBPropertiesProvider.getInstance().getOpenbravoProperties();
       String updateLocalPackages = properties.getProperty(BRANCH_LOCAL_PACKAGES_PROPERTY, "main");
-      String dataSetFileUrl = DATASET_FILE_URL.replace("<branch>", updateLocalPackages);
-      File dataSetFile = downloadFile(dataSetFileUrl);
-      try (FileInputStream fileInputStream = new FileInputStream(dataSetFile)) {
-        var xmlRootElement = XMLUtil.getInstance().getRootElement(fileInputStream);
-        processPackages(xmlRootElement);
-        processPackageVersions(xmlRootElement);
-        processPackageDependencies(xmlRootElement);
-      } catch (Exception e) {
-        throw new IOException("Error when updating packages", e);
+      String manifestFileUrl = MANIFEST_FILE_URL.replace(BRANCH_PLACEHOLDER, updateLocalPackages);
+      Path manifestFile = downloadManifest(manifestFileUrl);
+      if (manifestFile != null) {
+        return importShards(properties, manifestFileUrl, manifestFile);
       }
+      String snapshotFileUrl = SNAPSHOT_FILE_URL.replace(BRANCH_PLACEHOLDER, updateLocalPackages);
+      Path snapshotFile = downloadSnapshot(snapshotFileUrl);
+      if (snapshotFile != null) {
+        return importFile(properties, snapshotFileUrl, snapshotFile,
+            handler -> CatalogSnapshot.read(snapshotFile, handler));
+      }
+      String dataSetFileUrl = DATASET_FILE_URL.replace(BRANCH_PLACEHOLDER, updateLocalPackages);
+      Path dataSetFile = downloadFile(dataSetFileUrl);
+      return importFile(properties, dataSetFileUrl, dataSetFile, handler -> {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(dataSetFile))) {
+          return PackageDatasetReader.read(in, handler);
+        }
+      });
     } finally {
       OBContext.restorePreviousMode();
     }
   }
 
-  private static File downloadFile(String fileUrl) throws IOException {
-    URL url = new URL(fileUrl);
-    File tempFile = File.createTempFile("download", null);
+  /**
+   * Imports the whole dataset from a single file, the catalog snapshot or the XML dataset. The records are compared
+   * with the hashes of the {@value #CATALOG_DATASET} dataset, shared by every source, so switching between the
+   * sources does not import the unchanged records again. Once imported, the hashes of the files of the other sources
+   * are forgotten, so the next import from them is not skipped as unchanged.
+   */
+  private static int importFile(Properties properties, String name, Path file, DatasetSource source)
+      throws IOException {
+    try {
+      String contentHash = DatasetImportHashes.hashFile(file);
+      Connection connection = OBDal.getInstance().getConnection();
+      DatasetImportHashes hashes = DatasetImportHashes.load(connection, CATALOG_DATASET, name);
+      if (hashes.isDatasetUnchanged(contentHash)) {
+        log.info("Package dataset unchanged since the last import, skipping it");
+        return 0;
+      }
+      int rows = applyDataset(properties, connection, source, hashes);
+      DatasetImportHashes.deleteDatasetHashes(connection, referenceDataUrl(name));
+      hashes.save(connection, CATALOG_DATASET, name, contentHash);
+      return rows;
+    } catch (Exception e) {
+      throw new IOException("Error when updating packages", e);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
 
-    try (InputStream in = url.openStream()) {
-      Files.copy(in,tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  /**
+   * Imports the shards of the dataset listed in a manifest whose checksum differs from the one imported last time,
+   * or that a row no longer in the catalog was imported from.
+   * The changed shards are downloaded and checked against the manifest, and then read one after the other as a
+   * single dataset, so the references between them are resolved as in the whole dataset. Only the records of the
+   * shards read can be found removed. As with {@link #importFile}, the record hashes are the ones of the
+   * {@value #CATALOG_DATASET} dataset, and the hashes of the files of the other sources are forgotten, while the
+   * checksum of every shard of the manifest is stored.
+   *
+   * @param properties The Openbravo properties.
+   * @param manifestUrl The URL of the manifest, which the URLs of the shards are relative to.
+   * @param manifestFile The downloaded manifest.
+   * @return The number of rows added, changed or removed.
+   * @throws IOException If a shard cannot be downloaded or imported.
+   */
+  private static int importShards(Properties properties, String manifestUrl, Path manifestFile) throws IOException {
+    Map<String, Path> shardFiles = new LinkedHashMap<>();
+    try {
+      String manifestHash = DatasetImportHashes.hashFile(manifestFile);
+      Connection connection = OBDal.getInstance().getConnection();
+      DatasetImportHashes hashes = DatasetImportHashes.load(connection, CATALOG_DATASET, manifestUrl);
+      if (hashes.isDatasetUnchanged(manifestHash)) {
+        log.info("Package dataset shards unchanged since the last import, skipping them");
+        return 0;
+      }
+      Map<String, String> changedShards = new LinkedHashMap<>();
+      Map<String, String> shards = PackageDatasetShards.readManifest(manifestFile);
+      for (Map.Entry<String, String> shard : shards.entrySet()) {
+        String storedChecksum = DatasetImportHashes.loadDatasetHash(connection, shardUrl(manifestUrl, shard.getKey()));
+        if (!StringUtils.equals(shard.getValue(), storedChecksum) || hashes.hasMissingRows(shard.getKey())) {
+          changedShards.put(shard.getKey(), shard.getValue());
+        }
+      }
+      for (Map.Entry<String, String> shard : changedShards.entrySet()) {
+        String shardUrl = shardUrl(manifestUrl, shard.getKey());
+        Path shardFile = downloadFile(shardUrl);
+        shardFiles.put(shard.getKey(), shardFile);
+        if (!StringUtils.equals(shard.getValue(), DatasetImportHashes.hashFile(shardFile))) {
+          throw new IOException("Checksum mismatch of the package dataset shard " + shardUrl);
+        }
+      }
+      log.info("Importing {} changed package dataset shards", changedShards.size());
+      int rows = applyDataset(properties, connection, handler -> {
+        int read = 0;
+        for (Map.Entry<String, Path> shardFile : shardFiles.entrySet()) {
+          hashes.startShard(shardFile.getKey());
+          try (InputStream in = new BufferedInputStream(Files.newInputStream(shardFile.getValue()))) {
+            read += PackageDatasetReader.read(in, handler);
+          }
+        }
+        return read;
+      }, hashes);
+      DatasetImportHashes.deleteDatasetHashes(connection, referenceDataUrl(manifestUrl));
+      hashes.save(connection, CATALOG_DATASET, manifestUrl, manifestHash);
+      for (Map.Entry<String, String> shard : shards.entrySet()) {
+        DatasetImportHashes.saveDatasetHash(connection, shardUrl(manifestUrl, shard.getKey()), shard.getValue());
+      }
+      return rows;
+    } catch (Exception e) {
+      throw new IOException("Error when updating packages", e);
+    } finally {
+      Files.deleteIfExists(manifestFile);
+      for (Path shardFile : shardFiles.values()) {
+        Files.deleteIfExists(shardFile);
+      }
     }
-    return tempFile;
+  }
+
+  private static String shardUrl(String manifestUrl, String shardFile) {
+    return URI.create(manifestUrl).resolve(shardFile).toString();
+  }
+
+  /**
+   * @return the URL of the folder of the reference data of the branch a dataset file comes from, which holds the
+   *     files of every source
+   */
+  private static String referenceDataUrl(String fileUrl) {
+    return URI.create(fileUrl).resolve("../").toString();
+  }
+
+  /**
+   * Imports the records of a dataset that changed since the last import and removes the ones no longer in it, and
+   * updates the {@link DependencyClosure} of the package versions they affect.
+   *
+   * @return The number of rows added, changed or removed.
+   */
+  private static int applyDataset(Properties properties, Connection connection, DatasetSource source,
+      DatasetImportHashes hashes) throws XMLStreamException, IOException {
+    int records;
+    if (DatasetBulkLoader.isEnabled(properties)) {
+      try (DatasetBulkLoader loader = DatasetBulkLoader.fromContext(connection)) {
+        records = bulkImportDataset(source, hashes, loader);
+      }
+    } else {
+      records = importDataset(source, hashes);
+    }
+    Set<String> changedVersions = new HashSet<>();
+    int removed = removeRecords(hashes.getRemovedRecords(), changedVersions);
+    log.info("Imported {} changed records of the package dataset and removed {}", records, removed);
+    List<String> changedDependencies = new ArrayList<>();
+    hashes.getChangedRecords().forEach((id, entity) -> {
+      if (ETDEP_PACKAGE_VERSION.equals(entity)) {
+        changedVersions.add(id);
+      } else if (ETDEP_PACKAGE_DEPENDENCY.equals(entity)) {
+        changedDependencies.add(id);
+      }
+    });
+    DependencyClosure.update(connection, changedVersions, changedDependencies);
+    return records + removed;
+  }
+
+  private static Path downloadFile(String fileUrl) throws IOException {
+    Path tempFile = Files.createTempFile("download", null);
+    try {
+      HttpResponse<Path> response = HttpTransport.getInstance()
+          .download(HttpRequest.newBuilder(URI.create(fileUrl)).GET().build(), tempFile);
+      if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+        throw new IOException("Failed to download " + fileUrl + ": HTTP " + response.statusCode());
+      }
+      return tempFile;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      Files.deleteIfExists(tempFile);
+      throw new IOException("Interrupted while downloading " + fileUrl, e);
+    } catch (IOException e) {
+      Files.deleteIfExists(tempFile);
+      throw e;
+    }
+  }
+
+  /**
+   * Downloads the manifest of the dataset shards.
+   *
+   * @param fileUrl The URL of the manifest.
+   * @return The manifest file, or null if the shards are not published, so the snapshot or the XML dataset is used
+   *     instead.
+   */
+  private static Path downloadManifest(String fileUrl) {
+    try {
+      return downloadFile(fileUrl);
+    } catch (IOException e) {
+      log.info("Package dataset shards not available, importing the whole dataset instead: {}", e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Downloads and checks the catalog snapshot.
+   *
+   * @param fileUrl The URL of the snapshot.
+   * @return The snapshot file, or null if it is not published or not valid, so the XML dataset is used instead.
+   */
+  private static Path downloadSnapshot(String fileUrl) {
+    Path snapshotFile = null;
+    try {
+      snapshotFile = downloadFile(fileUrl);
+      CatalogSnapshot.verify(snapshotFile);
+      return snapshotFile;
+    } catch (IOException e) {
+      log.info("Catalog snapshot not available, importing the XML dataset instead: {}", e.getMessage());
+      if (snapshotFile != null) {
+        try {
+          Files.deleteIfExists(snapshotFile);
+        } catch (IOException deleteException) {
+          log.debug("Could not delete catalog snapshot {}", snapshotFile, deleteException);
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Imports the records of the dataset in a single pass, as they are read.
+   * Records whose content did not change since the last import are skipped without reading their rows. The rest
+   * are saved in document order and flushed in batches of {@value #BATCH_SIZE}, clearing the session
+   * afterwards so memory use does not grow with the dataset. The dataset lists the packages before their versions
+   * and the versions before their dependencies, so the referenced records are already stored; a record that
+   * references one that is not stored yet is kept aside and imported once the whole dataset has been read.
+   *
+   * @param dataset The source of the records of the dataset.
+   * @param hashes The hashes of the last import, which record the hashes of the records read.
+   * @return The number of imported records.
+   * @throws XMLStreamException If the dataset is not well formed.
+   * @throws IOException If the dataset cannot be read.
+   */
+  static int importDataset(DatasetSource dataset, DatasetImportHashes hashes)
+      throws XMLStreamException, IOException {
+    DatasetImport datasetImport = new DatasetImport(hashes);
+    dataset.read(datasetImport::importRecord);
+    return datasetImport.finish();
   }
 
   /**
-   * This method processes the package elements from the XML file.
-   * It creates or updates a Package object for each package element.
+   * Imports the records of the dataset that changed since the last import with set-based statements, staging them
+   * while they are read and merging them into the catalog once the whole dataset has been read, so forward
+   * references need no special handling.
    *
-   * @param xmlRootElement The root element of the XML file.
+   * @param dataset The source of the records of the dataset.
+   * @param hashes The hashes of the last import, which record the hashes of the records read.
+   * @param loader The loader the records are staged into.
+   * @return The number of imported rows.
+   * @throws XMLStreamException If the dataset is not well formed.
+   * @throws IOException If the dataset cannot be read.
+   */
+  static int bulkImportDataset(DatasetSource dataset, DatasetImportHashes hashes, DatasetBulkLoader loader)
+      throws XMLStreamException, IOException {
+    dataset.read(datasetRecord -> {
+      if (hashes.isChanged(datasetRecord)) {
+        loader.stage(datasetRecord);
+      }
+    });
+    return loader.apply();
+  }
+
+  /**
+   * Source of the records of a dataset: the XML dataset or the catalog snapshot.
    */
-  private static void processPackages(Element xmlRootElement) {
-    for (Element packageElement : xmlRootElement.elements(ETDEP_PACKAGE)) {
-      String id = packageElement.elementText(ID);
-      Package pkg = OBDal.getInstance().get(Package.class, id);
-      if (pkg == null) {
-        pkg = new Package();
-        pkg.setNewOBObject(true);
-        pkg.setId(id);
+  @FunctionalInterface
+  interface DatasetSource {
+    /**
+     * Reads the records of the dataset.
+     *
+     * @param handler The handler every record is passed to.
+     * @return The number of records read.
+     */
+    int read(Consumer<DatasetRecord> handler) throws XMLStreamException, IOException;
+  }
+
+  /**
+   * State of a dataset import: the records imported since the last flush and the records kept aside.
+   */
+  private static class DatasetImport {
+    private final DatasetImportHashes hashes;
+    private final List<DatasetRecord> deferred = new ArrayList<>();
+    private int imported;
+    private int unflushed;
+
+    private DatasetImport(DatasetImportHashes hashes) {
+      this.hashes = hashes;
+    }
+
+    private void importRecord(DatasetRecord datasetRecord) {
+      if (!hashes.isChanged(datasetRecord)) {
+        return;
+      }
+      if (!processRecord(datasetRecord, false)) {
+        deferred.add(datasetRecord);
+        return;
+      }
+      imported++;
+      if (++unflushed >= BATCH_SIZE) {
+        flush();
+      }
+    }
+
+    private int finish() {
+      flush();
+      if (!deferred.isEmpty()) {
+        log.debug("Importing {} dataset records with forward references", deferred.size());
+        for (DatasetRecord datasetRecord : deferred) {
+          processRecord(datasetRecord, true);
+          imported++;
+        }
+        flush();
       }
-      pkg.setGroup(packageElement.elementText(GROUP));
-      pkg.setArtifact(packageElement.elementText(ARTIFACT));
-      pkg.setActive(
-          BooleanUtils.toBooleanObject(packageElement.elementText(ACTIVE)));
-      pkg.setBundle(
-          BooleanUtils.toBooleanObject(packageElement.elementText(ISBUNDLE)));
-      OBDal.getInstance().save(pkg);
+      return imported;
+    }
+
+    private void flush() {
+      OBDal.getInstance().flush();
+      OBDal.getInstance().getSession().clear();
+      unflushed = 0;
     }
-    OBDal.getInstance().flush();
   }
 
   /**
-   * This method processes the package version elements from the XML file.
-   * It creates or updates a PackageVersion object for each package version element.
+   * Removes the rows of the records imported last time that are no longer in the dataset: dependencies first, then
+   * versions and packages. Dependencies that point to a removed version are left without dependency version, as
+   * when it is not found on import, and versions and packages still referenced by rows that do not come from the
+   * dataset, such as the ones stored by the repository sync, are kept.
    *
-   * @param xmlRootElement The root element of the XML file.
+   * @param removedRecords The entities of the removed records, by record id.
+   * @param changedVersions The set the ids of the package versions whose dependencies were removed or left without
+   *     dependency version are added to.
+   * @return The number of removed rows.
    */
-  private static void processPackageVersions(Element xmlRootElement) {
-    for (Element packageElement : xmlRootElement.elements(ETDEP_PACKAGE_VERSION)) {
-      String id = packageElement.elementText(ID);
-      PackageVersion packageVersion = OBDal.getInstance().get(PackageVersion.class, id);
-      if (packageVersion == null) {
-        packageVersion = new PackageVersion();
-        packageVersion.setNewOBObject(true);
-        packageVersion.setId(id);
+  static int removeRecords(Map<String, String> removedRecords, Set<String> changedVersions) {
+    if (removedRecords.isEmpty()) {
+      return 0;
+    }
+    int removed = 0;
+    for (String entity : List.of(ETDEP_PACKAGE_DEPENDENCY, ETDEP_PACKAGE_VERSION, ETDEP_PACKAGE)) {
+      for (Map.Entry<String, String> removedRecord : removedRecords.entrySet()) {
+        if (entity.equals(removedRecord.getValue())
+            && removeRecord(entity, removedRecord.getKey(), changedVersions)) {
+          removed++;
+        }
       }
-      packageVersion.setPackage(OBDal.getInstance()
-          .get(Package.class, packageElement.element(ETDEP_PACKAGE_TAG).attributeValue(ID)));
-      packageVersion.setVersion(packageElement.elementText(VERSION));
-      packageVersion.setActive(
-          BooleanUtils.toBooleanObject(packageElement.elementText(ACTIVE)));
-      packageVersion.setFromCore(packageElement.elementText(FROM_CORE));
-      packageVersion.setLatestCore(packageElement.elementText(LATEST_CORE));
+      OBDal.getInstance().flush();
+    }
+    OBDal.getInstance().getSession().clear();
+    return removed;
+  }
 
-      OBDal.getInstance().save(packageVersion);
+  private static boolean removeRecord(String entity, String id, Set<String> changedVersions) {
+    OBDal dal = OBDal.getInstance();
+    switch (entity) {
+      case ETDEP_PACKAGE_DEPENDENCY:
+        PackageDependency removedDependency = dal.get(PackageDependency.class, id);
+        if (removedDependency != null) {
+          changedVersions.add(removedDependency.getPackageVersion().getId());
+        }
+        return remove(removedDependency);
+      case ETDEP_PACKAGE_VERSION:
+        for (PackageDependency dependency : dal.createQuery(PackageDependency.class,
+            "as pd where pd.dependencyVersion.id = :versionId").setNamedParameter("versionId", id).list()) {
+          changedVersions.add(dependency.getPackageVersion().getId());
+          dependency.setDependencyVersion(null);
+          dal.save(dependency);
+        }
+        if (dal.createQuery(PackageDependency.class, "as pd where pd.packageVersion.id = :versionId")
+            .setNamedParameter("versionId", id).count() > 0) {
+          log.debug("Keeping package version {} removed from the dataset, it still has dependencies", id);
+          return false;
+        }
+        return remove(dal.get(PackageVersion.class, id));
+      case ETDEP_PACKAGE:
+        if (dal.createQuery(PackageVersion.class, "as pv where pv.package.id = :packageId")
+            .setNamedParameter("packageId", id).count() > 0) {
+          log.debug("Keeping package {} removed from the dataset, it still has versions", id);
+          return false;
+        }
+        return remove(dal.get(Package.class, id));
+      default:
+        return false;
+    }
+  }
+
+  private static boolean remove(Object object) {
+    if (object == null) {
+      return false;
+    }
+    OBDal.getInstance().remove(object);
+    return true;
+  }
+
+  /**
+   * Creates or updates the object of a dataset record.
+   *
+   * @param datasetRecord The record.
+   * @param lastAttempt Whether the record was kept aside and the whole dataset has already been imported.
+   * @return false if the record references a record that is not stored yet, true otherwise.
+   */
+  private static boolean processRecord(DatasetRecord datasetRecord, boolean lastAttempt) {
+    switch (datasetRecord.getEntity()) {
+      case ETDEP_PACKAGE:
+        processPackage(datasetRecord);
+        return true;
+      case ETDEP_PACKAGE_VERSION:
+        return processPackageVersion(datasetRecord, lastAttempt);
+      case ETDEP_PACKAGE_DEPENDENCY:
+        return processPackageDependency(datasetRecord, lastAttempt);
+      default:
+        log.debug("Skipping dataset record of entity {}", datasetRecord.getEntity());
+        return true;
     }
-    OBDal.getInstance().flush();
   }
 
   /**
-   * This method processes the package dependency elements from the XML file.
-   * It creates or updates a PackageDependency object for each package dependency element.
+   * This method processes a package record from the XML file.
+   * It creates or updates the Package object of the record.
    *
-   * @param xmlRootElement The root element of the XML file.
-   */
-  private static void processPackageDependencies(Element xmlRootElement) {
-    for (Element packageElement : xmlRootElement.elements(ETDEP_PACKAGE_DEPENDENCY)) {
-      String id = packageElement.elementText(ID);
-      PackageDependency pkgDep = OBDal.getInstance().get(PackageDependency.class, id);
-      if (pkgDep == null) {
-        pkgDep = new PackageDependency();
-        pkgDep.setNewOBObject(true);
-        pkgDep.setId(id);
-      }
-      pkgDep.setPackageVersion(OBDal.getInstance()
-          .get(PackageVersion.class,
-              packageElement.element(ETDEP_PACKAGE_VERSION_TAG).attributeValue(ID)));
-      pkgDep.setGroup(packageElement.elementText(GROUP));
-      pkgDep.setArtifact(packageElement.elementText(ARTIFACT));
-      pkgDep.setVersion(packageElement.elementText(VERSION));
-      pkgDep.setActive(
-          BooleanUtils.toBooleanObject(packageElement.elementText(ACTIVE)));
-      pkgDep.setExternalDependency(
-          BooleanUtils.toBooleanObject(packageElement.elementText(EXTERNAL_DEPENDENCY)));
-      PackageVersion dependencyVersion = null;
-      if (packageElement.element(DEPENDENCY_VERSION).attributeCount() > 1) {
-        dependencyVersion = OBDal.getInstance().get(PackageVersion.class, packageElement.element(DEPENDENCY_VERSION).attributeValue(ID));
-      }
-      pkgDep.setDependencyVersion(dependencyVersion);
-      OBDal.getInstance().save(pkgDep);
-    }
-    OBDal.getInstance().flush();
+   * @param packageRecord The package record.
+   */
+  private static void processPackage(DatasetRecord packageRecord) {
+    String id = packageRecord.getId();
+    Package pkg = OBDal.getInstance().get(Package.class, id);
+    if (pkg == null) {
+      pkg = new Package();
+      pkg.setNewOBObject(true);
+      pkg.setId(id);
+    }
+    pkg.setGroup(packageRecord.getValue(GROUP));
+    pkg.setArtifact(packageRecord.getValue(ARTIFACT));
+    pkg.setActive(
+        BooleanUtils.toBooleanObject(packageRecord.getValue(ACTIVE)));
+    pkg.setBundle(
+        BooleanUtils.toBooleanObject(packageRecord.getValue(ISBUNDLE)));
+    OBDal.getInstance().save(pkg);
+  }
+
+  /**
+   * This method processes a package version record from the XML file.
+   * It creates or updates the PackageVersion object of the record.
+   *
+   * @param versionRecord The package version record.
+   * @param lastAttempt Whether the package must already be stored.
+   * @return false if the package of the version is not stored yet, true otherwise.
+   */
+  private static boolean processPackageVersion(DatasetRecord versionRecord, boolean lastAttempt) {
+    String packageId = versionRecord.getReference(ETDEP_PACKAGE_TAG);
+    Package pkg = OBDal.getInstance().get(Package.class, packageId);
+    if (pkg == null) {
+      if (lastAttempt) {
+        throw new OBException(String.format("Package %s of package version %s not found in the dataset", packageId,
+            versionRecord.getId()));
+      }
+      return false;
+    }
+    String id = versionRecord.getId();
+    PackageVersion packageVersion = OBDal.getInstance().get(PackageVersion.class, id);
+    if (packageVersion == null) {
+      packageVersion = new PackageVersion();
+      packageVersion.setNewOBObject(true);
+      packageVersion.setId(id);
+    }
+    packageVersion.setPackage(pkg);
+    packageVersion.setVersion(versionRecord.getValue(VERSION));
+    packageVersion.setActive(
+        BooleanUtils.toBooleanObject(versionRecord.getValue(ACTIVE)));
+    packageVersion.setFromCore(versionRecord.getValue(FROM_CORE));
+    packageVersion.setLatestCore(versionRecord.getValue(LATEST_CORE));
+
+    OBDal.getInstance().save(packageVersion);
+    return true;
+  }
+
+  /**
+   * This method processes a package dependency record from the XML file.
+   * It creates or updates the PackageDependency object of the record.
+   * A dependency version that is not found once the whole dataset has been read is left empty.
+   *
+   * @param dependencyRecord The package dependency record.
+   * @param lastAttempt Whether the referenced package versions must already be stored.
+   * @return false if a package version referenced by the dependency is not stored yet, true otherwise.
+   */
+  private static boolean processPackageDependency(DatasetRecord dependencyRecord, boolean lastAttempt) {
+    String packageVersionId = dependencyRecord.getReference(ETDEP_PACKAGE_VERSION_TAG);
+    PackageVersion packageVersion = OBDal.getInstance().get(PackageVersion.class, packageVersionId);
+    String dependencyVersionId = dependencyRecord.getReference(DEPENDENCY_VERSION);
+    PackageVersion dependencyVersion = null;
+    if (dependencyVersionId != null) {
+      dependencyVersion = OBDal.getInstance().get(PackageVersion.class, dependencyVersionId);
+    }
+    if (packageVersion == null && lastAttempt) {
+      throw new OBException(String.format("Package version %s of package dependency %s not found in the dataset",
+          packageVersionId, dependencyRecord.getId()));
+    }
+    if (!lastAttempt && (packageVersion == null || (dependencyVersionId != null && dependencyVersion == null))) {
+      return false;
+    }
+    String id = dependencyRecord.getId();
+    PackageDependency pkgDep = OBDal.getInstance().get(PackageDependency.class, id);
+    if (pkgDep == null) {
+      pkgDep = new PackageDependency();
+      pkgDep.setNewOBObject(true);
+      pkgDep.setId(id);
+    }
+    pkgDep.setPackageVersion(packageVersion);
+    pkgDep.setGroup(dependencyRecord.getValue(GROUP));
+    pkgDep.setArtifact(dependencyRecord.getValue(ARTIFACT));
+    pkgDep.setVersion(dependencyRecord.getValue(VERSION));
+    pkgDep.setActive(
+        BooleanUtils.toBooleanObject(dependencyRecord.getValue(ACTIVE)));
+    pkgDep.setExternalDependency(
+        BooleanUtils.toBooleanObject(dependencyRecord.getValue(EXTERNAL_DEPENDENCY)));
+    pkgDep.setDependencyVersion(dependencyVersion);
+    OBDal.getInstance().save(pkgDep);
+    return true;
   }
 
 }